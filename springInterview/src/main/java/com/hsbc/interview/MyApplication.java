@@ -2,6 +2,7 @@ package com.hsbc.interview;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 /**
  * @Description
@@ -9,6 +10,7 @@ import org.springframework.boot.autoconfigure.SpringBootApplication;
  * @Date 2025-03-15
  */
 @SpringBootApplication
+@EnableScheduling
 public class MyApplication {
     public static void main(String[] args) {
         SpringApplication.run(MyApplication.class, args);
@@ -0,0 +1,416 @@
+package com.hsbc.interview.bulk;
+
+import com.hsbc.interview.dto.BulkImportStatus;
+import com.hsbc.interview.entity.Transaction;
+import com.hsbc.interview.service.TransactionService;
+import lombok.extern.log4j.Log4j2;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 批量导入任务
+ * 流水线：读取线程按行切块（记录每块结束时的文件偏移）→ 解析线程池并行解析、校验 →
+ * 按流水号哈希分区，每个分区由一个写入线程顺序写主缓存（保留给定的流水号、日期与版本号），
+ * 同时把 (用户ID, 流水号)、(商户ID, 流水号) 记入本线程的索引有序段；
+ * 每满一个检查点窗口，各有序段排序后k路归并，每个用户/商户只写一次索引缓存，然后原子写入断点文件。
+ * 断点之前的数据（含索引）都已完整写入，恢复时从断点偏移继续；流水号保持不变，重复写入同一行结果相同
+ * @author wangwei
+ * @date 2026-10-19
+ */
+@Log4j2
+public class BulkImportJob implements Runnable {
+
+    public enum State {
+        RUNNING,
+        COMPLETED,
+        FAILED,
+        CANCELLED,
+        // 进程重启前未完成的任务
+        INTERRUPTED
+    }
+
+    private static final int MAX_ERROR_SAMPLES = 20;
+
+    /**
+     * 读取的一块数据行
+     *
+     * @param lines 数据行
+     * @param lineOffsets 每行起始偏移，用于错误定位
+     * @param endOffset 本块结束后的文件偏移
+     */
+    private record Chunk(List<String> lines, long[] lineOffsets, long endOffset) {
+    }
+
+    /**
+     * 解析后的一块数据
+     */
+    private record ParsedChunk(List<Transaction> rows, List<String> errors, long endOffset) {
+    }
+
+    private final ImportCheckpoint checkpoint;
+
+    private final Path source;
+
+    private final Path checkpointDirectory;
+
+    private final TransactionService transactionService;
+
+    private final int parallelism;
+
+    private final int chunkLines;
+
+    private final long checkpointRows;
+
+    private final long maxErrors;
+
+    // 保留期限对应的最小流水号，null为未启用保留策略
+    private final String retainFromId;
+
+    // 本次执行开始前已写入的行数（恢复时来自断点）
+    private final long baseRows;
+
+    private final long resumeOffset;
+
+    private final AtomicLong bytesRead = new AtomicLong();
+    private final AtomicLong rowsApplied = new AtomicLong();
+    private final AtomicLong rowsRejected = new AtomicLong();
+    private final List<String> errorSamples = new CopyOnWriteArrayList<>();
+    private final long totalBytes;
+
+    private final List<IndexRun> userRuns = new ArrayList<>();
+    private final List<IndexRun> merchantRuns = new ArrayList<>();
+
+    private volatile State state = State.RUNNING;
+    private volatile boolean cancelRequested;
+    private volatile String failure;
+    private volatile long startNanos;
+    private volatile long endNanos;
+
+    // 仅由任务线程访问
+    private long pendingOffset;
+    private long windowRows;
+
+    BulkImportJob(ImportCheckpoint checkpoint, Path checkpointDirectory, TransactionService transactionService,
+                  int parallelism, int chunkLines, long checkpointRows, long maxErrors, String retainFromId)
+            throws IOException {
+        this.checkpoint = checkpoint;
+        this.source = Path.of(checkpoint.source);
+        this.checkpointDirectory = checkpointDirectory;
+        this.transactionService = transactionService;
+        this.parallelism = Math.max(1, parallelism);
+        this.chunkLines = Math.max(1, chunkLines);
+        this.checkpointRows = Math.max(1, checkpointRows);
+        this.maxErrors = maxErrors;
+        this.retainFromId = retainFromId;
+        this.baseRows = checkpoint.rowsApplied;
+        this.resumeOffset = checkpoint.offset;
+        this.rowsApplied.set(checkpoint.rowsApplied);
+        this.rowsRejected.set(checkpoint.rowsRejected);
+        this.bytesRead.set(checkpoint.offset);
+        this.totalBytes = Files.exists(source) ? Files.size(source) : 0;
+        for (int i = 0; i < this.parallelism; i++) {
+            userRuns.add(new IndexRun());
+            merchantRuns.add(new IndexRun());
+        }
+    }
+
+    /**
+     * 已结束的任务（重启前未完成、已取消或失败）只用于展示进度与恢复
+     */
+    BulkImportJob(ImportCheckpoint checkpoint, Path checkpointDirectory, TransactionService transactionService,
+                  State state) throws IOException {
+        this(checkpoint, checkpointDirectory, transactionService, 1, 1, 1, 0, null);
+        this.state = state;
+    }
+
+    String getJobId() {
+        return checkpoint.jobId;
+    }
+
+    State getState() {
+        return state;
+    }
+
+    ImportCheckpoint getCheckpoint() {
+        return checkpoint;
+    }
+
+    void cancel() {
+        cancelRequested = true;
+    }
+
+    @Override
+    public void run() {
+        startNanos = System.nanoTime();
+        pendingOffset = resumeOffset;
+        ExecutorService parsePool = Executors.newFixedThreadPool(parallelism, namedThreads("import-parse-"));
+        ExecutorService applyPool = Executors.newFixedThreadPool(parallelism, namedThreads("import-apply-"));
+        Exception error = null;
+        try {
+            saveCheckpoint(State.RUNNING);
+            runPipeline(parsePool, applyPool);
+        } catch (Exception e) {
+            error = e;
+        } finally {
+            parsePool.shutdownNow();
+            applyPool.shutdownNow();
+        }
+        try {
+            // 失败时同样把已写入行的索引合并进来，断点仍停在最后一个完整写入的块
+            flushWindow();
+        } catch (IOException e) {
+            error = error == null ? e : error;
+        }
+        if (error != null) {
+            log.error("批量导入任务【{}】失败", checkpoint.jobId, error);
+            finish(State.FAILED, error instanceof ExecutionException && error.getCause() != null
+                    ? error.getCause().getMessage() : error.getMessage());
+        } else {
+            finish(cancelRequested ? State.CANCELLED : State.COMPLETED, null);
+        }
+    }
+
+    private void runPipeline(ExecutorService parsePool, ExecutorService applyPool) throws Exception {
+        try (InputStream in = Files.newInputStream(source)) {
+            OffsetLineReader reader = new OffsetLineReader(in);
+            String header = null;
+            if (checkpoint.format == ImportFormat.CSV) {
+                header = reader.readLine();
+                if (header == null) {
+                    return;
+                }
+            }
+            if (resumeOffset > reader.offset()) {
+                reader.skipTo(resumeOffset);
+            }
+            pendingOffset = reader.offset();
+            ImportRowParser parser = new ImportRowParser(checkpoint.format, header, retainFromId);
+            // 解析最多领先写入 2*parallelism 块，读取速度受写入速度约束，内存有界
+            Deque<Future<ParsedChunk>> inflight = new ArrayDeque<>();
+            while (!cancelRequested) {
+                Chunk chunk = readChunk(reader);
+                if (chunk == null) {
+                    break;
+                }
+                inflight.add(parsePool.submit(() -> parse(parser, chunk)));
+                if (inflight.size() >= parallelism * 2) {
+                    apply(inflight.poll().get(), applyPool);
+                }
+            }
+            while (!inflight.isEmpty() && !cancelRequested) {
+                apply(inflight.poll().get(), applyPool);
+            }
+        }
+    }
+
+    private Chunk readChunk(OffsetLineReader reader) throws IOException {
+        List<String> lines = new ArrayList<>(chunkLines);
+        long[] offsets = new long[chunkLines];
+        while (lines.size() < chunkLines) {
+            long lineOffset = reader.offset();
+            String line = reader.readLine();
+            if (line == null) {
+                break;
+            }
+            if (line.isBlank()) {
+                continue;
+            }
+            offsets[lines.size()] = lineOffset;
+            lines.add(line);
+        }
+        bytesRead.set(reader.offset());
+        return lines.isEmpty() ? null : new Chunk(lines, offsets, reader.offset());
+    }
+
+    private ParsedChunk parse(ImportRowParser parser, Chunk chunk) {
+        List<Transaction> rows = new ArrayList<>(chunk.lines().size());
+        List<String> errors = new ArrayList<>();
+        for (int i = 0; i < chunk.lines().size(); i++) {
+            try {
+                rows.add(parser.parse(chunk.lines().get(i)));
+            } catch (IllegalArgumentException e) {
+                errors.add("偏移" + chunk.lineOffsets()[i] + ": " + e.getMessage());
+            }
+        }
+        return new ParsedChunk(rows, errors, chunk.endOffset());
+    }
+
+    private void apply(ParsedChunk chunk, ExecutorService applyPool) throws Exception {
+        if (!chunk.errors().isEmpty()) {
+            long rejected = rowsRejected.addAndGet(chunk.errors().size());
+            for (String error : chunk.errors()) {
+                if (errorSamples.size() < MAX_ERROR_SAMPLES) {
+                    errorSamples.add(error);
+                }
+            }
+            if (rejected > maxErrors) {
+                throw new IllegalStateException("不合法的行数" + rejected + "超过上限" + maxErrors);
+            }
+        }
+        // 按流水号分区，同一流水只由一个写入线程处理
+        List<List<Transaction>> partitions = new ArrayList<>(parallelism);
+        for (int i = 0; i < parallelism; i++) {
+            partitions.add(new ArrayList<>(chunk.rows().size() / parallelism + 1));
+        }
+        for (Transaction row : chunk.rows()) {
+            partitions.get((row.getTransactionId().hashCode() & Integer.MAX_VALUE) % parallelism).add(row);
+        }
+        List<Callable<Void>> tasks = new ArrayList<>(parallelism);
+        for (int i = 0; i < parallelism; i++) {
+            List<Transaction> partition = partitions.get(i);
+            IndexRun userRun = userRuns.get(i);
+            IndexRun merchantRun = merchantRuns.get(i);
+            tasks.add(() -> {
+                for (Transaction row : partition) {
+                    transactionService.importTransaction(row);
+                    userRun.add(row.getUserId(), row.getTransactionId());
+                    merchantRun.add(row.getMerchantId(), row.getTransactionId());
+                    rowsApplied.incrementAndGet();
+                }
+                return null;
+            });
+        }
+        for (Future<Void> future : applyPool.invokeAll(tasks)) {
+            future.get();
+        }
+        pendingOffset = chunk.endOffset();
+        windowRows += chunk.rows().size();
+        if (windowRows >= checkpointRows) {
+            flushWindow();
+        }
+    }
+
+    // 归并本窗口的索引有序段写入索引缓存，之后才推进断点
+    private void flushWindow() throws IOException {
+        Set<String> userIds = new HashSet<>();
+        Set<String> merchantIds = new HashSet<>();
+        userRuns.parallelStream().forEach(IndexRun::sort);
+        merchantRuns.parallelStream().forEach(IndexRun::sort);
+        IndexRun.merge(userRuns, (userId, ids) -> {
+            transactionService.mergeIndex(true, userId, ids);
+            userIds.add(userId);
+        });
+        IndexRun.merge(merchantRuns, (merchantId, ids) -> {
+            transactionService.mergeIndex(false, merchantId, ids);
+            merchantIds.add(merchantId);
+        });
+        if (!userIds.isEmpty() || !merchantIds.isEmpty()) {
+            transactionService.invalidateQueryCache(userIds, merchantIds);
+        }
+        windowRows = 0;
+        saveCheckpoint(State.RUNNING);
+    }
+
+    private void saveCheckpoint(State checkpointState) throws IOException {
+        checkpoint.state = checkpointState;
+        checkpoint.offset = pendingOffset;
+        checkpoint.rowsApplied = rowsApplied.get();
+        checkpoint.rowsRejected = rowsRejected.get();
+        checkpoint.save(checkpointDirectory);
+    }
+
+    private void finish(State finalState, String message) {
+        failure = message;
+        endNanos = System.nanoTime();
+        try {
+            saveCheckpoint(finalState);
+        } catch (IOException e) {
+            log.error("写入批量导入断点失败", e);
+        }
+        state = finalState;
+        if (finalState == State.COMPLETED && checkpoint.uploaded) {
+            try {
+                Files.deleteIfExists(source);
+            } catch (IOException e) {
+                log.warn("删除上传文件【{}】失败", source, e);
+            }
+        }
+        log.info("批量导入任务【{}】结束：{}，写入{}行，拒绝{}行", checkpoint.jobId, finalState,
+                rowsApplied.get(), rowsRejected.get());
+    }
+
+    /**
+     * @return 当前进度
+     */
+    BulkImportStatus status() {
+        BulkImportStatus status = new BulkImportStatus();
+        status.setJobId(checkpoint.jobId);
+        status.setSource(checkpoint.source);
+        status.setFormat(checkpoint.format.name().toLowerCase(Locale.ROOT));
+        status.setState(state.name());
+        status.setTotalBytes(totalBytes);
+        status.setBytesRead(bytesRead.get());
+        status.setCommittedOffset(checkpoint.offset);
+        status.setProgress(totalBytes == 0 ? 1D : Math.min(1D, (double) bytesRead.get() / totalBytes));
+        status.setRowsApplied(rowsApplied.get());
+        status.setRowsRejected(rowsRejected.get());
+        long elapsedNanos = startNanos == 0 ? 0 : (endNanos != 0 ? endNanos : System.nanoTime()) - startNanos;
+        status.setElapsedMillis(TimeUnit.NANOSECONDS.toMillis(elapsedNanos));
+        status.setRowsPerSecond(elapsedNanos == 0 ? 0D : (rowsApplied.get() - baseRows) * 1e9 / elapsedNanos);
+        status.setErrors(List.copyOf(errorSamples));
+        status.setFailure(failure);
+        return status;
+    }
+
+    private static ThreadFactory namedThreads(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * 按字节计数的UTF-8行读取器，偏移为已读取（含换行符）的字节数
+     */
+    static final class OffsetLineReader {
+        private final InputStream in;
+        private long offset;
+        private byte[] line = new byte[256];
+
+        OffsetLineReader(InputStream in) {
+            this.in = new BufferedInputStream(in, 256 * 1024);
+        }
+
+        long offset() {
+            return offset;
+        }
+
+        void skipTo(long target) throws IOException {
+            in.skipNBytes(target - offset);
+            offset = target;
+        }
+
+        String readLine() throws IOException {
+            int length = 0;
+            int b;
+            while ((b = in.read()) != -1) {
+                offset++;
+                if (b == '\n') {
+                    break;
+                }
+                if (length == line.length) {
+                    line = Arrays.copyOf(line, length * 2);
+                }
+                line[length++] = (byte) b;
+            }
+            if (b == -1 && length == 0) {
+                return null;
+            }
+            if (length > 0 && line[length - 1] == '\r') {
+                length--;
+            }
+            return new String(line, 0, length, StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,272 @@
+package com.hsbc.interview.bulk;
+
+import cn.hutool.core.date.DateUtil;
+import com.hsbc.interview.cluster.ClusterNode;
+import com.hsbc.interview.common.MetricsProvider;
+import com.hsbc.interview.common.TransException;
+import com.hsbc.interview.dto.BulkImportRequest;
+import com.hsbc.interview.dto.BulkImportStatus;
+import com.hsbc.interview.service.TransactionRetentionManager;
+import com.hsbc.interview.service.TransactionService;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.log4j.Log4j2;
+import org.apache.logging.log4j.util.Strings;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.hsbc.interview.common.Constant.HTTP_FAIL_CODE;
+
+/**
+ * 批量导入任务管理
+ * 支持导入服务器本地文件或流式上传（先落到导入目录再按文件导入），每个任务一个后台线程；
+ * 断点文件保存在导入目录中，进程重启后未完成的任务可以恢复（auto-resume时自动恢复）。
+ * 交易数据只在内存中，重启后之前写入的数据已丢失，因此跨进程恢复时从文件开头重新导入，同一进程内的恢复从断点继续
+ * @author wangwei
+ * @date 2026-10-19
+ */
+@Component
+@Log4j2
+public class BulkImportService implements MetricsProvider {
+
+    private final TransactionService transactionService;
+
+    private final Path directory;
+
+    private final int parallelism;
+
+    private final int chunkLines;
+
+    private final long checkpointRows;
+
+    private final long maxErrors;
+
+    private final boolean autoResume;
+
+    private final long epoch = System.currentTimeMillis();
+
+    private final Map<String, BulkImportJob> jobs = new ConcurrentHashMap<>();
+
+    private final AtomicInteger jobCounter = new AtomicInteger();
+
+    // 集群模式下数据按用户分区，不支持直接导入到单个节点
+    private ClusterNode clusterNode;
+
+    // 启用保留策略时，已超过保留天数的行在校验时拒绝
+    private TransactionRetentionManager retentionManager;
+
+    @Autowired
+    public BulkImportService(TransactionService transactionService,
+                             @Value("${trans.import.dir:${java.io.tmpdir}/trans-import}") String directory,
+                             @Value("${trans.import.parallelism:0}") int parallelism,
+                             @Value("${trans.import.chunk-lines:5000}") int chunkLines,
+                             @Value("${trans.import.checkpoint-rows:100000}") long checkpointRows,
+                             @Value("${trans.import.max-errors:1000}") long maxErrors,
+                             @Value("${trans.import.auto-resume:false}") boolean autoResume) throws IOException {
+        this.transactionService = transactionService;
+        this.directory = Path.of(directory);
+        Files.createDirectories(this.directory);
+        this.parallelism = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        this.chunkLines = chunkLines;
+        this.checkpointRows = checkpointRows;
+        this.maxErrors = maxErrors;
+        this.autoResume = autoResume;
+    }
+
+    @Autowired(required = false)
+    public void setClusterNode(ClusterNode clusterNode) {
+        this.clusterNode = clusterNode;
+    }
+
+    @Autowired(required = false)
+    public void setRetentionManager(TransactionRetentionManager retentionManager) {
+        this.retentionManager = retentionManager;
+    }
+
+    /**
+     * 加载重启前未完成的任务，开启auto-resume（默认关闭）时从头重新导入，否则等待手动恢复
+     */
+    @PostConstruct
+    public void loadCheckpoints() {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + ImportCheckpoint.SUFFIX)) {
+            for (Path file : files) {
+                ImportCheckpoint checkpoint = ImportCheckpoint.load(file);
+                if (checkpoint.state == BulkImportJob.State.COMPLETED) {
+                    continue;
+                }
+                BulkImportJob.State state = checkpoint.state == BulkImportJob.State.RUNNING
+                        ? BulkImportJob.State.INTERRUPTED : checkpoint.state;
+                jobs.put(checkpoint.jobId, new BulkImportJob(checkpoint, directory, transactionService, state));
+                if (autoResume && state == BulkImportJob.State.INTERRUPTED && !transactionService.isReadOnly()) {
+                    log.info("恢复重启前未完成的批量导入任务【{}】", checkpoint.jobId);
+                    resume(checkpoint.jobId);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            log.error("加载批量导入断点失败", e);
+        }
+    }
+
+    /**
+     * @methodName importFile
+     * @description 导入服务器本地文件
+     * @param request 文件路径与格式
+     * @return 任务进度
+     * @author wangwei
+     * @date 2026/10/19
+     */
+    public BulkImportStatus importFile(BulkImportRequest request) {
+        if (Strings.isBlank(request.getPath())) {
+            throw new TransException(HTTP_FAIL_CODE, "导入文件路径不能为空");
+        }
+        Path source = Path.of(request.getPath()).toAbsolutePath();
+        if (!Files.isRegularFile(source) || !Files.isReadable(source)) {
+            throw new TransException(HTTP_FAIL_CODE, "导入文件【" + source + "】不存在或不可读");
+        }
+        ImportFormat format = ImportFormat.resolve(request.getFormat(), source.getFileName().toString());
+        return start(newCheckpoint(nextJobId(), source, format, false));
+    }
+
+    /**
+     * @methodName importUpload
+     * @description 流式上传导入：请求体先写入导入目录，再按文件导入（断点恢复依赖本地文件）
+     * @param body 请求体
+     * @param format 文件格式
+     * @return 任务进度
+     * @author wangwei
+     * @date 2026/10/19
+     */
+    public BulkImportStatus importUpload(InputStream body, String format) throws IOException {
+        ImportFormat importFormat = ImportFormat.resolve(format, null);
+        checkImportable();
+        String jobId = nextJobId();
+        Path source = directory.resolve(jobId + ".upload");
+        Files.copy(body, source, StandardCopyOption.REPLACE_EXISTING);
+        return start(newCheckpoint(jobId, source, importFormat, true));
+    }
+
+    /**
+     * @methodName resume
+     * @description 恢复已取消、失败或重启前未完成的任务
+     * @param jobId 任务ID
+     * @return 任务进度
+     * @author wangwei
+     * @date 2026/10/19
+     */
+    public BulkImportStatus resume(String jobId) {
+        BulkImportJob previous = getJob(jobId);
+        if (previous.getState() == BulkImportJob.State.RUNNING || previous.getState() == BulkImportJob.State.COMPLETED) {
+            throw new TransException(HTTP_FAIL_CODE, "导入任务【" + jobId + "】状态为" + previous.getState() + "，不能恢复");
+        }
+        ImportCheckpoint checkpoint = previous.getCheckpoint();
+        if (checkpoint.epoch != epoch) {
+            // 断点由之前的进程写入，内存数据已丢失，从头导入
+            checkpoint.offset = 0;
+            checkpoint.rowsApplied = 0;
+            checkpoint.rowsRejected = 0;
+            checkpoint.epoch = epoch;
+        }
+        return start(checkpoint);
+    }
+
+    public void cancel(String jobId) {
+        getJob(jobId).cancel();
+    }
+
+    public BulkImportStatus status(String jobId) {
+        return getJob(jobId).status();
+    }
+
+    public List<BulkImportStatus> list() {
+        return jobs.values().stream().map(BulkImportJob::status)
+                .sorted(Comparator.comparing(BulkImportStatus::getJobId)).toList();
+    }
+
+    private BulkImportJob getJob(String jobId) {
+        BulkImportJob job = jobs.get(jobId);
+        if (job == null) {
+            throw new TransException(HTTP_FAIL_CODE, "导入任务【" + jobId + "】不存在");
+        }
+        return job;
+    }
+
+    private void checkImportable() {
+        if (transactionService.isReadOnly()) {
+            throw new TransException(HTTP_FAIL_CODE, "当前节点为只读副本，请向主节点提交");
+        }
+        if (clusterNode != null) {
+            throw new TransException(HTTP_FAIL_CODE, "集群模式下数据按用户分区，暂不支持批量导入");
+        }
+    }
+
+    private synchronized BulkImportStatus start(ImportCheckpoint checkpoint) {
+        checkImportable();
+        BulkImportJob previous = jobs.get(checkpoint.jobId);
+        if (previous != null && previous.getState() == BulkImportJob.State.RUNNING) {
+            throw new TransException(HTTP_FAIL_CODE, "导入任务【" + checkpoint.jobId + "】正在执行");
+        }
+        String retainFromId = retentionManager == null ? null : retentionManager.dropBefore(LocalDate.now());
+        BulkImportJob job;
+        try {
+            job = new BulkImportJob(checkpoint, directory, transactionService, parallelism, chunkLines,
+                    checkpointRows, maxErrors, retainFromId);
+        } catch (IOException e) {
+            throw new TransException(HTTP_FAIL_CODE, "读取导入文件失败: " + e.getMessage());
+        }
+        jobs.put(checkpoint.jobId, job);
+        Thread.ofPlatform().daemon().name("bulk-import-" + checkpoint.jobId).start(job);
+        return job.status();
+    }
+
+    private ImportCheckpoint newCheckpoint(String jobId, Path source, ImportFormat format, boolean uploaded) {
+        ImportCheckpoint checkpoint = new ImportCheckpoint();
+        checkpoint.jobId = jobId;
+        checkpoint.source = source.toString();
+        checkpoint.format = format;
+        checkpoint.state = BulkImportJob.State.RUNNING;
+        checkpoint.epoch = epoch;
+        checkpoint.uploaded = uploaded;
+        return checkpoint;
+    }
+
+    private String nextJobId() {
+        return "IMP" + DateUtil.format(new Date(), "yyyyMMddHHmmss") + String.format("%03d", jobCounter.incrementAndGet() % 1000);
+    }
+
+    @Override
+    public String metricsName() {
+        return "bulkImport";
+    }
+
+    @Override
+    public Map<String, Object> metrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        long running = 0;
+        long rowsApplied = 0;
+        double rowsPerSecond = 0;
+        for (BulkImportJob job : jobs.values()) {
+            BulkImportStatus status = job.status();
+            rowsApplied += status.getRowsApplied();
+            if (job.getState() == BulkImportJob.State.RUNNING) {
+                running++;
+                rowsPerSecond += status.getRowsPerSecond();
+            }
+        }
+        metrics.put("jobs", jobs.size());
+        metrics.put("runningJobs", running);
+        metrics.put("rowsApplied", rowsApplied);
+        metrics.put("rowsPerSecond", rowsPerSecond);
+        return metrics;
+    }
+}
@@ -0,0 +1,185 @@
+package com.hsbc.interview.bulk;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.hsbc.interview.dto.BulkMutationStatus;
+import com.hsbc.interview.entity.Transaction;
+import com.hsbc.interview.service.TransactionService;
+import lombok.extern.log4j.Log4j2;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Predicate;
+
+/**
+ * 批量删除/批量修改任务
+ * 先从用户/商户索引取出候选流水号的快照（指定流水号时直接使用），按流水号日期过滤并排序，
+ * 再按批交给 TransactionService：每条在主缓存的compute内按条件复核后删除或修改，每批每个用户/商户只更新一次索引。
+ * 批与批之间检查取消请求并按每秒条数限速，避免占满CPU影响前台请求；已完成的批不回滚
+ * @author wangwei
+ * @date 2026-10-19
+ */
+@Log4j2
+public class BulkMutationJob implements Runnable {
+
+    public enum State {
+        RUNNING,
+        COMPLETED,
+        FAILED,
+        CANCELLED
+    }
+
+    public enum Operation {
+        DELETE,
+        REASSIGN_MERCHANT
+    }
+
+    private final String jobId;
+    private final Operation operation;
+    private final String target;
+    private final List<String> transactionIds;
+    private final String userId;
+    private final String merchantId;
+    // "T"+yyyyMMdd，流水号小于它的交易才处理
+    private final String beforeId;
+    private final String newMerchantId;
+
+    private final TransactionService transactionService;
+    private final Cache<String, Set<String>> userIndexCache;
+    private final Cache<String, Set<String>> merchantIndexCache;
+    private final int batchSize;
+    private final long maxRowsPerSecond;
+
+    private final AtomicLong candidates = new AtomicLong(-1);
+    private final AtomicLong processed = new AtomicLong();
+    private final AtomicLong affected = new AtomicLong();
+
+    private volatile State state = State.RUNNING;
+    private volatile boolean cancelRequested;
+    private volatile String failure;
+    private volatile long startNanos;
+    private volatile long endNanos;
+
+    BulkMutationJob(String jobId, Operation operation, String target, List<String> transactionIds, String userId,
+                    String merchantId, String beforeId, String newMerchantId, TransactionService transactionService,
+                    Cache<String, Set<String>> userIndexCache, Cache<String, Set<String>> merchantIndexCache,
+                    int batchSize, long maxRowsPerSecond) {
+        this.jobId = jobId;
+        this.operation = operation;
+        this.target = target;
+        this.transactionIds = transactionIds;
+        this.userId = userId;
+        this.merchantId = merchantId;
+        this.beforeId = beforeId;
+        this.newMerchantId = newMerchantId;
+        this.transactionService = transactionService;
+        this.userIndexCache = userIndexCache;
+        this.merchantIndexCache = merchantIndexCache;
+        this.batchSize = Math.max(1, batchSize);
+        this.maxRowsPerSecond = maxRowsPerSecond;
+    }
+
+    String getJobId() {
+        return jobId;
+    }
+
+    State getState() {
+        return state;
+    }
+
+    void cancel() {
+        cancelRequested = true;
+    }
+
+    @Override
+    public void run() {
+        startNanos = System.nanoTime();
+        try {
+            List<String> ids = resolve();
+            candidates.set(ids.size());
+            Predicate<Transaction> filter = this::matches;
+            for (int from = 0; from < ids.size() && !cancelRequested; from += batchSize) {
+                List<String> batch = ids.subList(from, Math.min(from + batchSize, ids.size()));
+                int count = operation == Operation.DELETE
+                        ? transactionService.bulkDelete(batch, filter).size()
+                        : transactionService.bulkReassignMerchant(batch, filter, newMerchantId);
+                affected.addAndGet(count);
+                processed.addAndGet(batch.size());
+                pace();
+            }
+            finish(cancelRequested ? State.CANCELLED : State.COMPLETED, null);
+        } catch (RuntimeException e) {
+            log.error("批量变更任务【{}】失败", jobId, e);
+            finish(State.FAILED, e.getMessage());
+        }
+    }
+
+    // 候选集合：指定的流水号，或用户/商户索引的快照（同时指定时取较小的一个，另一项由逐条复核过滤）
+    private List<String> resolve() {
+        List<String> ids;
+        if (transactionIds != null && !transactionIds.isEmpty()) {
+            ids = new ArrayList<>(new LinkedHashSet<>(transactionIds));
+        } else {
+            Set<String> userIds = userId == null ? null : userIndexCache.getIfPresent(userId);
+            Set<String> merchantIds = merchantId == null ? null : merchantIndexCache.getIfPresent(merchantId);
+            if ((userId != null && userIds == null) || (merchantId != null && merchantIds == null)) {
+                return Collections.emptyList();
+            }
+            Set<String> source = userIds == null || (merchantIds != null && merchantIds.size() < userIds.size())
+                    ? merchantIds : userIds;
+            ids = new ArrayList<>(source);
+        }
+        if (beforeId != null) {
+            ids.removeIf(transactionId -> transactionId.compareTo(beforeId) >= 0);
+        }
+        ids.sort(Comparator.naturalOrder());
+        return ids;
+    }
+
+    // 在主缓存的compute内以当时的数据复核
+    private boolean matches(Transaction transaction) {
+        return (userId == null || userId.equals(transaction.getUserId()))
+                && (merchantId == null || merchantId.equals(transaction.getMerchantId()))
+                && (beforeId == null || transaction.getTransactionId().compareTo(beforeId) < 0);
+    }
+
+    private void pace() {
+        if (maxRowsPerSecond <= 0) {
+            return;
+        }
+        long aheadNanos = processed.get() * 1_000_000_000L / maxRowsPerSecond - (System.nanoTime() - startNanos);
+        if (aheadNanos > 0) {
+            LockSupport.parkNanos(aheadNanos);
+        }
+    }
+
+    private void finish(State finalState, String message) {
+        failure = message;
+        endNanos = System.nanoTime();
+        state = finalState;
+        log.info("批量变更任务【{}】结束：{}，候选{}条，处理{}条，{}{}条", jobId, finalState, candidates.get(),
+                processed.get(), operation == Operation.DELETE ? "删除" : "修改", affected.get());
+    }
+
+    /**
+     * @return 当前进度
+     */
+    BulkMutationStatus status() {
+        BulkMutationStatus status = new BulkMutationStatus();
+        status.setJobId(jobId);
+        status.setOperation(operation.name());
+        status.setTarget(target);
+        status.setState(state.name());
+        long total = candidates.get();
+        status.setCandidates(total);
+        status.setProcessed(processed.get());
+        status.setAffected(affected.get());
+        status.setProgress(total < 0 ? 0D : total == 0 ? 1D : (double) processed.get() / total);
+        long elapsedNanos = startNanos == 0 ? 0 : (endNanos != 0 ? endNanos : System.nanoTime()) - startNanos;
+        status.setElapsedMillis(TimeUnit.NANOSECONDS.toMillis(elapsedNanos));
+        status.setRowsPerSecond(elapsedNanos == 0 ? 0D : processed.get() * 1e9 / elapsedNanos);
+        status.setFailure(failure);
+        return status;
+    }
+}
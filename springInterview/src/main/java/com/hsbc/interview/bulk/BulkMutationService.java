@@ -0,0 +1,210 @@
+package com.hsbc.interview.bulk;
+
+import cn.hutool.core.date.DateUtil;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.hsbc.interview.cluster.ClusterNode;
+import com.hsbc.interview.common.MetricsProvider;
+import com.hsbc.interview.common.TransException;
+import com.hsbc.interview.dto.BulkMutationRequest;
+import com.hsbc.interview.dto.BulkMutationStatus;
+import com.hsbc.interview.service.TransactionService;
+import lombok.extern.log4j.Log4j2;
+import org.apache.logging.log4j.util.Strings;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.hsbc.interview.common.Constant.HTTP_FAIL_CODE;
+
+/**
+ * 批量删除/批量修改任务管理
+ * 按条件（用户、商户、流水号日期）或指定流水号批量删除交易、批量改商户，每个任务一个后台线程，可查询进度与取消。
+ * 任务只在内存中，进程重启后不恢复
+ * @author wangwei
+ * @date 2026-10-19
+ */
+@Component
+@Log4j2
+public class BulkMutationService implements MetricsProvider {
+
+    private final TransactionService transactionService;
+
+    private final Cache<String, Set<String>> userIndexCache;
+
+    private final Cache<String, Set<String>> merchantIndexCache;
+
+    private final int batchSize;
+
+    private final long maxRowsPerSecond;
+
+    private final int maxTransactionIds;
+
+    private final Map<String, BulkMutationJob> jobs = new ConcurrentHashMap<>();
+
+    private final AtomicInteger jobCounter = new AtomicInteger();
+
+    // 集群模式下数据按用户分区，不支持在单个节点上批量变更
+    private ClusterNode clusterNode;
+
+    @Autowired
+    public BulkMutationService(TransactionService transactionService,
+                               Cache<String, Set<String>> userIndexCache,
+                               Cache<String, Set<String>> merchantIndexCache,
+                               @Value("${trans.bulk.batch-size:500}") int batchSize,
+                               @Value("${trans.bulk.max-rows-per-second:20000}") long maxRowsPerSecond,
+                               @Value("${trans.bulk.max-transaction-ids:100000}") int maxTransactionIds) {
+        this.transactionService = transactionService;
+        this.userIndexCache = userIndexCache;
+        this.merchantIndexCache = merchantIndexCache;
+        this.batchSize = batchSize;
+        this.maxRowsPerSecond = maxRowsPerSecond;
+        this.maxTransactionIds = maxTransactionIds;
+    }
+
+    @Autowired(required = false)
+    public void setClusterNode(ClusterNode clusterNode) {
+        this.clusterNode = clusterNode;
+    }
+
+    /**
+     * @methodName submit
+     * @description 校验请求并启动后台任务
+     * @param request 操作类型与目标条件
+     * @return 任务进度
+     * @author wangwei
+     * @date 2026/10/19
+     */
+    public BulkMutationStatus submit(BulkMutationRequest request) {
+        if (transactionService.isReadOnly()) {
+            throw new TransException(HTTP_FAIL_CODE, "当前节点为只读副本，请向主节点提交");
+        }
+        if (clusterNode != null) {
+            throw new TransException(HTTP_FAIL_CODE, "集群模式下数据按用户分区，暂不支持批量变更");
+        }
+        BulkMutationJob.Operation operation = parseOperation(request.getOperation());
+        List<String> transactionIds = request.getTransactionIds() == null ? null
+                : request.getTransactionIds().stream().filter(Strings::isNotBlank).map(String::trim).toList();
+        String userId = trimToNull(request.getUserId());
+        String merchantId = trimToNull(request.getMerchantId());
+        String beforeDate = parseDate(request.getBeforeDate());
+        String newMerchantId = trimToNull(request.getNewMerchantId());
+        if ((transactionIds == null || transactionIds.isEmpty()) && userId == null && merchantId == null) {
+            throw new TransException(HTTP_FAIL_CODE, "须指定流水号、用户或商户");
+        }
+        if (transactionIds != null && transactionIds.size() > maxTransactionIds) {
+            throw new TransException(HTTP_FAIL_CODE, "流水号数量" + transactionIds.size() + "超过上限" + maxTransactionIds);
+        }
+        if (operation == BulkMutationJob.Operation.REASSIGN_MERCHANT && newMerchantId == null) {
+            throw new TransException(HTTP_FAIL_CODE, "改商户时新商户ID不能为空");
+        }
+
+        StringJoiner target = new StringJoiner(", ");
+        if (transactionIds != null && !transactionIds.isEmpty()) {
+            target.add("transactionIds=" + transactionIds.size());
+        }
+        if (userId != null) {
+            target.add("userId=" + userId);
+        }
+        if (merchantId != null) {
+            target.add("merchantId=" + merchantId);
+        }
+        if (beforeDate != null) {
+            target.add("beforeDate=" + beforeDate);
+        }
+        if (newMerchantId != null && operation == BulkMutationJob.Operation.REASSIGN_MERCHANT) {
+            target.add("newMerchantId=" + newMerchantId);
+        }
+        String jobId = nextJobId();
+        BulkMutationJob job = new BulkMutationJob(jobId, operation, target.toString(), transactionIds, userId, merchantId,
+                beforeDate == null ? null : "T" + beforeDate, newMerchantId, transactionService, userIndexCache,
+                merchantIndexCache, batchSize, maxRowsPerSecond);
+        jobs.put(jobId, job);
+        log.info("提交批量变更任务【{}】：{} {}", jobId, operation, target);
+        Thread.ofPlatform().daemon().name("bulk-mutation-" + jobId).start(job);
+        return job.status();
+    }
+
+    public void cancel(String jobId) {
+        getJob(jobId).cancel();
+    }
+
+    public BulkMutationStatus status(String jobId) {
+        return getJob(jobId).status();
+    }
+
+    public List<BulkMutationStatus> list() {
+        return jobs.values().stream().map(BulkMutationJob::status)
+                .sorted(Comparator.comparing(BulkMutationStatus::getJobId)).toList();
+    }
+
+    private BulkMutationJob getJob(String jobId) {
+        BulkMutationJob job = jobs.get(jobId);
+        if (job == null) {
+            throw new TransException(HTTP_FAIL_CODE, "批量变更任务【" + jobId + "】不存在");
+        }
+        return job;
+    }
+
+    private static BulkMutationJob.Operation parseOperation(String operation) {
+        if (Strings.isBlank(operation)) {
+            throw new TransException(HTTP_FAIL_CODE, "操作类型不能为空");
+        }
+        return switch (operation.trim().toLowerCase(Locale.ROOT)) {
+            case "delete" -> BulkMutationJob.Operation.DELETE;
+            case "reassignmerchant", "reassign_merchant" -> BulkMutationJob.Operation.REASSIGN_MERCHANT;
+            default -> throw new TransException(HTTP_FAIL_CODE, "不支持的操作类型【" + operation + "】");
+        };
+    }
+
+    // 统一为流水号中的日期格式 yyyyMMdd
+    private static String parseDate(String date) {
+        if (Strings.isBlank(date)) {
+            return null;
+        }
+        try {
+            String value = date.trim();
+            LocalDate localDate = value.contains("-") ? LocalDate.parse(value)
+                    : LocalDate.parse(value, DateTimeFormatter.BASIC_ISO_DATE);
+            return localDate.format(DateTimeFormatter.BASIC_ISO_DATE);
+        } catch (DateTimeParseException e) {
+            throw new TransException(HTTP_FAIL_CODE, "日期【" + date + "】格式不正确，应为yyyyMMdd或yyyy-MM-dd");
+        }
+    }
+
+    private static String trimToNull(String value) {
+        return Strings.isBlank(value) ? null : value.trim();
+    }
+
+    private String nextJobId() {
+        return "BLK" + DateUtil.format(new Date(), "yyyyMMddHHmmss") + String.format("%03d", jobCounter.incrementAndGet() % 1000);
+    }
+
+    @Override
+    public String metricsName() {
+        return "bulkMutation";
+    }
+
+    @Override
+    public Map<String, Object> metrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        long running = 0;
+        long affected = 0;
+        for (BulkMutationJob job : jobs.values()) {
+            affected += job.status().getAffected();
+            if (job.getState() == BulkMutationJob.State.RUNNING) {
+                running++;
+            }
+        }
+        metrics.put("jobs", jobs.size());
+        metrics.put("runningJobs", running);
+        metrics.put("rowsAffected", affected);
+        return metrics;
+    }
+}
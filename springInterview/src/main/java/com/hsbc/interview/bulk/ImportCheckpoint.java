@@ -0,0 +1,73 @@
+package com.hsbc.interview.bulk;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
+
+/**
+ * 导入断点：已完整写入（含索引合并）的文件字节偏移与累计行数，每个检查点窗口结束时原子替换写入
+ * @author wangwei
+ * @date 2026-10-19
+ */
+final class ImportCheckpoint {
+
+    static final String SUFFIX = ".checkpoint";
+
+    String jobId;
+    String source;
+    ImportFormat format;
+    BulkImportJob.State state;
+    long offset;
+    long rowsApplied;
+    long rowsRejected;
+    // 写入断点的进程启动标识，与当前进程不同说明内存数据已随重启丢失
+    long epoch;
+    // 上传文件在导入完成后删除
+    boolean uploaded;
+
+    static Path path(Path directory, String jobId) {
+        return directory.resolve(jobId + SUFFIX);
+    }
+
+    void save(Path directory) throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty("jobId", jobId);
+        properties.setProperty("source", source);
+        properties.setProperty("format", format.name());
+        properties.setProperty("state", state.name());
+        properties.setProperty("offset", String.valueOf(offset));
+        properties.setProperty("rowsApplied", String.valueOf(rowsApplied));
+        properties.setProperty("rowsRejected", String.valueOf(rowsRejected));
+        properties.setProperty("epoch", String.valueOf(epoch));
+        properties.setProperty("uploaded", String.valueOf(uploaded));
+        Path target = path(directory, jobId);
+        Path temp = directory.resolve(jobId + SUFFIX + ".tmp");
+        try (Writer writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            properties.store(writer, null);
+        }
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    static ImportCheckpoint load(Path file) throws IOException {
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        }
+        ImportCheckpoint checkpoint = new ImportCheckpoint();
+        checkpoint.jobId = properties.getProperty("jobId");
+        checkpoint.source = properties.getProperty("source");
+        checkpoint.format = ImportFormat.valueOf(properties.getProperty("format"));
+        checkpoint.state = BulkImportJob.State.valueOf(properties.getProperty("state"));
+        checkpoint.offset = Long.parseLong(properties.getProperty("offset", "0"));
+        checkpoint.rowsApplied = Long.parseLong(properties.getProperty("rowsApplied", "0"));
+        checkpoint.rowsRejected = Long.parseLong(properties.getProperty("rowsRejected", "0"));
+        checkpoint.epoch = Long.parseLong(properties.getProperty("epoch", "0"));
+        checkpoint.uploaded = Boolean.parseBoolean(properties.getProperty("uploaded", "false"));
+        return checkpoint;
+    }
+}
@@ -0,0 +1,42 @@
+package com.hsbc.interview.bulk;
+
+import com.hsbc.interview.common.TransException;
+import org.apache.logging.log4j.util.Strings;
+
+import java.util.Locale;
+
+import static com.hsbc.interview.common.Constant.HTTP_FAIL_CODE;
+
+/**
+ * 批量导入文件格式
+ * CSV首行为列名，NDJSON每行一个交易JSON对象
+ * @author wangwei
+ * @date 2026-10-19
+ */
+public enum ImportFormat {
+    CSV,
+    NDJSON;
+
+    /**
+     * @param format 指定的格式，为空时按文件扩展名判断
+     * @param fileName 文件名
+     * @return 导入格式
+     */
+    public static ImportFormat resolve(String format, String fileName) {
+        if (Strings.isNotBlank(format)) {
+            try {
+                return valueOf(format.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new TransException(HTTP_FAIL_CODE, "不支持的导入格式【" + format + "】，仅支持csv/ndjson");
+            }
+        }
+        String name = fileName == null ? "" : fileName.toLowerCase(Locale.ROOT);
+        if (name.endsWith(".csv")) {
+            return CSV;
+        }
+        if (name.endsWith(".ndjson") || name.endsWith(".jsonl") || name.endsWith(".json")) {
+            return NDJSON;
+        }
+        throw new TransException(HTTP_FAIL_CODE, "无法从文件名【" + fileName + "】判断导入格式，请指定format");
+    }
+}
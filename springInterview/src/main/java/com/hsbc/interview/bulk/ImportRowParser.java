@@ -0,0 +1,183 @@
+package com.hsbc.interview.bulk;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.hsbc.interview.entity.Transaction;
+import org.apache.logging.log4j.util.Strings;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+
+/**
+ * 导入行解析与校验（线程安全，由解析线程池并行调用）
+ * CSV按首行列名取值（列名与交易字段同名，顺序不限，字段内不支持逗号与引号），NDJSON按交易JSON解析；
+ * 流水号须为 T+yyyyMMdd+8位序号且日期不晚于当天（新增交易按最大流水号续号，未来日期或更长的序号会使新增失败），
+ * 交易日期须为 yyyy-MM-dd HH:mm:ss，二者原样保留；
+ * 启用保留策略时，流水号日期已超过保留天数的行直接拒绝（写入后会被下一次保留策略删除）
+ * @author wangwei
+ * @date 2026-10-19
+ */
+final class ImportRowParser {
+
+    private static final ObjectReader JSON_READER = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false)
+            .readerFor(Transaction.class);
+
+    private static final DateTimeFormatter DATE_TIME = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    // T+yyyyMMdd+8位序号
+    private static final int TRANSACTION_ID_LENGTH = 17;
+
+    private final ImportFormat format;
+
+    // 流水号须不小于它（"T"+yyyyMMdd），null为不限制
+    private final String retainFromId;
+
+    // CSV各列对应的字段下标
+    private final int[] columnFields;
+
+    private static final String[] FIELDS = {"transactionId", "userId", "merchantId", "amount", "transDate",
+            "createUser", "updDate", "updateUser", "requestId", "version"};
+
+    ImportRowParser(ImportFormat format, String headerLine, String retainFromId) {
+        this.format = format;
+        this.retainFromId = retainFromId;
+        if (format == ImportFormat.CSV) {
+            // 去掉UTF-8 BOM
+            String[] columns = headerLine.replace("\uFEFF", "").split(",", -1);
+            this.columnFields = new int[columns.length];
+            for (int i = 0; i < columns.length; i++) {
+                columnFields[i] = fieldIndex(columns[i].trim());
+            }
+        } else {
+            this.columnFields = null;
+        }
+    }
+
+    private static int fieldIndex(String column) {
+        for (int i = 0; i < FIELDS.length; i++) {
+            if (FIELDS[i].equalsIgnoreCase(column)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @param line 一行数据
+     * @return 校验通过的交易数据
+     * @throws IllegalArgumentException 数据格式或内容不合法
+     */
+    Transaction parse(String line) {
+        Transaction transaction = format == ImportFormat.CSV ? parseCsv(line) : parseJson(line);
+        validate(transaction);
+        return transaction;
+    }
+
+    private Transaction parseJson(String line) {
+        try {
+            return JSON_READER.readValue(line);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("JSON格式错误: " + e.getOriginalMessage());
+        }
+    }
+
+    private Transaction parseCsv(String line) {
+        String[] values = line.split(",", -1);
+        if (values.length != columnFields.length) {
+            throw new IllegalArgumentException("列数" + values.length + "与表头列数" + columnFields.length + "不一致");
+        }
+        Transaction transaction = new Transaction();
+        for (int i = 0; i < values.length; i++) {
+            String value = values[i].trim();
+            if (columnFields[i] < 0 || value.isEmpty()) {
+                continue;
+            }
+            switch (columnFields[i]) {
+                case 0 -> transaction.setTransactionId(value);
+                case 1 -> transaction.setUserId(value);
+                case 2 -> transaction.setMerchantId(value);
+                case 3 -> transaction.setAmount(parseAmount(value));
+                case 4 -> transaction.setTransDate(value);
+                case 5 -> transaction.setCreateUser(value);
+                case 6 -> transaction.setUpdDate(value);
+                case 7 -> transaction.setUpdateUser(value);
+                case 8 -> transaction.setRequestId(value);
+                case 9 -> transaction.setVersion(parseVersion(value));
+                default -> {
+                }
+            }
+        }
+        return transaction;
+    }
+
+    private static BigDecimal parseAmount(String value) {
+        try {
+            return new BigDecimal(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("金额格式错误: " + value);
+        }
+    }
+
+    private static Long parseVersion(String value) {
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("版本号格式错误: " + value);
+        }
+    }
+
+    private void validate(Transaction transaction) {
+        String transactionId = transaction.getTransactionId();
+        if (Strings.isBlank(transactionId) || transactionId.length() != TRANSACTION_ID_LENGTH
+                || transactionId.charAt(0) != 'T' || !transactionId.substring(1).chars().allMatch(Character::isDigit)) {
+            throw new IllegalArgumentException("流水号须为T+yyyyMMdd+8位序号: " + transactionId);
+        }
+        LocalDate idDate;
+        try {
+            idDate = LocalDate.parse(transactionId.substring(1, 9), DateTimeFormatter.BASIC_ISO_DATE);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("流水号中的日期不合法: " + transactionId);
+        }
+        if (idDate.isAfter(LocalDate.now())) {
+            throw new IllegalArgumentException("流水号中的日期不能晚于当天: " + transactionId);
+        }
+        if (retainFromId != null && transactionId.compareTo(retainFromId) < 0) {
+            throw new IllegalArgumentException("流水号日期早于保留期限" + retainFromId.substring(1)
+                    + "（trans.retention.days），导入后会被保留策略删除: " + transactionId);
+        }
+        if (Strings.isBlank(transaction.getUserId())) {
+            throw new IllegalArgumentException("用户ID不可为空");
+        }
+        if (Strings.isBlank(transaction.getMerchantId())) {
+            throw new IllegalArgumentException("商户ID不可为空");
+        }
+        BigDecimal amount = transaction.getAmount();
+        if (amount == null) {
+            throw new IllegalArgumentException("金额不可为空");
+        }
+        // 与接口上的 @Digits(integer = 10, fraction = 4) 一致
+        if (amount.scale() > 4 || amount.precision() - amount.scale() > 10) {
+            throw new IllegalArgumentException("金额最多10位整数、4位小数: " + amount.toPlainString());
+        }
+        if (Strings.isBlank(transaction.getTransDate())) {
+            throw new IllegalArgumentException("交易日期不可为空");
+        }
+        try {
+            LocalDateTime.parse(transaction.getTransDate(), DATE_TIME);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("交易日期须为yyyy-MM-dd HH:mm:ss: " + transaction.getTransDate());
+        }
+        if (transaction.getVersion() == null || transaction.getVersion() <= 0) {
+            transaction.setVersion(1L);
+        }
+        if (transaction.getCreateUser() == null) {
+            transaction.setCreateUser(transaction.getUserId());
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.hsbc.interview.bulk;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.BiConsumer;
+
+/**
+ * 索引有序段：导入线程各自收集 (用户/商户ID, 流水号)，排序后与其他线程的有序段做k路归并，
+ * 同一索引键的流水号合并为一组，一次写入索引缓存
+ * @author wangwei
+ * @date 2026-10-19
+ */
+final class IndexRun {
+
+    private record Entry(String key, String transactionId) {
+    }
+
+    private static final Comparator<Entry> ORDER = Comparator.comparing(Entry::key)
+            .thenComparing(Entry::transactionId);
+
+    private List<Entry> entries = new ArrayList<>();
+
+    void add(String key, String transactionId) {
+        entries.add(new Entry(key, transactionId));
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    void sort() {
+        entries.sort(ORDER);
+    }
+
+    /**
+     * 游标，指向有序段中的当前位置
+     */
+    private static final class Cursor {
+        private final List<Entry> entries;
+        private int position;
+
+        Cursor(List<Entry> entries) {
+            this.entries = entries;
+        }
+
+        Entry current() {
+            return entries.get(position);
+        }
+    }
+
+    /**
+     * @methodName merge
+     * @description k路归并多个已排序的有序段，按索引键分组回调，归并后清空各段
+     * @param runs 已排序的有序段
+     * @param consumer 索引键 -> 该键的全部流水号（升序）
+     * @return
+     * @author wangwei
+     * @date 2026/10/19
+     */
+    static void merge(List<IndexRun> runs, BiConsumer<String, List<String>> consumer) {
+        PriorityQueue<Cursor> heap = new PriorityQueue<>(Math.max(1, runs.size()),
+                Comparator.comparing(Cursor::current, ORDER));
+        for (IndexRun run : runs) {
+            if (!run.entries.isEmpty()) {
+                heap.add(new Cursor(run.entries));
+            }
+        }
+        String groupKey = null;
+        List<String> group = new ArrayList<>();
+        while (!heap.isEmpty()) {
+            Cursor cursor = heap.poll();
+            Entry entry = cursor.current();
+            if (groupKey != null && !groupKey.equals(entry.key())) {
+                consumer.accept(groupKey, group);
+                group = new ArrayList<>();
+            }
+            groupKey = entry.key();
+            group.add(entry.transactionId());
+            if (++cursor.position < cursor.entries.size()) {
+                heap.add(cursor);
+            }
+        }
+        if (groupKey != null) {
+            consumer.accept(groupKey, group);
+        }
+        for (IndexRun run : runs) {
+            run.entries = new ArrayList<>();
+        }
+    }
+}
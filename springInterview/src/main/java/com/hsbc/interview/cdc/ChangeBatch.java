@@ -0,0 +1,16 @@
+package com.hsbc.interview.cdc;
+
+import java.util.List;
+
+/**
+ * 一次拉取的变更事件
+ *
+ * @param epoch 本次进程启动标识，序号在重启后从1重新开始，消费方发现epoch变化时需要重新对账
+ * @param events 事件列表，按序号升序
+ * @param nextSeq 下次拉取的起始序号
+ * @param lastSeq 当前已提交的最大序号
+ * @author wangwei
+ * @date 2026-10-19
+ */
+public record ChangeBatch(long epoch, List<ChangeEvent> events, long nextSeq, long lastSeq) {
+}
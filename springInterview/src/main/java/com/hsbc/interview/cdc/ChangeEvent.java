@@ -0,0 +1,20 @@
+package com.hsbc.interview.cdc;
+
+import com.hsbc.interview.entity.Transaction;
+
+/**
+ * 交易变更事件
+ * 新增只有after，删除只有before，更新两者都有
+ *
+ * @param seq 事件序号，从1开始连续递增，按序号消费即写入顺序
+ * @param timestamp 写入时间（毫秒）
+ * @param op 变更类型
+ * @param transactionId 交易流水号
+ * @param before 变更前数据
+ * @param after 变更后数据
+ * @author wangwei
+ * @date 2026-10-19
+ */
+public record ChangeEvent(long seq, long timestamp, ChangeOp op, String transactionId,
+                          Transaction before, Transaction after) {
+}
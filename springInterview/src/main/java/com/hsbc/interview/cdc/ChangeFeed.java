@@ -0,0 +1,339 @@
+package com.hsbc.interview.cdc;
+
+import com.hsbc.interview.common.MetricsProvider;
+import com.hsbc.interview.common.TransException;
+import com.hsbc.interview.entity.Transaction;
+import com.hsbc.interview.service.TransactionMutationListener;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.log4j.Log4j2;
+import org.apache.logging.log4j.util.Strings;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static com.hsbc.interview.common.Constant.HTTP_GONE_CODE;
+
+/**
+ * 交易变更数据捕获（CDC）
+ * 作为交易变更监听器，在写操作的临界区内为每次新增/更新/删除分配连续序号并写入定长环形数组，
+ * 写入对读线程可见后标记提交，消费方只能读到连续已提交的事件，因此按序号消费即实际写入顺序。
+ * 配置了落盘目录时，后台线程把已提交事件顺序追加到本地日志文件，环形数组被覆盖后仍可从文件按序号读取，
+ * 未配置时（默认）只保留环形数组中的事件，不写本地文件；
+ * 写路径只做一次加锁追加，消费方拉取、等待与网络发送都在各自线程上，慢消费方不影响写入
+ * @author wangwei
+ * @date 2026-10-19
+ */
+@Component
+@ConditionalOnProperty(prefix = "trans.cdc", name = "enabled", havingValue = "true")
+@Log4j2
+public class ChangeFeed implements TransactionMutationListener, MetricsProvider {
+
+    private static final int SPILL_BATCH = 4096;
+
+    private final ChangeEvent[] ring;
+
+    private final boolean[] committed;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final Condition committedAdvanced = lock.newCondition();
+
+    // 以下字段由lock保护
+    private long lastSeq;
+    private long committedWatermark;
+
+    private final ThreadLocal<long[]> currentSeq = ThreadLocal.withInitial(() -> new long[1]);
+
+    private final long epoch = System.currentTimeMillis();
+
+    // 未配置落盘目录时为null
+    private final ChangeSpillLog spillLog;
+
+    // 已落盘的最大序号，只由落盘线程写入
+    private volatile long spilledSeq;
+
+    private volatile boolean running;
+
+    private Thread spillThread;
+
+    private final AtomicLong polls = new AtomicLong();
+    private final AtomicLong ringReads = new AtomicLong();
+    private final AtomicLong spillReads = new AtomicLong();
+    private final AtomicLong goneReads = new AtomicLong();
+    private final AtomicLong lostEvents = new AtomicLong();
+    private final AtomicInteger activeStreams = new AtomicInteger();
+
+    public ChangeFeed(@Value("${trans.cdc.ring-capacity:65536}") int ringCapacity,
+                      @Value("${trans.cdc.spill-dir:}") String spillDirectory,
+                      @Value("${trans.cdc.spill-file-mb:64}") int spillFileMb,
+                      @Value("${trans.cdc.spill-max-files:8}") int spillMaxFiles) throws IOException {
+        this.ring = new ChangeEvent[ringCapacity];
+        this.committed = new boolean[ringCapacity];
+        this.spillLog = Strings.isBlank(spillDirectory) ? null
+                : new ChangeSpillLog(spillDirectory.trim(), spillFileMb, spillMaxFiles);
+    }
+
+    @PostConstruct
+    public void start() {
+        running = true;
+        if (spillLog != null) {
+            spillThread = Thread.ofPlatform().daemon().name("cdc-spill").start(this::spillLoop);
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        if (spillThread != null) {
+            spillThread.interrupt();
+            try {
+                spillThread.join(TimeUnit.SECONDS.toMillis(3));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (spillLog != null) {
+            spillLog.close();
+        }
+    }
+
+    private int slot(long seq) {
+        return (int) (seq % ring.length);
+    }
+
+    @Override
+    public void onAdd(Transaction after) {
+        append(ChangeOp.ADD, null, after);
+    }
+
+    @Override
+    public void onUpdate(Transaction before, Transaction after) {
+        append(ChangeOp.UPDATE, before, after);
+    }
+
+    @Override
+    public void onDelete(Transaction before) {
+        append(ChangeOp.DELETE, before, null);
+    }
+
+    private void append(ChangeOp op, Transaction before, Transaction after) {
+        String transactionId = after != null ? after.getTransactionId() : before.getTransactionId();
+        lock.lock();
+        try {
+            long seq = ++lastSeq;
+            // 覆盖仍未提交的旧事件时水位直接推进，说明该事件对应的写入已异常终止
+            if (seq - ring.length > committedWatermark) {
+                committedWatermark = seq - ring.length;
+                advanceWatermark();
+            }
+            ring[slot(seq)] = new ChangeEvent(seq, System.currentTimeMillis(), op, transactionId, before, after);
+            committed[slot(seq)] = false;
+            currentSeq.get()[0] = seq;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void afterCommit(Transaction before, Transaction after) {
+        long[] holder = currentSeq.get();
+        long seq = holder[0];
+        holder[0] = 0;
+        if (seq == 0) {
+            return;
+        }
+        lock.lock();
+        try {
+            if (seq <= committedWatermark || seq > lastSeq) {
+                return;
+            }
+            committed[slot(seq)] = true;
+            advanceWatermark();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void advanceWatermark() {
+        long before = committedWatermark;
+        while (committedWatermark < lastSeq && committed[slot(committedWatermark + 1)]
+                && ring[slot(committedWatermark + 1)].seq() == committedWatermark + 1) {
+            committedWatermark++;
+        }
+        if (committedWatermark != before) {
+            committedAdvanced.signalAll();
+        }
+    }
+
+    private long ringFirstSeqLocked() {
+        return Math.max(1, lastSeq - ring.length + 1);
+    }
+
+    /**
+     * @methodName poll
+     * @description 长轮询拉取从指定序号开始的已提交事件，暂无新事件时最多等待waitMillis
+     * @param fromSeq 起始序号（包含），小于等于0时从最早可读的事件开始
+     * @param max 最多返回条数
+     * @param waitMillis 最长等待时间（毫秒）
+     * @return 事件批次，超时仍无新事件时返回空列表
+     * @author wangwei
+     * @date 2026/10/19
+     */
+    public ChangeBatch poll(long fromSeq, int max, long waitMillis) throws InterruptedException {
+        polls.incrementAndGet();
+        long from = fromSeq > 0 ? fromSeq : earliestSeq();
+        long nanos = TimeUnit.MILLISECONDS.toNanos(waitMillis);
+        lock.lock();
+        try {
+            while (committedWatermark < from) {
+                if (nanos <= 0) {
+                    return new ChangeBatch(epoch, Collections.emptyList(), from, committedWatermark);
+                }
+                nanos = committedAdvanced.awaitNanos(nanos);
+            }
+            if (from >= ringFirstSeqLocked()) {
+                long to = Math.min(committedWatermark, from + max - 1);
+                List<ChangeEvent> events = new ArrayList<>((int) (to - from + 1));
+                for (long seq = from; seq <= to; seq++) {
+                    events.add(ring[slot(seq)]);
+                }
+                ringReads.incrementAndGet();
+                return new ChangeBatch(epoch, events, to + 1, committedWatermark);
+            }
+        } finally {
+            lock.unlock();
+        }
+        // 环形数组已被覆盖，从落盘日志读取（不持有锁）
+        List<ChangeEvent> events = spillLog == null ? null : spillLog.read(from, max);
+        if (events == null || events.isEmpty()) {
+            goneReads.incrementAndGet();
+            throw new TransException(HTTP_GONE_CODE, "变更序号【" + from + "】已过期，当前最早可读序号为" + earliestSeq());
+        }
+        spillReads.incrementAndGet();
+        return new ChangeBatch(epoch, events, events.get(events.size() - 1).seq() + 1, committedWatermark());
+    }
+
+    /**
+     * @return 当前最早可读的序号（落盘日志或环形数组中最早的一条）
+     */
+    public long earliestSeq() {
+        long spilledFirst = spillLog == null ? 0 : spillLog.firstSeq();
+        lock.lock();
+        try {
+            long ringFirst = ringFirstSeqLocked();
+            return spilledFirst > 0 && spilledFirst < ringFirst ? spilledFirst : ringFirst;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long committedWatermark() {
+        lock.lock();
+        try {
+            return committedWatermark;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getEpoch() {
+        return epoch;
+    }
+
+    /**
+     * SSE推送连接数统计
+     */
+    public void streamOpened() {
+        activeStreams.incrementAndGet();
+    }
+
+    public void streamClosed() {
+        activeStreams.decrementAndGet();
+    }
+
+    // 把已提交事件顺序写入落盘日志；落后超过环形数组容量时被覆盖的事件记为丢失
+    private void spillLoop() {
+        while (running) {
+            List<ChangeEvent> events;
+            lock.lock();
+            try {
+                while (running && committedWatermark <= spilledSeq) {
+                    committedAdvanced.await(500, TimeUnit.MILLISECONDS);
+                }
+                long from = spilledSeq + 1;
+                long ringFirst = ringFirstSeqLocked();
+                if (from < ringFirst) {
+                    lostEvents.addAndGet(ringFirst - from);
+                    log.warn("变更日志落盘落后超过环形数组容量，{}条事件未落盘", ringFirst - from);
+                    from = ringFirst;
+                }
+                long to = Math.min(committedWatermark, from + SPILL_BATCH - 1);
+                events = new ArrayList<>((int) Math.max(0, to - from + 1));
+                for (long seq = from; seq <= to; seq++) {
+                    events.add(ring[slot(seq)]);
+                }
+            } catch (InterruptedException e) {
+                break;
+            } finally {
+                lock.unlock();
+            }
+            if (events.isEmpty()) {
+                continue;
+            }
+            try {
+                spillLog.append(events);
+                spilledSeq = events.get(events.size() - 1).seq();
+            } catch (IOException e) {
+                log.error("变更日志落盘失败", e);
+                spilledSeq = events.get(events.size() - 1).seq();
+                lostEvents.addAndGet(events.size());
+            }
+        }
+    }
+
+    @Override
+    public String metricsName() {
+        return "changeFeed";
+    }
+
+    @Override
+    public Map<String, Object> metrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        long watermark;
+        long ringFirst;
+        lock.lock();
+        try {
+            watermark = committedWatermark;
+            ringFirst = ringFirstSeqLocked();
+        } finally {
+            lock.unlock();
+        }
+        metrics.put("epoch", epoch);
+        metrics.put("lastSeq", watermark);
+        metrics.put("ringFirstSeq", ringFirst);
+        metrics.put("spillEnabled", spillLog != null);
+        metrics.put("spilledSeq", spilledSeq);
+        metrics.put("spillFirstSeq", spillLog == null ? 0 : spillLog.firstSeq());
+        metrics.put("spillFiles", spillLog == null ? 0 : spillLog.fileCount());
+        metrics.put("lostEvents", lostEvents.get());
+        metrics.put("polls", polls.get());
+        metrics.put("ringReads", ringReads.get());
+        metrics.put("spillReads", spillReads.get());
+        metrics.put("goneReads", goneReads.get());
+        metrics.put("activeStreams", activeStreams.get());
+        return metrics;
+    }
+}
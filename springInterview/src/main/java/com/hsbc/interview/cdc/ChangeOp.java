@@ -0,0 +1,12 @@
+package com.hsbc.interview.cdc;
+
+/**
+ * 交易变更事件类型
+ * @author wangwei
+ * @date 2026-10-19
+ */
+public enum ChangeOp {
+    ADD,
+    UPDATE,
+    DELETE
+}
@@ -0,0 +1,230 @@
+package com.hsbc.interview.cdc;
+
+import com.hsbc.interview.common.TransactionCodec;
+import com.hsbc.interview.entity.Transaction;
+import lombok.extern.log4j.Log4j2;
+
+import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * 变更事件落盘日志
+ * 事件按序号顺序追加写入本地文件，文件写满后滚动，超过文件数上限时删除最早的文件；
+ * 每个文件内每隔固定条数记录一次 序号 -> 文件偏移 的稀疏索引，按序号读取时从最近的索引位置顺序扫描。
+ * 只有一个写线程，读线程只读取已刷盘的序号范围
+ * @author wangwei
+ * @date 2026-10-19
+ */
+@Log4j2
+class ChangeSpillLog implements Closeable {
+
+    private static final int INDEX_INTERVAL = 256;
+
+    /**
+     * 单个日志文件，序号在文件内连续
+     */
+    private static final class SpillFile {
+        private final Path path;
+        private final long firstSeq;
+        private final ConcurrentSkipListMap<Long, Long> index = new ConcurrentSkipListMap<>();
+        // 已刷盘的最大序号
+        private volatile long flushedSeq;
+
+        SpillFile(Path path, long firstSeq) {
+            this.path = path;
+            this.firstSeq = firstSeq;
+            this.flushedSeq = firstSeq - 1;
+        }
+    }
+
+    private final Path directory;
+
+    private final long fileBytes;
+
+    private final int maxFiles;
+
+    private final List<SpillFile> files = new CopyOnWriteArrayList<>();
+
+    // 以下字段只由写线程访问
+    private SpillFile current;
+    private DataOutputStream out;
+    private long writtenSeq;
+    private long writtenRecords;
+
+    ChangeSpillLog(String baseDirectory, int fileMb, int maxFiles) throws IOException {
+        Path base = Path.of(baseDirectory);
+        Files.createDirectories(base);
+        this.directory = Files.createTempDirectory(base, "cdc-");
+        // DataOutputStream按int计数，单个文件不超过1GB
+        this.fileBytes = Math.min(Math.max(1, fileMb), 1024) * 1024L * 1024L;
+        this.maxFiles = Math.max(1, maxFiles);
+    }
+
+    /**
+     * @methodName append
+     * @description 追加一批事件并刷盘，序号不连续（中间事件已丢失）时另起新文件
+     * @param events 按序号升序的事件
+     * @return
+     * @author wangwei
+     * @date 2026/10/19
+     */
+    void append(List<ChangeEvent> events) throws IOException {
+        for (ChangeEvent event : events) {
+            if (current == null || event.seq() != writtenSeq + 1 || out.size() >= fileBytes) {
+                roll(event.seq());
+            }
+            if (writtenRecords++ % INDEX_INTERVAL == 0) {
+                current.index.put(event.seq(), (long) out.size());
+            }
+            writeEvent(out, event);
+            writtenSeq = event.seq();
+        }
+        if (out != null) {
+            out.flush();
+            current.flushedSeq = writtenSeq;
+        }
+    }
+
+    private void roll(long firstSeq) throws IOException {
+        if (out != null) {
+            out.close();
+        }
+        SpillFile file = new SpillFile(directory.resolve(String.format("cdc-%012d.log", firstSeq)), firstSeq);
+        out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file.path,
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE), 64 * 1024));
+        current = file;
+        writtenRecords = 0;
+        files.add(file);
+        while (files.size() > maxFiles) {
+            SpillFile oldest = files.remove(0);
+            Files.deleteIfExists(oldest.path);
+        }
+    }
+
+    /**
+     * @methodName read
+     * @description 读取从指定序号开始的事件，只在单个文件内读取，读到文件末尾即返回
+     * @param fromSeq 起始序号（包含）
+     * @param max 最多读取条数
+     * @return 事件列表，序号不在任何文件中（已删除或未落盘）时返回null
+     * @author wangwei
+     * @date 2026/10/19
+     */
+    List<ChangeEvent> read(long fromSeq, int max) {
+        SpillFile file = null;
+        for (SpillFile candidate : files) {
+            if (candidate.firstSeq <= fromSeq && fromSeq <= candidate.flushedSeq) {
+                file = candidate;
+                break;
+            }
+        }
+        if (file == null) {
+            return null;
+        }
+        Map.Entry<Long, Long> start = file.index.floorEntry(fromSeq);
+        long lastSeq = file.flushedSeq;
+        List<ChangeEvent> events = new ArrayList<>(Math.min(max, 1024));
+        try (FileChannel channel = FileChannel.open(file.path, StandardOpenOption.READ)) {
+            channel.position(start == null ? 0 : start.getValue());
+            DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel), 64 * 1024));
+            while (events.size() < max) {
+                ChangeEvent event = readEvent(in);
+                if (event.seq() > lastSeq) {
+                    break;
+                }
+                if (event.seq() >= fromSeq) {
+                    events.add(event);
+                }
+                if (event.seq() == lastSeq) {
+                    break;
+                }
+            }
+            return events;
+        } catch (NoSuchFileException e) {
+            // 读取期间文件被滚动删除
+            return null;
+        } catch (IOException e) {
+            log.error("读取变更日志文件【{}】失败", file.path, e);
+            return null;
+        }
+    }
+
+    /**
+     * @return 落盘日志中最早的序号，没有数据时返回0
+     */
+    long firstSeq() {
+        for (SpillFile file : files) {
+            if (file.flushedSeq >= file.firstSeq) {
+                return file.firstSeq;
+            }
+        }
+        return 0;
+    }
+
+    int fileCount() {
+        return files.size();
+    }
+
+    private static void writeEvent(DataOutputStream out, ChangeEvent event) throws IOException {
+        out.writeLong(event.seq());
+        out.writeLong(event.timestamp());
+        out.writeByte(event.op().ordinal());
+        TransactionCodec.writeString(out, event.transactionId());
+        writeImage(out, event.before());
+        writeImage(out, event.after());
+    }
+
+    private static void writeImage(DataOutputStream out, Transaction transaction) throws IOException {
+        out.writeBoolean(transaction != null);
+        if (transaction != null) {
+            TransactionCodec.write(out, transaction);
+        }
+    }
+
+    private static ChangeEvent readEvent(DataInputStream in) throws IOException {
+        long seq = in.readLong();
+        long timestamp = in.readLong();
+        ChangeOp op = ChangeOp.values()[in.readByte()];
+        String transactionId = TransactionCodec.readString(in);
+        Transaction before = in.readBoolean() ? TransactionCodec.read(in) : null;
+        Transaction after = in.readBoolean() ? TransactionCodec.read(in) : null;
+        return new ChangeEvent(seq, timestamp, op, transactionId, before, after);
+    }
+
+    /**
+     * 关闭并删除全部日志文件（序号在重启后重新开始，旧文件没有意义）
+     */
+    @Override
+    public void close() {
+        try {
+            if (out != null) {
+                out.close();
+            }
+        } catch (IOException e) {
+            log.warn("关闭变更日志文件失败", e);
+        }
+        for (SpillFile file : files) {
+            try {
+                Files.deleteIfExists(file.path);
+            } catch (IOException e) {
+                log.warn("删除变更日志文件【{}】失败", file.path, e);
+            }
+        }
+        files.clear();
+        try {
+            Files.deleteIfExists(directory);
+        } catch (IOException e) {
+            log.warn("删除变更日志目录【{}】失败", directory, e);
+        }
+    }
+}
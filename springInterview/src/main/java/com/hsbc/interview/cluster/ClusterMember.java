@@ -0,0 +1,29 @@
+package com.hsbc.interview.cluster;
+
+/**
+ * 集群成员
+ *
+ * @param nodeId 节点ID，集群内唯一
+ * @param host 节点间通信地址
+ * @param port 节点间通信端口
+ * @param slot 流水号中的节点槽位(0-99)，集群内唯一
+ * @author wangwei
+ * @date 2026-10-19
+ */
+public record ClusterMember(String nodeId, String host, int port, int slot) {
+
+    /**
+     * 解析 nodeId@host:port/slot 格式的成员配置
+     */
+    public static ClusterMember parse(String text) {
+        String value = text.trim();
+        int at = value.indexOf('@');
+        int slash = value.lastIndexOf('/');
+        int colon = value.lastIndexOf(':', slash);
+        if (at <= 0 || colon <= at || slash <= colon) {
+            throw new IllegalArgumentException("集群成员配置格式应为 nodeId@host:port/slot : " + text);
+        }
+        return new ClusterMember(value.substring(0, at), value.substring(at + 1, colon),
+                Integer.parseInt(value.substring(colon + 1, slash)), Integer.parseInt(value.substring(slash + 1)));
+    }
+}
@@ -0,0 +1,647 @@
+package com.hsbc.interview.cluster;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.hsbc.interview.common.MetricsProvider;
+import com.hsbc.interview.common.TransException;
+import com.hsbc.interview.common.TransactionCodec;
+import com.hsbc.interview.dto.TransDataDto;
+import com.hsbc.interview.dto.TransQryRequest;
+import com.hsbc.interview.dto.TransQryRsp;
+import com.hsbc.interview.entity.Transaction;
+import com.hsbc.interview.service.TransSort;
+import com.hsbc.interview.service.TransactionSnapshotManager;
+import com.hsbc.interview.service.TransactionService;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.log4j.Log4j2;
+import org.apache.logging.log4j.util.Strings;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.hsbc.interview.common.Constant.HTTP_FAIL_CODE;
+
+/**
+ * 集群节点
+ * 交易按用户ID在一致性哈希环上分区：新增、按用户查询、更新、删除路由到负责该用户的节点；
+ * 按商户或无条件的分页查询并行发往所有节点（每个节点返回前 page*pageSize 条），再按流水号做k路归并得到全局分页；
+ * 按流水号查询并行询问所有节点。成员变化时替换哈希环，并在后台把不再归本节点负责的数据分批迁移到新节点
+ * @author wangwei
+ * @date 2026-10-19
+ */
+@Component
+@ConditionalOnProperty(prefix = "trans.cluster", name = "enabled", havingValue = "true")
+@Log4j2
+public class ClusterNode implements MetricsProvider {
+
+    private static final int MIGRATE_BATCH_SIZE = 500;
+
+    // 移出集群的节点最多迁移的轮数：迁移期间仍在途的写入会留下少量数据，再迁一轮
+    private static final int DRAIN_PASSES = 3;
+
+    private final TransactionService transactionService;
+
+    private final Cache<String, Transaction> mainCache;
+
+    private final String nodeId;
+
+    private final int port;
+
+    private final int virtualNodes;
+
+    private final long callTimeoutMillis;
+
+    private final String configuredMembers;
+
+    private final ClusterTransport transport;
+
+    private final int nodeSlot;
+
+    private final ExecutorService rebalanceExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "cluster-rebalance");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final ExecutorService scatterExecutor = Executors.newVirtualThreadPerTaskExecutor();
+
+    private volatile ConsistentHashRing ring;
+
+    private final AtomicLong localCalls = new AtomicLong();
+    private final AtomicLong remoteCalls = new AtomicLong();
+    private final AtomicLong scatterQueries = new AtomicLong();
+    private final AtomicLong migratedRows = new AtomicLong();
+    private final AtomicLong rebalances = new AtomicLong();
+
+    @Autowired
+    public ClusterNode(TransactionService transactionService,
+                       Cache<String, Transaction> mainCache,
+                       @Value("${trans.cluster.node-id:node1}") String nodeId,
+                       @Value("${trans.cluster.port:9400}") int port,
+                       @Value("${trans.cluster.virtual-nodes:128}") int virtualNodes,
+                       @Value("${trans.cluster.node-slot:-1}") int nodeSlot,
+                       @Value("${trans.cluster.call-timeout-ms:3000}") long callTimeoutMillis,
+                       @Value("${trans.cluster.members:}") String configuredMembers) {
+        this.transactionService = transactionService;
+        this.mainCache = mainCache;
+        this.nodeId = nodeId;
+        this.port = port;
+        this.virtualNodes = virtualNodes;
+        this.callTimeoutMillis = callTimeoutMillis;
+        this.configuredMembers = configuredMembers;
+        // 流水号中带节点槽位，各节点分配的流水号互不重复；默认值相同会导致各节点分配相同的流水号，因此必须显式配置
+        if (nodeSlot < 0 || nodeSlot > 99) {
+            throw new IllegalArgumentException("集群模式须为每个节点显式配置不重复的 trans.cluster.node-slot(0-99): " + nodeSlot);
+        }
+        this.nodeSlot = nodeSlot;
+        transactionService.setIdNodeSlot(nodeSlot);
+        this.transport = new ClusterTransport(this::handle);
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        List<ClusterMember> members = new ArrayList<>();
+        for (String text : configuredMembers.split(",")) {
+            if (Strings.isNotBlank(text)) {
+                members.add(ClusterMember.parse(text));
+            }
+        }
+        // 槽位重复时拒绝启动，避免与其他节点分配相同的流水号
+        if (!members.isEmpty()) {
+            checkMembers(members, true);
+        }
+        transport.start(port);
+        if (members.isEmpty()) {
+            members.add(new ClusterMember(nodeId, "localhost", getPort(), nodeSlot));
+        }
+        updateMembers(members, false);
+        log.info("集群节点{}已启动，端口{}，成员{}", nodeId, getPort(), members);
+    }
+
+    @PreDestroy
+    public void stop() {
+        transport.stop();
+        rebalanceExecutor.shutdownNow();
+        scatterExecutor.shutdownNow();
+    }
+
+    public int getPort() {
+        return transport.getPort();
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    public int getNodeSlot() {
+        return nodeSlot;
+    }
+
+    public List<ClusterMember> getMembers() {
+        return ring.getMembers();
+    }
+
+    /**
+     * @methodName updateMembers
+     * @description 替换集群成员并在后台迁移不再归本节点负责的数据。
+     * 新成员中不含本节点时本节点移出集群：请求转发给新的负责节点，本地数据全部迁出
+     * @param members 新的成员列表
+     * @param broadcast 是否通知其余节点（新旧成员都会收到），全部节点接受后才替换本节点的哈希环
+     * @return
+     * @author wangwei
+     * @date 2026/10/19
+     */
+    public void updateMembers(List<ClusterMember> members, boolean broadcast) {
+        checkMembers(members, false);
+        ConsistentHashRing previous = ring;
+        if (broadcast) {
+            broadcastMembers(members, previous);
+        }
+        ring = new ConsistentHashRing(members, virtualNodes);
+        if (!members.stream().anyMatch(this::isLocal)) {
+            log.info("节点{}已不在集群成员中，开始迁出本地数据", nodeId);
+        }
+        rebalanceExecutor.execute(this::rebalance);
+    }
+
+    // 通知新旧成员；有节点拒绝或调用失败时，已接受的节点恢复为原成员列表，本节点不做变更
+    private void broadcastMembers(List<ClusterMember> members, ConsistentHashRing previous) {
+        Set<ClusterMember> targets = new LinkedHashSet<>(members);
+        if (previous != null) {
+            targets.addAll(previous.getMembers());
+        }
+        byte[] payload = ClusterProtocol.encode(out -> ClusterProtocol.writeMembers(out, members));
+        Map<ClusterMember, CompletableFuture<byte[]>> futures = new LinkedHashMap<>();
+        for (ClusterMember target : targets) {
+            if (!isLocal(target)) {
+                try {
+                    futures.put(target, transport.call(target, ClusterProtocol.MEMBERS, payload));
+                } catch (TransException e) {
+                    // 连接失败时同步抛出，与其他失败一样处理
+                    futures.put(target, CompletableFuture.failedFuture(e));
+                }
+            }
+        }
+        List<ClusterMember> accepted = new ArrayList<>();
+        TransException failure = null;
+        for (Map.Entry<ClusterMember, CompletableFuture<byte[]>> entry : futures.entrySet()) {
+            try {
+                await(entry.getValue());
+                accepted.add(entry.getKey());
+            } catch (TransException e) {
+                log.error("节点{}未接受成员变更", entry.getKey().nodeId(), e);
+                failure = failure == null ? e : failure;
+            }
+        }
+        if (failure == null) {
+            return;
+        }
+        if (previous != null) {
+            List<ClusterMember> restored = previous.getMembers();
+            byte[] rollback = ClusterProtocol.encode(out -> ClusterProtocol.writeMembers(out, restored));
+            for (ClusterMember target : accepted) {
+                try {
+                    call(target, ClusterProtocol.MEMBERS, rollback);
+                } catch (TransException e) {
+                    log.error("节点{}恢复原成员列表失败，需重新提交成员变更", target.nodeId(), e);
+                }
+            }
+        }
+        throw new TransException(HTTP_FAIL_CODE, "成员变更未生效: " + failure.getMessage());
+    }
+
+    /**
+     * @methodName awaitRebalance
+     * @description 等待已提交的迁移任务执行完成
+     * @param timeoutMillis 最长等待时间
+     * @return
+     * @author wangwei
+     * @date 2026/10/19
+     */
+    public void awaitRebalance(long timeoutMillis) throws InterruptedException, ExecutionException, TimeoutException {
+        rebalanceExecutor.submit(() -> { }).get(timeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    // 各成员的节点ID与槽位都不能重复，本节点在成员中时槽位须与本节点配置一致；启动时成员中须包含本节点
+    private void checkMembers(List<ClusterMember> members, boolean requireLocal) {
+        if (members.isEmpty()) {
+            throw new TransException(HTTP_FAIL_CODE, "集群成员不能为空");
+        }
+        Set<String> nodeIds = new HashSet<>();
+        Set<Integer> slots = new HashSet<>();
+        for (ClusterMember member : members) {
+            if (!nodeIds.add(member.nodeId())) {
+                throw new TransException(HTTP_FAIL_CODE, "集群成员中节点ID重复: " + member.nodeId());
+            }
+            if (member.slot() < 0 || member.slot() > 99 || !slots.add(member.slot())) {
+                throw new TransException(HTTP_FAIL_CODE, "集群成员" + member.nodeId() + "的槽位" + member.slot()
+                        + "不在0-99之间或与其他成员重复");
+            }
+            if (member.nodeId().equals(nodeId) && member.slot() != nodeSlot) {
+                throw new TransException(HTTP_FAIL_CODE, "集群成员中本节点" + nodeId + "的槽位" + member.slot()
+                        + "与 trans.cluster.node-slot=" + nodeSlot + " 不一致");
+            }
+        }
+        if (requireLocal && !nodeIds.contains(nodeId)) {
+            throw new TransException(HTTP_FAIL_CODE, "集群成员中缺少当前节点" + nodeId);
+        }
+    }
+
+    private boolean isLocal(ClusterMember member) {
+        return member.nodeId().equals(nodeId);
+    }
+
+    private ClusterMember ownerOf(String userId) {
+        return ring.ownerOf(userId == null ? "" : userId);
+    }
+
+    /**
+     * @methodName addTransaction
+     * @description 新增交易，路由到负责该用户的节点
+     * @param transaction 交易数据
+     * @return 交易流水号
+     * @author wangwei
+     * @date 2026/10/19
+     */
+    public String addTransaction(Transaction transaction) {
+        ClusterMember owner = ownerOf(transaction.getUserId());
+        if (isLocal(owner)) {
+            localCalls.incrementAndGet();
+            return transactionService.addTransaction(transaction);
+        }
+        byte[] response = call(owner, ClusterProtocol.ADD,
+                ClusterProtocol.encode(out -> TransactionCodec.write(out, transaction)));
+        return decode(response, in -> in.readUTF());
+    }
+
+    /**
+     * @methodName updateTransaction
+     * @description 更新交易，路由到负责该用户的节点
+     * @param transaction 交易数据
+     * @return
+     * @author wangwei
+     * @date 2026/10/19
+     */
+    public void updateTransaction(Transaction transaction) {
+        ClusterMember owner = ownerOf(transaction.getUserId());
+        if (isLocal(owner)) {
+            localCalls.incrementAndGet();
+            transactionService.updateTransaction(transaction);
+            return;
+        }
+        call(owner, ClusterProtocol.UPDATE, ClusterProtocol.encode(out -> TransactionCodec.write(out, transaction)));
+    }
+
+    /**
+     * @methodName deleteTransaction
+     * @description 删除交易，路由到负责该用户的节点
+     * @param req 删除条件
+     * @return
+     * @author wangwei
+     * @date 2026/10/19
+     */
+    public void deleteTransaction(TransQryRequest req) {
+        ClusterMember owner = ownerOf(req.getUserId());
+        if (isLocal(owner)) {
+            localCalls.incrementAndGet();
+            transactionService.deleteTransaction(req);
+            return;
+        }
+        call(owner, ClusterProtocol.DELETE, ClusterProtocol.encode(out -> ClusterProtocol.writeQuery(out, req)));
+    }
+
+    /**
+     * @methodName searchTrans
+     * @description 集群查询：按用户的查询只访问一个节点，按流水号、按商户或无条件的查询发往所有节点后合并
+     * @param req 查询条件
+     * @return com.hsbc.interview.dto.TransQryRsp 查询返回DTO
+     * @author wangwei
+     * @date 2026/10/19
+     */
+    public TransQryRsp searchTrans(TransQryRequest req) {
+        if (Strings.isNotBlank(req.getTransactionId())) {
+            return getByTransactionId(req);
+        }
+        if (Strings.isNotBlank(req.getUserId())) {
+            ClusterMember owner = ownerOf(req.getUserId());
+            if (isLocal(owner)) {
+                localCalls.incrementAndGet();
+                return transactionService.searchTrans(req);
+            }
+            checkNoSnapshot(req);
+            return toRsp(req, remoteSearch(owner, req));
+        }
+        checkNoSnapshot(req);
+        return scatterSearch(req);
+    }
+
+    private TransQryRsp getByTransactionId(TransQryRequest req) {
+        List<ClusterMember> members = ring.getMembers();
+        byte[] payload = ClusterProtocol.encode(out -> out.writeUTF(req.getTransactionId()));
+        List<CompletableFuture<Transaction>> futures = new ArrayList<>(members.size());
+        for (ClusterMember member : members) {
+            if (isLocal(member)) {
+                futures.add(CompletableFuture.completedFuture(transactionService.findTransaction(req.getTransactionId())));
+            } else {
+                futures.add(transport.call(member, ClusterProtocol.GET, payload)
+                        .thenApply(bytes -> decode(bytes, in -> in.readBoolean() ? TransactionCodec.read(in) : null)));
+            }
+        }
+        TransQryRsp rsp = newRsp(req);
+        for (CompletableFuture<Transaction> future : futures) {
+            Transaction transaction = await(future);
+            if (transaction != null && rsp.getTransList().isEmpty()) {
+                rsp.getTransList().add(transactionService.convertTrans(transaction));
+            }
+        }
+        rsp.setTotal(1);
+        return rsp;
+    }
+
+    private record PartialResult(int total, List<Transaction> rows) {
+    }
+
+    // 快照令牌只在打开它的节点上有效，集群模式下只支持由本节点负责的用户查询
+    private static void checkNoSnapshot(TransQryRequest req) {
+        if (TransactionSnapshotManager.isSnapshotQuery(req)) {
+            throw new TransException(HTTP_FAIL_CODE, "集群模式下快照分页只支持本节点负责的用户");
+        }
+    }
+
+    /**
+     * 每个节点各自取前 page*pageSize 条（均按流水号有序），合并后跳过offset取当前页，总数为各节点之和
+     */
+    private TransQryRsp scatterSearch(TransQryRequest req) {
+        scatterQueries.incrementAndGet();
+        // 先校验排序参数，各节点按同样的顺序返回前 offset+pageSize 条
+        Comparator<Transaction> order = TransSort.of(req).comparator();
+        int offset = (req.getPage() - 1) * req.getPageSize();
+        TransQryRequest partialReq = copyQuery(req);
+        partialReq.setPage(1);
+        partialReq.setPageSize(offset + req.getPageSize());
+
+        List<ClusterMember> members = ring.getMembers();
+        List<CompletableFuture<PartialResult>> futures = new ArrayList<>(members.size());
+        for (ClusterMember member : members) {
+            if (isLocal(member)) {
+                futures.add(CompletableFuture.supplyAsync(() -> localSearch(partialReq), scatterExecutor));
+            } else {
+                futures.add(transport.call(member, ClusterProtocol.SEARCH,
+                                ClusterProtocol.encode(out -> ClusterProtocol.writeQuery(out, partialReq)))
+                        .thenApply(ClusterNode::decodePartial));
+            }
+        }
+        List<PartialResult> partials = new ArrayList<>(futures.size());
+        for (CompletableFuture<PartialResult> future : futures) {
+            partials.add(await(future));
+        }
+        return toRsp(req, merge(partials, order, offset, req.getPageSize()));
+    }
+
+    private record Cursor(List<Transaction> rows, int index) {
+        Transaction current() {
+            return rows.get(index);
+        }
+    }
+
+    // k路归并：堆中保存每个节点结果的当前位置，按查询的排序方式依次弹出排在最前的一条
+    private static PartialResult merge(List<PartialResult> partials, Comparator<Transaction> order, int offset, int pageSize) {
+        PriorityQueue<Cursor> heap = new PriorityQueue<>(Math.max(1, partials.size()),
+                (left, right) -> order.compare(left.current(), right.current()));
+        long total = 0;
+        for (PartialResult partial : partials) {
+            total += partial.total();
+            if (!partial.rows().isEmpty()) {
+                heap.add(new Cursor(partial.rows(), 0));
+            }
+        }
+        List<Transaction> page = new ArrayList<>(pageSize);
+        int skipped = 0;
+        while (!heap.isEmpty() && page.size() < pageSize) {
+            Cursor cursor = heap.poll();
+            if (skipped < offset) {
+                skipped++;
+            } else {
+                page.add(cursor.current());
+            }
+            if (cursor.index() + 1 < cursor.rows().size()) {
+                heap.add(new Cursor(cursor.rows(), cursor.index() + 1));
+            }
+        }
+        return new PartialResult((int) Math.min(total, Integer.MAX_VALUE), page);
+    }
+
+    private PartialResult localSearch(TransQryRequest req) {
+        localCalls.incrementAndGet();
+        TransQryRsp rsp = transactionService.searchTrans(req);
+        List<Transaction> rows = rsp.getTransList() == null ? List.of() : new ArrayList<>(rsp.getTransList());
+        return new PartialResult(rsp.getTotal(), rows);
+    }
+
+    private PartialResult remoteSearch(ClusterMember member, TransQryRequest req) {
+        return decodePartial(call(member, ClusterProtocol.SEARCH,
+                ClusterProtocol.encode(out -> ClusterProtocol.writeQuery(out, req))));
+    }
+
+    private static PartialResult decodePartial(byte[] bytes) {
+        return decode(bytes, in -> new PartialResult(in.readInt(), ClusterProtocol.readTransactions(in)));
+    }
+
+    private TransQryRsp toRsp(TransQryRequest req, PartialResult result) {
+        TransQryRsp rsp = newRsp(req);
+        rsp.setTotal(result.total());
+        for (Transaction transaction : result.rows()) {
+            rsp.getTransList().add(transactionService.convertTrans(transaction));
+        }
+        return rsp;
+    }
+
+    private static TransQryRsp newRsp(TransQryRequest req) {
+        TransQryRsp rsp = new TransQryRsp();
+        rsp.setPage(req.getPage());
+        rsp.setPageSize(req.getPageSize());
+        rsp.setTransList(new ArrayList<>());
+        return rsp;
+    }
+
+    private static TransQryRequest copyQuery(TransQryRequest req) {
+        TransQryRequest copy = new TransQryRequest();
+        copy.setTransactionId(req.getTransactionId());
+        copy.setUserId(req.getUserId());
+        copy.setMerchantId(req.getMerchantId());
+        copy.setMinAmount(req.getMinAmount());
+        copy.setMaxAmount(req.getMaxAmount());
+        copy.setVersion(req.getVersion());
+        copy.setPage(req.getPage());
+        copy.setPageSize(req.getPageSize());
+        copy.setSortBy(req.getSortBy());
+        copy.setSortOrder(req.getSortOrder());
+        return copy;
+    }
+
+    /**
+     * 处理其他节点发来的请求，均在本地执行，不再二次路由
+     */
+    private byte[] handle(byte type, byte[] payload) throws IOException {
+        DataInputStream in = ClusterProtocol.input(payload);
+        switch (type) {
+            case ClusterProtocol.ADD -> {
+                String transactionId = transactionService.addTransaction(TransactionCodec.read(in));
+                return ClusterProtocol.encode(out -> out.writeUTF(transactionId));
+            }
+            case ClusterProtocol.GET -> {
+                Transaction transaction = transactionService.findTransaction(in.readUTF());
+                return ClusterProtocol.encode(out -> {
+                    out.writeBoolean(transaction != null);
+                    if (transaction != null) {
+                        TransactionCodec.write(out, transaction);
+                    }
+                });
+            }
+            case ClusterProtocol.SEARCH -> {
+                TransQryRsp rsp = transactionService.searchTrans(ClusterProtocol.readQuery(in));
+                List<TransDataDto> rows = rsp.getTransList() == null ? List.of() : rsp.getTransList();
+                return ClusterProtocol.encode(out -> {
+                    out.writeInt(rsp.getTotal());
+                    ClusterProtocol.writeTransactions(out, rows);
+                });
+            }
+            case ClusterProtocol.UPDATE -> {
+                transactionService.updateTransaction(TransactionCodec.read(in));
+                return ClusterProtocol.EMPTY;
+            }
+            case ClusterProtocol.DELETE -> {
+                transactionService.deleteTransaction(ClusterProtocol.readQuery(in));
+                return ClusterProtocol.EMPTY;
+            }
+            case ClusterProtocol.UPSERT_BATCH -> {
+                ClusterProtocol.readTransactions(in).forEach(transactionService::upsertTransaction);
+                return ClusterProtocol.EMPTY;
+            }
+            case ClusterProtocol.MEMBERS -> {
+                updateMembers(ClusterProtocol.readMembers(in), false);
+                return ClusterProtocol.EMPTY;
+            }
+            default -> throw new TransException(HTTP_FAIL_CODE, "未知的集群请求类型" + type);
+        }
+    }
+
+    /**
+     * 把不再归本节点负责的数据按目标节点分批发送，对方写入成功后再删除本地数据；
+     * 本节点已移出集群时重复迁移，直到本地数据全部迁出
+     */
+    private void rebalance() {
+        ConsistentHashRing current = ring;
+        boolean draining = !current.getMembers().stream().anyMatch(this::isLocal);
+        for (int pass = 0; pass < (draining ? DRAIN_PASSES : 1); pass++) {
+            if (migrate(current)) {
+                break;
+            }
+        }
+        if (draining) {
+            log.info("节点{}已移出集群，本地剩余{}条", nodeId, mainCache.estimatedSize());
+        }
+    }
+
+    // 迁移一轮，需要迁出的数据全部迁出时返回true
+    private boolean migrate(ConsistentHashRing current) {
+        Map<ClusterMember, List<Transaction>> outgoing = new HashMap<>();
+        transactionService.allTransactions().forEach(transaction -> {
+            ClusterMember owner = current.ownerOf(transaction.getUserId() == null ? "" : transaction.getUserId());
+            if (!isLocal(owner)) {
+                outgoing.computeIfAbsent(owner, k -> new ArrayList<>()).add(transaction);
+            }
+        });
+        if (outgoing.isEmpty()) {
+            return true;
+        }
+        rebalances.incrementAndGet();
+        boolean complete = true;
+        for (Map.Entry<ClusterMember, List<Transaction>> entry : outgoing.entrySet()) {
+            List<Transaction> rows = entry.getValue();
+            for (int from = 0; from < rows.size(); from += MIGRATE_BATCH_SIZE) {
+                List<Transaction> batch = rows.subList(from, Math.min(from + MIGRATE_BATCH_SIZE, rows.size()));
+                try {
+                    call(entry.getKey(), ClusterProtocol.UPSERT_BATCH,
+                            ClusterProtocol.encode(out -> ClusterProtocol.writeTransactions(out, batch)));
+                } catch (TransException e) {
+                    log.error("向节点{}迁移数据失败，等待下次成员变更重试", entry.getKey().nodeId(), e);
+                    complete = false;
+                    break;
+                }
+                // 发送后本地又被修改的数据不删除，留待下次迁移；不产生删除事件，数据仍在目标节点上
+                int dropped = transactionService.dropMigrated(batch);
+                migratedRows.addAndGet(dropped);
+                complete &= dropped == batch.size();
+            }
+        }
+        log.info("节点{}数据迁移完成，累计迁出{}条", nodeId, migratedRows.get());
+        return complete;
+    }
+
+    private byte[] call(ClusterMember member, byte type, byte[] payload) {
+        remoteCalls.incrementAndGet();
+        return await(transport.call(member, type, payload));
+    }
+
+    private <T> T await(CompletableFuture<T> future) {
+        try {
+            return future.get(callTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof TransException transException) {
+                throw transException;
+            }
+            throw new TransException(HTTP_FAIL_CODE, "集群节点调用失败: " + e.getCause().getMessage());
+        } catch (TimeoutException e) {
+            throw new TransException(HTTP_FAIL_CODE, "集群节点调用超时");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TransException(HTTP_FAIL_CODE, "集群节点调用被中断");
+        }
+    }
+
+    /**
+     * 消息体读取器
+     */
+    @FunctionalInterface
+    private interface BodyReader<T> {
+        T read(DataInputStream in) throws IOException;
+    }
+
+    private static <T> T decode(byte[] bytes, BodyReader<T> reader) {
+        try {
+            return reader.read(ClusterProtocol.input(bytes));
+        } catch (IOException e) {
+            throw new TransException(HTTP_FAIL_CODE, "集群响应解析失败");
+        }
+    }
+
+    @Override
+    public String metricsName() {
+        return "cluster";
+    }
+
+    @Override
+    public Map<String, Object> metrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("nodeId", nodeId);
+        metrics.put("members", ring.getMembers().stream().map(ClusterMember::nodeId).toList());
+        metrics.put("member", ring.getMembers().stream().anyMatch(this::isLocal));
+        metrics.put("localRows", mainCache.estimatedSize());
+        metrics.put("localCalls", localCalls.get());
+        metrics.put("remoteCalls", remoteCalls.get());
+        metrics.put("scatterQueries", scatterQueries.get());
+        metrics.put("requestsSent", transport.getRequestsSent());
+        metrics.put("batchesFlushed", transport.getBatchesFlushed());
+        metrics.put("rebalances", rebalances.get());
+        metrics.put("migratedRows", migratedRows.get());
+        return metrics;
+    }
+}
@@ -0,0 +1,124 @@
+package com.hsbc.interview.cluster;
+
+import com.hsbc.interview.common.TransactionCodec;
+import com.hsbc.interview.dto.TransQryRequest;
+import com.hsbc.interview.entity.Transaction;
+
+import java.io.*;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 集群节点间请求类型与消息体编解码
+ * ADD(交易→流水号) / GET(流水号→交易) / SEARCH(查询条件→总数+交易列表) / UPDATE(交易) /
+ * DELETE(删除条件) / UPSERT_BATCH(迁移的交易列表) / MEMBERS(成员列表)
+ * @author wangwei
+ * @date 2026-10-19
+ */
+final class ClusterProtocol {
+
+    static final byte ADD = 1;
+    static final byte GET = 2;
+    static final byte SEARCH = 3;
+    static final byte UPDATE = 4;
+    static final byte DELETE = 5;
+    static final byte UPSERT_BATCH = 6;
+    static final byte MEMBERS = 7;
+
+    static final byte[] EMPTY = new byte[0];
+
+    private ClusterProtocol() {
+    }
+
+    /**
+     * 消息体写入器
+     */
+    @FunctionalInterface
+    interface BodyWriter {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    static byte[] encode(BodyWriter writer) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+            DataOutputStream out = new DataOutputStream(bytes);
+            writer.write(out);
+            out.flush();
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    static DataInputStream input(byte[] payload) {
+        return new DataInputStream(new ByteArrayInputStream(payload));
+    }
+
+    static void writeTransactions(DataOutputStream out, Collection<? extends Transaction> transactions) throws IOException {
+        out.writeInt(transactions.size());
+        for (Transaction transaction : transactions) {
+            TransactionCodec.write(out, transaction);
+        }
+    }
+
+    static List<Transaction> readTransactions(DataInputStream in) throws IOException {
+        int size = in.readInt();
+        List<Transaction> transactions = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            transactions.add(TransactionCodec.read(in));
+        }
+        return transactions;
+    }
+
+    static void writeQuery(DataOutputStream out, TransQryRequest req) throws IOException {
+        TransactionCodec.writeString(out, req.getTransactionId());
+        TransactionCodec.writeString(out, req.getUserId());
+        TransactionCodec.writeString(out, req.getMerchantId());
+        TransactionCodec.writeString(out, req.getMinAmount() == null ? null : req.getMinAmount().toPlainString());
+        TransactionCodec.writeString(out, req.getMaxAmount() == null ? null : req.getMaxAmount().toPlainString());
+        out.writeLong(req.getVersion() == null ? 0 : req.getVersion());
+        out.writeInt(req.getPage());
+        out.writeInt(req.getPageSize());
+        TransactionCodec.writeString(out, req.getSortBy());
+        TransactionCodec.writeString(out, req.getSortOrder());
+    }
+
+    static TransQryRequest readQuery(DataInputStream in) throws IOException {
+        TransQryRequest req = new TransQryRequest();
+        req.setTransactionId(TransactionCodec.readString(in));
+        req.setUserId(TransactionCodec.readString(in));
+        req.setMerchantId(TransactionCodec.readString(in));
+        String minAmount = TransactionCodec.readString(in);
+        String maxAmount = TransactionCodec.readString(in);
+        req.setMinAmount(minAmount == null ? null : new BigDecimal(minAmount));
+        req.setMaxAmount(maxAmount == null ? null : new BigDecimal(maxAmount));
+        long version = in.readLong();
+        req.setVersion(version == 0 ? null : version);
+        req.setPage(in.readInt());
+        req.setPageSize(in.readInt());
+        req.setSortBy(TransactionCodec.readString(in));
+        req.setSortOrder(TransactionCodec.readString(in));
+        return req;
+    }
+
+    static void writeMembers(DataOutputStream out, List<ClusterMember> members) throws IOException {
+        out.writeInt(members.size());
+        for (ClusterMember member : members) {
+            out.writeUTF(member.nodeId());
+            out.writeUTF(member.host());
+            out.writeInt(member.port());
+            out.writeInt(member.slot());
+        }
+    }
+
+    static List<ClusterMember> readMembers(DataInputStream in) throws IOException {
+        int size = in.readInt();
+        List<ClusterMember> members = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            members.add(new ClusterMember(in.readUTF(), in.readUTF(), in.readInt(), in.readInt()));
+        }
+        return members;
+    }
+}
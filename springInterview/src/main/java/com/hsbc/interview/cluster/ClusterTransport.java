@@ -0,0 +1,309 @@
+package com.hsbc.interview.cluster;
+
+import com.hsbc.interview.common.TransException;
+import lombok.extern.log4j.Log4j2;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.hsbc.interview.common.Constant.HTTP_FAIL_CODE;
+
+/**
+ * 节点间TCP通信
+ * 帧格式：请求ID(long) + 类型(byte) + 长度(int) + 内容；响应帧：请求ID + 状态(byte) + 长度 + 内容。
+ * 同一连接上可同时有多个未完成的请求（流水线），响应按请求ID匹配；
+ * 发送线程每次把队列中积压的帧一次性写出后只flush一次（批量），高并发时显著减少系统调用与小包
+ * @author wangwei
+ * @date 2026-10-19
+ */
+@Log4j2
+public class ClusterTransport {
+
+    static final byte STATUS_OK = 0;
+    static final byte STATUS_ERROR = 1;
+
+    /**
+     * 请求处理器
+     */
+    @FunctionalInterface
+    public interface Handler {
+        byte[] handle(byte type, byte[] payload) throws Exception;
+    }
+
+    private final Handler handler;
+
+    private final Map<String, PeerClient> clients = new ConcurrentHashMap<>();
+
+    private final AtomicLong requestsSent = new AtomicLong();
+    private final AtomicLong batchesFlushed = new AtomicLong();
+
+    private volatile ServerSocket serverSocket;
+    private volatile boolean running;
+
+    public ClusterTransport(Handler handler) {
+        this.handler = handler;
+    }
+
+    public void start(int port) throws IOException {
+        serverSocket = new ServerSocket();
+        serverSocket.bind(new InetSocketAddress(port));
+        running = true;
+        Thread.ofPlatform().daemon().name("cluster-acceptor").start(this::acceptLoop);
+    }
+
+    public void stop() {
+        running = false;
+        try {
+            if (serverSocket != null) {
+                serverSocket.close();
+            }
+        } catch (IOException e) {
+            log.warn("关闭集群端口失败", e);
+        }
+        clients.values().forEach(PeerClient::close);
+        clients.clear();
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    public long getRequestsSent() {
+        return requestsSent.get();
+    }
+
+    public long getBatchesFlushed() {
+        return batchesFlushed.get();
+    }
+
+    /**
+     * @methodName call
+     * @description 异步发送请求
+     * @param member 目标节点
+     * @param type 请求类型
+     * @param payload 请求内容
+     * @return 响应内容，远端处理失败时以TransException结束
+     * @author wangwei
+     * @date 2026/10/19
+     */
+    public CompletableFuture<byte[]> call(ClusterMember member, byte type, byte[] payload) {
+        PeerClient client = clients.compute(member.nodeId(), (k, v) ->
+                (v == null || v.closed || !v.member.equals(member)) ? new PeerClient(member) : v);
+        return client.send(type, payload);
+    }
+
+    private void acceptLoop() {
+        while (running) {
+            try {
+                Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                ServerConnection connection = new ServerConnection(socket);
+                Thread.ofVirtual().name("cluster-server-reader").start(connection::readLoop);
+                Thread.ofVirtual().name("cluster-server-writer").start(connection::writeLoop);
+            } catch (IOException e) {
+                if (running) {
+                    log.error("接收集群连接失败", e);
+                }
+            }
+        }
+    }
+
+    private record Frame(long requestId, byte typeOrStatus, byte[] payload) {
+    }
+
+    private static void writeFrame(DataOutputStream out, Frame frame) throws IOException {
+        out.writeLong(frame.requestId());
+        out.writeByte(frame.typeOrStatus());
+        out.writeInt(frame.payload().length);
+        out.write(frame.payload());
+    }
+
+    private static Frame readFrame(DataInputStream in) throws IOException {
+        long requestId = in.readLong();
+        byte type = in.readByte();
+        byte[] payload = new byte[in.readInt()];
+        in.readFully(payload);
+        return new Frame(requestId, type, payload);
+    }
+
+    // 阻塞取出第一帧后把队列中已积压的帧一并取出，一次写出
+    private static List<Frame> drainBatch(BlockingQueue<Frame> queue) throws InterruptedException {
+        List<Frame> batch = new ArrayList<>();
+        batch.add(queue.take());
+        queue.drainTo(batch, 1023);
+        return batch;
+    }
+
+    /**
+     * 服务端连接：读线程为每个请求起一个虚拟线程处理，处理结果进入发送队列
+     */
+    private final class ServerConnection {
+        private final Socket socket;
+        private final BlockingQueue<Frame> outbound = new LinkedBlockingQueue<>();
+
+        ServerConnection(Socket socket) {
+            this.socket = socket;
+        }
+
+        void readLoop() {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), 64 * 1024))) {
+                while (running && !socket.isClosed()) {
+                    Frame request = readFrame(in);
+                    Thread.ofVirtual().start(() -> outbound.add(process(request)));
+                }
+            } catch (IOException e) {
+                close();
+            }
+        }
+
+        private Frame process(Frame request) {
+            try {
+                byte[] result = handler.handle(request.typeOrStatus(), request.payload());
+                return new Frame(request.requestId(), STATUS_OK, result == null ? new byte[0] : result);
+            } catch (Exception e) {
+                int code = e instanceof TransException te ? te.getCode() : HTTP_FAIL_CODE;
+                if (!(e instanceof TransException)) {
+                    log.error("处理集群请求失败", e);
+                }
+                return new Frame(request.requestId(), STATUS_ERROR, encodeError(code, e.getMessage()));
+            }
+        }
+
+        void writeLoop() {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), 64 * 1024))) {
+                while (running && !socket.isClosed()) {
+                    for (Frame frame : drainBatch(outbound)) {
+                        writeFrame(out, frame);
+                    }
+                    out.flush();
+                }
+            } catch (IOException e) {
+                close();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        void close() {
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+                // 关闭连接失败无需处理
+            }
+        }
+    }
+
+    private static byte[] encodeError(int code, String message) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(code);
+            out.writeUTF(message == null ? "" : message);
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static TransException decodeError(byte[] payload) {
+        try {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+            return new TransException(in.readInt(), in.readUTF());
+        } catch (IOException e) {
+            return new TransException(HTTP_FAIL_CODE, "集群响应解析失败");
+        }
+    }
+
+    /**
+     * 到某个节点的客户端连接，连接断开后下次调用重新建立
+     */
+    private final class PeerClient {
+        private final ClusterMember member;
+        private final Socket socket;
+        private final BlockingQueue<Frame> outbound = new LinkedBlockingQueue<>();
+        private final Map<Long, CompletableFuture<byte[]>> pending = new ConcurrentHashMap<>();
+        private final AtomicLong nextRequestId = new AtomicLong();
+        private volatile boolean closed;
+
+        PeerClient(ClusterMember member) {
+            this.member = member;
+            this.socket = new Socket();
+            try {
+                socket.setTcpNoDelay(true);
+                socket.connect(new InetSocketAddress(member.host(), member.port()), 3000);
+            } catch (IOException e) {
+                closed = true;
+                throw new TransException(HTTP_FAIL_CODE, "无法连接集群节点" + member.nodeId() + ": " + e.getMessage());
+            }
+            Thread.ofVirtual().name("cluster-client-writer-" + member.nodeId()).start(this::writeLoop);
+            Thread.ofVirtual().name("cluster-client-reader-" + member.nodeId()).start(this::readLoop);
+        }
+
+        CompletableFuture<byte[]> send(byte type, byte[] payload) {
+            CompletableFuture<byte[]> future = new CompletableFuture<>();
+            if (closed) {
+                future.completeExceptionally(new TransException(HTTP_FAIL_CODE, "集群节点" + member.nodeId() + "连接已断开"));
+                return future;
+            }
+            long requestId = nextRequestId.incrementAndGet();
+            pending.put(requestId, future);
+            outbound.add(new Frame(requestId, type, payload));
+            requestsSent.incrementAndGet();
+            return future;
+        }
+
+        void writeLoop() {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), 64 * 1024))) {
+                while (!closed) {
+                    for (Frame frame : drainBatch(outbound)) {
+                        writeFrame(out, frame);
+                    }
+                    out.flush();
+                    batchesFlushed.incrementAndGet();
+                }
+            } catch (IOException e) {
+                close();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        void readLoop() {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), 64 * 1024))) {
+                while (!closed) {
+                    Frame response = readFrame(in);
+                    CompletableFuture<byte[]> future = pending.remove(response.requestId());
+                    if (future == null) {
+                        continue;
+                    }
+                    if (response.typeOrStatus() == STATUS_OK) {
+                        future.complete(response.payload());
+                    } else {
+                        future.completeExceptionally(decodeError(response.payload()));
+                    }
+                }
+            } catch (IOException e) {
+                close();
+            }
+        }
+
+        void close() {
+            closed = true;
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+                // 关闭连接失败无需处理
+            }
+            TransException error = new TransException(HTTP_FAIL_CODE, "集群节点" + member.nodeId() + "连接已断开");
+            pending.values().forEach(future -> future.completeExceptionally(error));
+            pending.clear();
+        }
+    }
+}
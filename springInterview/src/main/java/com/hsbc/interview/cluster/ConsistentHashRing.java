@@ -0,0 +1,58 @@
+package com.hsbc.interview.cluster;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+/**
+ * 带虚拟节点的一致性哈希环（不可变，成员变化时整体替换）
+ * 每个物理节点在环上放置若干虚拟节点，成员增减时只有相邻区间的数据需要迁移
+ * @author wangwei
+ * @date 2026-10-19
+ */
+public final class ConsistentHashRing {
+
+    private final NavigableMap<Long, ClusterMember> ring = new TreeMap<>();
+
+    private final List<ClusterMember> members;
+
+    public ConsistentHashRing(Collection<ClusterMember> members, int virtualNodes) {
+        this.members = List.copyOf(members);
+        for (ClusterMember member : this.members) {
+            for (int i = 0; i < virtualNodes; i++) {
+                ring.put(hash(member.nodeId() + "#" + i), member);
+            }
+        }
+    }
+
+    /**
+     * @param key 分区键（用户ID）
+     * @return 负责该键的节点，环为空时返回null
+     */
+    public ClusterMember ownerOf(String key) {
+        if (ring.isEmpty()) {
+            return null;
+        }
+        Map.Entry<Long, ClusterMember> entry = ring.ceilingEntry(hash(key));
+        return entry != null ? entry.getValue() : ring.firstEntry().getValue();
+    }
+
+    public List<ClusterMember> getMembers() {
+        return members;
+    }
+
+    // MD5前8字节，分布均匀且各节点计算结果一致
+    static long hash(String key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("MD5").digest(key.getBytes(StandardCharsets.UTF_8));
+            long h = 0;
+            for (int i = 0; i < 8; i++) {
+                h = (h << 8) | (digest[i] & 0xff);
+            }
+            return h;
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
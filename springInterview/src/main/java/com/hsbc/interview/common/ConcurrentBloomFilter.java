@@ -0,0 +1,159 @@
+package com.hsbc.interview.common;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 无锁并发布隆过滤器
+ * 位数组使用AtomicLongArray，置位采用CAS，多线程同时写入和查询无需加锁；
+ * 只会误判存在，不会漏判，容量固定，扩容需重新构建
+ * @author wangwei
+ * @date 2026-10-19
+ */
+public class ConcurrentBloomFilter {
+
+    private final AtomicLongArray bits;
+
+    private final long bitSize;
+
+    private final int hashCount;
+
+    private final long expectedInsertions;
+
+    private final double fpp;
+
+    private final AtomicLong insertions = new AtomicLong();
+
+    private final AtomicLong bitCount = new AtomicLong();
+
+    /**
+     * @param expectedInsertions 预期元素数量
+     * @param fpp 预期误判率
+     */
+    public ConcurrentBloomFilter(long expectedInsertions, double fpp) {
+        if (fpp <= 0 || fpp >= 1) {
+            throw new IllegalArgumentException("误判率必须在(0,1)之间");
+        }
+        this.expectedInsertions = Math.max(expectedInsertions, 1);
+        this.fpp = fpp;
+        long m = (long) Math.ceil(-this.expectedInsertions * Math.log(fpp) / (Math.log(2) * Math.log(2)));
+        int words = (int) Math.min(Integer.MAX_VALUE - 8, (m + 63) >>> 6);
+        this.bits = new AtomicLongArray(words);
+        this.bitSize = (long) words << 6;
+        this.hashCount = Math.max(1, (int) Math.round((double) bitSize / this.expectedInsertions * Math.log(2)));
+    }
+
+    /**
+     * 写入元素
+     *
+     * @param value 元素
+     * @return 是否有新的位被置位（false表示元素可能已存在）
+     */
+    public boolean put(String value) {
+        long hash = hash(value);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        boolean changed = false;
+        for (int i = 1; i <= hashCount; i++) {
+            long combined = h1 + (long) i * h2;
+            if (combined < 0) {
+                combined = ~combined;
+            }
+            changed |= setBit(combined % bitSize);
+        }
+        // 没有新置位的写入大概率是重复元素，不计入容量
+        if (changed) {
+            insertions.incrementAndGet();
+        }
+        return changed;
+    }
+
+    /**
+     * 判断元素是否可能存在
+     *
+     * @param value 元素
+     * @return false表示一定不存在
+     */
+    public boolean mightContain(String value) {
+        long hash = hash(value);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 1; i <= hashCount; i++) {
+            long combined = h1 + (long) i * h2;
+            if (combined < 0) {
+                combined = ~combined;
+            }
+            long index = combined % bitSize;
+            if ((bits.get((int) (index >>> 6)) & (1L << index)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean setBit(long index) {
+        int word = (int) (index >>> 6);
+        long mask = 1L << index;
+        long current;
+        do {
+            current = bits.get(word);
+            if ((current & mask) != 0) {
+                return false;
+            }
+        } while (!bits.compareAndSet(word, current, current | mask));
+        bitCount.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * @return 按当前置位比例估算的实际误判率
+     */
+    public double currentFpp() {
+        return Math.pow((double) bitCount.get() / bitSize, hashCount);
+    }
+
+    /**
+     * @return 写入次数是否已超过预期容量
+     */
+    public boolean isSaturated() {
+        return insertions.get() > expectedInsertions;
+    }
+
+    public long getInsertions() {
+        return insertions.get();
+    }
+
+    public long getExpectedInsertions() {
+        return expectedInsertions;
+    }
+
+    public long getBitSize() {
+        return bitSize;
+    }
+
+    public int getHashCount() {
+        return hashCount;
+    }
+
+    public double getFpp() {
+        return fpp;
+    }
+
+    // 按字符做64位FNV-1a（不分配字节数组），再做一次murmur3的fmix64，保证高低32位都足够分散
+    private static long hash(String value) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            h ^= c & 0xff;
+            h *= 0x100000001b3L;
+            h ^= c >>> 8;
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -2,5 +2,8 @@ package com.hsbc.interview.common;
 
 public class Constant {
     public static final Integer HTTP_FAIL_CODE = 9999;
+    public static final Integer HTTP_CONFLICT_CODE = 9409;
+    public static final Integer HTTP_GONE_CODE = 9410;
+    public static final Integer HTTP_TOO_MANY_CODE = 9429;
     public static final String CACHE_LOCK_PREFIX = "LOCK_";
 }
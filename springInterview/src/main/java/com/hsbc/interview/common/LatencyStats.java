@@ -0,0 +1,68 @@
+package com.hsbc.interview.common;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 轻量延迟统计：次数、平均值与按2的幂分桶的近似分位数
+ * 记录操作只做一次计数累加，可在读路径上使用
+ * @author wangwei
+ * @date 2026-10-19
+ */
+public final class LatencyStats {
+
+    private final LongAdder count = new LongAdder();
+
+    private final LongAdder totalNanos = new LongAdder();
+
+    // 第i个桶记录 [2^i, 2^(i+1)) 纳秒的次数
+    private final AtomicLongArray buckets = new AtomicLongArray(64);
+
+    public void record(long nanos) {
+        long value = Math.max(1, nanos);
+        count.increment();
+        totalNanos.add(value);
+        buckets.incrementAndGet(63 - Long.numberOfLeadingZeros(value));
+    }
+
+    public long count() {
+        return count.sum();
+    }
+
+    /**
+     * @param quantile 分位（0-1）
+     * @return 该分位所在桶的上界（纳秒），无数据时返回0
+     */
+    public long quantileNanos(double quantile) {
+        long total = 0;
+        long[] snapshot = new long[buckets.length()];
+        for (int i = 0; i < snapshot.length; i++) {
+            snapshot[i] = buckets.get(i);
+            total += snapshot[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long target = (long) Math.ceil(total * quantile);
+        long seen = 0;
+        for (int i = 0; i < snapshot.length; i++) {
+            seen += snapshot[i];
+            if (seen >= target) {
+                return i >= 62 ? Long.MAX_VALUE : (1L << (i + 1)) - 1;
+            }
+        }
+        return Long.MAX_VALUE;
+    }
+
+    public Map<String, Object> toMap() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        long n = count.sum();
+        metrics.put("count", n);
+        metrics.put("avgNanos", n == 0 ? 0 : totalNanos.sum() / n);
+        metrics.put("p50Nanos", quantileNanos(0.50));
+        metrics.put("p99Nanos", quantileNanos(0.99));
+        return metrics;
+    }
+}
@@ -0,0 +1,114 @@
+package com.hsbc.interview.common;
+
+import com.hsbc.interview.dto.TransQryRsp;
+import com.hsbc.interview.entity.Transaction;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+
+/**
+ * 对象内存占用估算工具（按64位JVM开启压缩指针估算，只用于缓存权重，不追求精确）
+ * @author wangwei
+ * @date 2026-10-19
+ */
+public final class MemoryEstimator {
+
+    private static final int OBJECT_HEADER = 12;
+    private static final int REFERENCE = 4;
+    private static final int ARRAY_HEADER = 16;
+
+    private MemoryEstimator() {
+    }
+
+    private static long align(long size) {
+        return (size + 7) & ~7L;
+    }
+
+    public static long estimate(String value) {
+        if (value == null) {
+            return 0;
+        }
+        // String对象 + byte[]（紧凑字符串：全部字符在LATIN1范围内时每字符1字节，否则2字节）
+        return align(OBJECT_HEADER + 12) + align(ARRAY_HEADER + (long) value.length() * (isLatin1(value) ? 1 : 2));
+    }
+
+    private static boolean isLatin1(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) > 0xFF) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public static long estimate(BigDecimal value) {
+        if (value == null) {
+            return 0;
+        }
+        return align(OBJECT_HEADER + 24) + (value.precision() > 18 ? align(ARRAY_HEADER + value.precision() / 2) + 40 : 0);
+    }
+
+    public static long estimate(Transaction transaction) {
+        if (transaction == null) {
+            return 0;
+        }
+        long size = align(OBJECT_HEADER + 12L * REFERENCE);
+        size += estimate(transaction.getTransactionId());
+        size += estimate(transaction.getUserId());
+        size += estimate(transaction.getMerchantId());
+        size += estimate(transaction.getAmount());
+        size += estimate(transaction.getCreateUser());
+        size += estimate(transaction.getTransDate());
+        size += estimate(transaction.getUpdDate());
+        size += estimate(transaction.getUpdateUser());
+        return size;
+    }
+
+    /**
+     * 估算交易流水ID集合的占用，流水ID本身按固定长度估算，集合节点按ConcurrentHashMap节点估算
+     */
+    public static long estimateIdSet(Collection<String> ids) {
+        if (ids == null) {
+            return 0;
+        }
+        int size = ids.size();
+        // 表数组 + Node(hash,key,val,next) + 流水ID字符串
+        return align(OBJECT_HEADER + 64) + align(ARRAY_HEADER + (long) Integer.highestOneBit(Math.max(size, 1) * 2 - 1) * 2 * REFERENCE)
+                + size * (align(OBJECT_HEADER + 4 + 3L * REFERENCE) + estimate("T0000000000000000"));
+    }
+
+    public static long estimate(byte[] value) {
+        return value == null ? 0 : align(ARRAY_HEADER + value.length);
+    }
+
+    /**
+     * 估算流水号引用数组的占用，流水ID字符串与用户/商户索引共享，不重复计入
+     */
+    public static long estimateIdArray(long length) {
+        return align(ARRAY_HEADER + length * REFERENCE);
+    }
+
+    /**
+     * 估算跳表（ConcurrentSkipListSet）节点的占用，不含元素本身：
+     * 每个元素一个数据节点（对象头+键/值/后继引用），索引节点按1/4的概率逐层升级，平均每个元素约1/3个
+     */
+    public static long estimateSkipListNodes(long entries) {
+        long node = align(OBJECT_HEADER + 3L * REFERENCE);
+        return entries * node + entries / 3 * node;
+    }
+
+    public static long estimate(TransQryRsp rsp) {
+        if (rsp == null) {
+            return 0;
+        }
+        long size = align(OBJECT_HEADER + 4L * REFERENCE) + 3 * align(OBJECT_HEADER + 4);
+        if (rsp.getTransList() != null) {
+            size += align(ARRAY_HEADER + (long) rsp.getTransList().size() * REFERENCE);
+            for (Transaction transaction : rsp.getTransList()) {
+                // TransDataDto比Transaction多一个商户名称引用，商户名称为枚举常量共享
+                size += estimate(transaction) + REFERENCE;
+            }
+        }
+        return size;
+    }
+}
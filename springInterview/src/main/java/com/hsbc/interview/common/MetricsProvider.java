@@ -0,0 +1,21 @@
+package com.hsbc.interview.common;
+
+import java.util.Map;
+
+/**
+ * 指标提供者，由 /metrics 接口统一汇总输出
+ * @author wangwei
+ * @date 2026-10-19
+ */
+public interface MetricsProvider {
+
+    /**
+     * @return 指标分组名称
+     */
+    String metricsName();
+
+    /**
+     * @return 当前指标快照
+     */
+    Map<String, Object> metrics();
+}
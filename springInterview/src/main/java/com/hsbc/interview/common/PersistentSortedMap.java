@@ -0,0 +1,213 @@
+package com.hsbc.interview.common;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * 不可变的有序映射（按字符串键排序的AVL树，节点记录子树大小）
+ * 每次修改只复制从根到被修改节点路径上的 O(log n) 个节点，其余节点与修改前的版本共享，
+ * 旧版本保持不变，可被并发读取；按名次定位为 O(log n)，用于快照分页按偏移量直接定位
+ * @author wangwei
+ * @date 2026-10-19
+ */
+public final class PersistentSortedMap<V> {
+
+    private static final PersistentSortedMap<?> EMPTY = new PersistentSortedMap<>(null);
+
+    private record Node<V>(String key, V value, Node<V> left, Node<V> right, int height, int size) {
+    }
+
+    private final Node<V> root;
+
+    private PersistentSortedMap(Node<V> root) {
+        this.root = root;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <V> PersistentSortedMap<V> empty() {
+        return (PersistentSortedMap<V>) EMPTY;
+    }
+
+    public int size() {
+        return size(root);
+    }
+
+    public boolean isEmpty() {
+        return root == null;
+    }
+
+    /**
+     * @return 树高，即一次修改需要复制的节点数上限
+     */
+    public int height() {
+        return height(root);
+    }
+
+    public V get(String key) {
+        Node<V> node = root;
+        while (node != null) {
+            int cmp = key.compareTo(node.key);
+            if (cmp == 0) {
+                return node.value;
+            }
+            node = cmp < 0 ? node.left : node.right;
+        }
+        return null;
+    }
+
+    /**
+     * @methodName put
+     * @description 返回写入键值后的新版本，当前版本不变
+     * @param key 键
+     * @param value 值
+     * @return 新版本
+     * @author wangwei
+     * @date 2026/10/19
+     */
+    public PersistentSortedMap<V> put(String key, V value) {
+        return new PersistentSortedMap<>(put(root, key, value));
+    }
+
+    /**
+     * @methodName remove
+     * @description 返回删除键后的新版本，键不存在时返回当前版本
+     * @param key 键
+     * @return 新版本
+     * @author wangwei
+     * @date 2026/10/19
+     */
+    public PersistentSortedMap<V> remove(String key) {
+        Node<V> newRoot = remove(root, key);
+        return newRoot == root ? this : new PersistentSortedMap<>(newRoot);
+    }
+
+    /**
+     * @methodName valuesFrom
+     * @description 从第rank个（从0开始，按键升序）元素开始按序遍历值，定位为 O(log n)
+     * @param rank 起始名次
+     * @return 值迭代器
+     * @author wangwei
+     * @date 2026/10/19
+     */
+    public Iterator<V> valuesFrom(int rank) {
+        Deque<Node<V>> stack = new ArrayDeque<>();
+        Node<V> node = root;
+        int remaining = rank;
+        // 栈中保存后续需要访问的祖先节点（其左子树已跳过或正在遍历）
+        while (node != null) {
+            int leftSize = size(node.left);
+            if (remaining < leftSize) {
+                stack.push(node);
+                node = node.left;
+            } else if (remaining == leftSize) {
+                stack.push(node);
+                break;
+            } else {
+                remaining -= leftSize + 1;
+                node = node.right;
+            }
+        }
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return !stack.isEmpty();
+            }
+
+            @Override
+            public V next() {
+                if (stack.isEmpty()) {
+                    throw new NoSuchElementException();
+                }
+                Node<V> current = stack.pop();
+                for (Node<V> child = current.right; child != null; child = child.left) {
+                    stack.push(child);
+                }
+                return current.value;
+            }
+        };
+    }
+
+    private static int size(Node<?> node) {
+        return node == null ? 0 : node.size;
+    }
+
+    private static int height(Node<?> node) {
+        return node == null ? 0 : node.height;
+    }
+
+    private static <V> Node<V> node(String key, V value, Node<V> left, Node<V> right) {
+        return new Node<>(key, value, left, right, Math.max(height(left), height(right)) + 1,
+                size(left) + size(right) + 1);
+    }
+
+    private static <V> Node<V> put(Node<V> node, String key, V value) {
+        if (node == null) {
+            return node(key, value, null, null);
+        }
+        int cmp = key.compareTo(node.key);
+        if (cmp < 0) {
+            return balance(node.key, node.value, put(node.left, key, value), node.right);
+        }
+        if (cmp > 0) {
+            return balance(node.key, node.value, node.left, put(node.right, key, value));
+        }
+        return node(key, value, node.left, node.right);
+    }
+
+    private static <V> Node<V> remove(Node<V> node, String key) {
+        if (node == null) {
+            return null;
+        }
+        int cmp = key.compareTo(node.key);
+        if (cmp < 0) {
+            Node<V> left = remove(node.left, key);
+            return left == node.left ? node : balance(node.key, node.value, left, node.right);
+        }
+        if (cmp > 0) {
+            Node<V> right = remove(node.right, key);
+            return right == node.right ? node : balance(node.key, node.value, node.left, right);
+        }
+        if (node.left == null) {
+            return node.right;
+        }
+        if (node.right == null) {
+            return node.left;
+        }
+        // 用右子树的最小节点替换被删除的节点
+        Node<V> min = node.right;
+        while (min.left != null) {
+            min = min.left;
+        }
+        return balance(min.key, min.value, node.left, removeMin(node.right));
+    }
+
+    private static <V> Node<V> removeMin(Node<V> node) {
+        if (node.left == null) {
+            return node.right;
+        }
+        return balance(node.key, node.value, removeMin(node.left), node.right);
+    }
+
+    private static <V> Node<V> balance(String key, V value, Node<V> left, Node<V> right) {
+        int diff = height(left) - height(right);
+        if (diff > 1) {
+            if (height(left.left) >= height(left.right)) {
+                return node(left.key, left.value, left.left, node(key, value, left.right, right));
+            }
+            Node<V> pivot = left.right;
+            return node(pivot.key, pivot.value, node(left.key, left.value, left.left, pivot.left),
+                    node(key, value, pivot.right, right));
+        }
+        if (diff < -1) {
+            if (height(right.right) >= height(right.left)) {
+                return node(right.key, right.value, node(key, value, left, right.left), right.right);
+            }
+            Node<V> pivot = right.left;
+            return node(pivot.key, pivot.value, node(key, value, left, pivot.left),
+                    node(right.key, right.value, pivot.right, right.right));
+        }
+        return node(key, value, left, right);
+    }
+}
@@ -0,0 +1,28 @@
+package com.hsbc.interview.common;
+
+import static com.hsbc.interview.common.Constant.HTTP_TOO_MANY_CODE;
+
+/**
+ * 请求超出限流额度，retryAfterMillis 为下一次请求可以被接受的最短等待时间
+ * 限流拒绝是高频的正常分支，不记录调用栈
+ * @author wangwei
+ * @date 2026-10-19
+ */
+public class RateLimitException extends TransException {
+
+    private final long retryAfterMillis;
+
+    public RateLimitException(String message, long retryAfterMillis) {
+        super(HTTP_TOO_MANY_CODE, message);
+        this.retryAfterMillis = retryAfterMillis;
+    }
+
+    public long getRetryAfterMillis() {
+        return retryAfterMillis;
+    }
+
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+        return this;
+    }
+}
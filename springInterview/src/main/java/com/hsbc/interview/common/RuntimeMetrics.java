@@ -0,0 +1,75 @@
+package com.hsbc.interview.common;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.hsbc.interview.entity.Transaction;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.lang.management.*;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * JVM与缓存规模指标：堆内存、老年代GC后占用、GC次数与耗时、主缓存与索引缓存的条数，
+ * 用于长时间运行（压测、浸泡测试）时观察内存与缓存是否持续增长
+ * @author wangwei
+ * @date 2026-10-19
+ */
+@Component
+public class RuntimeMetrics implements MetricsProvider {
+
+    private static final long MB = 1024 * 1024;
+
+    private final Cache<String, Transaction> mainCache;
+
+    private final Cache<String, Set<String>> userIndexCache;
+
+    private final Cache<String, Set<String>> merchantIndexCache;
+
+    @Autowired
+    public RuntimeMetrics(Cache<String, Transaction> mainCache,
+                          Cache<String, Set<String>> userIndexCache,
+                          Cache<String, Set<String>> merchantIndexCache) {
+        this.mainCache = mainCache;
+        this.userIndexCache = userIndexCache;
+        this.merchantIndexCache = merchantIndexCache;
+    }
+
+    @Override
+    public String metricsName() {
+        return "runtime";
+    }
+
+    @Override
+    public Map<String, Object> metrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+        metrics.put("heapUsedMb", heap.getUsed() / MB);
+        metrics.put("heapCommittedMb", heap.getCommitted() / MB);
+        metrics.put("heapMaxMb", heap.getMax() / MB);
+        // 老年代最近一次GC后的占用，比瞬时占用更能反映是否有内存泄漏
+        long oldGenAfterGc = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            MemoryUsage collectionUsage = pool.getCollectionUsage();
+            if (pool.getType() == MemoryType.HEAP && collectionUsage != null
+                    && (pool.getName().contains("Old") || pool.getName().contains("Tenured"))) {
+                oldGenAfterGc += collectionUsage.getUsed();
+            }
+        }
+        metrics.put("oldGenAfterGcMb", oldGenAfterGc / MB);
+        long gcCount = 0;
+        long gcMillis = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            gcCount += Math.max(0, gc.getCollectionCount());
+            gcMillis += Math.max(0, gc.getCollectionTime());
+        }
+        metrics.put("gcCount", gcCount);
+        metrics.put("gcTimeMillis", gcMillis);
+        metrics.put("threads", ManagementFactory.getThreadMXBean().getThreadCount());
+        metrics.put("mainCacheSize", mainCache.estimatedSize());
+        metrics.put("userIndexKeys", userIndexCache.estimatedSize());
+        metrics.put("merchantIndexKeys", merchantIndexCache.estimatedSize());
+        return metrics;
+    }
+}
@@ -0,0 +1,81 @@
+package com.hsbc.interview.common;
+
+import com.hsbc.interview.entity.Transaction;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+
+/**
+ * 交易数据二进制编解码，用于节点间复制、磁盘落地等内部场景
+ * 字段按固定顺序写入，字符串允许为空（先写一个是否为空的标记）
+ * @author wangwei
+ * @date 2026-10-19
+ */
+public final class TransactionCodec {
+
+    private TransactionCodec() {
+    }
+
+    public static void write(DataOutput out, Transaction transaction) throws IOException {
+        writeString(out, transaction.getTransactionId());
+        writeString(out, transaction.getUserId());
+        writeString(out, transaction.getMerchantId());
+        writeDecimal(out, transaction.getAmount());
+        writeString(out, transaction.getCreateUser());
+        writeString(out, transaction.getTransDate());
+        writeString(out, transaction.getUpdDate());
+        writeString(out, transaction.getUpdateUser());
+        writeString(out, transaction.getRequestId());
+        out.writeLong(transaction.getVersion() == null ? 0 : transaction.getVersion());
+    }
+
+    public static Transaction read(DataInput in) throws IOException {
+        Transaction transaction = new Transaction();
+        transaction.setTransactionId(readString(in));
+        transaction.setUserId(readString(in));
+        transaction.setMerchantId(readString(in));
+        transaction.setAmount(readDecimal(in));
+        transaction.setCreateUser(readString(in));
+        transaction.setTransDate(readString(in));
+        transaction.setUpdDate(readString(in));
+        transaction.setUpdateUser(readString(in));
+        transaction.setRequestId(readString(in));
+        long version = in.readLong();
+        transaction.setVersion(version == 0 ? null : version);
+        return transaction;
+    }
+
+    public static void writeString(DataOutput out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    public static String readString(DataInput in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static void writeDecimal(DataOutput out, BigDecimal value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            byte[] unscaled = value.unscaledValue().toByteArray();
+            out.writeInt(value.scale());
+            out.writeShort(unscaled.length);
+            out.write(unscaled);
+        }
+    }
+
+    private static BigDecimal readDecimal(DataInput in) throws IOException {
+        if (!in.readBoolean()) {
+            return null;
+        }
+        int scale = in.readInt();
+        byte[] unscaled = new byte[in.readUnsignedShort()];
+        in.readFully(unscaled);
+        return new BigDecimal(new BigInteger(unscaled), scale);
+    }
+}
@@ -2,33 +2,100 @@ package com.hsbc.interview.config;
 
 import com.github.benmanes.caffeine.cache.Cache;
 import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
 import com.hsbc.interview.entity.Transaction;
+import com.hsbc.interview.service.OrderedIdIndex;
+import com.hsbc.interview.service.TransactionService;
+import com.hsbc.interview.storage.SegmentDiskTier;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.io.IOException;
 import java.util.Set;
 
 @Configuration
 public class CacheConfig {
 
     @Bean
-    public Cache<String, Transaction> mainCache() {
-        return Caffeine.newBuilder()
-                .maximumSize(10000)
-                .build();
+    public OrderedIdIndex orderedIdIndex() {
+        return new OrderedIdIndex();
+    }
+
+    /**
+     * 磁盘层：主缓存容量淘汰的数据降级到本地内存映射段文件，显式开启 trans.tier.enabled 时才创建
+     */
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(prefix = "trans.tier", name = "enabled", havingValue = "true")
+    public SegmentDiskTier segmentDiskTier(@Value("${trans.tier.dir:${java.io.tmpdir}/trans-tier}") String directory,
+                                           @Value("${trans.tier.segment-mb:64}") int segmentMb,
+                                           @Value("${trans.tier.compact-live-ratio:0.5}") double compactLiveRatio,
+                                           @Value("${trans.tier.promote-on-read:true}") boolean promoteOnRead) throws IOException {
+        return new SegmentDiskTier(directory, segmentMb, compactLiveRatio, promoteOnRead);
     }
 
+    /**
+     * 主缓存：启用内存预算时按交易估算字节数加权，上限由预算按优先级分配；否则按条数限制。
+     * 未启用磁盘层时被淘汰的交易不再可读，同步从用户/商户索引与各派生索引中移除，索引用量随主缓存一起受预算约束
+     */
     @Bean
-    public Cache<String, Set<String>> userIndexCache() {
-        return Caffeine.newBuilder()
-                .maximumSize(1000)
-                .build();
+    public Cache<String, Transaction> mainCache(OrderedIdIndex orderedIdIndex,
+                                                ObjectProvider<SegmentDiskTier> diskTierProvider,
+                                                ObjectProvider<TransactionService> transactionServiceProvider,
+                                                MemoryBudgetManager memoryBudget,
+                                                @Value("${trans.cache.main-max-size:10000}") long maximumSize) {
+        SegmentDiskTier diskTier = diskTierProvider.getIfAvailable();
+        Caffeine<String, Transaction> builder = Caffeine.newBuilder()
+                // 容量淘汰的数据降级到磁盘层，仍保留在有序索引中；未启用磁盘层时同步清理有序索引
+                .evictionListener((String key, Transaction value, RemovalCause cause) -> {
+                    if (diskTier != null && cause == RemovalCause.SIZE && value != null) {
+                        diskTier.put(value);
+                    } else {
+                        orderedIdIndex.remove(key);
+                        // 服务依赖主缓存，淘汰时再取
+                        TransactionService transactionService = transactionServiceProvider.getIfAvailable();
+                        if (transactionService != null && value != null) {
+                            transactionService.onCapacityEvicted(value);
+                        }
+                    }
+                });
+        if (memoryBudget.isEnabled()) {
+            builder.maximumWeight(memoryBudget.getBudgetBytes())
+                    .weigher((String key, Transaction value) -> MemoryBudgetManager.weigh(key, value));
+        } else {
+            builder.maximumSize(maximumSize);
+        }
+        Cache<String, Transaction> cache = builder.build();
+        memoryBudget.register(MemoryBudgetManager.MAIN_CACHE, cache, true);
+        return cache;
     }
 
     @Bean
-    public Cache<String, Set<String>> merchantIndexCache() {
-        return Caffeine.newBuilder()
-                .maximumSize(1000)
+    public Cache<String, Set<String>> userIndexCache(MemoryBudgetManager memoryBudget) {
+        return indexCache(memoryBudget, MemoryBudgetManager.USER_INDEX);
+    }
+
+    @Bean
+    public Cache<String, Set<String>> merchantIndexCache(MemoryBudgetManager memoryBudget) {
+        return indexCache(memoryBudget, MemoryBudgetManager.MERCHANT_INDEX);
+    }
+
+    /**
+     * 索引缓存：启用内存预算时按集合估算字节数计入预算但不淘汰（淘汰会使查询丢失数据），否则按键数限制
+     */
+    private static Cache<String, Set<String>> indexCache(MemoryBudgetManager memoryBudget, String name) {
+        if (!memoryBudget.isEnabled()) {
+            return Caffeine.newBuilder()
+                    .maximumSize(1000)
+                    .build();
+        }
+        Cache<String, Set<String>> cache = Caffeine.newBuilder()
+                .maximumWeight(Long.MAX_VALUE)
+                .weigher((String key, Set<String> ids) -> MemoryBudgetManager.weigh(key, ids))
                 .build();
+        memoryBudget.register(name, cache, false);
+        return cache;
     }
 }
\ No newline at end of file
@@ -5,17 +5,16 @@ import com.github.benmanes.caffeine.cache.Caffeine;
 import org.springframework.stereotype.Component;
 
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicBoolean;
 
 @Component
 public class CacheLockManager {
 
-    private final Cache<String, AtomicBoolean> lockCache;
+    private final Cache<String, Boolean> lockCache;
 
     public CacheLockManager() {
-        // 缓存配置（最大1000个锁，1分钟过期）
+        // 缓存中只保存持有中的锁，释放时移除；不按容量淘汰，持有中的锁被淘汰后其他线程会再次获得同一把锁。
+        // 1分钟过期只用于回收未释放的锁
         lockCache = Caffeine.newBuilder()
-                .maximumSize(1000)
                 .expireAfterWrite(1, TimeUnit.MINUTES)
                 .build();
     }
@@ -27,15 +26,7 @@ public class CacheLockManager {
      * @return 如果成功获取锁，返回 true；否则返回 false
      */
     public boolean tryLock(String lockKey) {
-        AtomicBoolean lock = lockCache.getIfPresent(lockKey);
-        if (lock == null) {
-            lock = new AtomicBoolean(false);
-            AtomicBoolean existingLock = lockCache.asMap().putIfAbsent(lockKey, lock);
-            if (existingLock == null) {
-                return lock.compareAndSet(false, true);
-            }
-        }
-        return lock.compareAndSet(false, true);
+        return lockCache.asMap().putIfAbsent(lockKey, Boolean.TRUE) == null;
     }
 
     /**
@@ -44,9 +35,6 @@ public class CacheLockManager {
      * @param lockKey 锁的键
      */
     public void unlock(String lockKey) {
-        AtomicBoolean lock = lockCache.getIfPresent(lockKey);
-        if (lock != null) {
-            lock.set(false);
-        }
+        lockCache.invalidate(lockKey);
     }
 }
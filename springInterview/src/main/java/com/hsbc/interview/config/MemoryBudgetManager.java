@@ -0,0 +1,250 @@
+package com.hsbc.interview.config;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Policy;
+import com.hsbc.interview.common.MemoryEstimator;
+import com.hsbc.interview.common.MetricsProvider;
+import com.hsbc.interview.entity.Transaction;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * 全局内存预算
+ * 主缓存、用户/商户索引、查询结果缓存、组合索引与单条编码缓存都按估算的字节数加权（Caffeine weigher），共享一个总预算：
+ * 索引是查询的唯一依据，淘汰会丢失数据，因此只计入用量、不设上限；金额索引、快照版本链等不是Caffeine缓存的结构
+ * 以估算函数登记，同样只计入用量；其余缓存按优先级分配剩余预算，
+ * 优先级高的缓存可以使用除低优先级缓存保底额度之外的全部剩余预算，低优先级缓存先被压缩到保底额度；
+ * 注册时缓存自身的容量上限（如查询结果缓存的 max-weight-mb）作为其上限，分配的额度不会超过它。
+ * 各缓存的上限按 rebalance-ms 间隔重新计算，两次计算之间的超出量不超过这段时间内的增长量；
+ * 索引用量加各缓存保底额度超过预算时标记为超预算并记录日志
+ * @author wangwei
+ * @date 2026-10-19
+ */
+@Component
+@Log4j2
+public class MemoryBudgetManager implements MetricsProvider {
+
+    public static final String MAIN_CACHE = "mainCache";
+    public static final String USER_INDEX = "userIndex";
+    public static final String MERCHANT_INDEX = "merchantIndex";
+    public static final String QUERY_CACHE = "queryResultCache";
+    public static final String COMPOSITE_INDEX = "compositeIndex";
+    public static final String FAST_GET = "fastGetEncoded";
+    public static final String AMOUNT_INDEX = "amountIndex";
+    public static final String SNAPSHOT_INDEX = "snapshotIndex";
+
+    // Caffeine每个条目的节点开销（键值引用、访问顺序、权重等）
+    private static final int ENTRY_OVERHEAD = 64;
+
+    /**
+     * 纳入预算的一个缓存
+     */
+    private record Budgeted(String name, Cache<?, ?> cache, Policy.Eviction<?, ?> eviction, boolean evictable,
+                            int priority, long floorBytes, long ceilingBytes) {
+        long usedBytes() {
+            cache.cleanUp();
+            return eviction.weightedSize().orElse(0L);
+        }
+    }
+
+    /**
+     * 纳入预算的非缓存结构，按估算函数计入用量
+     */
+    private record Pinned(String name, LongSupplier usedBytes, LongSupplier entries) {
+    }
+
+    private final boolean enabled;
+
+    private final long budgetBytes;
+
+    private final Map<String, Integer> priorities;
+
+    private final Map<String, Long> floors;
+
+    private final List<Budgeted> caches = new CopyOnWriteArrayList<>();
+
+    private final List<Pinned> pinnedConsumers = new CopyOnWriteArrayList<>();
+
+    private volatile boolean overBudget;
+
+    private final AtomicLong rebalances = new AtomicLong();
+
+    @Autowired
+    public MemoryBudgetManager(@Value("${trans.memory.enabled:true}") boolean enabled,
+                               @Value("${trans.memory.budget-mb:0}") long budgetMb,
+                               @Value("${trans.memory.priority.main-cache:20}") int mainPriority,
+                               @Value("${trans.memory.priority.query-cache:10}") int queryPriority,
+                               @Value("${trans.memory.floor-mb.main-cache:16}") long mainFloorMb,
+                               @Value("${trans.memory.floor-mb.query-cache:0}") long queryFloorMb) {
+        this.enabled = enabled;
+        // 未配置时取最大堆的一半
+        this.budgetBytes = budgetMb > 0 ? budgetMb * 1024 * 1024 : Runtime.getRuntime().maxMemory() / 2;
+        this.priorities = Map.of(MAIN_CACHE, mainPriority, QUERY_CACHE, queryPriority);
+        this.floors = Map.of(MAIN_CACHE, mainFloorMb * 1024 * 1024, QUERY_CACHE, queryFloorMb * 1024 * 1024);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public long getBudgetBytes() {
+        return budgetBytes;
+    }
+
+    /**
+     * @return 交易在主缓存中的估算字节数
+     */
+    public static int weigh(String transactionId, Transaction transaction) {
+        return clamp(ENTRY_OVERHEAD + MemoryEstimator.estimate(transactionId) + MemoryEstimator.estimate(transaction));
+    }
+
+    /**
+     * @return 索引集合的估算字节数，集合在compute中修改后重新计算
+     */
+    public static int weigh(String key, Set<String> transactionIds) {
+        return clamp(ENTRY_OVERHEAD + MemoryEstimator.estimate(key) + MemoryEstimator.estimateIdSet(transactionIds));
+    }
+
+    /**
+     * @return 编码结果在缓存中的估算字节数
+     */
+    public static int weigh(String key, byte[] encoded) {
+        return clamp(ENTRY_OVERHEAD + MemoryEstimator.estimate(key) + MemoryEstimator.estimate(encoded));
+    }
+
+    private static int clamp(long bytes) {
+        return (int) Math.min(bytes, Integer.MAX_VALUE);
+    }
+
+    /**
+     * @methodName register
+     * @description 把按字节加权的缓存纳入预算；可淘汰的缓存按配置的优先级与保底额度分配上限，不可淘汰的只计入用量
+     * @param name 缓存名称
+     * @param cache 以maximumWeight构建的缓存
+     * @param evictable 是否可淘汰
+     * @return
+     * @author wangwei
+     * @date 2026/10/19
+     */
+    public void register(String name, Cache<?, ?> cache, boolean evictable) {
+        if (!enabled) {
+            return;
+        }
+        Policy.Eviction<?, ?> eviction = cache.policy().eviction()
+                .filter(policy -> policy.isWeighted())
+                .orElseThrow(() -> new IllegalArgumentException("缓存【" + name + "】未按权重限制容量"));
+        caches.add(new Budgeted(name, cache, eviction, evictable, priorities.getOrDefault(name, 0),
+                floors.getOrDefault(name, 0L), eviction.getMaximum()));
+        rebalance();
+    }
+
+    /**
+     * @methodName registerPinned
+     * @description 把不是Caffeine缓存的常驻结构纳入预算，只计入用量、不限制容量
+     * @param name 结构名称
+     * @param usedBytes 估算的占用字节数，须为O(1)计算
+     * @param entries 条目数
+     * @return
+     * @author wangwei
+     * @date 2026/10/19
+     */
+    public void registerPinned(String name, LongSupplier usedBytes, LongSupplier entries) {
+        if (!enabled) {
+            return;
+        }
+        pinnedConsumers.add(new Pinned(name, usedBytes, entries));
+        rebalance();
+    }
+
+    /**
+     * @methodName rebalance
+     * @description 按当前用量重新分配各可淘汰缓存的上限：按优先级从高到低，每个缓存的上限为剩余预算减去更低优先级缓存的保底额度
+     * @return
+     * @author wangwei
+     * @date 2026/10/19
+     */
+    @Scheduled(fixedDelayString = "${trans.memory.rebalance-ms:1000}")
+    public synchronized void rebalance() {
+        if (!enabled || caches.isEmpty()) {
+            return;
+        }
+        rebalances.incrementAndGet();
+        long pinned = 0;
+        for (Pinned consumer : pinnedConsumers) {
+            pinned += consumer.usedBytes().getAsLong();
+        }
+        long floorTotal = 0;
+        List<Budgeted> evictable = new ArrayList<>();
+        for (Budgeted budgeted : caches) {
+            if (budgeted.evictable()) {
+                evictable.add(budgeted);
+                floorTotal += budgeted.floorBytes();
+            } else {
+                pinned += budgeted.usedBytes();
+            }
+        }
+        evictable.sort(Comparator.comparingInt(Budgeted::priority).reversed());
+        long remaining = budgetBytes - pinned;
+        long floorsBelow = floorTotal;
+        for (Budgeted budgeted : evictable) {
+            floorsBelow -= budgeted.floorBytes();
+            long limit = Math.min(budgeted.ceilingBytes(), Math.max(budgeted.floorBytes(), remaining - floorsBelow));
+            budgeted.eviction().setMaximum(limit);
+            remaining -= Math.min(budgeted.usedBytes(), limit);
+        }
+        boolean over = pinned + floorTotal > budgetBytes;
+        if (over && !overBudget) {
+            log.warn("内存预算不足：索引等常驻结构占用{}MB，加各缓存保底额度超过预算{}MB", pinned >> 20, budgetBytes >> 20);
+        }
+        overBudget = over;
+    }
+
+    @Override
+    public String metricsName() {
+        return "memory";
+    }
+
+    @Override
+    public Map<String, Object> metrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("enabled", enabled);
+        metrics.put("budgetBytes", budgetBytes);
+        long used = 0;
+        Map<String, Object> perCache = new LinkedHashMap<>();
+        for (Budgeted budgeted : caches) {
+            long usedBytes = budgeted.usedBytes();
+            used += usedBytes;
+            Map<String, Object> cacheMetrics = new LinkedHashMap<>();
+            cacheMetrics.put("usedBytes", usedBytes);
+            cacheMetrics.put("limitBytes", budgeted.evictable() ? budgeted.eviction().getMaximum() : null);
+            cacheMetrics.put("entries", budgeted.cache().estimatedSize());
+            cacheMetrics.put("priority", budgeted.evictable() ? budgeted.priority() : null);
+            cacheMetrics.put("evictable", budgeted.evictable());
+            perCache.put(budgeted.name(), cacheMetrics);
+        }
+        for (Pinned consumer : pinnedConsumers) {
+            long usedBytes = consumer.usedBytes().getAsLong();
+            used += usedBytes;
+            Map<String, Object> cacheMetrics = new LinkedHashMap<>();
+            cacheMetrics.put("usedBytes", usedBytes);
+            cacheMetrics.put("limitBytes", null);
+            cacheMetrics.put("entries", consumer.entries().getAsLong());
+            cacheMetrics.put("priority", null);
+            cacheMetrics.put("evictable", false);
+            perCache.put(consumer.name(), cacheMetrics);
+        }
+        metrics.put("usedBytes", used);
+        metrics.put("overBudget", overBudget);
+        metrics.put("rebalances", rebalances.get());
+        metrics.put("caches", perCache);
+        return metrics;
+    }
+}
@@ -0,0 +1,156 @@
+package com.hsbc.interview.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.hsbc.interview.dto.BaseResponse;
+import com.hsbc.interview.dto.TransQryRequest;
+import com.hsbc.interview.dto.TransQryRsp;
+import com.hsbc.interview.entity.Transaction;
+import com.hsbc.interview.service.AmountOrderedIndex;
+import com.hsbc.interview.service.OrderedIdIndex;
+import com.hsbc.interview.service.QueryResultCache;
+import com.hsbc.interview.service.TransactionBloomGuard;
+import com.hsbc.interview.service.TransactionQueryPlanner;
+import com.hsbc.interview.service.TransactionScanEngine;
+import com.hsbc.interview.service.TransactionService;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 启动预热：在所有单例创建完成后、Web服务开始接收请求之前，反复执行新增与各类查询，
+ * 让热点路径（addTransaction、searchTrans、删除、索引与Caffeine读写、Jackson编解码）完成类加载并被JIT编译。
+ * 预热使用独立的服务实例与缓存，按线上相同的方式装配全量扫描、结果缓存、查询计划、布隆过滤器与金额索引，
+ * 各类查询走与线上一致的计划与缓存路径；不写入业务数据、不触发变更监听（CDC、复制日志等），
+ * 只对共享的ObjectMapper编解码响应，预热其序列化器缓存。
+ * 与CRaC一起使用时（-Dspring.context.checkpoint=onRefresh），检查点在预热之后生成，恢复后的进程即为预热后的状态；
+ * 检查点不能带着打开的文件与内存映射，faststart配置显式关闭磁盘层与变更落盘。
+ * AOT处理在构建时固定条件注解的结果，因此开关在运行时判断而不用 @ConditionalOnProperty
+ * @author wangwei
+ * @date 2026-10-19
+ */
+@Component
+@Log4j2
+public class StartupWarmup implements SmartInitializingSingleton {
+
+    private static final int USERS = 1000;
+
+    private static final int MERCHANTS = 100;
+
+    // 只保留最近的交易，超出后删除最早的，数据量与每次操作的耗时保持稳定
+    private static final int WINDOW = 2000;
+
+    private static final long QUERY_CACHE_MB = 16;
+
+    private final ObjectMapper objectMapper;
+
+    private final boolean enabled;
+
+    private final int iterations;
+
+    private final long maxMillis;
+
+    @Autowired
+    public StartupWarmup(ObjectMapper objectMapper,
+                         @Value("${trans.warmup.enabled:false}") boolean enabled,
+                         @Value("${trans.warmup.iterations:20000}") int iterations,
+                         @Value("${trans.warmup.max-millis:10000}") long maxMillis) {
+        this.objectMapper = objectMapper;
+        this.enabled = enabled;
+        this.iterations = iterations;
+        this.maxMillis = maxMillis;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        if (!enabled) {
+            return;
+        }
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(maxMillis);
+        TransactionService service = newService();
+        String[] window = new String[WINDOW];
+        int done = 0;
+        try {
+            for (; done < iterations && System.nanoTime() < deadline; done++) {
+                String transactionId = service.addTransaction(transaction(done));
+                if (window[done % WINDOW] != null) {
+                    service.removeTransaction(window[done % WINDOW]);
+                }
+                window[done % WINDOW] = transactionId;
+                String json = objectMapper.writeValueAsString(service.getTransaction(transactionId));
+                objectMapper.readValue(json, Transaction.class);
+                TransQryRequest req = new TransQryRequest();
+                switch (done % 5) {
+                    case 0 -> req.setTransactionId(transactionId);
+                    case 1 -> req.setUserId("warmup-user" + done % USERS);
+                    case 2 -> req.setMerchantId(String.valueOf(done % MERCHANTS));
+                    case 3 -> {
+                        req.setUserId("warmup-user" + done % USERS);
+                        req.setMerchantId(String.valueOf(done % MERCHANTS));
+                    }
+                    default -> {
+                        req.setMerchantId(String.valueOf(done % MERCHANTS));
+                        req.setSortBy("amount");
+                    }
+                }
+                service.searchTrans(req);
+                // 相同条件再查一次，命中结果缓存
+                TransQryRsp rsp = service.searchTrans(req);
+                objectMapper.writeValueAsBytes(BaseResponse.success(rsp));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        log.info("启动预热完成：{}次新增与查询，耗时{}ms", done, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    /**
+     * @methodName newService
+     * @description 创建预热用的服务实例，装配方式与容器中的TransactionService相同，数据与缓存均为独立实例
+     * @return 预热用的服务实例
+     * @author wangwei
+     * @date 2026/10/19
+     */
+    private static TransactionService newService() {
+        Cache<String, Transaction> mainCache = Caffeine.newBuilder().build();
+        Cache<String, Set<String>> userIndexCache = Caffeine.newBuilder().build();
+        Cache<String, Set<String>> merchantIndexCache = Caffeine.newBuilder().build();
+        TransactionScanEngine scanEngine = new TransactionScanEngine(mainCache, new OrderedIdIndex());
+        QueryResultCache queryResultCache = new QueryResultCache(QUERY_CACHE_MB, WINDOW * 10L);
+        // 每个用户只有少量交易，阈值取较小值使用户+商户查询也经过组合索引的物化与复用
+        TransactionQueryPlanner queryPlanner = new TransactionQueryPlanner(2, WINDOW * 10L, USERS * 10L);
+        queryPlanner.setQueryResultCache(queryResultCache);
+        TransactionBloomGuard bloomGuard = new TransactionBloomGuard(mainCache, userIndexCache, merchantIndexCache,
+                0.01, WINDOW * 10L);
+        AmountOrderedIndex amountIndex = new AmountOrderedIndex();
+        TransactionService service = new TransactionService(mainCache, userIndexCache, merchantIndexCache,
+                new CacheLockManager());
+        service.setScanEngine(scanEngine);
+        service.setQueryResultCache(queryResultCache);
+        service.setQueryPlanner(queryPlanner);
+        service.setBloomGuard(bloomGuard);
+        service.setAmountIndex(amountIndex);
+        service.setMutationListeners(List.of(scanEngine, queryResultCache, queryPlanner, bloomGuard, amountIndex));
+        return service;
+    }
+
+    private static Transaction transaction(int i) {
+        Transaction transaction = new Transaction();
+        transaction.setUserId("warmup-user" + i % USERS);
+        transaction.setMerchantId(String.valueOf(i % MERCHANTS));
+        transaction.setAmount(BigDecimal.valueOf(i % 1000, 2));
+        transaction.setCreateUser(transaction.getUserId());
+        return transaction;
+    }
+}
@@ -0,0 +1,25 @@
+package com.hsbc.interview.config;
+
+import com.hsbc.interview.wire.TransBinaryHttpMessageConverter;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.List;
+
+/**
+ * Web层配置
+ * @author wangwei
+ * @date 2026-10-19
+ */
+@Configuration
+public class WebConfig implements WebMvcConfigurer {
+
+    /**
+     * 追加交易二进制格式，客户端通过 Content-Type / Accept 选择，默认仍为JSON
+     */
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        converters.add(new TransBinaryHttpMessageConverter());
+    }
+}
@@ -0,0 +1,77 @@
+package com.hsbc.interview.controller;
+
+import com.hsbc.interview.bulk.BulkImportService;
+import com.hsbc.interview.dto.BaseResponse;
+import com.hsbc.interview.dto.BulkImportRequest;
+import com.hsbc.interview.dto.BulkImportStatus;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * 历史交易批量导入：提交任务、查询进度、取消与断点恢复
+ * @author wangwei
+ * @date 2026-10-19
+ **/
+@RestController
+@RequestMapping("/import")
+public class BulkImportController {
+
+    @Autowired
+    private BulkImportService bulkImportService;
+
+    /**
+     * 导入服务器本地文件（CSV带表头或NDJSON），异步执行
+     *
+     * @param request 文件路径与格式，格式为空时按扩展名识别
+     * @return 任务进度
+     */
+    @PostMapping("/jobs")
+    public BaseResponse<BulkImportStatus> importFile(@RequestBody BulkImportRequest request) {
+        return BaseResponse.success(bulkImportService.importFile(request));
+    }
+
+    /**
+     * 流式上传导入，请求体为文件内容（表单编码的请求体会被容器解析为参数，因此不接受）
+     *
+     * @param format 文件格式 CSV/NDJSON
+     * @param request 请求
+     * @return 任务进度
+     */
+    @PostMapping(value = "/upload", consumes = {MediaType.APPLICATION_OCTET_STREAM_VALUE, MediaType.TEXT_PLAIN_VALUE,
+            "text/csv", "application/x-ndjson"})
+    public BaseResponse<BulkImportStatus> upload(@RequestParam String format, HttpServletRequest request) throws IOException {
+        return BaseResponse.success(bulkImportService.importUpload(request.getInputStream(), format));
+    }
+
+    @GetMapping("/jobs")
+    public BaseResponse<List<BulkImportStatus>> list() {
+        return BaseResponse.success(bulkImportService.list());
+    }
+
+    @GetMapping("/jobs/{jobId}")
+    public BaseResponse<BulkImportStatus> status(@PathVariable String jobId) {
+        return BaseResponse.success(bulkImportService.status(jobId));
+    }
+
+    @PostMapping("/jobs/{jobId}/cancel")
+    public BaseResponse<BulkImportStatus> cancel(@PathVariable String jobId) {
+        bulkImportService.cancel(jobId);
+        return BaseResponse.success(bulkImportService.status(jobId));
+    }
+
+    /**
+     * 恢复已取消、失败或进程重启前未完成的任务
+     *
+     * @param jobId 任务ID
+     * @return 任务进度
+     */
+    @PostMapping("/jobs/{jobId}/resume")
+    public BaseResponse<BulkImportStatus> resume(@PathVariable String jobId) {
+        return BaseResponse.success(bulkImportService.resume(jobId));
+    }
+}
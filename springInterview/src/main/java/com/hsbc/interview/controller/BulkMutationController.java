@@ -0,0 +1,56 @@
+package com.hsbc.interview.controller;
+
+import com.hsbc.interview.bulk.BulkMutationService;
+import com.hsbc.interview.dto.BaseResponse;
+import com.hsbc.interview.dto.BulkMutationRequest;
+import com.hsbc.interview.dto.BulkMutationStatus;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+/**
+ * 批量删除/批量修改：提交任务、查询进度与取消
+ * @author wangwei
+ * @date 2026-10-19
+ **/
+@RestController
+@RequestMapping("/bulk")
+public class BulkMutationController {
+
+    @Autowired
+    private BulkMutationService bulkMutationService;
+
+    /**
+     * 提交批量任务，异步执行
+     *
+     * @param request 操作类型（delete/reassignMerchant）与目标条件
+     * @return 任务进度
+     */
+    @PostMapping("/jobs")
+    public BaseResponse<BulkMutationStatus> submit(@RequestBody BulkMutationRequest request) {
+        return BaseResponse.success(bulkMutationService.submit(request));
+    }
+
+    @GetMapping("/jobs")
+    public BaseResponse<List<BulkMutationStatus>> list() {
+        return BaseResponse.success(bulkMutationService.list());
+    }
+
+    @GetMapping("/jobs/{jobId}")
+    public BaseResponse<BulkMutationStatus> status(@PathVariable String jobId) {
+        return BaseResponse.success(bulkMutationService.status(jobId));
+    }
+
+    /**
+     * 取消任务，当前批完成后停止，已完成的批不回滚
+     *
+     * @param jobId 任务ID
+     * @return 任务进度
+     */
+    @PostMapping("/jobs/{jobId}/cancel")
+    public BaseResponse<BulkMutationStatus> cancel(@PathVariable String jobId) {
+        bulkMutationService.cancel(jobId);
+        return BaseResponse.success(bulkMutationService.status(jobId));
+    }
+}
@@ -0,0 +1,104 @@
+package com.hsbc.interview.controller;
+
+import com.hsbc.interview.cdc.ChangeBatch;
+import com.hsbc.interview.cdc.ChangeEvent;
+import com.hsbc.interview.cdc.ChangeFeed;
+import com.hsbc.interview.common.TransException;
+import com.hsbc.interview.dto.BaseResponse;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+
+/**
+ * 交易变更订阅：长轮询与SSE两种方式，按序号断点续传
+ * @author wangwei
+ * @date 2026-10-19
+ **/
+@RestController
+@RequestMapping("/cdc")
+@ConditionalOnProperty(prefix = "trans.cdc", name = "enabled", havingValue = "true")
+@Log4j2
+public class ChangeFeedController {
+
+    private static final int MAX_BATCH = 1000;
+    private static final long MAX_WAIT_MILLIS = 30000;
+    private static final long STREAM_POLL_MILLIS = 15000;
+
+    @Autowired
+    private ChangeFeed changeFeed;
+
+    /**
+     * 长轮询拉取变更事件
+     *
+     * @param fromSeq 起始序号（包含），上次返回的nextSeq；不传时从最早可读的事件开始
+     * @param max 最多返回条数
+     * @param waitMillis 暂无新事件时的最长等待时间
+     * @return 事件批次，序号已过期时返回410
+     */
+    @GetMapping("/events")
+    public BaseResponse<ChangeBatch> events(@RequestParam(defaultValue = "0") long fromSeq,
+                                            @RequestParam(defaultValue = "500") int max,
+                                            @RequestParam(defaultValue = "10000") long waitMillis) throws InterruptedException {
+        return BaseResponse.success(changeFeed.poll(fromSeq, Math.max(1, Math.min(max, MAX_BATCH)),
+                Math.max(0, Math.min(waitMillis, MAX_WAIT_MILLIS))));
+    }
+
+    /**
+     * SSE推送变更事件，事件id为序号，断线重连时浏览器/客户端携带Last-Event-ID从下一条继续
+     *
+     * @param fromSeq 起始序号（包含），未携带Last-Event-ID时生效
+     * @param lastEventId 最后收到的事件序号
+     * @return SSE连接
+     */
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter stream(@RequestParam(defaultValue = "0") long fromSeq,
+                             @RequestHeader(value = "Last-Event-ID", required = false) Long lastEventId) {
+        SseEmitter emitter = new SseEmitter(0L);
+        long start = lastEventId != null ? lastEventId + 1 : fromSeq;
+        // 每个连接一个虚拟线程推送，消费方读取慢只阻塞自己的线程
+        Thread.ofVirtual().name("cdc-stream").start(() -> push(emitter, start));
+        return emitter;
+    }
+
+    private void push(SseEmitter emitter, long fromSeq) {
+        changeFeed.streamOpened();
+        long next = fromSeq;
+        try {
+            while (true) {
+                ChangeBatch batch = changeFeed.poll(next, MAX_BATCH, STREAM_POLL_MILLIS);
+                if (batch.events().isEmpty()) {
+                    // 心跳，同时尽早发现已断开的连接
+                    emitter.send(SseEmitter.event().comment("epoch " + batch.epoch()));
+                }
+                for (ChangeEvent event : batch.events()) {
+                    emitter.send(SseEmitter.event().id(String.valueOf(event.seq())).name(event.op().name())
+                            .data(event, MediaType.APPLICATION_JSON));
+                }
+                next = batch.nextSeq();
+            }
+        } catch (TransException e) {
+            sendQuietly(emitter, e.getMessage());
+            emitter.complete();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            emitter.complete();
+        } catch (IOException | IllegalStateException e) {
+            log.debug("变更订阅连接已断开", e);
+        } finally {
+            changeFeed.streamClosed();
+        }
+    }
+
+    private void sendQuietly(SseEmitter emitter, String message) {
+        try {
+            emitter.send(SseEmitter.event().name("GONE").data(message));
+        } catch (IOException | IllegalStateException e) {
+            log.debug("变更订阅连接已断开", e);
+        }
+    }
+}
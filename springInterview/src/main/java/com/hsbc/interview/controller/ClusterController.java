@@ -0,0 +1,46 @@
+package com.hsbc.interview.controller;
+
+import com.hsbc.interview.cluster.ClusterMember;
+import com.hsbc.interview.cluster.ClusterNode;
+import com.hsbc.interview.dto.BaseResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+/**
+ * 集群成员管理
+ * @author wangwei
+ * @date 2026-10-19
+ **/
+@RestController
+@RequestMapping("/cluster")
+@ConditionalOnProperty(prefix = "trans.cluster", name = "enabled", havingValue = "true")
+public class ClusterController {
+
+    @Autowired
+    private ClusterNode clusterNode;
+
+    /**
+     * 查询当前集群成员
+     *
+     * @return 成员列表
+     */
+    @GetMapping("/members")
+    public BaseResponse<List<ClusterMember>> members() {
+        return BaseResponse.success(clusterNode.getMembers());
+    }
+
+    /**
+     * 变更集群成员，通知所有新旧成员并在后台迁移数据；列表中去掉的节点把数据全部迁出后移出集群
+     *
+     * @param members 成员列表，格式 nodeId@host:port/slot
+     * @return 返回结果
+     */
+    @PostMapping("/members")
+    public BaseResponse<Void> updateMembers(@RequestBody List<String> members) {
+        clusterNode.updateMembers(members.stream().map(ClusterMember::parse).toList(), true);
+        return BaseResponse.success(null);
+    }
+}
@@ -0,0 +1,40 @@
+package com.hsbc.interview.controller;
+
+import com.hsbc.interview.common.MetricsProvider;
+import com.hsbc.interview.dto.BaseResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 运行指标查询
+ * @author wangwei
+ * @date 2026-10-19
+ **/
+@RestController
+@RequestMapping("/metrics")
+public class MetricsController {
+
+    @Autowired(required = false)
+    private List<MetricsProvider> providers = Collections.emptyList();
+
+    /**
+     * 汇总输出各组件的运行指标
+     *
+     * @return 指标分组名称 -> 指标数据
+     */
+    @GetMapping
+    public BaseResponse<Map<String, Map<String, Object>>> metrics() {
+        Map<String, Map<String, Object>> result = new LinkedHashMap<>();
+        for (MetricsProvider provider : providers) {
+            result.put(provider.metricsName(), provider.metrics());
+        }
+        return BaseResponse.success(result);
+    }
+}
@@ -1,14 +1,27 @@
 package com.hsbc.interview.controller;
 
+import com.hsbc.interview.cluster.ClusterNode;
 import com.hsbc.interview.dto.BaseResponse;
+import com.hsbc.interview.dto.MultiGetRequest;
+import com.hsbc.interview.dto.MultiGetRsp;
+import com.hsbc.interview.dto.TransDataDto;
 import com.hsbc.interview.dto.TransQryRequest;
 import com.hsbc.interview.dto.TransQryRsp;
 import com.hsbc.interview.entity.Transaction;
+import com.hsbc.interview.service.TenantRateLimiter;
+import com.hsbc.interview.service.TenantRateLimiter.Charge;
+import com.hsbc.interview.service.TenantRateLimiter.EndpointClass;
+import com.hsbc.interview.service.TransactionMultiGetService;
 import com.hsbc.interview.service.TransactionService;
+import com.hsbc.interview.wire.TransactionJsonWriter;
+import jakarta.servlet.http.HttpServletResponse;
+import org.apache.logging.log4j.util.Strings;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.*;
 
 import jakarta.validation.Valid;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -22,18 +35,32 @@ public class TransactionController {
     @Autowired
     private TransactionService transService;
 
+    // 集群模式下按用户路由到对应节点
+    @Autowired(required = false)
+    private ClusterNode clusterNode;
+
+    @Autowired
+    private TransactionJsonWriter transactionJsonWriter;
+
+    @Autowired
+    private TransactionMultiGetService multiGetService;
+
+    // 按租户与接口类别限流，超出时返回429
+    @Autowired
+    private TenantRateLimiter rateLimiter;
+
     /**
      * 创建交易数据
      *
-     * @param trans 交易详细数据
-     * @return 返回结果
+     * @param trans 交易详细数据，可携带requestId用于重试去重
+     * @return 返回结果，交易流水号
      */
     @PostMapping("/createTrans")
-    public BaseResponse<Void> create(@Valid @RequestBody Transaction trans) {
+    public BaseResponse<String> create(@Valid @RequestBody Transaction trans) {
         //当前项目无用户验证应从token取提交新增操作的用户id
         trans.setCreateUser(trans.getUserId());
-        transService.addTransaction(trans);
-        return BaseResponse.success(null);
+        rateLimiter.acquire(EndpointClass.WRITE, trans.getUserId(), trans.getMerchantId());
+        return BaseResponse.success(clusterNode != null ? clusterNode.addTransaction(trans) : transService.addTransaction(trans));
     }
     /**
      * 根据入参查询交易信息
@@ -43,7 +70,46 @@ public class TransactionController {
      */
     @PostMapping("/getTransData")
     public BaseResponse <TransQryRsp> getData(@RequestBody TransQryRequest req) {
-        return BaseResponse.success(transService.searchTrans(req));
+        rateLimiter.acquire(EndpointClass.of(req), req.getUserId(), req.getMerchantId());
+        return BaseResponse.success(clusterNode != null ? clusterNode.searchTrans(req) : transService.searchTrans(req));
+    }
+    /**
+     * 根据流水号读取单条交易，响应体与按流水号调用getTransData时data中的单条交易一致
+     * 单机模式下直接写入预编码的JSON，集群模式下到各节点查询后编码
+     *
+     * @param transactionId 交易流水号
+     * @param response 响应
+     */
+    @GetMapping("/{transactionId}")
+    public void get(@PathVariable String transactionId, HttpServletResponse response) throws IOException {
+        // 请求中只有流水号，执行前按客户端地址限流，不为限流先读取数据
+        rateLimiter.acquire(EndpointClass.POINT, null, null);
+        if (clusterNode == null) {
+            transactionJsonWriter.write(transactionId, response);
+            return;
+        }
+        TransQryRequest req = new TransQryRequest();
+        req.setTransactionId(transactionId);
+        List<TransDataDto> transList = clusterNode.searchTrans(req).getTransList();
+        transactionJsonWriter.writeDto(transList == null || transList.isEmpty() ? null : transList.get(0), response);
+    }
+    /**
+     * 批量查询：一次读取多个流水号，或多个用户/商户各自的前limitPerKey条交易，结果按键分组
+     * 单机模式下批量读取缓存，集群模式下逐键路由到对应节点并发查询
+     *
+     * @param req 流水号、用户、商户列表
+     * @return 返回结果，按键分组的交易数据
+     */
+    @PostMapping("/multiGet")
+    public BaseResponse<MultiGetRsp> multiGet(@RequestBody MultiGetRequest req) {
+        // 执行前一次性获取全部额度：每个用户/商户各一个，流水号按个数计入客户端地址；任一不足时整体拒绝并退回
+        List<Charge> charges = new ArrayList<>();
+        distinct(req.getUserIds()).forEach(userId -> charges.add(new Charge(userId, null, 1)));
+        distinct(req.getMerchantIds()).forEach(merchantId -> charges.add(new Charge(null, merchantId, 1)));
+        charges.add(new Charge(null, null, distinct(req.getTransactionIds()).size()));
+        rateLimiter.acquireAll(EndpointClass.QUERY, charges);
+        return BaseResponse.success(clusterNode != null ? multiGetService.multiGet(req, clusterNode::searchTrans)
+                : multiGetService.multiGet(req));
     }
     /**
      * 根据入参更新交易信息
@@ -55,7 +121,12 @@ public class TransactionController {
     public BaseResponse<Void> update(@RequestBody Transaction trans){
         //当前项目无用户验证应从token取提交更新操作的用户id
         trans.setUpdateUser(trans.getUserId());
-        transService.updateTransaction(trans);
+        rateLimiter.acquire(EndpointClass.WRITE, trans.getUserId(), trans.getMerchantId());
+        if (clusterNode != null) {
+            clusterNode.updateTransaction(trans);
+        } else {
+            transService.updateTransaction(trans);
+        }
         return BaseResponse.success(null);
 
     }
@@ -67,8 +138,17 @@ public class TransactionController {
      */
     @PostMapping("/deleteTrans")
     public BaseResponse<Void> delete(@RequestBody TransQryRequest req){
-        transService.deleteTransaction(req);
+        rateLimiter.acquire(EndpointClass.WRITE, req.getUserId(), req.getMerchantId());
+        if (clusterNode != null) {
+            clusterNode.deleteTransaction(req);
+        } else {
+            transService.deleteTransaction(req);
+        }
         return BaseResponse.success(null);
 
     }
+
+    private static List<String> distinct(List<String> values) {
+        return values == null ? List.of() : values.stream().filter(Strings::isNotBlank).map(String::trim).distinct().toList();
+    }
 }
@@ -0,0 +1,16 @@
+package com.hsbc.interview.dto;
+
+import lombok.Data;
+
+/**
+ * 批量导入请求
+ * @author wangwei
+ * @date 2026-10-19
+ */
+@Data
+public class BulkImportRequest {
+    // 服务器本地文件路径
+    private String path;
+    // 文件格式 csv/ndjson，为空时按扩展名判断
+    private String format;
+}
@@ -0,0 +1,31 @@
+package com.hsbc.interview.dto;
+
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * 批量导入任务进度
+ * @author wangwei
+ * @date 2026-10-19
+ */
+@Data
+public class BulkImportStatus {
+    private String jobId;
+    private String source;
+    private String format;
+    // RUNNING/COMPLETED/FAILED/CANCELLED/INTERRUPTED
+    private String state;
+    private long totalBytes;
+    private long bytesRead;
+    // 已完整写入（含索引）的字节偏移，恢复时从这里继续
+    private long committedOffset;
+    private double progress;
+    private long rowsApplied;
+    private long rowsRejected;
+    private double rowsPerSecond;
+    private long elapsedMillis;
+    // 前若干条被拒绝行的行号与原因
+    private List<String> errors;
+    private String failure;
+}
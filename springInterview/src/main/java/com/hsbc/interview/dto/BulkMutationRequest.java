@@ -0,0 +1,25 @@
+package com.hsbc.interview.dto;
+
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * 批量删除/批量修改请求
+ * 目标集合：指定流水号时为这些流水，否则为用户和/或商户索引中的流水（至少指定一项）；
+ * 用户、商户与日期同时作为逐条复核的条件
+ * @author wangwei
+ * @date 2026-10-19
+ */
+@Data
+public class BulkMutationRequest {
+    // delete：删除；reassignMerchant：改商户
+    private String operation;
+    private List<String> transactionIds;
+    private String userId;
+    private String merchantId;
+    // 只处理流水号日期早于该日期的交易，yyyyMMdd 或 yyyy-MM-dd
+    private String beforeDate;
+    // 改商户时的新商户ID
+    private String newMerchantId;
+}
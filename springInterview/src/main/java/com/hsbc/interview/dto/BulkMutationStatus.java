@@ -0,0 +1,27 @@
+package com.hsbc.interview.dto;
+
+import lombok.Data;
+
+/**
+ * 批量删除/批量修改任务进度
+ * @author wangwei
+ * @date 2026-10-19
+ */
+@Data
+public class BulkMutationStatus {
+    private String jobId;
+    private String operation;
+    // 目标集合的描述，如 merchantId=M1, beforeDate=20260101
+    private String target;
+    // RUNNING/COMPLETED/FAILED/CANCELLED
+    private String state;
+    // 按索引解析出的候选流水数，解析完成前为-1
+    private long candidates;
+    private long processed;
+    // 实际删除/修改的条数，其余候选在执行时已不存在或不再满足条件
+    private long affected;
+    private double progress;
+    private double rowsPerSecond;
+    private long elapsedMillis;
+    private String failure;
+}
@@ -0,0 +1,17 @@
+package com.hsbc.interview.dto;
+
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * @author: wangwei
+ * @description: 批量查询请求参数，流水号、用户、商户至少指定一类，重复的键只查询一次
+ */
+@Data
+public class MultiGetRequest {
+    private List<String> transactionIds; // 业务流水ID列表
+    private List<String> userIds; // 用户ID列表
+    private List<String> merchantIds; // 商户ID列表
+    private Integer limitPerKey; // 每个用户/商户返回的最大条数（按流水号升序），不指定时取默认值
+}
@@ -0,0 +1,29 @@
+package com.hsbc.interview.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Data;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 批量查询返回参数，按请求中的键分组，顺序与请求一致
+ * @Date: 2026-10-19
+ **/
+@Data
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class MultiGetRsp {
+    private Map<String, TransDataDto> transactions;         // 流水号 -> 交易数据，只包含存在的流水号
+    private List<String> notFound;         // 不存在的流水号
+    private Map<String, Group> users;         // 用户ID -> 该用户的交易
+    private Map<String, Group> merchants;         // 商户ID -> 该商户的交易
+
+    /**
+     * 一个用户/商户的查询结果：总条数与按流水号升序的前 limitPerKey 条
+     */
+    @Data
+    public static class Group {
+        private Integer total = 0;         // 总数
+        private List<TransDataDto> transList;
+    }
+}
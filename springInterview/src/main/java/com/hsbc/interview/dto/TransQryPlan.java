@@ -0,0 +1,21 @@
+package com.hsbc.interview.dto;
+
+import lombok.Data;
+
+import java.util.Map;
+
+/**
+ * 查询执行计划（查询请求explain=true时返回）
+ * @Date: 2026-10-19
+ **/
+@Data
+public class TransQryPlan {
+    private String strategy;         // 选中的执行策略
+    private String detail;         // 驱动索引及其基数
+    private Long estimatedRows;         // 估算的结果行数
+    private Long actualRows;         // 实际结果行数
+    private Long examinedRows;         // 实际访问的流水数
+    private Double estimatedCost;         // 选中策略的估算代价
+    private Map<String, Double> alternatives;         // 参与比较的各策略估算代价
+    private Long elapsedMicros;         // 执行耗时（微秒）
+}
@@ -1,6 +1,8 @@
 package com.hsbc.interview.dto;
 
 import lombok.Data;
+
+import java.math.BigDecimal;
 /**
  * @author: wangwei
  * @description: 查询请求参数
@@ -10,6 +12,14 @@ public class TransQryRequest {
     private String transactionId;         // 业务流水ID
     private String userId;     // 用户ID
     private String merchantId; // 商户ID
+    private BigDecimal minAmount; // 最小金额（包含）
+    private BigDecimal maxAmount; // 最大金额（包含）
+    private Long version; // 删除时校验的数据版本号
     private Integer pageSize = 10;
     private Integer page = 1;
+    private Boolean explain; // 为true时返回执行计划（不走结果缓存）
+    private String sortBy; // 排序字段：transactionId（默认）或amount
+    private String sortOrder; // 排序方向：asc或desc，按金额排序时默认desc
+    private Boolean snapshot; // 为true时首页打开快照，返回snapshotToken
+    private String snapshotToken; // 后续页携带首页返回的快照令牌，读取快照时的数据
 }
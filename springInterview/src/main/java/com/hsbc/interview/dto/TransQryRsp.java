@@ -1,5 +1,6 @@
 package com.hsbc.interview.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.Data;
 
 import java.util.List;
@@ -13,4 +14,8 @@ public class TransQryRsp {
     private Integer pageSize;         // 每页行数
     private Integer page;         // 当前页数
     private List<TransDataDto> transList;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private TransQryPlan plan;         // 执行计划，仅explain时返回
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String snapshotToken;         // 快照令牌，仅快照分页时返回
 }
@@ -30,4 +30,6 @@ public class Transaction {
     private String transDate; //交易日期
     private String updDate;//更新时间
     private String updateUser;
+    private String requestId;//客户端请求ID，重试时用于去重
+    private Long version;//数据版本号，更新时携带则做乐观锁校验
 }
\ No newline at end of file
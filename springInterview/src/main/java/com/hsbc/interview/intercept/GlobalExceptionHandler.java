@@ -1,10 +1,13 @@
 package com.hsbc.interview.intercept;
 
+import com.hsbc.interview.common.RateLimitException;
 import com.hsbc.interview.common.TransException;
 import com.hsbc.interview.dto.BaseResponse;
 import lombok.extern.log4j.Log4j2;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.HttpMediaTypeNotAcceptableException;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import static com.hsbc.interview.common.Constant.*;
@@ -21,9 +24,41 @@ public class GlobalExceptionHandler {
         response.setCode(ex.getCode());
         response.setMessage("服务器内部错误");
         response.setErrMsg(ex.getMessage());
+        // 版本冲突返回409，客户端重新查询后再提交
+        if (HTTP_CONFLICT_CODE.equals(ex.getCode())) {
+            response.setMessage("数据已被修改");
+            return new ResponseEntity<>(response, HttpStatus.CONFLICT);
+        }
+        // 变更序号或快照已过期返回410，消费方需要重新对账后从最早可读序号继续，快照分页需要重新查询首页
+        if (HTTP_GONE_CODE.equals(ex.getCode())) {
+            response.setMessage("数据版本已过期");
+            return new ResponseEntity<>(response, HttpStatus.GONE);
+        }
         return new ResponseEntity<>(response, HttpStatus.INTERNAL_SERVER_ERROR);
     }
 
+    // 超出限流额度返回429，Retry-After 为建议的等待秒数，errMsg 中给出毫秒数
+    @ExceptionHandler(RateLimitException.class)
+    public ResponseEntity<BaseResponse<Void>> handleRateLimitException(RateLimitException ex) {
+        BaseResponse<Void> response = new BaseResponse<>();
+        response.setCode(ex.getCode());
+        response.setMessage("请求过于频繁");
+        response.setErrMsg(ex.getMessage());
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf((ex.getRetryAfterMillis() + 999) / 1000))
+                .body(response);
+    }
+
+    // 客户端要求的格式无法编码该接口的返回（如二进制格式请求批量查询）返回406，不按服务器错误处理
+    @ExceptionHandler(HttpMediaTypeNotAcceptableException.class)
+    public ResponseEntity<BaseResponse<Void>> handleNotAcceptable(HttpMediaTypeNotAcceptableException ex) {
+        BaseResponse<Void> response = new BaseResponse<>();
+        response.setCode(HTTP_FAIL_CODE);
+        response.setMessage("不支持的返回格式");
+        response.setErrMsg(ex.getMessage());
+        return new ResponseEntity<>(response, HttpStatus.NOT_ACCEPTABLE);
+    }
+
     // 处理其他异常
     @ExceptionHandler(Exception.class)
     public ResponseEntity<BaseResponse<Void>> handleException(Exception ex) {
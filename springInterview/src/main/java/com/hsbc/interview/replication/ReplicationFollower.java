@@ -0,0 +1,224 @@
+package com.hsbc.interview.replication;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.hsbc.interview.common.MetricsProvider;
+import com.hsbc.interview.common.TransactionCodec;
+import com.hsbc.interview.entity.Transaction;
+import com.hsbc.interview.service.TransactionService;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 复制从节点
+ * 连接主节点后上报已应用序号，按序重放主节点推送的快照与增量日志，写入本地缓存与索引后对外提供查询；
+ * 从节点拒绝客户端写入，连接断开后自动重连并从已应用序号继续追赶
+ * @author wangwei
+ * @date 2026-10-19
+ */
+@Component
+@ConditionalOnProperty(prefix = "trans.replication", name = "role", havingValue = "follower")
+@Log4j2
+public class ReplicationFollower implements MetricsProvider {
+
+    private final TransactionService transactionService;
+
+    private final Cache<String, Transaction> mainCache;
+
+    private final String leaderHost;
+
+    private final int leaderPort;
+
+    private final long reconnectMillis;
+
+    private volatile long appliedSeq;
+    private volatile long leaderSeq;
+    private volatile long lastAppliedTimestamp;
+    private volatile boolean connected;
+    private volatile boolean running;
+    private volatile Socket socket;
+    private Thread worker;
+
+    private final AtomicLong appliedRecords = new AtomicLong();
+    private final AtomicLong snapshotsLoaded = new AtomicLong();
+    private final AtomicLong reconnects = new AtomicLong();
+
+    @Autowired
+    public ReplicationFollower(TransactionService transactionService,
+                               Cache<String, Transaction> mainCache,
+                               @Value("${trans.replication.leader-host:localhost}") String leaderHost,
+                               @Value("${trans.replication.leader-port:9300}") int leaderPort,
+                               @Value("${trans.replication.reconnect-ms:1000}") long reconnectMillis) {
+        this.transactionService = transactionService;
+        this.mainCache = mainCache;
+        this.leaderHost = leaderHost;
+        this.leaderPort = leaderPort;
+        this.reconnectMillis = reconnectMillis;
+    }
+
+    @PostConstruct
+    public void start() {
+        transactionService.setReadOnly(true);
+        running = true;
+        worker = Thread.ofPlatform().daemon().name("replication-follower").start(this::runLoop);
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        closeSocket();
+        if (worker != null) {
+            worker.interrupt();
+        }
+    }
+
+    public long getAppliedSeq() {
+        return appliedSeq;
+    }
+
+    private void runLoop() {
+        while (running) {
+            try {
+                replicate();
+            } catch (IOException e) {
+                if (running) {
+                    log.warn("与主节点{}:{}的复制连接中断: {}", leaderHost, leaderPort, e.getMessage());
+                }
+            } finally {
+                connected = false;
+                closeSocket();
+            }
+            if (!running) {
+                return;
+            }
+            reconnects.incrementAndGet();
+            try {
+                Thread.sleep(reconnectMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void replicate() throws IOException {
+        Socket current = new Socket();
+        current.setTcpNoDelay(true);
+        current.connect(new InetSocketAddress(leaderHost, leaderPort), 3000);
+        socket = current;
+        DataInputStream in = new DataInputStream(new BufferedInputStream(current.getInputStream(), 64 * 1024));
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(current.getOutputStream()));
+        ReplicationProtocol.writeSeq(out, ReplicationProtocol.HELLO, appliedSeq);
+        out.flush();
+        connected = true;
+        log.info("已连接复制主节点{}:{}，已应用序号{}", leaderHost, leaderPort, appliedSeq);
+
+        Set<String> snapshotIds = null;
+        long snapshotSeq = 0;
+        while (running) {
+            byte type = in.readByte();
+            switch (type) {
+                case ReplicationProtocol.SNAPSHOT_BEGIN -> {
+                    snapshotSeq = in.readLong();
+                    snapshotIds = new HashSet<>();
+                }
+                case ReplicationProtocol.SNAPSHOT_ROW -> {
+                    Transaction transaction = TransactionCodec.read(in);
+                    transactionService.upsertTransaction(transaction);
+                    if (snapshotIds != null) {
+                        snapshotIds.add(transaction.getTransactionId());
+                    }
+                }
+                case ReplicationProtocol.SNAPSHOT_END -> {
+                    in.readLong();
+                    removeMissing(snapshotIds);
+                    snapshotIds = null;
+                    appliedSeq = snapshotSeq;
+                    leaderSeq = Math.max(leaderSeq, snapshotSeq);
+                    snapshotsLoaded.incrementAndGet();
+                    log.info("快照加载完成，序号{}，本地{}条", snapshotSeq, mainCache.estimatedSize());
+                }
+                case ReplicationProtocol.RECORD -> {
+                    ReplicationRecord record = ReplicationProtocol.readRecord(in);
+                    if (record.seq() != appliedSeq + 1) {
+                        throw new IOException("复制序号不连续，期望" + (appliedSeq + 1) + "实际" + record.seq());
+                    }
+                    apply(record);
+                }
+                case ReplicationProtocol.HEARTBEAT -> leaderSeq = Math.max(leaderSeq, in.readLong());
+                default -> throw new IOException("未知的复制帧类型" + type);
+            }
+            // 一批数据处理完（缓冲区已读空）再确认，减少确认帧数量
+            if (in.available() == 0 && snapshotIds == null) {
+                ReplicationProtocol.writeSeq(out, ReplicationProtocol.ACK, appliedSeq);
+                out.flush();
+            }
+        }
+    }
+
+    private void apply(ReplicationRecord record) {
+        if (record.op() == ReplicationOp.DELETE) {
+            transactionService.removeTransaction(record.transaction().getTransactionId());
+        } else {
+            transactionService.upsertTransaction(record.transaction());
+        }
+        appliedSeq = record.seq();
+        leaderSeq = Math.max(leaderSeq, record.seq());
+        lastAppliedTimestamp = record.timestamp();
+        appliedRecords.incrementAndGet();
+    }
+
+    // 快照中不存在的本地数据在主节点上已被删除
+    private void removeMissing(Set<String> snapshotIds) {
+        if (snapshotIds == null) {
+            return;
+        }
+        List<String> missing = transactionService.allTransactionIds()
+                .filter(transactionId -> !snapshotIds.contains(transactionId))
+                .toList();
+        missing.forEach(transactionService::removeTransaction);
+    }
+
+    private void closeSocket() {
+        Socket current = socket;
+        if (current != null) {
+            try {
+                current.close();
+            } catch (IOException ignored) {
+                // 关闭连接失败无需处理
+            }
+        }
+    }
+
+    @Override
+    public String metricsName() {
+        return "replicationFollower";
+    }
+
+    @Override
+    public Map<String, Object> metrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        long lagRecords = Math.max(0, leaderSeq - appliedSeq);
+        metrics.put("leader", leaderHost + ":" + leaderPort);
+        metrics.put("connected", connected);
+        metrics.put("appliedSeq", appliedSeq);
+        metrics.put("leaderSeq", leaderSeq);
+        metrics.put("lagRecords", lagRecords);
+        metrics.put("lagMillis", lagRecords == 0 || lastAppliedTimestamp == 0 ? 0
+                : System.currentTimeMillis() - lastAppliedTimestamp);
+        metrics.put("appliedRecords", appliedRecords.get());
+        metrics.put("snapshotsLoaded", snapshotsLoaded.get());
+        metrics.put("reconnects", reconnects.get());
+        return metrics;
+    }
+}
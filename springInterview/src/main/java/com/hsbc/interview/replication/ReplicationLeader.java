@@ -0,0 +1,365 @@
+package com.hsbc.interview.replication;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.hsbc.interview.common.MetricsProvider;
+import com.hsbc.interview.common.TransactionCodec;
+import com.hsbc.interview.entity.Transaction;
+import com.hsbc.interview.service.TransactionMutationListener;
+import com.hsbc.interview.storage.SegmentDiskTier;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+/**
+ * 复制主节点
+ * 作为交易变更监听器把新增/更新/删除按写入顺序记入复制日志，并通过TCP推送给从节点；
+ * 从节点首次连接或落后超过日志容量时先发送全量快照再继续推送增量。
+ * sync模式下写请求在返回前等待从节点确认（超时则降级为异步并计数），async模式只记日志不等待
+ * @author wangwei
+ * @date 2026-10-19
+ */
+@Component
+@ConditionalOnProperty(prefix = "trans.replication", name = "role", havingValue = "leader")
+@Log4j2
+public class ReplicationLeader implements TransactionMutationListener, MetricsProvider {
+
+    private static final int BATCH_SIZE = 512;
+    private static final long HEARTBEAT_MILLIS = 1000;
+
+    private final ReplicationLog replicationLog;
+
+    private final Cache<String, Transaction> mainCache;
+
+    private final int port;
+
+    private final boolean syncAck;
+
+    private final long syncTimeoutMillis;
+
+    private final int syncAcks;
+
+    private final ThreadLocal<long[]> currentSeq = ThreadLocal.withInitial(() -> new long[1]);
+
+    private final List<FollowerSession> sessions = new CopyOnWriteArrayList<>();
+
+    private final ReentrantLock ackLock = new ReentrantLock();
+    private final Condition ackArrived = ackLock.newCondition();
+
+    private final AtomicLong snapshotsSent = new AtomicLong();
+    private final AtomicLong syncWaits = new AtomicLong();
+    private final AtomicLong syncTimeouts = new AtomicLong();
+
+    private volatile ServerSocket serverSocket;
+    private volatile boolean running;
+
+    // 磁盘层中的数据同样需要进入快照
+    private SegmentDiskTier diskTier;
+
+    @Autowired
+    public ReplicationLeader(Cache<String, Transaction> mainCache,
+                             @Value("${trans.replication.port:9300}") int port,
+                             @Value("${trans.replication.ack-mode:async}") String ackMode,
+                             @Value("${trans.replication.sync-timeout-ms:1000}") long syncTimeoutMillis,
+                             @Value("${trans.replication.sync-acks:1}") int syncAcks,
+                             @Value("${trans.replication.log-capacity:100000}") int logCapacity) {
+        this.mainCache = mainCache;
+        this.port = port;
+        this.syncAck = "sync".equalsIgnoreCase(ackMode);
+        this.syncTimeoutMillis = syncTimeoutMillis;
+        this.syncAcks = syncAcks;
+        this.replicationLog = new ReplicationLog(logCapacity);
+    }
+
+    @Autowired(required = false)
+    public void setDiskTier(SegmentDiskTier diskTier) {
+        this.diskTier = diskTier;
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        serverSocket = new ServerSocket();
+        serverSocket.bind(new InetSocketAddress(port));
+        running = true;
+        Thread.ofPlatform().daemon().name("replication-acceptor").start(this::acceptLoop);
+        log.info("复制主节点已启动，端口{}，确认模式{}", getPort(), syncAck ? "sync" : "async");
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        try {
+            if (serverSocket != null) {
+                serverSocket.close();
+            }
+        } catch (IOException e) {
+            log.warn("关闭复制端口失败", e);
+        }
+        sessions.forEach(FollowerSession::close);
+    }
+
+    /**
+     * @return 实际监听端口（配置为0时由系统分配）
+     */
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    private void acceptLoop() {
+        while (running) {
+            try {
+                Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                FollowerSession session = new FollowerSession(socket);
+                sessions.add(session);
+                Thread.ofVirtual().name("replication-session-" + socket.getRemoteSocketAddress()).start(session::run);
+            } catch (IOException e) {
+                if (running) {
+                    log.error("接收从节点连接失败", e);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void onAdd(Transaction after) {
+        currentSeq.get()[0] = replicationLog.append(ReplicationOp.ADD, after);
+    }
+
+    @Override
+    public void onUpdate(Transaction before, Transaction after) {
+        currentSeq.get()[0] = replicationLog.append(ReplicationOp.UPDATE, after);
+    }
+
+    @Override
+    public void onDelete(Transaction before) {
+        currentSeq.get()[0] = replicationLog.append(ReplicationOp.DELETE, before);
+    }
+
+    @Override
+    public void afterCommit(Transaction before, Transaction after) {
+        long[] holder = currentSeq.get();
+        long seq = holder[0];
+        holder[0] = 0;
+        if (seq == 0) {
+            return;
+        }
+        replicationLog.markCommitted(seq);
+        if (syncAck) {
+            awaitAcks(seq);
+        }
+    }
+
+    // 等待足够数量的从节点确认，在线从节点少于要求数量时按在线数量等待
+    private void awaitAcks(long seq) {
+        syncWaits.incrementAndGet();
+        long nanos = TimeUnit.MILLISECONDS.toNanos(syncTimeoutMillis);
+        ackLock.lock();
+        try {
+            while (ackedCount(seq) < Math.min(syncAcks, streamingCount())) {
+                if (nanos <= 0) {
+                    syncTimeouts.incrementAndGet();
+                    log.warn("复制序号{}等待从节点确认超时", seq);
+                    return;
+                }
+                nanos = ackArrived.awaitNanos(nanos);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            ackLock.unlock();
+        }
+    }
+
+    private int ackedCount(long seq) {
+        int count = 0;
+        for (FollowerSession session : sessions) {
+            if (session.ackedSeq >= seq) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private int streamingCount() {
+        int count = 0;
+        for (FollowerSession session : sessions) {
+            if (session.streaming) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private void onAck(FollowerSession session, long seq) {
+        session.ackedSeq = seq;
+        session.lastAckMillis = System.currentTimeMillis();
+        if (syncAck) {
+            ackLock.lock();
+            try {
+                ackArrived.signalAll();
+            } finally {
+                ackLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * 单个从节点连接：当前线程负责推送，另起一个虚拟线程读取确认
+     */
+    private final class FollowerSession {
+        private final Socket socket;
+        private final String name;
+        private volatile long ackedSeq;
+        private volatile long sentSeq;
+        private volatile long lastAckMillis;
+        private volatile boolean streaming;
+
+        FollowerSession(Socket socket) {
+            this.socket = socket;
+            this.name = String.valueOf(socket.getRemoteSocketAddress());
+        }
+
+        void run() {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                 DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), 64 * 1024))) {
+                if (in.readByte() != ReplicationProtocol.HELLO) {
+                    throw new IOException("从节点握手帧错误");
+                }
+                long followerSeq = in.readLong();
+                ackedSeq = followerSeq;
+                Thread.ofVirtual().name("replication-ack-" + name).start(() -> readAcks(in));
+
+                long next;
+                if (followerSeq > 0 && followerSeq >= replicationLog.firstSeq() - 1
+                        && followerSeq <= replicationLog.lastSeq()) {
+                    next = followerSeq + 1;
+                } else {
+                    next = sendSnapshot(out) + 1;
+                }
+                streaming = true;
+                while (running && !socket.isClosed()) {
+                    List<ReplicationRecord> records = replicationLog.read(next, BATCH_SIZE);
+                    if (records == null) {
+                        // 从节点落后太多，日志已被覆盖，重新全量
+                        log.warn("从节点{}落后超过日志容量，重新发送快照", name);
+                        streaming = false;
+                        next = sendSnapshot(out) + 1;
+                        streaming = true;
+                        continue;
+                    }
+                    if (records.isEmpty()) {
+                        if (!replicationLog.awaitAppend(next - 1, HEARTBEAT_MILLIS)) {
+                            ReplicationProtocol.writeSeq(out, ReplicationProtocol.HEARTBEAT, replicationLog.lastSeq());
+                            out.flush();
+                        }
+                        continue;
+                    }
+                    for (ReplicationRecord record : records) {
+                        ReplicationProtocol.writeRecord(out, record);
+                    }
+                    out.flush();
+                    next = records.get(records.size() - 1).seq() + 1;
+                    sentSeq = next - 1;
+                }
+            } catch (IOException e) {
+                log.info("从节点{}连接断开: {}", name, e.getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                close();
+                sessions.remove(this);
+            }
+        }
+
+        // 先取已提交水位再遍历主缓存，水位之前的写入一定在快照中，水位之后的写入随增量重放
+        private long sendSnapshot(DataOutputStream out) throws IOException {
+            long snapshotSeq = replicationLog.committedWatermark();
+            ReplicationProtocol.writeSeq(out, ReplicationProtocol.SNAPSHOT_BEGIN, snapshotSeq);
+            long rows = 0;
+            Iterator<Transaction> iterator = diskTier == null ? mainCache.asMap().values().iterator()
+                    : Stream.concat(mainCache.asMap().values().stream(), diskTier.values()).iterator();
+            while (iterator.hasNext()) {
+                Transaction transaction = iterator.next();
+                out.writeByte(ReplicationProtocol.SNAPSHOT_ROW);
+                TransactionCodec.write(out, transaction);
+                rows++;
+            }
+            ReplicationProtocol.writeSeq(out, ReplicationProtocol.SNAPSHOT_END, snapshotSeq);
+            out.flush();
+            sentSeq = snapshotSeq;
+            snapshotsSent.incrementAndGet();
+            log.info("向从节点{}发送快照完成，序号{}，{}条", name, snapshotSeq, rows);
+            return snapshotSeq;
+        }
+
+        private void readAcks(DataInputStream in) {
+            try {
+                while (!socket.isClosed()) {
+                    byte type = in.readByte();
+                    long seq = in.readLong();
+                    if (type == ReplicationProtocol.ACK) {
+                        onAck(this, seq);
+                    }
+                }
+            } catch (IOException e) {
+                close();
+            }
+        }
+
+        void close() {
+            streaming = false;
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+                // 关闭连接失败无需处理
+            }
+        }
+    }
+
+    @Override
+    public String metricsName() {
+        return "replicationLeader";
+    }
+
+    @Override
+    public Map<String, Object> metrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        long lastSeq = replicationLog.lastSeq();
+        metrics.put("ackMode", syncAck ? "sync" : "async");
+        metrics.put("lastSeq", lastSeq);
+        metrics.put("firstSeq", replicationLog.firstSeq());
+        metrics.put("committedWatermark", replicationLog.committedWatermark());
+        metrics.put("snapshotsSent", snapshotsSent.get());
+        metrics.put("syncWaits", syncWaits.get());
+        metrics.put("syncTimeouts", syncTimeouts.get());
+        List<Map<String, Object>> followers = new ArrayList<>();
+        for (FollowerSession session : sessions) {
+            Map<String, Object> follower = new LinkedHashMap<>();
+            follower.put("address", session.name);
+            follower.put("streaming", session.streaming);
+            follower.put("sentSeq", session.sentSeq);
+            follower.put("ackedSeq", session.ackedSeq);
+            follower.put("lagRecords", lastSeq - session.ackedSeq);
+            follower.put("lastAckMillisAgo", session.lastAckMillis == 0 ? -1 : System.currentTimeMillis() - session.lastAckMillis);
+            followers.add(follower);
+        }
+        metrics.put("followers", followers);
+        return metrics;
+    }
+}
@@ -0,0 +1,173 @@
+package com.hsbc.interview.replication;
+
+import com.hsbc.interview.entity.Transaction;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 主节点内存复制日志（定长环形数组）
+ * 序号在交易写入的临界区内分配，保证同一流水的记录顺序与实际写入顺序一致；
+ * 写入对读线程可见后再标记提交，连续已提交的最大序号即快照水位，快照从水位之后开始重放不会丢数据。
+ * 从节点落后超过环形数组容量时日志已被覆盖，需要重新做全量快照
+ * @author wangwei
+ * @date 2026-10-19
+ */
+public class ReplicationLog {
+
+    private final ReplicationRecord[] ring;
+
+    private final boolean[] committed;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final Condition appended = lock.newCondition();
+
+    // 以下字段由lock保护
+    private long lastSeq;
+    private long committedWatermark;
+
+    public ReplicationLog(int capacity) {
+        this.ring = new ReplicationRecord[capacity];
+        this.committed = new boolean[capacity];
+    }
+
+    private int slot(long seq) {
+        return (int) (seq % ring.length);
+    }
+
+    /**
+     * @methodName append
+     * @description 追加一条日志记录
+     * @param op 操作类型
+     * @param transaction 交易数据
+     * @return 分配的序号
+     * @author wangwei
+     * @date 2026/10/19
+     */
+    public long append(ReplicationOp op, Transaction transaction) {
+        lock.lock();
+        try {
+            long seq = ++lastSeq;
+            // 覆盖仍未提交的旧记录时水位直接推进，说明该记录对应的写入已异常终止
+            if (seq - ring.length > committedWatermark) {
+                committedWatermark = seq - ring.length;
+                advanceWatermark();
+            }
+            ring[slot(seq)] = new ReplicationRecord(seq, System.currentTimeMillis(), op, transaction);
+            committed[slot(seq)] = false;
+            appended.signalAll();
+            return seq;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 标记写入已对读线程可见，并推进连续提交水位
+     */
+    public void markCommitted(long seq) {
+        lock.lock();
+        try {
+            if (seq <= committedWatermark || seq > lastSeq) {
+                return;
+            }
+            committed[slot(seq)] = true;
+            advanceWatermark();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void advanceWatermark() {
+        while (committedWatermark < lastSeq && committed[slot(committedWatermark + 1)]
+                && ring[slot(committedWatermark + 1)].seq() == committedWatermark + 1) {
+            committedWatermark++;
+        }
+    }
+
+    /**
+     * @methodName read
+     * @description 读取从指定序号开始的日志记录
+     * @param fromSeq 起始序号（包含）
+     * @param max 最多读取条数
+     * @return 日志记录，日志已被覆盖时返回null
+     * @author wangwei
+     * @date 2026/10/19
+     */
+    public List<ReplicationRecord> read(long fromSeq, int max) {
+        lock.lock();
+        try {
+            if (fromSeq < firstSeqLocked()) {
+                return null;
+            }
+            if (fromSeq > lastSeq) {
+                return Collections.emptyList();
+            }
+            long to = Math.min(lastSeq, fromSeq + max - 1);
+            List<ReplicationRecord> records = new ArrayList<>((int) (to - fromSeq + 1));
+            for (long seq = fromSeq; seq <= to; seq++) {
+                records.add(ring[slot(seq)]);
+            }
+            return records;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 等待序号超过afterSeq的新记录
+     *
+     * @return 是否有新记录
+     */
+    public boolean awaitAppend(long afterSeq, long timeoutMillis) throws InterruptedException {
+        long nanos = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        lock.lock();
+        try {
+            while (lastSeq <= afterSeq) {
+                if (nanos <= 0) {
+                    return false;
+                }
+                nanos = appended.awaitNanos(nanos);
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private long firstSeqLocked() {
+        return Math.max(1, lastSeq - ring.length + 1);
+    }
+
+    public long firstSeq() {
+        lock.lock();
+        try {
+            return firstSeqLocked();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long lastSeq() {
+        lock.lock();
+        try {
+            return lastSeq;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long committedWatermark() {
+        lock.lock();
+        try {
+            return committedWatermark;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package com.hsbc.interview.replication;
+
+/**
+ * 复制日志操作类型
+ * @author wangwei
+ * @date 2026-10-19
+ */
+public enum ReplicationOp {
+    ADD,
+    UPDATE,
+    DELETE
+}
@@ -0,0 +1,50 @@
+package com.hsbc.interview.replication;
+
+import com.hsbc.interview.common.TransactionCodec;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * 主从复制TCP协议帧定义
+ * 每帧以一个字节的帧类型开头：
+ * HELLO(从→主，已应用序号) / ACK(从→主，已应用序号)
+ * RECORD(主→从，日志记录) / SNAPSHOT_BEGIN(主→从，快照对应序号) / SNAPSHOT_ROW(主→从，交易数据) /
+ * SNAPSHOT_END(主→从) / HEARTBEAT(主→从，主节点最新序号)
+ * @author wangwei
+ * @date 2026-10-19
+ */
+final class ReplicationProtocol {
+
+    static final byte HELLO = 1;
+    static final byte ACK = 2;
+    static final byte RECORD = 3;
+    static final byte SNAPSHOT_BEGIN = 4;
+    static final byte SNAPSHOT_ROW = 5;
+    static final byte SNAPSHOT_END = 6;
+    static final byte HEARTBEAT = 7;
+
+    private ReplicationProtocol() {
+    }
+
+    static void writeSeq(DataOutputStream out, byte type, long seq) throws IOException {
+        out.writeByte(type);
+        out.writeLong(seq);
+    }
+
+    static void writeRecord(DataOutputStream out, ReplicationRecord record) throws IOException {
+        out.writeByte(RECORD);
+        out.writeLong(record.seq());
+        out.writeLong(record.timestamp());
+        out.writeByte(record.op().ordinal());
+        TransactionCodec.write(out, record.transaction());
+    }
+
+    static ReplicationRecord readRecord(DataInputStream in) throws IOException {
+        long seq = in.readLong();
+        long timestamp = in.readLong();
+        ReplicationOp op = ReplicationOp.values()[in.readByte()];
+        return new ReplicationRecord(seq, timestamp, op, TransactionCodec.read(in));
+    }
+}
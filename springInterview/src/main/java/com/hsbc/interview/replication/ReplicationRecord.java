@@ -0,0 +1,17 @@
+package com.hsbc.interview.replication;
+
+import com.hsbc.interview.entity.Transaction;
+
+/**
+ * 复制日志记录
+ * 新增/更新携带变更后的完整数据，删除携带删除前的数据，从节点按序号顺序重放
+ *
+ * @param seq 日志序号，从1开始连续递增
+ * @param timestamp 主节点写入时间（毫秒），用于计算复制延迟
+ * @param op 操作类型
+ * @param transaction 交易数据
+ * @author wangwei
+ * @date 2026-10-19
+ */
+public record ReplicationRecord(long seq, long timestamp, ReplicationOp op, Transaction transaction) {
+}
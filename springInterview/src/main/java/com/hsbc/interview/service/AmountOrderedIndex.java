@@ -0,0 +1,297 @@
+package com.hsbc.interview.service;
+
+import com.hsbc.interview.common.MemoryEstimator;
+import com.hsbc.interview.common.MetricsProvider;
+import com.hsbc.interview.config.MemoryBudgetManager;
+import com.hsbc.interview.entity.Transaction;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 按金额排序的二级索引
+ * 全局、每个用户、每个商户各维护一个跳表，键为 按4位小数放大后的金额+流水号，
+ * 按金额排序的分页与“金额最大的N笔”只需定位区间起点后顺序读取，复杂度为 O(log n + offset + N)；
+ * 区间内的总数只遍历索引键，不读取交易数据。
+ * 在写操作的临界区内随新增/更新/删除维护，同一用户/商户的跳表修改在ConcurrentHashMap该键的原子操作内进行；
+ * 三份跳表常驻内存，按估算字节数计入全局内存预算
+ * @author wangwei
+ * @date 2026-10-19
+ */
+@Component
+@ConditionalOnProperty(prefix = "trans.amount-index", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class AmountOrderedIndex implements TransactionMutationListener, MetricsProvider {
+
+    // 金额最多4位小数（见Transaction的@Digits），放大后用long比较
+    public static final int SCALE = 4;
+
+    // 索引键：对象头 + 金额 + 流水号引用，三份跳表共享同一个键对象
+    private static final long KEY_BYTES = 24;
+
+    // 每个用户/商户的跳表、条数计数与ConcurrentHashMap节点
+    private static final long BUCKET_BYTES = 160;
+
+    /**
+     * 索引键：放大后的金额与流水号
+     */
+    public record Key(long amount, String transactionId) implements Comparable<Key> {
+        @Override
+        public int compareTo(Key other) {
+            int byAmount = Long.compare(amount, other.amount);
+            return byAmount != 0 ? byAmount : transactionId.compareTo(other.transactionId);
+        }
+    }
+
+    /**
+     * 一组按金额有序的索引键，单独维护条数（跳表的size()需要遍历）
+     */
+    private static final class Bucket {
+        private final ConcurrentSkipListSet<Key> keys = new ConcurrentSkipListSet<>();
+        private final AtomicInteger size = new AtomicInteger();
+
+        private void add(Key key) {
+            if (keys.add(key)) {
+                size.incrementAndGet();
+            }
+        }
+
+        private void remove(Key key) {
+            if (keys.remove(key)) {
+                size.decrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * 查询区间：按排序方向的索引键视图，bounded为false时条数可直接取索引条数
+     */
+    public record Range(NavigableSet<Key> keys, boolean bounded, int size) {
+    }
+
+    private static final Range EMPTY = new Range(Collections.emptyNavigableSet(), false, 0);
+
+    private final Bucket all = new Bucket();
+
+    private final ConcurrentHashMap<String, Bucket> byUser = new ConcurrentHashMap<>();
+
+    private final ConcurrentHashMap<String, Bucket> byMerchant = new ConcurrentHashMap<>();
+
+    private final AtomicLong queries = new AtomicLong();
+    private final AtomicLong examinedRows = new AtomicLong();
+
+    /**
+     * 纳入全局内存预算，只计入用量
+     *
+     * @param memoryBudgetManager 全局内存预算
+     */
+    @Autowired(required = false)
+    public void setMemoryBudgetManager(MemoryBudgetManager memoryBudgetManager) {
+        memoryBudgetManager.registerPinned(MemoryBudgetManager.AMOUNT_INDEX, this::estimatedBytes, () -> all.size.get());
+    }
+
+    /**
+     * @return 全局、用户、商户三份跳表的估算字节数，每笔交易在三份跳表中各有一个节点
+     */
+    public long estimatedBytes() {
+        long entries = all.size.get();
+        return entries * KEY_BYTES + 3 * MemoryEstimator.estimateSkipListNodes(entries)
+                + (byUser.size() + byMerchant.size() + 1L) * BUCKET_BYTES;
+    }
+
+    /**
+     * @methodName scale
+     * @description 金额放大为long，超过4位小数的部分向下取整；金额为空时排在最小
+     * @param amount 金额
+     * @return 放大后的金额
+     * @author wangwei
+     * @date 2026/10/19
+     */
+    public static long scale(BigDecimal amount) {
+        return amount == null ? Long.MIN_VALUE : scaled(amount, RoundingMode.FLOOR);
+    }
+
+    // 超出long范围的金额（未经接口校验的导入数据）按上下限处理
+    private static long scaled(BigDecimal amount, RoundingMode roundingMode) {
+        BigInteger unscaled = amount.setScale(SCALE, roundingMode).unscaledValue();
+        if (unscaled.bitLength() > 63) {
+            return unscaled.signum() > 0 ? Long.MAX_VALUE - 1 : Long.MIN_VALUE + 1;
+        }
+        return unscaled.longValue();
+    }
+
+    /**
+     * @methodName matches
+     * @description 读取到的交易仍与索引键一致（索引与主缓存之间读到的是同一版本）
+     * @param key 索引键
+     * @param transaction 交易数据
+     * @return 是否一致
+     * @author wangwei
+     * @date 2026/10/19
+     */
+    public static boolean matches(Key key, Transaction transaction) {
+        return transaction.getAmount() != null && scale(transaction.getAmount()) == key.amount();
+    }
+
+    public int userSize(String userId) {
+        Bucket bucket = byUser.get(userId);
+        return bucket == null ? 0 : bucket.size.get();
+    }
+
+    public int merchantSize(String merchantId) {
+        Bucket bucket = byMerchant.get(merchantId);
+        return bucket == null ? 0 : bucket.size.get();
+    }
+
+    /**
+     * @methodName range
+     * @description 取金额区间内的索引键，userId/merchantId都为空时取全局索引，都不为空时取调用方指定的一侧
+     * @param userId 用户ID，为空表示不按用户
+     * @param merchantId 商户ID，为空表示不按商户
+     * @param minAmount 最小金额（包含）
+     * @param maxAmount 最大金额（包含）
+     * @param descending 是否按金额降序
+     * @return 查询区间
+     * @author wangwei
+     * @date 2026/10/19
+     */
+    public Range range(String userId, String merchantId, BigDecimal minAmount, BigDecimal maxAmount, boolean descending) {
+        queries.incrementAndGet();
+        Bucket bucket = userId != null ? byUser.get(userId) : merchantId != null ? byMerchant.get(merchantId) : all;
+        if (bucket == null) {
+            return EMPTY;
+        }
+        NavigableSet<Key> keys = bucket.keys;
+        boolean bounded = minAmount != null || maxAmount != null;
+        if (bounded) {
+            long low = minAmount == null ? Long.MIN_VALUE : scaled(minAmount, RoundingMode.CEILING);
+            long high = maxAmount == null ? Long.MAX_VALUE : scale(maxAmount);
+            if (low > high) {
+                return EMPTY;
+            }
+            // 流水号为空串的键小于同金额的任何键
+            keys = high == Long.MAX_VALUE ? keys.tailSet(new Key(low, ""), true)
+                    : keys.subSet(new Key(low, ""), true, new Key(high + 1, ""), false);
+        }
+        return new Range(descending ? keys.descendingSet() : keys, bounded, bucket.size.get());
+    }
+
+    /**
+     * @methodName count
+     * @description 区间内的索引键条数，无金额条件时直接取索引条数，否则只遍历区间内的索引键
+     * @param range 查询区间
+     * @return 条数
+     * @author wangwei
+     * @date 2026/10/19
+     */
+    public int count(Range range) {
+        if (!range.bounded()) {
+            return range.size();
+        }
+        int count = 0;
+        for (Iterator<Key> iterator = range.keys().iterator(); iterator.hasNext(); iterator.next()) {
+            count++;
+        }
+        return count;
+    }
+
+    public void recordExamined(long rows) {
+        examinedRows.addAndGet(rows);
+    }
+
+    private void add(Transaction transaction) {
+        if (transaction == null || transaction.getAmount() == null) {
+            return;
+        }
+        Key key = new Key(scale(transaction.getAmount()), transaction.getTransactionId());
+        all.add(key);
+        if (transaction.getUserId() != null) {
+            byUser.compute(transaction.getUserId(), (k, bucket) -> {
+                Bucket target = bucket == null ? new Bucket() : bucket;
+                target.add(key);
+                return target;
+            });
+        }
+        if (transaction.getMerchantId() != null) {
+            byMerchant.compute(transaction.getMerchantId(), (k, bucket) -> {
+                Bucket target = bucket == null ? new Bucket() : bucket;
+                target.add(key);
+                return target;
+            });
+        }
+    }
+
+    private void remove(Transaction transaction) {
+        if (transaction == null || transaction.getAmount() == null) {
+            return;
+        }
+        Key key = new Key(scale(transaction.getAmount()), transaction.getTransactionId());
+        all.remove(key);
+        if (transaction.getUserId() != null) {
+            byUser.computeIfPresent(transaction.getUserId(), (k, bucket) -> {
+                bucket.remove(key);
+                return bucket.size.get() == 0 ? null : bucket;
+            });
+        }
+        if (transaction.getMerchantId() != null) {
+            byMerchant.computeIfPresent(transaction.getMerchantId(), (k, bucket) -> {
+                bucket.remove(key);
+                return bucket.size.get() == 0 ? null : bucket;
+            });
+        }
+    }
+
+    @Override
+    public void onAdd(Transaction after) {
+        add(after);
+    }
+
+    @Override
+    public void onUpdate(Transaction before, Transaction after) {
+        // 金额、用户、商户都没变时索引键不变
+        if (before != null && after != null && scale(before.getAmount()) == scale(after.getAmount())
+                && Objects.equals(before.getUserId(), after.getUserId())
+                && Objects.equals(before.getMerchantId(), after.getMerchantId())) {
+            return;
+        }
+        remove(before);
+        add(after);
+    }
+
+    @Override
+    public void onDelete(Transaction before) {
+        remove(before);
+    }
+
+    @Override
+    public void onExpire(List<Transaction> expired) {
+        for (Transaction transaction : expired) {
+            remove(transaction);
+        }
+    }
+
+    @Override
+    public String metricsName() {
+        return "amountIndex";
+    }
+
+    @Override
+    public Map<String, Object> metrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("entries", all.size.get());
+        metrics.put("userKeys", byUser.size());
+        metrics.put("merchantKeys", byMerchant.size());
+        metrics.put("estimatedBytes", estimatedBytes());
+        metrics.put("queries", queries.get());
+        metrics.put("examinedRows", examinedRows.get());
+        return metrics;
+    }
+}
@@ -0,0 +1,126 @@
+package com.hsbc.interview.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Ticker;
+import com.hsbc.interview.common.MetricsProvider;
+import com.hsbc.interview.common.TransException;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import static com.hsbc.interview.common.Constant.HTTP_FAIL_CODE;
+
+/**
+ * 新增交易幂等控制
+ * 以 用户ID+客户端请求ID 为键，在去重时间窗口内记录已分配的交易流水号，
+ * 网关超时重试时直接返回首次分配的流水号，不再重复写入；
+ * 首次请求仍在处理中时，重试请求等待首次请求的结果。去重只依赖一次putIfAbsent，不经过CacheLockManager
+ * @author wangwei
+ * @date 2026-10-19
+ */
+@Component
+@Log4j2
+public class IdempotencyGuard implements MetricsProvider {
+
+    /**
+     * 请求键，用户ID与请求ID分开比较，避免拼接后不同用户的键相同
+     */
+    private record RequestKey(String userId, String requestId) {
+    }
+
+    // 请求键 -> 首次请求分配的交易流水号
+    private final Cache<RequestKey, CompletableFuture<String>> requestCache;
+
+    private final long waitMillis;
+
+    private final AtomicLong firstRequests = new AtomicLong();
+    private final AtomicLong duplicateRequests = new AtomicLong();
+
+    @Autowired
+    public IdempotencyGuard(@Value("${trans.idempotency.window-seconds:600}") long windowSeconds,
+                            @Value("${trans.idempotency.max-entries:1000000}") long maxEntries,
+                            @Value("${trans.idempotency.wait-millis:3000}") long waitMillis) {
+        this(windowSeconds, maxEntries, waitMillis, Ticker.systemTicker());
+    }
+
+    // 测试中用可控的时钟验证去重窗口到期
+    IdempotencyGuard(long windowSeconds, long maxEntries, long waitMillis, Ticker ticker) {
+        this.waitMillis = waitMillis;
+        this.requestCache = Caffeine.newBuilder()
+                .ticker(ticker)
+                .expireAfterWrite(windowSeconds, TimeUnit.SECONDS)
+                .maximumSize(maxEntries)
+                .build();
+    }
+
+    /**
+     * @methodName execute
+     * @description 同一请求键在去重窗口内只执行一次，重复请求返回首次结果
+     * @param userId 用户ID
+     * @param requestId 客户端请求ID
+     * @param action 实际新增操作，返回交易流水号
+     * @return 交易流水号
+     * @author wangwei
+     * @date 2026/10/19
+     */
+    public String execute(String userId, String requestId, Supplier<String> action) {
+        RequestKey key = new RequestKey(userId, requestId);
+        CompletableFuture<String> mine = new CompletableFuture<>();
+        CompletableFuture<String> existing = requestCache.asMap().putIfAbsent(key, mine);
+        if (existing != null) {
+            duplicateRequests.incrementAndGet();
+            return awaitExisting(requestId, existing);
+        }
+        firstRequests.incrementAndGet();
+        try {
+            String transactionId = action.get();
+            mine.complete(transactionId);
+            return transactionId;
+        } catch (RuntimeException e) {
+            // 首次请求失败则移除记录，允许客户端重试
+            requestCache.asMap().remove(key, mine);
+            mine.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    private String awaitExisting(String requestId, CompletableFuture<String> existing) {
+        try {
+            String transactionId = existing.get(waitMillis, TimeUnit.MILLISECONDS);
+            log.info("请求【{}】重复提交，返回已分配的交易流水【{}】", requestId, transactionId);
+            return transactionId;
+        } catch (TimeoutException e) {
+            throw new TransException(HTTP_FAIL_CODE, "请求【" + requestId + "】正在处理中，请稍后重试");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new TransException(HTTP_FAIL_CODE, e.getCause().getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TransException(HTTP_FAIL_CODE, "请求【" + requestId + "】等待被中断");
+        }
+    }
+
+    @Override
+    public String metricsName() {
+        return "idempotency";
+    }
+
+    @Override
+    public Map<String, Object> metrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("entries", requestCache.estimatedSize());
+        metrics.put("firstRequests", firstRequests.get());
+        metrics.put("duplicateRequests", duplicateRequests.get());
+        return metrics;
+    }
+}
@@ -0,0 +1,122 @@
+package com.hsbc.interview.service;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 全局有序交易流水ID索引
+ * 交易流水ID按 T+yyyyMMdd+序号 生成，字典序即时间序，无条件分页按序读取即可，无需全量排序
+ * 跳表的size()需要遍历，这里单独维护计数；
+ * 另按流水ID前缀分桶计数（同一前缀的ID在字典序上连续，标准流水号每桶最多1000条），
+ * 深分页时按桶计数整桶跳过，只在目标桶内逐条前进，定位偏移量的代价为 O(offset/1000 + 1000)
+ * @author wangwei
+ * @date 2026-10-19
+ */
+public class OrderedIdIndex {
+
+    private final ConcurrentSkipListSet<String> ids = new ConcurrentSkipListSet<>();
+
+    // 分桶前缀长度：T+yyyyMMdd+8位序号共17位，取前14位，即按序号的后3位分桶
+    private static final int BUCKET_PREFIX = 14;
+
+    private final AtomicLong count = new AtomicLong();
+
+    // 标准流水号每桶的最大ID数
+    private static final int BUCKET_SIZE = 1000;
+
+    // 桶前缀 -> 桶内ID数量，空桶移除
+    private final ConcurrentSkipListMap<String, Long> buckets = new ConcurrentSkipListMap<>();
+
+    public void add(String transactionId) {
+        if (transactionId != null && ids.add(transactionId)) {
+            buckets.merge(bucketOf(transactionId), 1L, Long::sum);
+            count.incrementAndGet();
+        }
+    }
+
+    public void remove(String transactionId) {
+        if (transactionId != null && ids.remove(transactionId)) {
+            buckets.computeIfPresent(bucketOf(transactionId), (bucket, n) -> n <= 1 ? null : n - 1);
+            count.decrementAndGet();
+        }
+    }
+
+    public boolean contains(String transactionId) {
+        return transactionId != null && ids.contains(transactionId);
+    }
+
+    public long size() {
+        return count.get();
+    }
+
+    /**
+     * @return 按流水ID升序的迭代器（弱一致）
+     */
+    public Iterator<String> iterator() {
+        return ids.iterator();
+    }
+
+    /**
+     * @methodName seekSteps
+     * @description 估算定位到偏移量需要访问的桶与ID数，供查询计划估算代价
+     * @param offset 偏移量
+     * @return 访问次数
+     * @author wangwei
+     * @date 2026/10/19
+     */
+    public static long seekSteps(long offset) {
+        return offset / BUCKET_SIZE + Math.min(offset, BUCKET_SIZE);
+    }
+
+    /**
+     * @methodName iteratorFrom
+     * @description 从第offset条（从0开始）开始的升序迭代器，先按桶计数整桶跳过，再在目标桶内前进；
+     * 与并发写入之间弱一致，写入进行中时起点可能偏差一两条
+     * @param offset 偏移量
+     * @return 流水ID升序迭代器，偏移量超出总数时为空
+     * @author wangwei
+     * @date 2026/10/19
+     */
+    public Iterator<String> iteratorFrom(long offset) {
+        long skipped = 0;
+        for (Map.Entry<String, Long> bucket : buckets.entrySet()) {
+            long size = bucket.getValue();
+            if (skipped + size > offset) {
+                // 桶前缀不大于桶内任何ID、且大于之前各桶的全部ID，从前缀开始即为桶内第一条
+                Iterator<String> iterator = ids.tailSet(bucket.getKey(), true).iterator();
+                for (; skipped < offset && iterator.hasNext(); skipped++) {
+                    iterator.next();
+                }
+                return iterator;
+            }
+            skipped += size;
+        }
+        return Collections.emptyIterator();
+    }
+
+    /**
+     * @param toExclusive 上界（不包含）
+     * @return 小于上界的流水ID升序迭代器
+     */
+    public Iterator<String> headIterator(String toExclusive) {
+        return ids.headSet(toExclusive).iterator();
+    }
+
+    public String last() {
+        return ids.isEmpty() ? null : ids.last();
+    }
+
+    public void clear() {
+        ids.clear();
+        buckets.clear();
+        count.set(0);
+    }
+
+    private static String bucketOf(String transactionId) {
+        return transactionId.length() <= BUCKET_PREFIX ? transactionId : transactionId.substring(0, BUCKET_PREFIX);
+    }
+}
@@ -0,0 +1,270 @@
+package com.hsbc.interview.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.hsbc.interview.common.MemoryEstimator;
+import com.hsbc.interview.common.MetricsProvider;
+import com.hsbc.interview.config.MemoryBudgetManager;
+import com.hsbc.interview.dto.TransQryRequest;
+import com.hsbc.interview.dto.TransQryRsp;
+import com.hsbc.interview.entity.Transaction;
+import org.apache.logging.log4j.util.Strings;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * 分页查询结果缓存
+ * 缓存键为规范化后的查询条件（用户ID、商户ID、金额区间、页码、页大小），
+ * 每个缓存结果记录计算时所依赖索引键的修改版本号，交易写入后只递增受影响的用户/商户版本号，
+ * 读取时版本号不一致即视为失效，因此商户X的写入只会让商户X相关的分页结果失效
+ * @author wangwei
+ * @date 2026-10-19
+ */
+@Component
+public class QueryResultCache implements TransactionMutationListener, MetricsProvider {
+
+    private static final String USER_PREFIX = "U:";
+    private static final String MERCHANT_PREFIX = "M:";
+
+    // 全局写序号，任意写入都会递增，无条件查询依赖该序号
+    private final AtomicLong globalVersion = new AtomicLong();
+
+    // 被淘汰的索引键版本号的最大值，索引键版本号缺失时以此作为下限，避免淘汰后版本号回退造成误命中
+    private final AtomicLong evictedFloor = new AtomicLong();
+
+    // 索引键 -> 最近一次写入时的全局写序号
+    private final Cache<String, Long> keyVersions;
+
+    private final Cache<QueryKey, Entry> resultCache;
+
+    private final AtomicLong staleCount = new AtomicLong();
+
+    private final long maxWeightBytes;
+
+    public QueryResultCache(@Value("${trans.query-cache.max-weight-mb:64}") long maxWeightMb,
+                            @Value("${trans.query-cache.max-keys:200000}") long maxKeys) {
+        this.maxWeightBytes = maxWeightMb * 1024 * 1024;
+        this.keyVersions = Caffeine.newBuilder()
+                .maximumSize(maxKeys)
+                .evictionListener((String key, Long version, RemovalCause cause) -> {
+                    if (version != null) {
+                        evictedFloor.accumulateAndGet(version, Math::max);
+                    }
+                })
+                .build();
+        this.resultCache = Caffeine.newBuilder()
+                .maximumWeight(maxWeightBytes)
+                .weigher((QueryKey key, Entry entry) -> entry.weight())
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * 纳入全局内存预算，实际上限在 max-weight-mb 以内按预算与优先级分配
+     *
+     * @param memoryBudgetManager 全局内存预算
+     */
+    @Autowired(required = false)
+    public void setMemoryBudgetManager(MemoryBudgetManager memoryBudgetManager) {
+        memoryBudgetManager.register(MemoryBudgetManager.QUERY_CACHE, resultCache, true);
+    }
+
+    /**
+     * 缓存键，空白条件统一归一为null
+     */
+    record QueryKey(String userId, String merchantId, BigDecimal minAmount, BigDecimal maxAmount,
+                    TransSort sort, int page, int pageSize) {
+    }
+
+    /**
+     * 缓存结果及其计算时依赖的版本号
+     */
+    record Entry(long userVersion, long merchantVersion, long globalVersion, TransQryRsp rsp, int weight) {
+    }
+
+    /**
+     * @methodName isCacheable
+     * @description 只缓存按用户/商户/全部分页的查询，单流水查询本身就是一次主缓存命中；explain需要实际执行，不走缓存
+     * @param req 查询条件
+     * @return 是否可以走结果缓存
+     * @author wangwei
+     * @date 2026/10/19
+     */
+    public boolean isCacheable(TransQryRequest req) {
+        return Strings.isBlank(req.getTransactionId()) && req.getPage() != null && req.getPageSize() != null
+                && req.getPage() > 0 && req.getPageSize() > 0 && !Boolean.TRUE.equals(req.getExplain())
+                && !TransactionSnapshotManager.isSnapshotQuery(req);
+    }
+
+    /**
+     * @methodName get
+     * @description 读取缓存结果，不存在或者依赖的索引键已被修改时重新计算；
+     * 缓存中的分页列表不可修改，每次返回新的响应对象，调用方修改返回值不会影响缓存
+     * @param req 查询条件
+     * @param loader 实际查询
+     * @return 查询结果
+     * @author wangwei
+     * @date 2026/10/19
+     */
+    public TransQryRsp get(TransQryRequest req, Supplier<TransQryRsp> loader) {
+        QueryKey key = new QueryKey(normalize(req.getUserId()), normalize(req.getMerchantId()),
+                normalize(req.getMinAmount()), normalize(req.getMaxAmount()), TransSort.of(req), req.getPage(), req.getPageSize());
+        // 必须在查询前读取版本号，查询期间发生的写入会让本次结果在下次读取时失效
+        long userVersion = key.userId() == null ? 0 : currentVersion(USER_PREFIX + key.userId());
+        long merchantVersion = key.merchantId() == null ? 0 : currentVersion(MERCHANT_PREFIX + key.merchantId());
+        long global = (key.userId() == null && key.merchantId() == null) ? globalVersion.get() : 0;
+
+        Entry entry = resultCache.getIfPresent(key);
+        if (entry != null) {
+            if (entry.userVersion() == userVersion && entry.merchantVersion() == merchantVersion
+                    && entry.globalVersion() == global) {
+                return copyOf(entry.rsp());
+            }
+            staleCount.incrementAndGet();
+        }
+        TransQryRsp rsp = loader.get();
+        long weight = Math.min(Integer.MAX_VALUE, MemoryEstimator.estimate(rsp) + 64);
+        if (rsp.getTransList() != null) {
+            rsp.setTransList(Collections.unmodifiableList(new ArrayList<>(rsp.getTransList())));
+        }
+        resultCache.put(key, new Entry(userVersion, merchantVersion, global, rsp, (int) weight));
+        return copyOf(rsp);
+    }
+
+    // 分页列表已不可修改，直接共享
+    private static TransQryRsp copyOf(TransQryRsp rsp) {
+        TransQryRsp copy = new TransQryRsp();
+        copy.setTotal(rsp.getTotal());
+        copy.setPageSize(rsp.getPageSize());
+        copy.setPage(rsp.getPage());
+        copy.setTransList(rsp.getTransList());
+        copy.setPlan(rsp.getPlan());
+        copy.setSnapshotToken(rsp.getSnapshotToken());
+        return copy;
+    }
+
+    /**
+     * 用户/商户索引键当前的修改版本号，供物化的组合索引校验是否仍然有效（须在读取索引前获取）
+     *
+     * @param userId 用户ID
+     * @param merchantId 商户ID
+     * @return [用户版本号, 商户版本号]
+     */
+    public long[] indexVersions(String userId, String merchantId) {
+        return new long[]{currentVersion(USER_PREFIX + userId), currentVersion(MERCHANT_PREFIX + merchantId)};
+    }
+
+    private long currentVersion(String indexKey) {
+        Long version = keyVersions.getIfPresent(indexKey);
+        return version != null ? version : evictedFloor.get();
+    }
+
+    private static String normalize(String value) {
+        return Strings.isBlank(value) ? null : value.trim();
+    }
+
+    // 10.0与10.00视为同一条件
+    private static BigDecimal normalize(BigDecimal value) {
+        return value == null ? null : value.stripTrailingZeros();
+    }
+
+    // 写入完成后才递增版本号，保证并发查询不会把旧数据以新版本号缓存下来
+    private void touch(Transaction transaction) {
+        if (transaction == null) {
+            return;
+        }
+        long version = globalVersion.incrementAndGet();
+        if (transaction.getUserId() != null) {
+            keyVersions.put(USER_PREFIX + transaction.getUserId(), version);
+        }
+        if (transaction.getMerchantId() != null) {
+            keyVersions.put(MERCHANT_PREFIX + transaction.getMerchantId(), version);
+        }
+    }
+
+    @Override
+    public void afterCommit(Transaction before, Transaction after) {
+        touch(before);
+        touch(after);
+    }
+
+    @Override
+    public void onExpire(List<Transaction> expired) {
+        Set<String> userIds = new HashSet<>();
+        Set<String> merchantIds = new HashSet<>();
+        for (Transaction transaction : expired) {
+            userIds.add(transaction.getUserId());
+            merchantIds.add(transaction.getMerchantId());
+        }
+        invalidateKeys(userIds, merchantIds);
+    }
+
+    /**
+     * 批量变更（过期清理、批量导入的索引合并）后让相关用户/商户的分页结果失效，整批只递增一次全局写序号
+     *
+     * @param userIds 用户ID
+     * @param merchantIds 商户ID
+     */
+    public void invalidateKeys(Collection<String> userIds, Collection<String> merchantIds) {
+        long version = globalVersion.incrementAndGet();
+        for (String userId : userIds) {
+            if (userId != null) {
+                keyVersions.put(USER_PREFIX + userId, version);
+            }
+        }
+        for (String merchantId : merchantIds) {
+            if (merchantId != null) {
+                keyVersions.put(MERCHANT_PREFIX + merchantId, version);
+            }
+        }
+    }
+
+    /**
+     * 清空全部缓存结果
+     */
+    public void invalidateAll() {
+        globalVersion.incrementAndGet();
+        resultCache.invalidateAll();
+    }
+
+    @Override
+    public String metricsName() {
+        return "queryResultCache";
+    }
+
+    @Override
+    public Map<String, Object> metrics() {
+        CacheStats stats = resultCache.stats();
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        long requests = stats.requestCount();
+        // 版本号失效的命中实际上是一次未命中
+        long hits = stats.hitCount() - staleCount.get();
+        metrics.put("hitRate", requests == 0 ? 0D : (double) Math.max(hits, 0) / requests);
+        metrics.put("hitCount", Math.max(hits, 0));
+        metrics.put("missCount", stats.missCount() + staleCount.get());
+        metrics.put("staleCount", staleCount.get());
+        metrics.put("evictionCount", stats.evictionCount());
+        metrics.put("entries", resultCache.estimatedSize());
+        metrics.put("weightedBytes", resultCache.policy().eviction()
+                .map(eviction -> eviction.weightedSize().orElse(0L)).orElse(0L));
+        metrics.put("maxWeightBytes", maxWeightBytes);
+        metrics.put("limitBytes", resultCache.policy().eviction().map(eviction -> eviction.getMaximum()).orElse(0L));
+        metrics.put("trackedKeys", keyVersions.estimatedSize());
+        return metrics;
+    }
+}
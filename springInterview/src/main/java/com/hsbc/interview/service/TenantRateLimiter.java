@@ -0,0 +1,367 @@
+package com.hsbc.interview.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.hsbc.interview.common.MetricsProvider;
+import com.hsbc.interview.common.RateLimitException;
+import com.hsbc.interview.dto.TransQryRequest;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.extern.log4j.Log4j2;
+import org.apache.logging.log4j.util.Strings;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 按租户与接口类别的限流（准入控制）
+ * 每个 类别+商户/用户 一个令牌桶，用GCRA实现：桶状态只有一个"理论到达时间"（AtomicLong），放行时CAS推进，
+ * 热路径无锁、不分配令牌对象；被拒绝时直接算出下一次可放行的等待时间，作为 Retry-After 返回。
+ * 请求同时带商户与用户时两个桶都要有额度（先检查商户），都不带时按客户端地址限流；
+ * 一次请求涉及多个桶时全部有额度才放行，被拒绝时退回已从其他桶取得的额度。
+ * 桶状态保存在有容量上限、按空闲时间过期的缓存中，被淘汰的租户重新从满桶开始。
+ * 限额来自 application.properties，可通过 trans.rate-limit.file 指定外部文件覆盖（含按商户/用户的单独限额），
+ * 文件修改后定时重新加载，无需重启；加载失败时保留原配置
+ * @author wangwei
+ * @date 2026-10-19
+ */
+@Component
+@Log4j2
+public class TenantRateLimiter implements MetricsProvider {
+
+    /**
+     * 接口类别：按流水号读取、按用户/商户索引查询、无索引的全量扫描、写操作
+     */
+    public enum EndpointClass {
+        POINT, QUERY, SCAN, WRITE;
+
+        private final String key = name().toLowerCase(Locale.ROOT);
+
+        /**
+         * @methodName of
+         * @description 按查询条件判断 getTransData 的类别：带流水号为点查，带用户或商户为索引查询，否则为全量扫描
+         * @param req 查询条件
+         * @return 接口类别
+         * @author wangwei
+         * @date 2026/10/19
+         */
+        public static EndpointClass of(TransQryRequest req) {
+            if (Strings.isNotBlank(req.getTransactionId())) {
+                return POINT;
+            }
+            return Strings.isNotBlank(req.getUserId()) || Strings.isNotBlank(req.getMerchantId()) ? QUERY : SCAN;
+        }
+    }
+
+    /**
+     * 每秒速率与突发容量；rate<=0 表示不限
+     */
+    record Rate(double perSecond, int burst) {
+        long intervalNanos() {
+            return (long) (TimeUnit.SECONDS.toNanos(1) / perSecond);
+        }
+
+        boolean unlimited() {
+            return perSecond <= 0;
+        }
+
+        @Override
+        public String toString() {
+            return unlimited() ? "unlimited" : perSecond + "/s burst " + burst;
+        }
+    }
+
+    /**
+     * 一份完整的限流配置，重新加载时整体替换
+     */
+    record Limits(boolean enabled, Map<EndpointClass, Rate> defaults, Map<String, Rate> overrides) {
+        Rate rate(EndpointClass endpointClass, String dimension, String id) {
+            Rate rate = overrides.isEmpty() ? null : overrides.get(dimension + "." + id + "." + endpointClass.key);
+            return rate != null ? rate : defaults.get(endpointClass);
+        }
+    }
+
+    private record BucketKey(EndpointClass endpointClass, String dimension, String id) {
+    }
+
+    /**
+     * 一次请求在某个租户上消耗的额度，用户与商户都为空时按客户端地址
+     *
+     * @param userId 用户ID，可为空
+     * @param merchantId 商户ID，可为空
+     * @param permits 消耗的额度
+     */
+    public record Charge(String userId, String merchantId, int permits) {
+    }
+
+    // 已从桶中取得的额度，整体被拒绝时退回
+    private record Taken(AtomicLong bucket, long increment) {
+    }
+
+    private static final String MERCHANT = "merchant";
+    private static final String USER = "user";
+    private static final String CLIENT = "client";
+
+    // 桶状态：理论到达时间（纳秒），放行一次推进一个发放间隔
+    private final Cache<BucketKey, AtomicLong> buckets;
+
+    private final Properties baseProperties;
+
+    private final Path configFile;
+
+    private volatile Limits limits;
+
+    private volatile long configFileModified = Long.MIN_VALUE;
+
+    private final LongAdder[] allowed = new LongAdder[EndpointClass.values().length];
+    private final LongAdder[] rejected = new LongAdder[EndpointClass.values().length];
+    private final AtomicLong reloads = new AtomicLong();
+    private final AtomicLong reloadFailures = new AtomicLong();
+
+    @Autowired
+    public TenantRateLimiter(@Value("${trans.rate-limit.enabled:false}") boolean enabled,
+                             @Value("${trans.rate-limit.point.rate:20000}") double pointRate,
+                             @Value("${trans.rate-limit.point.burst:40000}") int pointBurst,
+                             @Value("${trans.rate-limit.query.rate:5000}") double queryRate,
+                             @Value("${trans.rate-limit.query.burst:10000}") int queryBurst,
+                             @Value("${trans.rate-limit.scan.rate:10}") double scanRate,
+                             @Value("${trans.rate-limit.scan.burst:20}") int scanBurst,
+                             @Value("${trans.rate-limit.write.rate:5000}") double writeRate,
+                             @Value("${trans.rate-limit.write.burst:10000}") int writeBurst,
+                             @Value("${trans.rate-limit.max-keys:100000}") long maxKeys,
+                             @Value("${trans.rate-limit.idle-seconds:600}") long idleSeconds,
+                             @Value("${trans.rate-limit.file:}") String configFile) {
+        this.baseProperties = new Properties();
+        baseProperties.setProperty("enabled", String.valueOf(enabled));
+        put(baseProperties, EndpointClass.POINT, pointRate, pointBurst);
+        put(baseProperties, EndpointClass.QUERY, queryRate, queryBurst);
+        put(baseProperties, EndpointClass.SCAN, scanRate, scanBurst);
+        put(baseProperties, EndpointClass.WRITE, writeRate, writeBurst);
+        this.buckets = Caffeine.newBuilder()
+                .maximumSize(maxKeys)
+                .expireAfterAccess(Duration.ofSeconds(idleSeconds))
+                .build();
+        for (int i = 0; i < allowed.length; i++) {
+            allowed[i] = new LongAdder();
+            rejected[i] = new LongAdder();
+        }
+        this.configFile = Strings.isBlank(configFile) ? null : Path.of(configFile.trim());
+        this.limits = parse(baseProperties);
+        reload();
+    }
+
+    private static void put(Properties properties, EndpointClass endpointClass, double rate, int burst) {
+        properties.setProperty(endpointClass.key + ".rate", String.valueOf(rate));
+        properties.setProperty(endpointClass.key + ".burst", String.valueOf(burst));
+    }
+
+    /**
+     * @methodName acquire
+     * @description 为一次请求获取额度，超出时抛出RateLimitException（返回429与Retry-After）
+     * @param endpointClass 接口类别
+     * @param userId 用户ID，可为空
+     * @param merchantId 商户ID，可为空
+     * @param permits 本次请求消耗的额度（批量接口按键数）
+     * @return
+     * @author wangwei
+     * @date 2026/10/19
+     */
+    public void acquire(EndpointClass endpointClass, String userId, String merchantId, int permits) {
+        acquireAll(endpointClass, List.of(new Charge(userId, merchantId, permits)));
+    }
+
+    public void acquire(EndpointClass endpointClass, String userId, String merchantId) {
+        acquire(endpointClass, userId, merchantId, 1);
+    }
+
+    /**
+     * @methodName acquireAll
+     * @description 在执行请求之前一次性获取涉及的全部额度（批量接口的每个用户/商户、客户端地址），
+     * 任一桶额度不足时退回已取得的额度并抛出RateLimitException
+     * @param endpointClass 接口类别
+     * @param charges 各租户消耗的额度
+     * @return
+     * @author wangwei
+     * @date 2026/10/19
+     */
+    public void acquireAll(EndpointClass endpointClass, List<Charge> charges) {
+        Limits current = limits;
+        if (!current.enabled()) {
+            return;
+        }
+        List<Taken> taken = new ArrayList<>(2);
+        try {
+            for (Charge charge : charges) {
+                if (charge.permits() <= 0) {
+                    continue;
+                }
+                boolean hasMerchant = Strings.isNotBlank(charge.merchantId());
+                boolean hasUser = Strings.isNotBlank(charge.userId());
+                if (hasMerchant) {
+                    acquire(current, endpointClass, MERCHANT, charge.merchantId().trim(), charge.permits(), taken);
+                }
+                if (hasUser) {
+                    acquire(current, endpointClass, USER, charge.userId().trim(), charge.permits(), taken);
+                }
+                if (!hasMerchant && !hasUser) {
+                    acquire(current, endpointClass, CLIENT, clientAddress(), charge.permits(), taken);
+                }
+            }
+        } catch (RateLimitException e) {
+            taken.forEach(t -> t.bucket().addAndGet(-t.increment()));
+            throw e;
+        }
+        allowed[endpointClass.ordinal()].increment();
+    }
+
+    /**
+     * GCRA：tat为理论到达时间，放行后推进 permits*interval；
+     * 允许提前 burst*interval 到达，即最多连续放行 burst 个，之后按速率放行；退回额度即把tat回退同样的间隔
+     */
+    private void acquire(Limits current, EndpointClass endpointClass, String dimension, String id, int permits,
+                         List<Taken> taken) {
+        Rate rate = current.rate(endpointClass, dimension, id);
+        if (rate == null || rate.unlimited()) {
+            return;
+        }
+        long interval = rate.intervalNanos();
+        long tolerance = interval * rate.burst();
+        long increment = interval * Math.min(permits, Math.max(1, rate.burst()));
+        AtomicLong bucket = buckets.get(new BucketKey(endpointClass, dimension, id), key -> new AtomicLong(Long.MIN_VALUE));
+        while (true) {
+            long now = System.nanoTime();
+            long tat = bucket.get();
+            long base = tat == Long.MIN_VALUE || tat - now < 0 ? now : tat;
+            long newTat = base + increment;
+            long allowAt = newTat - tolerance;
+            if (allowAt - now > 0) {
+                rejected[endpointClass.ordinal()].increment();
+                long retryAfterMillis = Math.max(1, TimeUnit.NANOSECONDS.toMillis(allowAt - now + 999_999));
+                throw new RateLimitException(dimension + "【" + id + "】的" + endpointClass.key + "请求过于频繁，请在"
+                        + retryAfterMillis + "ms后重试", retryAfterMillis);
+            }
+            if (bucket.compareAndSet(tat, newTat)) {
+                taken.add(new Taken(bucket, increment));
+                return;
+            }
+        }
+    }
+
+    // 不带用户/商户的请求按客户端地址限流
+    private static String clientAddress() {
+        if (RequestContextHolder.getRequestAttributes() instanceof ServletRequestAttributes attributes) {
+            HttpServletRequest request = attributes.getRequest();
+            return request.getRemoteAddr();
+        }
+        return "local";
+    }
+
+    /**
+     * @methodName reload
+     * @description 外部限流配置文件有修改时重新加载，文件内容覆盖 application.properties 中的限额
+     * @return
+     * @author wangwei
+     * @date 2026/10/19
+     */
+    @Scheduled(fixedDelayString = "${trans.rate-limit.reload-ms:5000}")
+    public void reload() {
+        if (configFile == null) {
+            return;
+        }
+        try {
+            long modified = Files.exists(configFile) ? Files.getLastModifiedTime(configFile).toMillis() : 0L;
+            if (modified == configFileModified) {
+                return;
+            }
+            Properties properties = new Properties();
+            properties.putAll(baseProperties);
+            if (modified != 0L) {
+                try (Reader reader = Files.newBufferedReader(configFile, StandardCharsets.UTF_8)) {
+                    properties.load(reader);
+                }
+            }
+            limits = parse(properties);
+            configFileModified = modified;
+            reloads.incrementAndGet();
+            log.info("限流配置已加载：{}", limits);
+        } catch (IOException | IllegalArgumentException e) {
+            reloadFailures.incrementAndGet();
+            log.warn("限流配置【{}】加载失败，保留原配置：{}", configFile, e.getMessage());
+        }
+    }
+
+    /**
+     * 配置项：enabled；{类别}.rate / {类别}.burst；merchant.{商户ID}.{类别}.rate 与 user.{用户ID}.{类别}.rate 等单独限额
+     */
+    static Limits parse(Properties properties) {
+        Map<EndpointClass, Rate> defaults = new EnumMap<>(EndpointClass.class);
+        for (EndpointClass endpointClass : EndpointClass.values()) {
+            defaults.put(endpointClass, rate(properties, endpointClass.key, null));
+        }
+        Map<String, Rate> overrides = new HashMap<>();
+        for (String name : properties.stringPropertyNames()) {
+            if (!name.startsWith(MERCHANT + ".") && !name.startsWith(USER + ".")) {
+                continue;
+            }
+            // merchant.{商户ID}.{类别}.rate -> 前缀 merchant.{商户ID}.{类别}，商户ID中可以含点
+            String prefix = name.substring(0, name.lastIndexOf('.'));
+            int classDot = prefix.lastIndexOf('.');
+            if (classDot <= prefix.indexOf('.')) {
+                throw new IllegalArgumentException("限流配置项格式错误: " + name);
+            }
+            String classKey = prefix.substring(classDot + 1);
+            EndpointClass endpointClass = Arrays.stream(EndpointClass.values())
+                    .filter(value -> value.key.equals(classKey)).findFirst()
+                    .orElseThrow(() -> new IllegalArgumentException("未知的接口类别: " + name));
+            overrides.computeIfAbsent(prefix, key -> rate(properties, key, defaults.get(endpointClass)));
+        }
+        return new Limits(Boolean.parseBoolean(properties.getProperty("enabled", "true").trim()), defaults,
+                Map.copyOf(overrides));
+    }
+
+    private static Rate rate(Properties properties, String prefix, Rate fallback) {
+        String rate = properties.getProperty(prefix + ".rate");
+        String burst = properties.getProperty(prefix + ".burst");
+        double perSecond = rate != null ? Double.parseDouble(rate.trim()) : fallback != null ? fallback.perSecond() : 0;
+        int burstSize = burst != null ? Integer.parseInt(burst.trim()) : fallback != null ? fallback.burst() : 1;
+        if (perSecond > 0 && burstSize < 1) {
+            throw new IllegalArgumentException(prefix + ".burst 需大于0");
+        }
+        return new Rate(perSecond, burstSize);
+    }
+
+    @Override
+    public String metricsName() {
+        return "rateLimit";
+    }
+
+    @Override
+    public Map<String, Object> metrics() {
+        Limits current = limits;
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("enabled", current.enabled());
+        for (EndpointClass endpointClass : EndpointClass.values()) {
+            metrics.put(endpointClass.key + "Allowed", allowed[endpointClass.ordinal()].sum());
+            metrics.put(endpointClass.key + "Rejected", rejected[endpointClass.ordinal()].sum());
+            metrics.put(endpointClass.key + "Limit", current.defaults().get(endpointClass).toString());
+        }
+        metrics.put("overrides", current.overrides().size());
+        metrics.put("trackedKeys", buckets.estimatedSize());
+        metrics.put("reloads", reloads.get());
+        metrics.put("reloadFailures", reloadFailures.get());
+        return metrics;
+    }
+}
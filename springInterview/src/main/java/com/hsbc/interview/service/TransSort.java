@@ -0,0 +1,66 @@
+package com.hsbc.interview.service;
+
+import com.hsbc.interview.common.TransException;
+import com.hsbc.interview.dto.TransQryRequest;
+import com.hsbc.interview.entity.Transaction;
+import org.apache.logging.log4j.util.Strings;
+
+import java.util.Comparator;
+
+import static com.hsbc.interview.common.Constant.HTTP_FAIL_CODE;
+
+/**
+ * 查询结果排序方式
+ * 按流水号只支持升序（流水号即时间序）；按金额排序时相同金额按流水号排列，未指定方向时默认降序（金额最大的在前）
+ * @author wangwei
+ * @date 2026-10-19
+ */
+public enum TransSort {
+
+    ID_ASC(Comparator.comparing(Transaction::getTransactionId)),
+
+    AMOUNT_ASC(Comparator.comparingLong((Transaction transaction) -> AmountOrderedIndex.scale(transaction.getAmount()))
+            .thenComparing(Transaction::getTransactionId)),
+
+    AMOUNT_DESC(AMOUNT_ASC.comparator.reversed());
+
+    private final Comparator<Transaction> comparator;
+
+    TransSort(Comparator<Transaction> comparator) {
+        this.comparator = comparator;
+    }
+
+    public Comparator<Transaction> comparator() {
+        return comparator;
+    }
+
+    public boolean byAmount() {
+        return this != ID_ASC;
+    }
+
+    /**
+     * @methodName of
+     * @description 解析查询请求中的排序参数
+     * @param req 查询条件，sortBy为transactionId（默认）或amount，sortOrder为asc或desc
+     * @return 排序方式
+     * @author wangwei
+     * @date 2026/10/19
+     */
+    public static TransSort of(TransQryRequest req) {
+        String sortBy = Strings.isBlank(req.getSortBy()) ? "transactionId" : req.getSortBy().trim();
+        String sortOrder = Strings.isBlank(req.getSortOrder()) ? null : req.getSortOrder().trim();
+        if (sortOrder != null && !"asc".equalsIgnoreCase(sortOrder) && !"desc".equalsIgnoreCase(sortOrder)) {
+            throw new TransException(HTTP_FAIL_CODE, "排序方向只支持asc或desc");
+        }
+        if ("amount".equalsIgnoreCase(sortBy)) {
+            return "asc".equalsIgnoreCase(sortOrder) ? AMOUNT_ASC : AMOUNT_DESC;
+        }
+        if (!"transactionId".equalsIgnoreCase(sortBy)) {
+            throw new TransException(HTTP_FAIL_CODE, "排序字段只支持transactionId或amount");
+        }
+        if ("desc".equalsIgnoreCase(sortOrder)) {
+            throw new TransException(HTTP_FAIL_CODE, "按流水号排序只支持升序");
+        }
+        return ID_ASC;
+    }
+}
@@ -0,0 +1,260 @@
+package com.hsbc.interview.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.hsbc.interview.common.ConcurrentBloomFilter;
+import com.hsbc.interview.common.MetricsProvider;
+import com.hsbc.interview.entity.Transaction;
+import com.hsbc.interview.storage.SegmentDiskTier;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * 不存在数据的快速拦截
+ * 分别对交易流水ID、用户ID、商户ID维护布隆过滤器，查询与更新/删除前先判断，一定不存在的直接返回，
+ * 不再访问缓存（开启持久化后也不会再穿透到磁盘）。
+ * 布隆过滤器无法删除元素，定时按主缓存与索引缓存重建以清除已删除的数据；写入量超过容量时提前扩容重建。
+ * onAdd/onUpdate 在写入对主缓存可见之前执行，重建可能既漏掉缓存中的这条数据、又丢弃刚写入的旧过滤器，
+ * 因此写入期间有重建开始时，afterCommit（此时数据已可见）再写入一次
+ * @author wangwei
+ * @date 2026-10-19
+ */
+@Component
+@Log4j2
+public class TransactionBloomGuard implements TransactionMutationListener, MetricsProvider {
+
+    private final Cache<String, Transaction> mainCache;
+
+    private final Cache<String, Set<String>> userIndexCache;
+
+    private final Cache<String, Set<String>> merchantIndexCache;
+
+    private final double fpp;
+
+    private final long expectedInsertions;
+
+    private final GuardFilter transactionFilter;
+    private final GuardFilter userFilter;
+    private final GuardFilter merchantFilter;
+
+    private final AtomicBoolean rebuilding = new AtomicBoolean();
+
+    private final ExecutorService rebuildExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "bloom-rebuild");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // 磁盘层中的流水号同样需要进入过滤器
+    private SegmentDiskTier diskTier;
+
+    // 本线程最近一次onAdd/onUpdate写入前的重建轮次，afterCommit据此判断是否需要补写
+    private final ThreadLocal<long[]> recordedEpoch = ThreadLocal.withInitial(() -> new long[1]);
+
+    private final AtomicLong rebuildCount = new AtomicLong();
+    private final AtomicLong lastRebuildMillis = new AtomicLong();
+
+    @Autowired
+    public TransactionBloomGuard(Cache<String, Transaction> mainCache,
+                                 @Qualifier("userIndexCache") Cache<String, Set<String>> userIndexCache,
+                                 @Qualifier("merchantIndexCache") Cache<String, Set<String>> merchantIndexCache,
+                                 @Value("${trans.bloom.fpp:0.01}") double fpp,
+                                 @Value("${trans.bloom.expected-insertions:100000}") long expectedInsertions) {
+        this.mainCache = mainCache;
+        this.userIndexCache = userIndexCache;
+        this.merchantIndexCache = merchantIndexCache;
+        this.fpp = fpp;
+        this.expectedInsertions = expectedInsertions;
+        this.transactionFilter = new GuardFilter(new ConcurrentBloomFilter(expectedInsertions, fpp));
+        this.userFilter = new GuardFilter(new ConcurrentBloomFilter(expectedInsertions, fpp));
+        this.merchantFilter = new GuardFilter(new ConcurrentBloomFilter(expectedInsertions, fpp));
+    }
+
+    @Autowired(required = false)
+    public void setDiskTier(SegmentDiskTier diskTier) {
+        this.diskTier = diskTier;
+    }
+
+    /**
+     * 支持在线重建的布隆过滤器
+     * 重建期间新写入同时进入待切换的过滤器，先写待切换再写当前，保证切换前后都不会漏判；
+     * 设置待切换过滤器之后轮次加一，写入前读到的轮次与写入后不同，说明写入可能早于待切换过滤器且未被重建数据源覆盖
+     */
+    private static final class GuardFilter {
+        private volatile ConcurrentBloomFilter current;
+        private volatile ConcurrentBloomFilter pending;
+        private volatile long epoch;
+        private final AtomicLong negatives = new AtomicLong();
+        private final AtomicLong lookups = new AtomicLong();
+
+        GuardFilter(ConcurrentBloomFilter current) {
+            this.current = current;
+        }
+
+        void put(String value) {
+            if (value == null) {
+                return;
+            }
+            ConcurrentBloomFilter next = pending;
+            if (next != null) {
+                next.put(value);
+            }
+            current.put(value);
+        }
+
+        boolean mightContain(String value) {
+            lookups.incrementAndGet();
+            if (current.mightContain(value)) {
+                return true;
+            }
+            negatives.incrementAndGet();
+            return false;
+        }
+
+        void rebuild(ConcurrentBloomFilter next, Supplier<Iterable<String>> source) {
+            pending = next;
+            epoch++;
+            for (String value : source.get()) {
+                next.put(value);
+            }
+            current = next;
+            pending = null;
+        }
+
+        Map<String, Object> metrics() {
+            ConcurrentBloomFilter filter = current;
+            Map<String, Object> metrics = new LinkedHashMap<>();
+            metrics.put("insertions", filter.getInsertions());
+            metrics.put("capacity", filter.getExpectedInsertions());
+            metrics.put("bitSize", filter.getBitSize());
+            metrics.put("hashCount", filter.getHashCount());
+            metrics.put("estimatedFpp", filter.currentFpp());
+            metrics.put("lookups", lookups.get());
+            metrics.put("negatives", negatives.get());
+            return metrics;
+        }
+    }
+
+    public boolean mightContainTransaction(String transactionId) {
+        return transactionFilter.mightContain(transactionId);
+    }
+
+    public boolean mightContainUser(String userId) {
+        return userFilter.mightContain(userId);
+    }
+
+    public boolean mightContainMerchant(String merchantId) {
+        return merchantFilter.mightContain(merchantId);
+    }
+
+    private long epoch() {
+        return transactionFilter.epoch + userFilter.epoch + merchantFilter.epoch;
+    }
+
+    private void record(Transaction transaction) {
+        transactionFilter.put(transaction.getTransactionId());
+        userFilter.put(transaction.getUserId());
+        merchantFilter.put(transaction.getMerchantId());
+        if (transactionFilter.current.isSaturated() || userFilter.current.isSaturated()
+                || merchantFilter.current.isSaturated()) {
+            rebuildAsync();
+        }
+    }
+
+    @Override
+    public void onAdd(Transaction after) {
+        recordedEpoch.get()[0] = epoch();
+        record(after);
+    }
+
+    @Override
+    public void onUpdate(Transaction before, Transaction after) {
+        recordedEpoch.get()[0] = epoch();
+        record(after);
+    }
+
+    @Override
+    public void afterCommit(Transaction before, Transaction after) {
+        // 写入之后开始的重建能从缓存中读到这条数据，只需补写之前已开始的
+        if (after != null && recordedEpoch.get()[0] != epoch()) {
+            record(after);
+        }
+    }
+
+    /**
+     * 定时重建，清除已删除的数据
+     */
+    @Scheduled(initialDelayString = "${trans.bloom.rebuild-interval-ms:600000}",
+            fixedDelayString = "${trans.bloom.rebuild-interval-ms:600000}")
+    public void scheduledRebuild() {
+        rebuildAsync();
+    }
+
+    private void rebuildAsync() {
+        if (rebuilding.compareAndSet(false, true)) {
+            rebuildExecutor.execute(() -> {
+                try {
+                    rebuild();
+                } catch (RuntimeException e) {
+                    log.error("布隆过滤器重建失败", e);
+                } finally {
+                    rebuilding.set(false);
+                }
+            });
+        }
+    }
+
+    /**
+     * @methodName rebuild
+     * @description 按主缓存与索引缓存重建布隆过滤器，容量取配置值与当前数据量两倍的较大者
+     * @return
+     * @author wangwei
+     * @date 2026/10/19
+     */
+    public synchronized void rebuild() {
+        long start = System.currentTimeMillis();
+        SegmentDiskTier tier = diskTier;
+        long transactions = mainCache.estimatedSize() + (tier == null ? 0 : tier.size());
+        transactionFilter.rebuild(newFilter(transactions), () -> tier == null ? mainCache.asMap().keySet()
+                : Stream.concat(mainCache.asMap().keySet().stream(), tier.keys().stream())::iterator);
+        userFilter.rebuild(newFilter(userIndexCache.estimatedSize()), () -> userIndexCache.asMap().keySet());
+        merchantFilter.rebuild(newFilter(merchantIndexCache.estimatedSize()), () -> merchantIndexCache.asMap().keySet());
+        rebuildCount.incrementAndGet();
+        lastRebuildMillis.set(System.currentTimeMillis() - start);
+        log.info("布隆过滤器重建完成，耗时{}ms", lastRebuildMillis.get());
+    }
+
+    private ConcurrentBloomFilter newFilter(long size) {
+        return new ConcurrentBloomFilter(Math.max(expectedInsertions, size * 2), fpp);
+    }
+
+    @Override
+    public String metricsName() {
+        return "bloomGuard";
+    }
+
+    @Override
+    public Map<String, Object> metrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("configuredFpp", fpp);
+        metrics.put("rebuildCount", rebuildCount.get());
+        metrics.put("lastRebuildMillis", lastRebuildMillis.get());
+        metrics.put("transaction", transactionFilter.metrics());
+        metrics.put("user", userFilter.metrics());
+        metrics.put("merchant", merchantFilter.metrics());
+        return metrics;
+    }
+}
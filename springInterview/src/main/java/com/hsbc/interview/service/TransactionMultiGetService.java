@@ -0,0 +1,365 @@
+package com.hsbc.interview.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.hsbc.interview.common.MetricsProvider;
+import com.hsbc.interview.common.TransException;
+import com.hsbc.interview.dto.MultiGetRequest;
+import com.hsbc.interview.dto.MultiGetRsp;
+import com.hsbc.interview.dto.TransDataDto;
+import com.hsbc.interview.dto.TransQryRequest;
+import com.hsbc.interview.dto.TransQryRsp;
+import com.hsbc.interview.entity.Transaction;
+import org.apache.logging.log4j.util.Strings;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+import static com.hsbc.interview.common.Constant.HTTP_FAIL_CODE;
+
+/**
+ * 批量查询：一次请求按多个流水号、用户或商户读取交易
+ * 请求中的键去重后，用户/商户索引各用一次 getAllPresent 取出，每个键只选出按流水号升序的前 limitPerKey 个流水号（O(n log k)，不整体排序）；
+ * 所有需要读取的流水号（请求的流水号与各分组选出的流水号）合并去重后按块调用 mainCache.getAllPresent，主缓存未命中的再读磁盘层，
+ * 同一条交易只转换一次DTO，被多个分组引用时共用。键数达到 parallel-threshold 时分组与按块读取并行执行
+ * @author wangwei
+ * @date 2026-10-19
+ */
+@Component
+public class TransactionMultiGetService implements MetricsProvider {
+
+    // 按块读取主缓存，并行时每块一个任务
+    private static final int CHUNK_SIZE = 256;
+
+    private final Cache<String, Transaction> mainCache;
+
+    private final Cache<String, Set<String>> userIndexCache;
+
+    private final Cache<String, Set<String>> merchantIndexCache;
+
+    private final TransactionService transactionService;
+
+    private final int maxKeys;
+
+    private final int defaultLimitPerKey;
+
+    private final int maxLimitPerKey;
+
+    private final int parallelThreshold;
+
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder keyCount = new LongAdder();
+    private final LongAdder duplicateKeys = new LongAdder();
+    private final LongAdder rows = new LongAdder();
+    private final LongAdder parallelRequests = new LongAdder();
+
+    @Autowired
+    public TransactionMultiGetService(Cache<String, Transaction> mainCache,
+                                      Cache<String, Set<String>> userIndexCache,
+                                      Cache<String, Set<String>> merchantIndexCache,
+                                      TransactionService transactionService,
+                                      @Value("${trans.multi-get.max-keys:1000}") int maxKeys,
+                                      @Value("${trans.multi-get.default-limit-per-key:10}") int defaultLimitPerKey,
+                                      @Value("${trans.multi-get.max-limit-per-key:1000}") int maxLimitPerKey,
+                                      @Value("${trans.multi-get.parallel-threshold:256}") int parallelThreshold) {
+        this.mainCache = mainCache;
+        this.userIndexCache = userIndexCache;
+        this.merchantIndexCache = merchantIndexCache;
+        this.transactionService = transactionService;
+        this.maxKeys = maxKeys;
+        this.defaultLimitPerKey = defaultLimitPerKey;
+        this.maxLimitPerKey = maxLimitPerKey;
+        this.parallelThreshold = parallelThreshold;
+    }
+
+    /**
+     * 去重后的请求键与每个键的条数
+     */
+    private record Keys(List<String> transactionIds, List<String> userIds, List<String> merchantIds, int limit) {
+        int size() {
+            return transactionIds.size() + userIds.size() + merchantIds.size();
+        }
+    }
+
+    /**
+     * @methodName multiGet
+     * @description 在本节点批量读取
+     * @param req 批量查询条件
+     * @return 按键分组的查询结果
+     * @author wangwei
+     * @date 2026/10/19
+     */
+    public MultiGetRsp multiGet(MultiGetRequest req) {
+        Keys keys = keys(req);
+        boolean parallel = keys.size() >= parallelThreshold;
+        if (parallel) {
+            parallelRequests.increment();
+        }
+
+        // 用户/商户索引各一次批量读取，每个键选出前limit个流水号
+        Map<String, Set<String>> userSets = keys.userIds().isEmpty()
+                ? Collections.emptyMap() : userIndexCache.getAllPresent(keys.userIds());
+        Map<String, Set<String>> merchantSets = keys.merchantIds().isEmpty()
+                ? Collections.emptyMap() : merchantIndexCache.getAllPresent(keys.merchantIds());
+        Map<String, List<String>> userPages = firstIds(keys.userIds(), userSets, keys.limit(), parallel);
+        Map<String, List<String>> merchantPages = firstIds(keys.merchantIds(), merchantSets, keys.limit(), parallel);
+
+        // 所有需要读取的流水号合并去重后按块读取
+        Set<String> wanted = new LinkedHashSet<>(keys.transactionIds());
+        userPages.values().forEach(wanted::addAll);
+        merchantPages.values().forEach(wanted::addAll);
+        Map<String, TransDataDto> found = read(new ArrayList<>(wanted), parallel);
+        rows.add(found.size());
+
+        MultiGetRsp rsp = new MultiGetRsp();
+        if (!keys.transactionIds().isEmpty()) {
+            Map<String, TransDataDto> transactions = new LinkedHashMap<>();
+            List<String> notFound = new ArrayList<>();
+            for (String transactionId : keys.transactionIds()) {
+                TransDataDto dto = found.get(transactionId);
+                if (dto != null) {
+                    transactions.put(transactionId, dto);
+                } else {
+                    notFound.add(transactionId);
+                }
+            }
+            rsp.setTransactions(transactions);
+            rsp.setNotFound(notFound);
+        }
+        if (!keys.userIds().isEmpty()) {
+            rsp.setUsers(groups(keys.userIds(), userSets, userPages, found));
+        }
+        if (!keys.merchantIds().isEmpty()) {
+            rsp.setMerchants(groups(keys.merchantIds(), merchantSets, merchantPages, found));
+        }
+        return rsp;
+    }
+
+    /**
+     * @methodName multiGet
+     * @description 逐键调用查询接口批量读取（集群模式下按用户路由、按流水号/商户发往各节点），各键在虚拟线程上并发查询
+     * @param req 批量查询条件
+     * @param search 单个键的查询
+     * @return 按键分组的查询结果
+     * @author wangwei
+     * @date 2026/10/19
+     */
+    public MultiGetRsp multiGet(MultiGetRequest req, Function<TransQryRequest, TransQryRsp> search) {
+        Keys keys = keys(req);
+        List<TransQryRequest> queries = new ArrayList<>(keys.size());
+        keys.transactionIds().forEach(id -> queries.add(query(id, null, null, 1)));
+        keys.userIds().forEach(id -> queries.add(query(null, id, null, keys.limit())));
+        keys.merchantIds().forEach(id -> queries.add(query(null, null, id, keys.limit())));
+        List<TransQryRsp> results = new ArrayList<>(queries.size());
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<TransQryRsp>> futures = queries.stream().map(q -> executor.submit(() -> search.apply(q))).toList();
+            for (Future<TransQryRsp> future : futures) {
+                results.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TransException(HTTP_FAIL_CODE, "批量查询被中断");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof TransException transException) {
+                throw transException;
+            }
+            throw new TransException(HTTP_FAIL_CODE, "批量查询失败: " + e.getCause().getMessage());
+        }
+
+        MultiGetRsp rsp = new MultiGetRsp();
+        Iterator<TransQryRsp> it = results.iterator();
+        if (!keys.transactionIds().isEmpty()) {
+            Map<String, TransDataDto> transactions = new LinkedHashMap<>();
+            List<String> notFound = new ArrayList<>();
+            for (String transactionId : keys.transactionIds()) {
+                List<TransDataDto> transList = it.next().getTransList();
+                if (transList != null && !transList.isEmpty()) {
+                    transactions.put(transactionId, transList.get(0));
+                } else {
+                    notFound.add(transactionId);
+                }
+            }
+            rsp.setTransactions(transactions);
+            rsp.setNotFound(notFound);
+        }
+        if (!keys.userIds().isEmpty()) {
+            rsp.setUsers(groups(keys.userIds(), it));
+        }
+        if (!keys.merchantIds().isEmpty()) {
+            rsp.setMerchants(groups(keys.merchantIds(), it));
+        }
+        return rsp;
+    }
+
+    // 校验并去重请求键
+    private Keys keys(MultiGetRequest req) {
+        requests.increment();
+        List<String> transactionIds = distinct(req.getTransactionIds());
+        List<String> userIds = distinct(req.getUserIds());
+        List<String> merchantIds = distinct(req.getMerchantIds());
+        int limit = req.getLimitPerKey() == null ? defaultLimitPerKey : req.getLimitPerKey();
+        Keys keys = new Keys(transactionIds, userIds, merchantIds, limit);
+        if (keys.size() == 0) {
+            throw new TransException(HTTP_FAIL_CODE, "批量查询至少需要指定一个流水号、用户或商户");
+        }
+        if (keys.size() > maxKeys) {
+            throw new TransException(HTTP_FAIL_CODE, "批量查询的键数不能超过" + maxKeys);
+        }
+        if (limit < 1 || limit > maxLimitPerKey) {
+            throw new TransException(HTTP_FAIL_CODE, "limitPerKey需在1到" + maxLimitPerKey + "之间");
+        }
+        keyCount.add(keys.size());
+        duplicateKeys.add(size(req.getTransactionIds()) + size(req.getUserIds()) + size(req.getMerchantIds()) - keys.size());
+        return keys;
+    }
+
+    private static int size(List<String> values) {
+        return values == null ? 0 : values.size();
+    }
+
+    // 去掉空白与重复的键，保持请求中的顺序
+    private static List<String> distinct(List<String> values) {
+        if (values == null || values.isEmpty()) {
+            return Collections.emptyList();
+        }
+        Set<String> unique = new LinkedHashSet<>();
+        for (String value : values) {
+            if (Strings.isNotBlank(value)) {
+                unique.add(value.trim());
+            }
+        }
+        return new ArrayList<>(unique);
+    }
+
+    // 每个键按流水号升序的前limit个流水号
+    private static Map<String, List<String>> firstIds(List<String> keys, Map<String, Set<String>> sets, int limit,
+                                                      boolean parallel) {
+        Map<String, List<String>> pages = new ConcurrentHashMap<>();
+        Stream<String> stream = parallel ? keys.parallelStream() : keys.stream();
+        stream.forEach(key -> {
+            Set<String> ids = sets.get(key);
+            if (ids != null && !ids.isEmpty()) {
+                pages.put(key, smallest(ids, limit));
+            }
+        });
+        return pages;
+    }
+
+    /**
+     * @methodName smallest
+     * @description 按升序取集合中最小的limit个元素，用大小为limit的最大堆，O(n log limit)
+     * @param ids 流水号集合
+     * @param limit 个数
+     * @return 升序的流水号
+     * @author wangwei
+     * @date 2026/10/19
+     */
+    static List<String> smallest(Set<String> ids, int limit) {
+        if (ids.size() <= limit) {
+            List<String> sorted = new ArrayList<>(ids);
+            sorted.sort(String::compareTo);
+            return sorted;
+        }
+        PriorityQueue<String> heap = new PriorityQueue<>(limit, Comparator.reverseOrder());
+        for (String id : ids) {
+            if (heap.size() < limit) {
+                heap.add(id);
+            } else if (id.compareTo(heap.peek()) < 0) {
+                heap.poll();
+                heap.add(id);
+            }
+        }
+        List<String> sorted = new ArrayList<>(heap);
+        sorted.sort(String::compareTo);
+        return sorted;
+    }
+
+    // 按块批量读取主缓存，未命中的读磁盘层；每条交易只转换一次
+    private Map<String, TransDataDto> read(List<String> transactionIds, boolean parallel) {
+        Map<String, TransDataDto> found = new ConcurrentHashMap<>(transactionIds.size() * 2);
+        List<List<String>> chunks = new ArrayList<>(transactionIds.size() / CHUNK_SIZE + 1);
+        for (int from = 0; from < transactionIds.size(); from += CHUNK_SIZE) {
+            chunks.add(transactionIds.subList(from, Math.min(from + CHUNK_SIZE, transactionIds.size())));
+        }
+        Stream<List<String>> stream = parallel ? chunks.parallelStream() : chunks.stream();
+        stream.forEach(chunk -> {
+            Map<String, Transaction> hot = mainCache.getAllPresent(chunk);
+            for (String transactionId : chunk) {
+                Transaction transaction = hot.get(transactionId);
+                if (transaction == null) {
+                    transaction = transactionService.getTransaction(transactionId);
+                }
+                if (transaction != null) {
+                    found.put(transactionId, transactionService.convertTrans(transaction));
+                }
+            }
+        });
+        return found;
+    }
+
+    private static Map<String, MultiGetRsp.Group> groups(List<String> keys, Map<String, Set<String>> sets,
+                                                         Map<String, List<String>> pages, Map<String, TransDataDto> found) {
+        Map<String, MultiGetRsp.Group> groups = new LinkedHashMap<>();
+        for (String key : keys) {
+            MultiGetRsp.Group group = new MultiGetRsp.Group();
+            Set<String> ids = sets.get(key);
+            group.setTotal(ids == null ? 0 : ids.size());
+            List<TransDataDto> transList = new ArrayList<>();
+            for (String transactionId : pages.getOrDefault(key, Collections.emptyList())) {
+                TransDataDto dto = found.get(transactionId);
+                if (dto != null) {
+                    transList.add(dto);
+                }
+            }
+            group.setTransList(transList);
+            groups.put(key, group);
+        }
+        return groups;
+    }
+
+    private static Map<String, MultiGetRsp.Group> groups(List<String> keys, Iterator<TransQryRsp> results) {
+        Map<String, MultiGetRsp.Group> groups = new LinkedHashMap<>();
+        for (String key : keys) {
+            TransQryRsp result = results.next();
+            MultiGetRsp.Group group = new MultiGetRsp.Group();
+            group.setTotal(result.getTotal());
+            group.setTransList(result.getTransList() == null ? new ArrayList<>() : result.getTransList());
+            groups.put(key, group);
+        }
+        return groups;
+    }
+
+    private static TransQryRequest query(String transactionId, String userId, String merchantId, int pageSize) {
+        TransQryRequest req = new TransQryRequest();
+        req.setTransactionId(transactionId);
+        req.setUserId(userId);
+        req.setMerchantId(merchantId);
+        req.setPageSize(pageSize);
+        return req;
+    }
+
+    @Override
+    public String metricsName() {
+        return "multiGet";
+    }
+
+    @Override
+    public Map<String, Object> metrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("requests", requests.sum());
+        metrics.put("keys", keyCount.sum());
+        metrics.put("duplicateKeys", duplicateKeys.sum());
+        metrics.put("rows", rows.sum());
+        metrics.put("parallelRequests", parallelRequests.sum());
+        return metrics;
+    }
+}
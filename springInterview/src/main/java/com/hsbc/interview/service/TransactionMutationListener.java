@@ -0,0 +1,58 @@
+package com.hsbc.interview.service;
+
+import com.hsbc.interview.entity.Transaction;
+
+import java.util.List;
+
+/**
+ * 交易变更监听器
+ * onAdd/onUpdate/onDelete 由TransactionService在写操作的临界区内回调（同一流水的回调严格有序），
+ * 此时新数据可能尚未对读线程可见，实现类只能做轻量的内存操作，不允许阻塞；
+ * afterCommit 在临界区之外、写入对读线程可见之后回调，依赖"写入已可见"的逻辑放在这里
+ * @author wangwei
+ * @date 2026-10-19
+ */
+public interface TransactionMutationListener {
+
+    /**
+     * 新增交易后回调
+     *
+     * @param after 新增后的交易数据
+     */
+    default void onAdd(Transaction after) {
+    }
+
+    /**
+     * 更新交易后回调
+     *
+     * @param before 更新前的交易数据
+     * @param after 更新后的交易数据
+     */
+    default void onUpdate(Transaction before, Transaction after) {
+    }
+
+    /**
+     * 删除交易后回调
+     *
+     * @param before 删除前的交易数据
+     */
+    default void onDelete(Transaction before) {
+    }
+
+    /**
+     * 保留策略批量清理过期交易后回调，在清理线程上按批执行（不在任何流水的临界区内），数据已对读线程不可见
+     *
+     * @param expired 本批被清理的交易数据
+     */
+    default void onExpire(List<Transaction> expired) {
+    }
+
+    /**
+     * 写入对读线程可见后回调，在写请求线程上执行
+     *
+     * @param before 变更前的交易数据，新增时为null
+     * @param after 变更后的交易数据，删除时为null
+     */
+    default void afterCommit(Transaction before, Transaction after) {
+    }
+}
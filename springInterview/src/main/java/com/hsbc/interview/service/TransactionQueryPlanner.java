@@ -0,0 +1,428 @@
+package com.hsbc.interview.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.hsbc.interview.common.MemoryEstimator;
+import com.hsbc.interview.common.MetricsProvider;
+import com.hsbc.interview.config.MemoryBudgetManager;
+import com.hsbc.interview.entity.Transaction;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 基于代价的查询计划选择
+ * 每个用户/商户索引键的基数直接取自索引集合大小（精确值），金额条件的选择率来自按2的幂分桶的金额直方图，
+ * 用户+商户组合的基数优先使用最近一次实际执行得到的值，没有时按独立分布估算；
+ * 在按流水号直接读取、单索引分页、以较小集合探测较大集合、物化的组合索引、全量扫描之间按估算代价选择。
+ * 组合索引是按需物化的用户+商户交集（有序流水号数组），以查询结果缓存的索引键版本号校验，
+ * 任一侧有写入即失效，不需要在写路径上维护；组合索引按估算字节数加权，上限由 composite-max-ids 折算，并纳入全局内存预算
+ * @author wangwei
+ * @date 2026-10-19
+ */
+@Component
+public class TransactionQueryPlanner implements TransactionMutationListener, MetricsProvider {
+
+    // 各操作的相对代价：遍历索引中的一个流水号、在另一集合中探测一次、按流水号读取一行、扫描时对一行求值
+    private static final double ID_VISIT = 1;
+    private static final double SET_PROBE = 2;
+    private static final double ROW_LOOKUP = 10;
+    private static final double ROW_SCAN = 4;
+
+    // 与扫描引擎一致，低于该数量时串行扫描
+    private static final int PARALLEL_THRESHOLD = 4096;
+
+    // 没有金额分布时的默认选择率
+    private static final double DEFAULT_SELECTIVITY = 1D / 3;
+
+    private static final int BUCKETS = 64;
+
+    public enum Strategy {
+        // 按流水号直接读取
+        ID_LOOKUP,
+        // 用户索引分页
+        USER_INDEX,
+        // 商户索引分页
+        MERCHANT_INDEX,
+        // 遍历较小的索引集合，在较大的集合中探测
+        SMALLEST_SET_PROBE,
+        // 读取已物化的用户+商户组合索引
+        COMPOSITE_INDEX,
+        // 扫描引擎按流水号顺序扫描全部数据
+        FULL_SCAN
+    }
+
+    /**
+     * 查询形态
+     *
+     * @param byId 是否按流水号查询
+     * @param userRows 用户索引基数，无用户条件时为-1
+     * @param merchantRows 商户索引基数，无商户条件时为-1
+     * @param minAmount 最小金额
+     * @param maxAmount 最大金额
+     * @param totalRows 总行数
+     * @param offset 分页偏移
+     * @param pageSize 页大小
+     * @param scanAvailable 是否可以使用扫描引擎
+     */
+    public record QueryShape(boolean byId, long userRows, long merchantRows, BigDecimal minAmount,
+                             BigDecimal maxAmount, long totalRows, long offset, int pageSize, boolean scanAvailable) {
+
+        boolean hasFilter() {
+            return minAmount != null || maxAmount != null;
+        }
+    }
+
+    /**
+     * 执行计划
+     *
+     * @param strategy 选中的策略
+     * @param estimatedRows 估算结果行数
+     * @param cost 估算代价
+     * @param alternatives 各候选策略的估算代价
+     * @param compositeIds 选中组合索引时为物化的有序流水号
+     * @param materialize 执行后是否物化组合索引
+     */
+    public record Plan(Strategy strategy, long estimatedRows, double cost, Map<String, Double> alternatives,
+                       String[] compositeIds, boolean materialize) {
+    }
+
+    private record PairKey(String userId, String merchantId) {
+    }
+
+    private record CompositeEntry(long userVersion, long merchantVersion, String[] ids) {
+    }
+
+    // 组合索引条目的固定开销：缓存节点、键（用户ID、商户ID）与条目对象
+    private static final long COMPOSITE_ENTRY_BYTES = 192;
+
+    // 金额分布：第0桶为[0,1)，第b桶为[2^(b-1), 2^b)
+    private final LongAdder[] amountBuckets = new LongAdder[BUCKETS];
+    private final LongAdder amountRows = new LongAdder();
+
+    // 用户+商户组合最近一次实际执行得到的交集大小
+    private final Cache<PairKey, Long> pairCardinality;
+
+    private final Cache<PairKey, CompositeEntry> compositeIndex;
+
+    private final long compositeMinRows;
+
+    private final int parallelism = Runtime.getRuntime().availableProcessors();
+
+    private QueryResultCache queryResultCache;
+
+    private final LongAdder[] planCounts = new LongAdder[Strategy.values().length];
+    private final AtomicLong compositeBuilds = new AtomicLong();
+    private final AtomicLong compositeHits = new AtomicLong();
+    private final LongAdder estimates = new LongAdder();
+    // q-error（估算与实际的较大值/较小值）的累计值，放大1000倍取整
+    private final LongAdder qErrorMillis = new LongAdder();
+
+    @Autowired
+    public TransactionQueryPlanner(@Value("${trans.planner.composite-min-rows:10000}") long compositeMinRows,
+                                   @Value("${trans.planner.composite-max-ids:2000000}") long compositeMaxIds,
+                                   @Value("${trans.planner.pair-stats-max-keys:100000}") long pairStatsMaxKeys) {
+        this.compositeMinRows = compositeMinRows;
+        this.compositeIndex = Caffeine.newBuilder()
+                .maximumWeight(MemoryEstimator.estimateIdArray(compositeMaxIds))
+                .weigher((PairKey key, CompositeEntry entry) -> compositeWeight(entry.ids().length))
+                .build();
+        this.pairCardinality = Caffeine.newBuilder().maximumSize(pairStatsMaxKeys).build();
+        for (int i = 0; i < BUCKETS; i++) {
+            amountBuckets[i] = new LongAdder();
+        }
+        for (int i = 0; i < planCounts.length; i++) {
+            planCounts[i] = new LongAdder();
+        }
+    }
+
+    @Autowired(required = false)
+    public void setQueryResultCache(QueryResultCache queryResultCache) {
+        this.queryResultCache = queryResultCache;
+    }
+
+    /**
+     * 组合索引纳入全局内存预算，实际上限在 composite-max-ids 折算的字节数以内按预算与优先级分配
+     *
+     * @param memoryBudgetManager 全局内存预算
+     */
+    @Autowired(required = false)
+    public void setMemoryBudgetManager(MemoryBudgetManager memoryBudgetManager) {
+        memoryBudgetManager.register(MemoryBudgetManager.COMPOSITE_INDEX, compositeIndex, true);
+    }
+
+    // 流水号与用户/商户索引共享同一字符串，组合索引只占引用数组
+    private static int compositeWeight(int ids) {
+        return (int) Math.min(Integer.MAX_VALUE, COMPOSITE_ENTRY_BYTES + MemoryEstimator.estimateIdArray(ids));
+    }
+
+    /**
+     * @methodName indexVersions
+     * @description 读取用户/商户索引键的版本号，须在读取索引集合之前调用，用于校验与物化组合索引
+     * @param userId 用户ID
+     * @param merchantId 商户ID
+     * @return [用户版本号, 商户版本号]，没有结果缓存时返回null（不使用组合索引）
+     * @author wangwei
+     * @date 2026/10/19
+     */
+    public long[] indexVersions(String userId, String merchantId) {
+        return queryResultCache == null ? null : queryResultCache.indexVersions(userId, merchantId);
+    }
+
+    /**
+     * @methodName plan
+     * @description 估算各候选策略的代价并选择代价最小的策略
+     * @param shape 查询形态
+     * @param userId 用户ID
+     * @param merchantId 商户ID
+     * @param versions 查询开始前读取的索引键版本号
+     * @return 执行计划
+     * @author wangwei
+     * @date 2026/10/19
+     */
+    public Plan plan(QueryShape shape, String userId, String merchantId, long[] versions) {
+        Map<String, Double> alternatives = new LinkedHashMap<>();
+        if (shape.byId()) {
+            alternatives.put(Strategy.ID_LOOKUP.name(), ROW_LOOKUP);
+            return choose(Strategy.ID_LOOKUP, 1, ROW_LOOKUP, alternatives, null, false);
+        }
+        double selectivity = amountSelectivity(shape.minAmount(), shape.maxAmount());
+        boolean byUser = shape.userRows() >= 0;
+        boolean byMerchant = shape.merchantRows() >= 0;
+        long totalRows = Math.max(shape.totalRows(), 0);
+        double scanCost = scanCost(shape, byUser || byMerchant);
+        if (shape.scanAvailable()) {
+            alternatives.put(Strategy.FULL_SCAN.name(), scanCost);
+        }
+        if (!byUser && !byMerchant) {
+            return choose(Strategy.FULL_SCAN, Math.round(totalRows * selectivity), scanCost, alternatives, null, false);
+        }
+        if (byUser && byMerchant) {
+            long smaller = Math.min(shape.userRows(), shape.merchantRows());
+            double pairRows = estimatePairRows(userId, merchantId, shape.userRows(), shape.merchantRows(), totalRows);
+            long estimated = Math.round(pairRows * selectivity);
+            double fetch = fetchCost(pairRows, shape);
+            double probeCost = smaller * (ID_VISIT + SET_PROBE) + sortCost(pairRows) + fetch;
+            alternatives.put(Strategy.SMALLEST_SET_PROBE.name(), probeCost);
+            String[] compositeIds = validComposite(userId, merchantId, versions);
+            if (compositeIds != null) {
+                double compositeCost = fetchCost(compositeIds.length, shape);
+                alternatives.put(Strategy.COMPOSITE_INDEX.name(), compositeCost);
+                if (compositeCost <= probeCost && (!shape.scanAvailable() || compositeCost <= scanCost)) {
+                    compositeHits.incrementAndGet();
+                    return choose(Strategy.COMPOSITE_INDEX, Math.round(compositeIds.length * selectivity),
+                            compositeCost, alternatives, compositeIds, false);
+                }
+            }
+            if (shape.scanAvailable() && scanCost < probeCost) {
+                return choose(Strategy.FULL_SCAN, estimated, scanCost, alternatives, null, false);
+            }
+            // 探测代价较大的组合在本次执行后物化，之后同一组合的各页与不同金额条件直接读取
+            boolean materialize = versions != null && smaller >= compositeMinRows;
+            return choose(Strategy.SMALLEST_SET_PROBE, estimated, probeCost, alternatives, null, materialize);
+        }
+        Strategy indexStrategy = byUser ? Strategy.USER_INDEX : Strategy.MERCHANT_INDEX;
+        long indexRows = byUser ? shape.userRows() : shape.merchantRows();
+        double indexCost = indexRows * ID_VISIT + sortCost(indexRows) + fetchCost(indexRows, shape);
+        alternatives.put(indexStrategy.name(), indexCost);
+        long estimated = Math.round(indexRows * selectivity);
+        if (shape.scanAvailable() && scanCost < indexCost) {
+            return choose(Strategy.FULL_SCAN, estimated, scanCost, alternatives, null, false);
+        }
+        return choose(indexStrategy, estimated, indexCost, alternatives, null, false);
+    }
+
+    private Plan choose(Strategy strategy, long estimatedRows, double cost, Map<String, Double> alternatives,
+                        String[] compositeIds, boolean materialize) {
+        planCounts[strategy.ordinal()].increment();
+        return new Plan(strategy, estimatedRows, cost, alternatives, compositeIds, materialize);
+    }
+
+    // 有金额条件时需要读取全部候选行才能得到总数，否则只读取当前页
+    private static double fetchCost(double candidateRows, QueryShape shape) {
+        return (shape.hasFilter() ? candidateRows : Math.min(candidateRows, shape.pageSize())) * ROW_LOOKUP;
+    }
+
+    private static double sortCost(double rows) {
+        return rows <= 1 ? 0 : rows * (Math.log(rows) / Math.log(2)) * ID_VISIT;
+    }
+
+    private double scanCost(QueryShape shape, boolean keyFilter) {
+        if (!keyFilter && !shape.hasFilter()) {
+            // 无条件查询走有序流水号索引，按分桶计数定位偏移量后只读取当前页
+            return (OrderedIdIndex.seekSteps(shape.offset()) + shape.pageSize()) * ID_VISIT
+                    + shape.pageSize() * ROW_LOOKUP;
+        }
+        long rows = Math.max(shape.totalRows(), 0);
+        return rows * ROW_SCAN / (rows < PARALLEL_THRESHOLD ? 1 : parallelism);
+    }
+
+    private double estimatePairRows(String userId, String merchantId, long userRows, long merchantRows, long totalRows) {
+        Long observed = pairCardinality.getIfPresent(new PairKey(userId, merchantId));
+        long upper = Math.min(userRows, merchantRows);
+        if (observed != null) {
+            return Math.min(observed, upper);
+        }
+        // 用户与商户独立分布时的期望交集大小
+        return totalRows <= 0 ? upper : Math.min(upper, (double) userRows * merchantRows / totalRows);
+    }
+
+    private String[] validComposite(String userId, String merchantId, long[] versions) {
+        if (versions == null) {
+            return null;
+        }
+        CompositeEntry entry = compositeIndex.getIfPresent(new PairKey(userId, merchantId));
+        if (entry == null || entry.userVersion() != versions[0] || entry.merchantVersion() != versions[1]) {
+            return null;
+        }
+        return entry.ids();
+    }
+
+    /**
+     * @methodName materialize
+     * @description 物化用户+商户组合索引，版本号为执行前读取的值，执行期间有写入时该索引在下次使用时即失效
+     * @param userId 用户ID
+     * @param merchantId 商户ID
+     * @param versions 执行前读取的索引键版本号
+     * @param sortedIds 按流水号升序的交集
+     * @return
+     * @author wangwei
+     * @date 2026/10/19
+     */
+    public void materialize(String userId, String merchantId, long[] versions, List<String> sortedIds) {
+        compositeIndex.put(new PairKey(userId, merchantId),
+                new CompositeEntry(versions[0], versions[1], sortedIds.toArray(new String[0])));
+        compositeBuilds.incrementAndGet();
+    }
+
+    /**
+     * @methodName record
+     * @description 记录实际执行结果：更新用户+商户组合的基数统计与估算误差
+     * @param plan 执行计划
+     * @param userId 用户ID
+     * @param merchantId 商户ID
+     * @param pairRows 组合查询实际的交集大小（不含金额条件），非组合查询传-1
+     * @param actualRows 实际结果行数
+     * @return
+     * @author wangwei
+     * @date 2026/10/19
+     */
+    public void record(Plan plan, String userId, String merchantId, long pairRows, long actualRows) {
+        if (pairRows >= 0) {
+            pairCardinality.put(new PairKey(userId, merchantId), pairRows);
+        }
+        double estimated = plan.estimatedRows() + 1D;
+        double actual = actualRows + 1D;
+        estimates.increment();
+        qErrorMillis.add(Math.round(Math.max(estimated, actual) / Math.min(estimated, actual) * 1000));
+    }
+
+    /**
+     * @methodName amountSelectivity
+     * @description 按金额直方图估算金额区间条件的选择率，桶内按均匀分布插值
+     * @param minAmount 最小金额（包含）
+     * @param maxAmount 最大金额（包含）
+     * @return 选择率 [0,1]
+     * @author wangwei
+     * @date 2026/10/19
+     */
+    public double amountSelectivity(BigDecimal minAmount, BigDecimal maxAmount) {
+        if (minAmount == null && maxAmount == null) {
+            return 1D;
+        }
+        long total = amountRows.sum();
+        if (total <= 0) {
+            return DEFAULT_SELECTIVITY;
+        }
+        double min = minAmount == null ? 0D : Math.max(0D, minAmount.doubleValue());
+        double max = maxAmount == null ? Double.MAX_VALUE : maxAmount.doubleValue();
+        if (max < min) {
+            return 0D;
+        }
+        double matched = 0;
+        for (int b = 0; b < BUCKETS; b++) {
+            long count = amountBuckets[b].sum();
+            if (count <= 0) {
+                continue;
+            }
+            double low = b == 0 ? 0D : Math.pow(2, b - 1);
+            double high = b == 0 ? 1D : (b == BUCKETS - 1 ? Double.MAX_VALUE : Math.pow(2, b));
+            double fraction;
+            if (min == max) {
+                // 单点条件按金额精确到分的离散取值估算
+                fraction = min >= low && min < high ? 1D / Math.max(1D, (high - low) * 100) : 0D;
+            } else {
+                fraction = Math.max(0D, Math.min(high, max) - Math.max(low, min)) / (high - low);
+            }
+            matched += count * Math.min(1D, fraction);
+        }
+        return Math.min(1D, Math.max(0D, matched / total));
+    }
+
+    private static int bucket(BigDecimal amount) {
+        if (amount == null || amount.signum() <= 0) {
+            return 0;
+        }
+        long integer = amount.longValue();
+        return integer <= 0 ? 0 : Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(integer));
+    }
+
+    private void count(Transaction transaction, int delta) {
+        if (transaction == null || transaction.getAmount() == null) {
+            return;
+        }
+        amountBuckets[bucket(transaction.getAmount())].add(delta);
+        amountRows.add(delta);
+    }
+
+    @Override
+    public void onAdd(Transaction after) {
+        count(after, 1);
+    }
+
+    @Override
+    public void onUpdate(Transaction before, Transaction after) {
+        count(before, -1);
+        count(after, 1);
+    }
+
+    @Override
+    public void onDelete(Transaction before) {
+        count(before, -1);
+    }
+
+    @Override
+    public void onExpire(List<Transaction> expired) {
+        for (Transaction transaction : expired) {
+            count(transaction, -1);
+        }
+    }
+
+    @Override
+    public String metricsName() {
+        return "queryPlanner";
+    }
+
+    @Override
+    public Map<String, Object> metrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        Map<String, Long> plans = new LinkedHashMap<>();
+        for (Strategy strategy : Strategy.values()) {
+            plans.put(strategy.name(), planCounts[strategy.ordinal()].sum());
+        }
+        metrics.put("plans", plans);
+        long count = estimates.sum();
+        metrics.put("meanQError", count == 0 ? 0D : qErrorMillis.sum() / 1000D / count);
+        metrics.put("compositeEntries", compositeIndex.estimatedSize());
+        metrics.put("compositeBuilds", compositeBuilds.get());
+        metrics.put("compositeHits", compositeHits.get());
+        metrics.put("pairStats", pairCardinality.estimatedSize());
+        metrics.put("amountRows", amountRows.sum());
+        return metrics;
+    }
+}
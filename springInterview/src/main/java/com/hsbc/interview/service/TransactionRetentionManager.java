@@ -0,0 +1,261 @@
+package com.hsbc.interview.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.hsbc.interview.common.MetricsProvider;
+import com.hsbc.interview.entity.Transaction;
+import com.hsbc.interview.storage.SegmentDiskTier;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 交易数据按日保留策略
+ * 流水号 T+yyyyMMdd+序号 中的日期即交易日，按日分区清理：
+ * 早于 hot-days 的交易从主缓存整条移到磁盘层（仍可查询），早于 days 的交易从主缓存、磁盘层与用户/商户索引中删除。
+ * 过期流水号直接从全局有序流水ID索引的头部按序取出，不扫描全表；每批删除后按索引键分组一次性更新索引，
+ * 批与批之间按 max-rows-per-second 限速，单次执行最多处理 max-rows-per-run 条，避免清理抢占请求线程的CPU与锁
+ * @author wangwei
+ * @date 2026-10-19
+ */
+@Component
+@Log4j2
+@ConditionalOnProperty(prefix = "trans.retention", name = "enabled", havingValue = "true")
+public class TransactionRetentionManager implements MetricsProvider {
+
+    private static final DateTimeFormatter ID_DATE = DateTimeFormatter.BASIC_ISO_DATE;
+
+    private final TransactionService transactionService;
+
+    private final OrderedIdIndex orderedIdIndex;
+
+    private final Cache<String, Transaction> mainCache;
+
+    private final int retentionDays;
+
+    private final int hotDays;
+
+    private final int batchSize;
+
+    private final long maxRowsPerSecond;
+
+    private final long maxRowsPerRun;
+
+    private SegmentDiskTier diskTier;
+
+    private final AtomicLong runs = new AtomicLong();
+    private final AtomicLong droppedEntries = new AtomicLong();
+    private final AtomicLong droppedColdEntries = new AtomicLong();
+    private final AtomicLong archivedEntries = new AtomicLong();
+    private final AtomicLong reclaimedHeapBytes = new AtomicLong();
+    private final AtomicLong expiredDays = new AtomicLong();
+    private final AtomicLong throttledMillis = new AtomicLong();
+    private final AtomicLong lastRunMillis = new AtomicLong();
+    private volatile String lastDropBefore = "";
+
+    @Autowired
+    public TransactionRetentionManager(TransactionService transactionService,
+                                       OrderedIdIndex orderedIdIndex,
+                                       Cache<String, Transaction> mainCache,
+                                       @Value("${trans.retention.days:30}") int retentionDays,
+                                       @Value("${trans.retention.hot-days:7}") int hotDays,
+                                       @Value("${trans.retention.batch-size:500}") int batchSize,
+                                       @Value("${trans.retention.max-rows-per-second:20000}") long maxRowsPerSecond,
+                                       @Value("${trans.retention.max-rows-per-run:100000}") long maxRowsPerRun) {
+        if (retentionDays <= 0) {
+            throw new IllegalArgumentException("trans.retention.days 必须大于0: " + retentionDays);
+        }
+        this.transactionService = transactionService;
+        this.orderedIdIndex = orderedIdIndex;
+        this.mainCache = mainCache;
+        this.retentionDays = retentionDays;
+        this.hotDays = hotDays;
+        this.batchSize = Math.max(1, batchSize);
+        this.maxRowsPerSecond = maxRowsPerSecond;
+        this.maxRowsPerRun = maxRowsPerRun;
+    }
+
+    @Autowired(required = false)
+    public void setDiskTier(SegmentDiskTier diskTier) {
+        this.diskTier = diskTier;
+    }
+
+    /**
+     * 定时执行保留策略
+     */
+    @Scheduled(initialDelayString = "${trans.retention.interval-ms:60000}",
+            fixedDelayString = "${trans.retention.interval-ms:60000}")
+    public void run() {
+        runAt(LocalDate.now());
+    }
+
+    /**
+     * @methodName runAt
+     * @description 以指定日期为当天执行一次保留策略：先删除超过保留天数的数据，再把超过热数据天数的数据移到磁盘层
+     * @param today 当天日期
+     * @return
+     * @author wangwei
+     * @date 2026/10/19
+     */
+    public synchronized void runAt(LocalDate today) {
+        long start = System.nanoTime();
+        Throttle throttle = new Throttle();
+        String dropBefore = dropBefore(today);
+        lastDropBefore = dropBefore;
+        dropExpired(dropBefore, throttle);
+        // 未启用磁盘层或热数据天数不小于保留天数时不需要移动
+        if (diskTier != null && hotDays > 0 && hotDays < retentionDays) {
+            String archiveBefore = "T" + today.minusDays(hotDays - 1L).format(ID_DATE);
+            archiveCold(archiveBefore, throttle);
+        }
+        runs.incrementAndGet();
+        lastRunMillis.set(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    /**
+     * @methodName dropBefore
+     * @description 以指定日期为当天，流水号小于返回值的交易已超过保留天数
+     * @param today 当天日期
+     * @return "T"+yyyyMMdd
+     * @author wangwei
+     * @date 2026/10/19
+     */
+    public String dropBefore(LocalDate today) {
+        return "T" + today.minusDays(retentionDays - 1L).format(ID_DATE);
+    }
+
+    // 有序索引按流水号排序，早于截止日的流水号都在索引头部
+    private void dropExpired(String dropBefore, Throttle throttle) {
+        Iterator<String> iterator = orderedIdIndex.headIterator(dropBefore);
+        List<String> batch = new ArrayList<>(batchSize);
+        Set<String> days = new HashSet<>();
+        while (iterator.hasNext() && !throttle.exhausted()) {
+            String transactionId = iterator.next();
+            if (!isDayPartitioned(transactionId)) {
+                continue;
+            }
+            batch.add(transactionId);
+            days.add(transactionId.substring(1, 9));
+            if (batch.size() >= batchSize) {
+                dropBatch(batch, throttle);
+            }
+        }
+        if (!batch.isEmpty()) {
+            dropBatch(batch, throttle);
+        }
+        if (!days.isEmpty()) {
+            expiredDays.addAndGet(days.size());
+            log.info("保留策略清理早于【{}】的交易，涉及{}个交易日", dropBefore.substring(1), days.size());
+        }
+    }
+
+    private void dropBatch(List<String> batch, Throttle throttle) {
+        TransactionService.ExpireResult result = transactionService.expireTransactions(batch);
+        droppedEntries.addAndGet(result.expired().size());
+        droppedColdEntries.addAndGet(result.coldCount());
+        reclaimedHeapBytes.addAndGet(result.heapBytes());
+        // 数据已不存在（如已被删除）的残留流水号同样从有序索引移除，避免每次执行都重复读取
+        if (result.expired().size() < batch.size()) {
+            Set<String> expiredIds = new HashSet<>();
+            result.expired().forEach(transaction -> expiredIds.add(transaction.getTransactionId()));
+            batch.stream().filter(id -> !expiredIds.contains(id)).forEach(orderedIdIndex::remove);
+        }
+        throttle.pace(batch.size());
+        batch.clear();
+    }
+
+    // 主缓存有容量上限，直接遍历主缓存的流水号即可
+    private void archiveCold(String archiveBefore, Throttle throttle) {
+        List<String> batch = new ArrayList<>(batchSize);
+        for (String transactionId : mainCache.asMap().keySet()) {
+            if (throttle.exhausted()) {
+                break;
+            }
+            if (!isDayPartitioned(transactionId) || transactionId.compareTo(archiveBefore) >= 0) {
+                continue;
+            }
+            batch.add(transactionId);
+            if (batch.size() >= batchSize) {
+                archiveBatch(batch, throttle);
+            }
+        }
+        if (!batch.isEmpty()) {
+            archiveBatch(batch, throttle);
+        }
+    }
+
+    private void archiveBatch(List<String> batch, Throttle throttle) {
+        archivedEntries.addAndGet(transactionService.archiveTransactions(batch));
+        throttle.pace(batch.size());
+        batch.clear();
+    }
+
+    // 只处理 T+8位日期 开头的流水号，格式不符的数据不按日期清理
+    private static boolean isDayPartitioned(String transactionId) {
+        if (transactionId == null || transactionId.length() < 9 || transactionId.charAt(0) != 'T') {
+            return false;
+        }
+        for (int i = 1; i < 9; i++) {
+            if (!Character.isDigit(transactionId.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 单次执行的限速器：按已处理条数与每秒上限计算应耗时间，超前时休眠
+     */
+    private final class Throttle {
+        private final long startNanos = System.nanoTime();
+        private long processed;
+
+        boolean exhausted() {
+            return processed >= maxRowsPerRun;
+        }
+
+        void pace(int rows) {
+            processed += rows;
+            if (maxRowsPerSecond <= 0) {
+                return;
+            }
+            long aheadNanos = processed * 1_000_000_000L / maxRowsPerSecond - (System.nanoTime() - startNanos);
+            if (aheadNanos > 0) {
+                LockSupport.parkNanos(aheadNanos);
+                throttledMillis.addAndGet(TimeUnit.NANOSECONDS.toMillis(aheadNanos));
+            }
+        }
+    }
+
+    @Override
+    public String metricsName() {
+        return "retention";
+    }
+
+    @Override
+    public Map<String, Object> metrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("retentionDays", retentionDays);
+        metrics.put("hotDays", hotDays);
+        metrics.put("lastDropBefore", lastDropBefore);
+        metrics.put("runs", runs.get());
+        metrics.put("lastRunMillis", lastRunMillis.get());
+        metrics.put("expiredDays", expiredDays.get());
+        metrics.put("droppedEntries", droppedEntries.get());
+        metrics.put("droppedColdEntries", droppedColdEntries.get());
+        metrics.put("archivedEntries", archivedEntries.get());
+        // 按交易对象估算，不含索引集合节点
+        metrics.put("reclaimedHeapBytes", reclaimedHeapBytes.get());
+        metrics.put("throttledMillis", throttledMillis.get());
+        return metrics;
+    }
+}
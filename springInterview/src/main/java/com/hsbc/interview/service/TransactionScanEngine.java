@@ -0,0 +1,241 @@
+package com.hsbc.interview.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.hsbc.interview.common.MetricsProvider;
+import com.hsbc.interview.entity.Transaction;
+import com.hsbc.interview.storage.SegmentDiskTier;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.stream.Collector;
+import java.util.stream.Stream;
+
+/**
+ * 无条件/仅谓词查询的扫描引擎
+ * 无谓词时走全局有序流水ID索引，按分桶计数定位偏移量，只读取当前页；
+ * 有谓词（如金额区间）时并行扫描主缓存，每个分片只保留 offset+pageSize 大小的堆做TopK选择，不做全量排序
+ * @author wangwei
+ * @date 2026-10-19
+ */
+@Component
+@Log4j2
+public class TransactionScanEngine implements TransactionMutationListener, MetricsProvider {
+
+    private static final Comparator<Transaction> ID_ORDER = Comparator.comparing(Transaction::getTransactionId);
+
+    // 低于该数量时串行扫描，避免fork-join调度开销
+    private static final int PARALLEL_THRESHOLD = 4096;
+
+    private final Cache<String, Transaction> mainCache;
+
+    private final OrderedIdIndex orderedIdIndex;
+
+    // 磁盘层，扫描时一并读取已降级的数据（不读回主缓存）
+    private SegmentDiskTier diskTier;
+
+    private final AtomicLong indexScanCount = new AtomicLong();
+    private final AtomicLong fullScanCount = new AtomicLong();
+    private final AtomicLong fullScanNanos = new AtomicLong();
+    private final AtomicLong scannedRows = new AtomicLong();
+
+    @Autowired
+    public TransactionScanEngine(Cache<String, Transaction> mainCache, OrderedIdIndex orderedIdIndex) {
+        this.mainCache = mainCache;
+        this.orderedIdIndex = orderedIdIndex;
+    }
+
+    @Autowired(required = false)
+    public void setDiskTier(SegmentDiskTier diskTier) {
+        this.diskTier = diskTier;
+    }
+
+    /**
+     * 扫描结果：满足条件的总数与当前页数据
+     */
+    public record ScanResult(long total, List<Transaction> page) {
+    }
+
+    /**
+     * @methodName amountPredicate
+     * @description 构造金额区间谓词，上下限均为空时返回null
+     * @param minAmount 最小金额（包含）
+     * @param maxAmount 最大金额（包含）
+     * @return 谓词
+     * @author wangwei
+     * @date 2026/10/19
+     */
+    public static Predicate<Transaction> amountPredicate(BigDecimal minAmount, BigDecimal maxAmount) {
+        if (minAmount == null && maxAmount == null) {
+            return null;
+        }
+        return transaction -> {
+            BigDecimal amount = transaction.getAmount();
+            if (amount == null) {
+                return false;
+            }
+            return (minAmount == null || amount.compareTo(minAmount) >= 0)
+                    && (maxAmount == null || amount.compareTo(maxAmount) <= 0);
+        };
+    }
+
+    /**
+     * @methodName scan
+     * @description 按流水ID升序分页扫描
+     * @param predicate 过滤条件，可为空
+     * @param page 页码
+     * @param pageSize 页大小
+     * @return 总数及当前页数据
+     * @author wangwei
+     * @date 2026/10/19
+     */
+    public ScanResult scan(Predicate<Transaction> predicate, int page, int pageSize) {
+        long offset = (long) (page - 1) * pageSize;
+        if (predicate == null) {
+            return scanOrderedIndex(offset, pageSize);
+        }
+        return scanTopK(predicate, offset, pageSize);
+    }
+
+    private ScanResult scanOrderedIndex(long offset, int pageSize) {
+        indexScanCount.incrementAndGet();
+        long total = orderedIdIndex.size();
+        if (offset < 0 || pageSize <= 0 || offset >= total) {
+            return new ScanResult(total, Collections.emptyList());
+        }
+        List<Transaction> result = new ArrayList<>(pageSize);
+        Iterator<String> iterator = orderedIdIndex.iteratorFrom(offset);
+        while (iterator.hasNext() && result.size() < pageSize) {
+            String id = iterator.next();
+            Transaction transaction = mainCache.getIfPresent(id);
+            if (transaction == null && diskTier != null) {
+                transaction = diskTier.get(id);
+            }
+            if (transaction != null) {
+                result.add(transaction);
+            }
+        }
+        return new ScanResult(total, result);
+    }
+
+    private ScanResult scanTopK(Predicate<Transaction> predicate, long offset, int pageSize) {
+        long start = System.nanoTime();
+        fullScanCount.incrementAndGet();
+        if (offset < 0 || pageSize <= 0 || offset + pageSize > Integer.MAX_VALUE) {
+            long total = allValues().parallel().filter(predicate).count();
+            return new ScanResult(total, Collections.emptyList());
+        }
+        int k = (int) (offset + pageSize);
+        long rows = mainCache.estimatedSize() + (diskTier == null ? 0 : diskTier.size());
+        Stream<Transaction> values = allValues();
+        TopK topK = (rows < PARALLEL_THRESHOLD ? values : values.parallel())
+                .collect(topKCollector(predicate, k));
+        List<Transaction> sorted = topK.sorted();
+        List<Transaction> result = offset >= sorted.size()
+                ? Collections.emptyList()
+                : sorted.subList((int) offset, sorted.size());
+        scannedRows.addAndGet(topK.scanned);
+        fullScanNanos.addAndGet(System.nanoTime() - start);
+        return new ScanResult(topK.matched, result);
+    }
+
+    private Stream<Transaction> allValues() {
+        Stream<Transaction> hot = mainCache.asMap().values().stream();
+        return diskTier == null ? hot : Stream.concat(hot, diskTier.values());
+    }
+
+    private static Collector<Transaction, TopK, TopK> topKCollector(Predicate<Transaction> predicate, int k) {
+        return Collector.of(
+                () -> new TopK(k),
+                (topK, transaction) -> topK.offer(transaction, predicate),
+                TopK::merge);
+    }
+
+    /**
+     * 按流水ID保留最小的k条数据，堆顶为当前k条中最大的一条
+     */
+    private static final class TopK {
+        private final int k;
+        private final PriorityQueue<Transaction> heap;
+        private long matched;
+        private long scanned;
+
+        TopK(int k) {
+            this.k = k;
+            this.heap = new PriorityQueue<>(Math.min(k, 1024) + 1, ID_ORDER.reversed());
+        }
+
+        void offer(Transaction transaction, Predicate<Transaction> predicate) {
+            scanned++;
+            if (!predicate.test(transaction)) {
+                return;
+            }
+            matched++;
+            add(transaction);
+        }
+
+        private void add(Transaction transaction) {
+            if (heap.size() < k) {
+                heap.add(transaction);
+            } else if (ID_ORDER.compare(transaction, heap.peek()) < 0) {
+                heap.poll();
+                heap.add(transaction);
+            }
+        }
+
+        TopK merge(TopK other) {
+            TopK small = heap.size() < other.heap.size() ? this : other;
+            TopK large = small == this ? other : this;
+            for (Transaction transaction : small.heap) {
+                large.add(transaction);
+            }
+            large.matched += small.matched;
+            large.scanned += small.scanned;
+            return large;
+        }
+
+        List<Transaction> sorted() {
+            List<Transaction> list = new ArrayList<>(heap);
+            list.sort(ID_ORDER);
+            return list;
+        }
+    }
+
+    @Override
+    public void onAdd(Transaction after) {
+        orderedIdIndex.add(after.getTransactionId());
+    }
+
+    @Override
+    public void onDelete(Transaction before) {
+        orderedIdIndex.remove(before.getTransactionId());
+    }
+
+    @Override
+    public void onExpire(List<Transaction> expired) {
+        for (Transaction transaction : expired) {
+            orderedIdIndex.remove(transaction.getTransactionId());
+        }
+    }
+
+    @Override
+    public String metricsName() {
+        return "scanEngine";
+    }
+
+    @Override
+    public Map<String, Object> metrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        long scans = fullScanCount.get();
+        metrics.put("orderedIndexSize", orderedIdIndex.size());
+        metrics.put("indexScanCount", indexScanCount.get());
+        metrics.put("fullScanCount", scans);
+        metrics.put("fullScanAvgMillis", scans == 0 ? 0D : fullScanNanos.get() / 1_000_000D / scans);
+        metrics.put("scannedRows", scannedRows.get());
+        return metrics;
+    }
+}
@@ -2,15 +2,16 @@ package com.hsbc.interview.service;
 
 import cn.hutool.core.date.DateUtil;
 import com.github.benmanes.caffeine.cache.Cache;
-import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.hsbc.interview.common.MemoryEstimator;
 import com.hsbc.interview.common.TransException;
 import com.hsbc.interview.dto.TransDataDto;
+import com.hsbc.interview.dto.TransQryPlan;
 import com.hsbc.interview.dto.TransQryRequest;
 import com.hsbc.interview.dto.TransQryRsp;
 import com.hsbc.interview.entity.Transaction;
 import com.hsbc.interview.config.CacheLockManager;
 import com.hsbc.interview.enums.MerchantEnum;
-import lombok.extern.log4j.Log4j;
+import com.hsbc.interview.storage.SegmentDiskTier;
 import lombok.extern.log4j.Log4j2;
 import org.apache.logging.log4j.util.Strings;
 import org.springframework.beans.BeanUtils;
@@ -19,8 +20,13 @@ import org.springframework.stereotype.Service;
 
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
 
 import static com.hsbc.interview.common.Constant.CACHE_LOCK_PREFIX;
+import static com.hsbc.interview.common.Constant.HTTP_CONFLICT_CODE;
 import static com.hsbc.interview.common.Constant.HTTP_FAIL_CODE;
 
 @Service
@@ -37,6 +43,45 @@ public class TransactionService {
     private final Cache<String, Set<String>> merchantIndexCache;
 
     private final CacheLockManager lockManager;
+
+    // 交易变更监听器，主缓存与索引写入完成后在临界区内回调
+    private List<TransactionMutationListener> mutationListeners = Collections.emptyList();
+
+    // 分页查询结果缓存
+    private QueryResultCache queryResultCache;
+
+    // 无条件/仅谓词查询的扫描引擎
+    private TransactionScanEngine scanEngine;
+
+    // 基于代价的查询计划，为空时按固定顺序选择查询方式
+    private TransactionQueryPlanner queryPlanner;
+
+    // 按金额排序的二级索引
+    private AmountOrderedIndex amountIndex;
+
+    // 快照一致的分页读取
+    private TransactionSnapshotManager snapshotManager;
+
+    // 布隆过滤器，一定不存在的流水/用户/商户直接返回
+    private TransactionBloomGuard bloomGuard;
+
+    // 新增交易幂等控制
+    private IdempotencyGuard idempotencyGuard;
+
+    // 磁盘层：主缓存容量淘汰的数据降级到本地段文件，读取时回落
+    private SegmentDiskTier diskTier;
+
+    // 只读节点（复制从节点）拒绝客户端写入
+    private volatile boolean readOnly;
+
+    // 集群模式下的节点槽位（两位数字），为空表示单节点
+    private volatile String idNodeSlot;
+
+    // 集群模式下流水号中只剩六位序号，每个节点每日的上限（单节点为八位）
+    private static final int NODE_SEQUENCE_MAX = 999999;
+
+    // 集群模式下本节点已分配的最大流水号，数据迁出后也不会重复分配
+    private final AtomicReference<String> lastIssuedId = new AtomicReference<>("");
     /**
      * 构造一个TransactionService实例
      * 该服务负责处理与交易相关的操作，通过缓存来优化性能
@@ -56,46 +101,123 @@ public class TransactionService {
         this.merchantIndexCache = merchantIndexCache;
         this.lockManager = lockManager;
     }
+
+    @Autowired(required = false)
+    public void setMutationListeners(List<TransactionMutationListener> mutationListeners) {
+        this.mutationListeners = mutationListeners;
+    }
+
+    @Autowired(required = false)
+    public void setQueryResultCache(QueryResultCache queryResultCache) {
+        this.queryResultCache = queryResultCache;
+    }
+
+    @Autowired(required = false)
+    public void setScanEngine(TransactionScanEngine scanEngine) {
+        this.scanEngine = scanEngine;
+    }
+
+    @Autowired(required = false)
+    public void setQueryPlanner(TransactionQueryPlanner queryPlanner) {
+        this.queryPlanner = queryPlanner;
+    }
+
+    @Autowired(required = false)
+    public void setAmountIndex(AmountOrderedIndex amountIndex) {
+        this.amountIndex = amountIndex;
+    }
+
+    @Autowired(required = false)
+    public void setSnapshotManager(TransactionSnapshotManager snapshotManager) {
+        this.snapshotManager = snapshotManager;
+    }
+
+    @Autowired(required = false)
+    public void setBloomGuard(TransactionBloomGuard bloomGuard) {
+        this.bloomGuard = bloomGuard;
+    }
+
+    @Autowired(required = false)
+    public void setIdempotencyGuard(IdempotencyGuard idempotencyGuard) {
+        this.idempotencyGuard = idempotencyGuard;
+    }
+
+    @Autowired(required = false)
+    public void setDiskTier(SegmentDiskTier diskTier) {
+        this.diskTier = diskTier;
+    }
+
+    public void setReadOnly(boolean readOnly) {
+        this.readOnly = readOnly;
+    }
+
+    public boolean isReadOnly() {
+        return readOnly;
+    }
+
+    /**
+     * 集群模式下设置节点槽位，流水号变为 T+YYYYMMDD+两位槽位+六位序号
+     */
+    public void setIdNodeSlot(int slot) {
+        if (slot < 0 || slot > 99) {
+            throw new IllegalArgumentException("节点槽位须在0-99之间: " + slot);
+        }
+        this.idNodeSlot = String.format("%02d", slot);
+    }
+
+    private void checkWritable() {
+        if (readOnly) {
+            throw new TransException(HTTP_FAIL_CODE, "当前节点为只读副本，请向主节点提交");
+        }
+    }
     /**
      * @methodName addTransaction
-     * @description 接收转入的交易信息入库
+     * @description 接收转入的交易信息入库，携带客户端请求ID时在去重窗口内重复提交直接返回首次分配的流水号
      * @param transaction 交易数据
-     * @return 无
+     * @return 交易流水号
      * @author wangwei
      * @date 2025/3/15
      */
-    public void addTransaction(Transaction transaction) {
+    public String addTransaction(Transaction transaction) {
+        checkWritable();
+        if (idempotencyGuard != null && Strings.isNotBlank(transaction.getRequestId())) {
+            return idempotencyGuard.execute(transaction.getUserId(), transaction.getRequestId(),
+                    () -> doAddTransaction(transaction));
+        }
+        return doAddTransaction(transaction);
+    }
+
+    private String doAddTransaction(Transaction transaction) {
         String transactionId = this.generateTransactionId();
         String lockKey = CACHE_LOCK_PREFIX + transactionId;
         if (lockManager.tryLock(lockKey)) {
             try {
-                //校验新流水是否重复
-                if (mainCache.getIfPresent(transactionId) != null) {
-                    log.error("交易流水【{}】已经存在请重试",transactionId);
-                    throw new TransException(HTTP_FAIL_CODE,"交易流水已经存在请重试");
-                }
+                // 与更新、删除一样在主缓存的compute内完成重复校验、写入与索引变更，
+                // 并发删除同一流水号时不会在写入主缓存与写入索引之间执行，索引中不会残留已删除的流水号
+                mainCache.asMap().compute(transactionId, (k, hotTransaction) -> {
+                    //校验新流水是否重复
+                    if (hotTransaction != null || (diskTier != null && diskTier.contains(k))) {
+                        log.error("交易流水【{}】已经存在请重试",transactionId);
+                        throw new TransException(HTTP_FAIL_CODE,"交易流水已经存在请重试");
+                    }
+                    transaction.setTransDate(DateUtil.formatDateTime(new Date()));
+                    transaction.setTransactionId(transactionId);
+                    transaction.setVersion(1L);
 
-                // 存入主缓存
-                transaction.setTransDate(DateUtil.formatDateTime(new Date()));
-                transaction.setTransactionId(transactionId);
-                mainCache.put(transactionId, transaction);
+                    // 更新用户索引
+                    addToIndex(userIndexCache, transaction.getUserId(), transactionId);
 
-                // 更新用户索引
-                userIndexCache.asMap().compute(transaction.getUserId(), (k, v) -> {
-                    Set<String> ids = (v == null) ? ConcurrentHashMap.newKeySet() : v;
-                    ids.add(transactionId);
-                    return ids;
-                });
-
-                // 更新商户索引
-                merchantIndexCache.asMap().compute(transaction.getMerchantId(), (k, v) -> {
-                    Set<String> ids = (v == null) ? ConcurrentHashMap.newKeySet() : v;
-                    ids.add(transactionId);
-                    return ids;
+                    // 更新商户索引
+                    addToIndex(merchantIndexCache, transaction.getMerchantId(), transactionId);
+                    this.fireAdd(transaction);
+                    // 存入主缓存
+                    return transaction;
                 });
             } finally {
                 lockManager.unlock(lockKey);
             }
+            this.fireAfterCommit(null, transaction);
+            return transactionId;
         } else {
             log.error("无法获取锁 transaction ID: " + transaction.getTransactionId());
             throw new RuntimeException("无法获取锁 transaction ID: " + transaction.getTransactionId());
@@ -113,6 +235,9 @@ public class TransactionService {
      * @date 2025/3/15
      */
     public void getByUserId(String userId, int page, int pageSize,TransQryRsp rsp) {
+        if (bloomGuard != null && !bloomGuard.mightContainUser(userId)) {
+            return;
+        }
         Set<String> ids = userIndexCache.getIfPresent(userId);
         if (ids == null || ids.isEmpty()) {
             return;
@@ -129,7 +254,7 @@ public class TransactionService {
         }
 
         List<TransDataDto> dtoList = sortedIds.subList(offset, limit).stream()
-                .map(mainCache::getIfPresent)
+                .map(this::lookup)
                 .filter(Objects::nonNull)
                 .map(this::convertTrans).toList();
         rsp.setTransList(dtoList);
@@ -147,6 +272,9 @@ public class TransactionService {
      * @date 2025/3/15
      */
     public void getByMerchantId(String merchantId, int page, int pageSize,TransQryRsp rsp) {
+        if (bloomGuard != null && !bloomGuard.mightContainMerchant(merchantId)) {
+            return;
+        }
         Set<String> ids = merchantIndexCache.getIfPresent(merchantId);
         if (ids == null || ids.isEmpty()) {
             return;
@@ -163,7 +291,7 @@ public class TransactionService {
         }
         //返回交易数据集合
         List<TransDataDto> dtoList = sortedIds.subList(offset, limit).stream()
-                .map(mainCache::getIfPresent)
+                .map(this::lookup)
                 .filter(Objects::nonNull)
                 .map(this::convertTrans).toList();
         rsp.setTransList(dtoList);
@@ -182,6 +310,9 @@ public class TransactionService {
      * @date 2025/3/15
      */
     public void getByUserAndMerchant(String userId, String merchantId, int page, int pageSize,TransQryRsp rsp) {
+        if (bloomGuard != null && (!bloomGuard.mightContainUser(userId) || !bloomGuard.mightContainMerchant(merchantId))) {
+            return;
+        }
         //分别按用户ID和商户ID查询
         Set<String> userIds = userIndexCache.getIfPresent(userId);
         Set<String> merchantIds = merchantIndexCache.getIfPresent(merchantId);
@@ -209,47 +340,64 @@ public class TransactionService {
             return;
         }
         List<TransDataDto> dtoList =  ids.subList(offset, limit).stream()
-                .map(mainCache::getIfPresent)
+                .map(this::lookup)
                 .filter(Objects::nonNull)
                 .map(this::convertTrans).toList();
         rsp.setTransList(dtoList);
     }
     /**
      * @methodName deleteTransaction
-     * @description 删除交易数据
+     * @description 删除交易数据，在主缓存的compute内校验归属与版本号并同步清理索引，不再依赖外部锁；
+     * 请求携带版本号且与当前版本不一致时返回冲突
      * @param req 请求参数
      * @return 无
      * @author wangwei
      * @date 2025/3/15
      */
     public void deleteTransaction(TransQryRequest req) {
+        checkWritable();
         if(Strings.isBlank(req.getTransactionId())){
             log.error("交易流水【{}】不能为空",req.getTransactionId());
             throw new TransException(HTTP_FAIL_CODE,"交易流水不能为空");
         }
-        String lockKey = CACHE_LOCK_PREFIX + req.getTransactionId();
-        if (lockManager.tryLock(lockKey)) {
-            try {
-                Transaction oldTransaction = mainCache.getIfPresent(req.getTransactionId());
-
-                if (oldTransaction == null) {
-                    throw new TransException(HTTP_FAIL_CODE,"交易流水不存在");
-                }
+        String transactionId = req.getTransactionId();
+        if (bloomGuard != null && !bloomGuard.mightContainTransaction(transactionId)) {
+            throw new TransException(HTTP_FAIL_CODE,"交易流水不存在");
+        }
+        // 先做一次无锁的快速校验，不存在或不属于当前用户的请求不进入compute
+        checkOwner(findTransaction(transactionId), transactionId, req.getUserId());
 
-                if(!Objects.equals(oldTransaction.getUserId(),req.getUserId())){
-                    throw new TransException(HTTP_FAIL_CODE,"交易流水【"+req.getTransactionId()+"】不属于当前用户交易,无权受理");
-                }
+        Transaction[] removed = new Transaction[1];
+        mainCache.asMap().compute(transactionId, (k, hotTransaction) -> {
+            Transaction oldTransaction = orPeekCold(k, hotTransaction);
+            checkOwner(oldTransaction, transactionId, req.getUserId());
+            checkVersion(oldTransaction, req.getVersion());
+            removeCold(k, hotTransaction);
+            // 与主缓存删除在同一个原子操作内清理索引
+            this.onMainCacheEvict(k, oldTransaction);
+            this.fireDelete(oldTransaction);
+            removed[0] = oldTransaction;
+            return null;
+        });
+        this.fireAfterCommit(removed[0], null);
+    }
 
-                // 从主缓存中移除
-                mainCache.invalidate(req.getTransactionId());
+    private void checkOwner(Transaction current, String transactionId, String userId) {
+        if (current == null) {
+            throw new TransException(HTTP_FAIL_CODE,"交易流水不存在");
+        }
+        if(!Objects.equals(current.getUserId(),userId)){
+            throw new TransException(HTTP_FAIL_CODE,"交易流水【"+transactionId+"】不属于当前用户交易,无权受理");
+        }
+    }
 
-                // 从USER_id索引中移除
-                this.onMainCacheEvict(req.getTransactionId(), oldTransaction);
-            } finally {
-                lockManager.unlock(lockKey);
-            }
-        } else {
-            throw new TransException(HTTP_FAIL_CODE, "当前流水:" + req.getTransactionId()+ "正在被其他用户操作");
+    // 客户端未带版本号时按最后写入为准，带版本号时必须与当前版本一致
+    private void checkVersion(Transaction current, Long expectedVersion) {
+        if (expectedVersion != null && !Objects.equals(expectedVersion, current.getVersion())) {
+            log.warn("交易流水【{}】版本冲突，期望版本【{}】当前版本【{}】",
+                    current.getTransactionId(), expectedVersion, current.getVersion());
+            throw new TransException(HTTP_CONFLICT_CODE,"交易流水【"+current.getTransactionId()
+                    +"】已被其他请求修改，当前版本"+current.getVersion()+"，请重新查询后再提交");
         }
     }
     /**
@@ -264,21 +412,16 @@ public class TransactionService {
     private void onMainCacheEvict(String key, Transaction value) {
         if (value != null) {
             // 从USER_id索引中移除
-            userIndexCache.asMap().computeIfPresent(value.getUserId(), (k, v) -> {
-                v.remove(key);
-                return v.isEmpty() ? null : v; // 若空则删除索引键
-            });
+            removeFromIndex(userIndexCache, value.getUserId(), key);
 
             // 从商户ID索引中移除
-            merchantIndexCache.asMap().computeIfPresent(value.getMerchantId(), (k, v) -> {
-                v.remove(key);
-                return v.isEmpty() ? null : v;
-            });
+            removeFromIndex(merchantIndexCache, value.getMerchantId(), key);
         }
     }
     /**
      * @methodName updateTransaction
-     * @description 更新交易数据
+     * @description 更新交易数据，在主缓存的compute内完成版本校验、写入与索引变更，不再依赖外部锁；
+     * 请求携带版本号且与当前版本不一致时返回冲突，成功后版本号加一
      * @param transaction 交易数据
      * @return
      * @author 18451
@@ -286,71 +429,436 @@ public class TransactionService {
      */
     // 修改交易数据
     public void updateTransaction(Transaction transaction) {
+        checkWritable();
         if(Strings.isBlank(transaction.getTransactionId())){
             log.error("交易流水为空");
             throw new TransException(HTTP_FAIL_CODE,"交易流水不能为空");
         }
         String transactionId = transaction.getTransactionId();
-        String lockKey =CACHE_LOCK_PREFIX + transactionId;
+        if (bloomGuard != null && !bloomGuard.mightContainTransaction(transactionId)) {
+            log.error("交易流水【{}】不存在", transactionId);
+            throw new TransException(HTTP_FAIL_CODE, "交易流水不存在");
+        }
+        Long expectedVersion = transaction.getVersion();
+        Transaction[] replaced = new Transaction[1];
 
-        if (lockManager.tryLock(lockKey)) {
-            try {
-                Transaction oldTransaction = mainCache.getIfPresent(transactionId);
-                if (Objects.isNull(oldTransaction)) {
-                    log.error("交易流水【{}】不存在", transactionId);
-                    throw new TransException(HTTP_FAIL_CODE, "交易流水不存在");
+        mainCache.asMap().compute(transactionId, (k, hotTransaction) -> {
+            Transaction oldTransaction = orPeekCold(k, hotTransaction);
+            if (Objects.isNull(oldTransaction)) {
+                log.error("交易流水【{}】不存在", transactionId);
+                throw new TransException(HTTP_FAIL_CODE, "交易流水不存在");
+            }
+            if(!Objects.equals(oldTransaction.getUserId(),transaction.getUserId())){
+                log.error("当前交易【{}】的新用户【{}】有变动，不允许修改", transactionId,transaction.getUserId());
+                throw new TransException(HTTP_FAIL_CODE,"不允许修改当前交易【"+transaction.getTransactionId()+"】归属的用户");
+            }
+            checkVersion(oldTransaction, expectedVersion);
+
+            transaction.setTransDate(oldTransaction.getTransDate());
+            transaction.setCreateUser(oldTransaction.getCreateUser());
+            transaction.setRequestId(oldTransaction.getRequestId());
+            transaction.setUpdDate(DateUtil.formatDateTime(new Date()));
+            transaction.setVersion(oldTransaction.getVersion() == null ? 1L : oldTransaction.getVersion() + 1);
+            removeCold(k, hotTransaction);
+
+            // 与主缓存写入在同一个原子操作内更新索引
+            this.reindex(oldTransaction, transaction);
+            this.fireUpdate(oldTransaction, transaction);
+            replaced[0] = oldTransaction;
+            return transaction;
+        });
+        this.fireAfterCommit(replaced[0], transaction);
+    }
+
+    /**
+     * @methodName upsertTransaction
+     * @description 按给定数据原样写入（保留流水号、日期与版本号），用于副本同步等内部场景，不做归属与版本校验
+     * @param transaction 交易数据
+     * @return
+     * @author wangwei
+     * @date 2026/10/19
+     */
+    public void upsertTransaction(Transaction transaction) {
+        String transactionId = transaction.getTransactionId();
+        Transaction[] replaced = new Transaction[1];
+        mainCache.asMap().compute(transactionId, (k, hotTransaction) -> {
+            Transaction oldTransaction = orPeekCold(k, hotTransaction);
+            removeCold(k, hotTransaction);
+            if (oldTransaction == null) {
+                addToIndex(userIndexCache, transaction.getUserId(), transactionId);
+                addToIndex(merchantIndexCache, transaction.getMerchantId(), transactionId);
+                this.fireAdd(transaction);
+            } else {
+                this.reindex(oldTransaction, transaction);
+                this.fireUpdate(oldTransaction, transaction);
+            }
+            replaced[0] = oldTransaction;
+            return transaction;
+        });
+        this.fireAfterCommit(replaced[0], transaction);
+    }
+
+    /**
+     * @methodName removeTransaction
+     * @description 直接删除交易数据及索引，用于副本同步等内部场景，不做归属与版本校验
+     * @param transactionId 交易流水号
+     * @return 被删除的交易数据，不存在时返回null
+     * @author wangwei
+     * @date 2026/10/19
+     */
+    public Transaction removeTransaction(String transactionId) {
+        Transaction[] removed = new Transaction[1];
+        mainCache.asMap().compute(transactionId, (k, hotTransaction) -> {
+            Transaction oldTransaction = orPeekCold(k, hotTransaction);
+            if (oldTransaction == null) {
+                return null;
+            }
+            removeCold(k, hotTransaction);
+            this.onMainCacheEvict(k, oldTransaction);
+            this.fireDelete(oldTransaction);
+            removed[0] = oldTransaction;
+            return null;
+        });
+        if (removed[0] != null) {
+            this.fireAfterCommit(removed[0], null);
+        }
+        return removed[0];
+    }
+
+    /**
+     * 过期清理结果：被删除的交易、其中原本位于磁盘层的数量、释放的堆内存估算值
+     */
+    public record ExpireResult(List<Transaction> expired, int coldCount, long heapBytes) {
+    }
+
+    /**
+     * @methodName expireTransactions
+     * @description 按保留策略批量删除过期交易：逐条从主缓存/磁盘层移除后，按用户/商户分组一次性清理索引，
+     * 再以整批回调监听器，不写复制日志（各节点按同一策略各自清理）
+     * @param transactionIds 过期流水号
+     * @return 清理结果
+     * @author wangwei
+     * @date 2026/10/19
+     */
+    public ExpireResult expireTransactions(Collection<String> transactionIds) {
+        return dropWithoutChangeEvents(transactionIds, transaction -> true);
+    }
+
+    /**
+     * @methodName onCapacityEvicted
+     * @description 未启用磁盘层时主缓存按容量淘汰的交易已不可读：从用户/商户索引中移除，并与过期清理相同以onExpire回调派生索引，
+     * 不产生删除事件；在淘汰的原子操作内调用（该流水的写入须等待淘汰完成），之后重新写入的流水会再次进入索引
+     * @param evicted 被淘汰的交易数据
+     * @return
+     * @author wangwei
+     * @date 2026/10/19
+     */
+    public void onCapacityEvicted(Transaction evicted) {
+        removeFromIndex(userIndexCache, evicted.getUserId(), evicted.getTransactionId());
+        removeFromIndex(merchantIndexCache, evicted.getMerchantId(), evicted.getTransactionId());
+        this.fireExpire(Collections.singletonList(evicted));
+    }
+
+    /**
+     * @methodName dropMigrated
+     * @description 集群迁移后删除已发送到新节点的本地数据：与过期清理相同，以整批onExpire回调本地的派生索引，
+     * 不产生删除事件（数据仍在新节点上，不是业务删除）；发送后本地又被修改的数据不删除，留待下次迁移
+     * @param sent 已被新节点写入的交易数据
+     * @return 实际删除的数量
+     * @author wangwei
+     * @date 2026/10/19
+     */
+    public int dropMigrated(List<Transaction> sent) {
+        Map<String, Transaction> sentById = new HashMap<>();
+        sent.forEach(transaction -> sentById.put(transaction.getTransactionId(), transaction));
+        return dropWithoutChangeEvents(sentById.keySet(),
+                current -> current.equals(sentById.get(current.getTransactionId()))).expired().size();
+    }
+
+    private ExpireResult dropWithoutChangeEvents(Collection<String> transactionIds, Predicate<Transaction> filter) {
+        List<Transaction> expired = new ArrayList<>(transactionIds.size());
+        Map<String, Set<String>> byUser = new HashMap<>();
+        Map<String, Set<String>> byMerchant = new HashMap<>();
+        int coldCount = 0;
+        long heapBytes = 0;
+        Transaction[] removed = new Transaction[2];
+        for (String transactionId : transactionIds) {
+            removed[0] = null;
+            removed[1] = null;
+            mainCache.asMap().compute(transactionId, (k, hotTransaction) -> {
+                Transaction oldTransaction = orPeekCold(k, hotTransaction);
+                if (oldTransaction == null || !filter.test(oldTransaction)) {
+                    return hotTransaction;
                 }
-                if(!Objects.equals(oldTransaction.getUserId(),transaction.getUserId())){
-                    log.error("当前交易【{}】的新用户【{}】有变动，不允许修改", transactionId,transaction.getUserId());
-                    throw new TransException(HTTP_FAIL_CODE,"不允许修改当前交易【"+transaction.getTransactionId()+"】归属的用户");
+                removed[0] = oldTransaction;
+                removed[1] = hotTransaction;
+                removeCold(k, hotTransaction);
+                return null;
+            });
+            Transaction transaction = removed[0];
+            if (transaction == null) {
+                continue;
+            }
+            expired.add(transaction);
+            if (removed[1] == null) {
+                coldCount++;
+            } else {
+                heapBytes += MemoryEstimator.estimate(transaction);
+            }
+            byUser.computeIfAbsent(transaction.getUserId(), key -> new HashSet<>()).add(transactionId);
+            byMerchant.computeIfAbsent(transaction.getMerchantId(), key -> new HashSet<>()).add(transactionId);
+        }
+        // 每个用户/商户只做一次索引更新；期间被重新写入（如副本同步）的流水保留在索引中
+        byUser.forEach((userId, ids) -> removeAllFromIndex(true, userId, ids));
+        byMerchant.forEach((merchantId, ids) -> removeAllFromIndex(false, merchantId, ids));
+        if (!expired.isEmpty()) {
+            this.fireExpire(expired);
+        }
+        return new ExpireResult(expired, coldCount, heapBytes);
+    }
+
+    /**
+     * @methodName archiveTransactions
+     * @description 把主缓存中的交易整条移到磁盘层（与容量淘汰的降级相同，仍可查询），索引不变
+     * @param transactionIds 流水号
+     * @return 实际移动的数量
+     * @author wangwei
+     * @date 2026/10/19
+     */
+    public int archiveTransactions(Collection<String> transactionIds) {
+        if (diskTier == null) {
+            return 0;
+        }
+        int[] archived = new int[1];
+        for (String transactionId : transactionIds) {
+            mainCache.asMap().computeIfPresent(transactionId, (k, hotTransaction) -> {
+                diskTier.put(hotTransaction);
+                archived[0]++;
+                return null;
+            });
+        }
+        return archived[0];
+    }
+
+    /**
+     * @methodName bulkDelete
+     * @description 批量删除：逐条在主缓存的compute内按条件复核并删除（回调与单条删除相同，复制日志与变更流照常产生），
+     * 整批完成后每个用户/商户只做一次索引更新；索引更新之前被删除的流水号可能仍在索引中，查询时跳过。
+     * 索引更新后再让相关分页结果失效，索引更新之前缓存的结果不会继续使用
+     * @param transactionIds 候选流水号
+     * @param filter 删除条件，以删除时的数据判断
+     * @return 实际删除的交易
+     * @author wangwei
+     * @date 2026/10/19
+     */
+    public List<Transaction> bulkDelete(Collection<String> transactionIds, Predicate<Transaction> filter) {
+        checkWritable();
+        List<Transaction> deleted = new ArrayList<>(transactionIds.size());
+        Map<String, Set<String>> byUser = new HashMap<>();
+        Map<String, Set<String>> byMerchant = new HashMap<>();
+        Transaction[] removed = new Transaction[1];
+        for (String transactionId : transactionIds) {
+            removed[0] = null;
+            mainCache.asMap().compute(transactionId, (k, hotTransaction) -> {
+                Transaction oldTransaction = orPeekCold(k, hotTransaction);
+                if (oldTransaction == null || !filter.test(oldTransaction)) {
+                    return hotTransaction;
                 }
+                removeCold(k, hotTransaction);
+                this.fireDelete(oldTransaction);
+                removed[0] = oldTransaction;
+                return null;
+            });
+            Transaction transaction = removed[0];
+            if (transaction != null) {
+                // 监听器按线程记录当前一条的序号，须在下一条compute之前提交
+                this.fireAfterCommit(transaction, null);
+                deleted.add(transaction);
+                byUser.computeIfAbsent(transaction.getUserId(), key -> new HashSet<>()).add(transactionId);
+                byMerchant.computeIfAbsent(transaction.getMerchantId(), key -> new HashSet<>()).add(transactionId);
+            }
+        }
+        byUser.forEach((userId, ids) -> removeAllFromIndex(true, userId, ids));
+        byMerchant.forEach((merchantId, ids) -> removeAllFromIndex(false, merchantId, ids));
+        this.invalidateQueryCache(byUser.keySet(), byMerchant.keySet());
+        return deleted;
+    }
 
-                transaction.setTransDate(oldTransaction.getTransDate());
-                transaction.setCreateUser(oldTransaction.getCreateUser());
+    /**
+     * @methodName bulkReassignMerchant
+     * @description 批量改商户：逐条在主缓存的compute内按条件复核并写入新版本（版本号加一），
+     * 整批完成后每个原商户只移除一次、新商户只合并一次索引；在此之前按新商户查询暂时查不到本批交易，
+     * 索引更新后再让相关分页结果失效
+     * @param transactionIds 候选流水号
+     * @param filter 修改条件，以修改时的数据判断
+     * @param merchantId 新商户ID
+     * @return 实际修改的数量
+     * @author wangwei
+     * @date 2026/10/19
+     */
+    public int bulkReassignMerchant(Collection<String> transactionIds, Predicate<Transaction> filter, String merchantId) {
+        checkWritable();
+        List<String> changed = new ArrayList<>(transactionIds.size());
+        Set<String> userIds = new HashSet<>();
+        Map<String, Set<String>> byMerchant = new HashMap<>();
+        Transaction[] change = new Transaction[2];
+        for (String transactionId : transactionIds) {
+            change[0] = null;
+            mainCache.asMap().compute(transactionId, (k, hotTransaction) -> {
+                Transaction oldTransaction = orPeekCold(k, hotTransaction);
+                if (oldTransaction == null || Objects.equals(oldTransaction.getMerchantId(), merchantId)
+                        || !filter.test(oldTransaction)) {
+                    return hotTransaction;
+                }
+                Transaction transaction = new Transaction();
+                BeanUtils.copyProperties(oldTransaction, transaction);
+                transaction.setMerchantId(merchantId);
                 transaction.setUpdDate(DateUtil.formatDateTime(new Date()));
+                transaction.setVersion(oldTransaction.getVersion() == null ? 1L : oldTransaction.getVersion() + 1);
+                removeCold(k, hotTransaction);
+                this.fireUpdate(oldTransaction, transaction);
+                change[0] = oldTransaction;
+                change[1] = transaction;
+                return transaction;
+            });
+            if (change[0] != null) {
+                // 监听器按线程记录当前一条的序号，须在下一条compute之前提交
+                this.fireAfterCommit(change[0], change[1]);
+                changed.add(transactionId);
+                userIds.add(change[0].getUserId());
+                byMerchant.computeIfAbsent(change[0].getMerchantId(), key -> new HashSet<>()).add(transactionId);
+            }
+        }
+        if (changed.isEmpty()) {
+            return 0;
+        }
+        byMerchant.forEach((oldMerchantId, ids) -> removeAllFromIndex(false, oldMerchantId, ids));
+        mergeIndex(false, merchantId, changed);
+        Set<String> merchantIds = new HashSet<>(byMerchant.keySet());
+        merchantIds.add(merchantId);
+        this.invalidateQueryCache(userIds, merchantIds);
+        return changed.size();
+    }
 
-                // 更新主缓存
-                mainCache.put(transactionId, transaction);
-
-                // 检查并更新用户索引，用户有变更则更新
+    /**
+     * @methodName importTransaction
+     * @description 批量导入写入单条交易：保留给定的流水号、日期与版本号，只写主缓存；
+     * 用户/商户索引由导入任务把排序后的批量索引合并进来（mergeIndex），已存在的流水按导入数据覆盖
+     * @param transaction 交易数据
+     * @return 覆盖前的数据，不存在时返回null
+     * @author wangwei
+     * @date 2026/10/19
+     */
+    public Transaction importTransaction(Transaction transaction) {
+        String transactionId = transaction.getTransactionId();
+        Transaction[] replaced = new Transaction[1];
+        mainCache.asMap().compute(transactionId, (k, hotTransaction) -> {
+            Transaction oldTransaction = orPeekCold(k, hotTransaction);
+            removeCold(k, hotTransaction);
+            if (oldTransaction == null) {
+                this.fireAdd(transaction);
+            } else {
+                // 归属变化时立即移除旧索引，新索引随批合并
                 if (!Objects.equals(oldTransaction.getUserId(), transaction.getUserId())) {
-                    // 从旧的用户索引中移除当前交易
-                    userIndexCache.asMap().computeIfPresent(oldTransaction.getUserId(), (k, v) -> {
-                        v.remove(transactionId);
-                        return v.isEmpty() ? null : v;
-                    });
-
-                    // 更新新的用户索引
-                    userIndexCache.asMap().compute(transaction.getUserId(), (k, v) -> {
-                        Set<String> ids = (v == null) ? ConcurrentHashMap.newKeySet() : v;
-                        ids.add(transactionId);
-                        return ids;
-                    });
+                    removeFromIndex(userIndexCache, oldTransaction.getUserId(), k);
                 }
-
-                // 检查并更新商户索引，商户
                 if (!Objects.equals(oldTransaction.getMerchantId(), transaction.getMerchantId())) {
-                    // 从旧的商户索引中移除
-                    merchantIndexCache.asMap().computeIfPresent(oldTransaction.getMerchantId(), (k, v) -> {
-                        v.remove(transactionId);
-                        return v.isEmpty() ? null : v;
-                    });
-
-                    // 更新新的商户索引
-                    merchantIndexCache.asMap().compute(transaction.getMerchantId(), (k, v) -> {
-                        Set<String> ids = (v == null) ? ConcurrentHashMap.newKeySet() : v;
-                        ids.add(transactionId);
-                        return ids;
-                    });
+                    removeFromIndex(merchantIndexCache, oldTransaction.getMerchantId(), k);
                 }
-            } finally {
-                //完成操作释放锁
-                lockManager.unlock(lockKey);
+                this.fireUpdate(oldTransaction, transaction);
             }
-        } else {
-            throw new TransException(HTTP_FAIL_CODE, "当前流水:" + transactionId+ "正在被其他用户操作");
+            replaced[0] = oldTransaction;
+            return transaction;
+        });
+        this.fireAfterCommit(replaced[0], transaction);
+        return replaced[0];
+    }
+
+    /**
+     * @methodName mergeIndex
+     * @description 把同一用户/商户的一组流水号一次性并入索引，只并入当前仍存在且归属一致的流水
+     * @param userIndex true为用户索引，false为商户索引
+     * @param key 用户ID/商户ID
+     * @param transactionIds 流水号
+     * @return
+     * @author wangwei
+     * @date 2026/10/19
+     */
+    public void mergeIndex(boolean userIndex, String key, Collection<String> transactionIds) {
+        Cache<String, Set<String>> indexCache = userIndex ? userIndexCache : merchantIndexCache;
+        indexCache.asMap().compute(key, (k, v) -> {
+            Set<String> ids = (v == null) ? ConcurrentHashMap.newKeySet(transactionIds.size()) : v;
+            for (String transactionId : transactionIds) {
+                if (indexedUnder(findTransaction(transactionId), key, userIndex)) {
+                    ids.add(transactionId);
+                }
+            }
+            return ids.isEmpty() ? null : ids;
+        });
+    }
+
+    /**
+     * 索引批量更新完成后让相关用户/商户的分页结果失效（更新前缓存的结果与组合索引仍按旧索引计算）
+     */
+    public void invalidateQueryCache(Collection<String> userIds, Collection<String> merchantIds) {
+        if (queryResultCache != null) {
+            queryResultCache.invalidateKeys(userIds, merchantIds);
+        }
+    }
+
+    /**
+     * @methodName reindex
+     * @description 用户/商户有变更时把交易从旧索引移到新索引
+     * @param oldTransaction 变更前数据
+     * @param transaction 变更后数据
+     * @return
+     * @author wangwei
+     * @date 2026/10/19
+     */
+    private void reindex(Transaction oldTransaction, Transaction transaction) {
+        String transactionId = transaction.getTransactionId();
+        // 检查并更新用户索引，用户有变更则更新
+        if (!Objects.equals(oldTransaction.getUserId(), transaction.getUserId())) {
+            removeFromIndex(userIndexCache, oldTransaction.getUserId(), transactionId);
+            addToIndex(userIndexCache, transaction.getUserId(), transactionId);
+        }
+        // 检查并更新商户索引，商户有变更则更新
+        if (!Objects.equals(oldTransaction.getMerchantId(), transaction.getMerchantId())) {
+            removeFromIndex(merchantIndexCache, oldTransaction.getMerchantId(), transactionId);
+            addToIndex(merchantIndexCache, transaction.getMerchantId(), transactionId);
         }
     }
+
+    private void addToIndex(Cache<String, Set<String>> indexCache, String key, String transactionId) {
+        indexCache.asMap().compute(key, (k, v) -> {
+            Set<String> ids = (v == null) ? ConcurrentHashMap.newKeySet() : v;
+            ids.add(transactionId);
+            return ids;
+        });
+    }
+
+    private void removeFromIndex(Cache<String, Set<String>> indexCache, String key, String transactionId) {
+        indexCache.asMap().computeIfPresent(key, (k, v) -> {
+            v.remove(transactionId);
+            return v.isEmpty() ? null : v; // 若空则删除索引键
+        });
+    }
+    // 只移除已不存在或已不属于该用户/商户的流水，期间被重新写入（如副本同步）的流水保留在索引中
+    private void removeAllFromIndex(boolean userIndex, String key, Set<String> transactionIds) {
+        if (key == null) {
+            return;
+        }
+        Cache<String, Set<String>> indexCache = userIndex ? userIndexCache : merchantIndexCache;
+        indexCache.asMap().computeIfPresent(key, (k, v) -> {
+            v.removeIf(transactionId -> transactionIds.contains(transactionId)
+                    && !indexedUnder(findTransaction(transactionId), key, userIndex));
+            return v.isEmpty() ? null : v;
+        });
+    }
+
+    private static boolean indexedUnder(Transaction current, String key, boolean userIndex) {
+        return current != null && Objects.equals(key, userIndex ? current.getUserId() : current.getMerchantId());
+    }
     /**
      * @methodName getAllData
      * @description 获取全部数据
@@ -363,6 +871,10 @@ public class TransactionService {
      */
     private void getAllData(int page, int pageSize,TransQryRsp rsp){
         Set<String> allKeys = mainCache.asMap().keySet();
+        if (diskTier != null) {
+            allKeys = new HashSet<>(allKeys);
+            allKeys.addAll(diskTier.keys());
+        }
         if (allKeys == null || allKeys.isEmpty()) {
             rsp.setTotal(0);
             rsp.setTransList(Collections.emptyList());
@@ -379,7 +891,7 @@ public class TransactionService {
             return;
         }
         List<TransDataDto> dtoList = ids.subList(offset, limit).stream()
-                .map(mainCache::getIfPresent)
+                .map(this::lookup)
                 .filter(Objects::nonNull)
                 .map(this::convertTrans)
                 .toList();
@@ -398,6 +910,25 @@ public class TransactionService {
      * @date 2025/3/15
      */
     public TransQryRsp searchTrans(TransQryRequest req){
+        //分页查询优先读取结果缓存
+        if(queryResultCache!=null && queryResultCache.isCacheable(req)){
+            return queryResultCache.get(req,()->doSearchTrans(req));
+        }
+        return doSearchTrans(req);
+    }
+
+    private TransQryRsp doSearchTrans(TransQryRequest req){
+        TransSort sort=TransSort.of(req);
+        if(TransactionSnapshotManager.isSnapshotQuery(req) && Strings.isBlank(req.getTransactionId())){
+            return snapshotSearch(req);
+        }
+        if(sort.byAmount() && Strings.isBlank(req.getTransactionId())){
+            return amountSearch(req,sort);
+        }
+        if(queryPlanner!=null){
+            return plannedSearch(req);
+        }
+        //未装配查询计划时（单元测试等最小装配）按原有方式查询，扫描引擎只经查询计划使用
         TransQryRsp rsp=new TransQryRsp();
         rsp.setPage(req.getPage());
         rsp.setPageSize(req.getPageSize());
@@ -409,7 +940,8 @@ public class TransactionService {
         }
         //有交易流水号优先用流水号查询
         if(Strings.isNotBlank(req.getTransactionId())){
-            Transaction trans=mainCache.getIfPresent(req.getTransactionId());
+            Transaction trans=(bloomGuard != null && !bloomGuard.mightContainTransaction(req.getTransactionId()))
+                    ? null : lookup(req.getTransactionId());
             if(trans!=null){
                 dtoList.add(convertTrans(trans) );
             }
@@ -433,6 +965,408 @@ public class TransactionService {
         }
         return rsp;
     }
+    /**
+     * @methodName plannedSearch
+     * @description 按查询计划选择的策略执行查询，金额条件在各策略上都作为过滤条件生效；
+     * 用户+商户查询须在读取索引集合之前读取索引键版本号，保证物化的组合索引不会包含过期结果
+     * @param req 查询条件
+     * @return com.hsbc.interview.dto.TransQryRsp 查询返回DTO
+     * @author wangwei
+     * @date 2026/10/19
+     */
+    private TransQryRsp plannedSearch(TransQryRequest req){
+        long start=System.nanoTime();
+        TransQryRsp rsp=new TransQryRsp();
+        rsp.setPage(req.getPage());
+        rsp.setPageSize(req.getPageSize());
+        rsp.setTransList(Collections.emptyList());
+        String userId=Strings.isNotBlank(req.getUserId())?req.getUserId():null;
+        String merchantId=Strings.isNotBlank(req.getMerchantId())?req.getMerchantId():null;
+        long[] versions=(userId!=null && merchantId!=null)?queryPlanner.indexVersions(userId,merchantId):null;
+        Set<String> userIds=userId==null?null:indexSet(userIndexCache,userId,bloomGuard==null || bloomGuard.mightContainUser(userId));
+        Set<String> merchantIds=merchantId==null?null
+                :indexSet(merchantIndexCache,merchantId,bloomGuard==null || bloomGuard.mightContainMerchant(merchantId));
+        long totalRows=mainCache.estimatedSize()+(diskTier==null?0:diskTier.size());
+        TransactionQueryPlanner.QueryShape shape=new TransactionQueryPlanner.QueryShape(
+                Strings.isNotBlank(req.getTransactionId()),userIds==null?-1:userIds.size(),
+                merchantIds==null?-1:merchantIds.size(),req.getMinAmount(),req.getMaxAmount(),totalRows,
+                (long)(req.getPage()-1)*req.getPageSize(),req.getPageSize(),scanEngine!=null);
+        TransactionQueryPlanner.Plan plan=queryPlanner.plan(shape,userId,merchantId,versions);
+        Predicate<Transaction> amountFilter=TransactionScanEngine.amountPredicate(req.getMinAmount(),req.getMaxAmount());
+        long examined;
+        long pairRows=-1;
+        switch (plan.strategy()){
+            case ID_LOOKUP -> {
+                Transaction trans=(bloomGuard != null && !bloomGuard.mightContainTransaction(req.getTransactionId()))
+                        ? null : lookup(req.getTransactionId());
+                if(trans!=null){
+                    rsp.setTransList(List.of(convertTrans(trans)));
+                }
+                rsp.setTotal(1);
+                examined=trans==null?0:1;
+            }
+            case USER_INDEX -> examined=pageSortedIds(sorted(userIds),amountFilter,req,rsp);
+            case MERCHANT_INDEX -> examined=pageSortedIds(sorted(merchantIds),amountFilter,req,rsp);
+            case SMALLEST_SET_PROBE -> {
+                Set<String> smaller=userIds.size()<=merchantIds.size()?userIds:merchantIds;
+                Set<String> larger=smaller==userIds?merchantIds:userIds;
+                List<String> ids=new ArrayList<>();
+                for(String id:smaller){
+                    if(larger.contains(id)){
+                        ids.add(id);
+                    }
+                }
+                ids.sort(String::compareTo);
+                pairRows=ids.size();
+                if(plan.materialize()){
+                    queryPlanner.materialize(userId,merchantId,versions,ids);
+                }
+                examined=smaller.size()+pageSortedIds(ids,amountFilter,req,rsp);
+            }
+            case COMPOSITE_INDEX -> {
+                pairRows=plan.compositeIds().length;
+                examined=pageSortedIds(Arrays.asList(plan.compositeIds()),amountFilter,req,rsp);
+            }
+            default -> examined=scanPlanned(userId,merchantId,amountFilter,req,rsp,totalRows);
+        }
+        queryPlanner.record(plan,userId,merchantId,pairRows,rsp.getTotal());
+        if(Boolean.TRUE.equals(req.getExplain())){
+            rsp.setPlan(explain(plan,userId,userIds,merchantId,merchantIds,req,rsp,examined,start));
+        }
+        return rsp;
+    }
+
+    /**
+     * @methodName snapshotSearch
+     * @description 快照分页：首页打开快照并返回令牌，后续页按令牌读取快照时的数据，页之间不会重复或遗漏
+     * @param req 查询条件
+     * @return com.hsbc.interview.dto.TransQryRsp 查询返回DTO
+     * @author wangwei
+     * @date 2026/10/19
+     */
+    private TransQryRsp snapshotSearch(TransQryRequest req){
+        if(snapshotManager==null){
+            throw new TransException(HTTP_FAIL_CODE,"未启用快照分页");
+        }
+        long start=System.nanoTime();
+        TransactionSnapshotManager.Page page=snapshotManager.search(req,this::findTransaction);
+        TransQryRsp rsp=new TransQryRsp();
+        rsp.setPage(req.getPage());
+        rsp.setPageSize(req.getPageSize());
+        rsp.setTotal(page.total());
+        rsp.setTransList(page.rows().stream().map(this::convertTrans).toList());
+        rsp.setSnapshotToken(page.token());
+        if(Boolean.TRUE.equals(req.getExplain())){
+            TransQryPlan plan=new TransQryPlan();
+            plan.setStrategy("SNAPSHOT");
+            plan.setDetail("seq="+page.seq());
+            plan.setActualRows((long) page.total());
+            plan.setAlternatives(Collections.emptyMap());
+            plan.setElapsedMicros(TimeUnit.NANOSECONDS.toMicros(System.nanoTime()-start));
+            rsp.setPlan(plan);
+        }
+        return rsp;
+    }
+
+    /**
+     * @methodName amountSearch
+     * @description 按金额排序查询：定位金额索引的区间起点后按序读取，只读取到当前页为止，总数只遍历索引键；
+     * 用户+商户查询按较小一侧的索引读取，另一侧作为过滤条件，此时需要读取区间内全部候选行才能得到总数
+     * @param req 查询条件
+     * @param sort 排序方式
+     * @return com.hsbc.interview.dto.TransQryRsp 查询返回DTO
+     * @author wangwei
+     * @date 2026/10/19
+     */
+    private TransQryRsp amountSearch(TransQryRequest req, TransSort sort){
+        if(amountIndex==null){
+            throw new TransException(HTTP_FAIL_CODE,"未启用金额索引，不支持按金额排序");
+        }
+        long start=System.nanoTime();
+        TransQryRsp rsp=new TransQryRsp();
+        rsp.setPage(req.getPage());
+        rsp.setPageSize(req.getPageSize());
+        String userId=Strings.isNotBlank(req.getUserId())?req.getUserId():null;
+        String merchantId=Strings.isNotBlank(req.getMerchantId())?req.getMerchantId():null;
+        boolean byUser=userId!=null && (merchantId==null || amountIndex.userSize(userId)<=amountIndex.merchantSize(merchantId));
+        String otherUserId=byUser?null:userId;
+        String otherMerchantId=byUser?merchantId:null;
+        boolean residual=otherUserId!=null || otherMerchantId!=null;
+        AmountOrderedIndex.Range range=amountIndex.range(byUser?userId:null,byUser?null:merchantId,
+                req.getMinAmount(),req.getMaxAmount(),sort==TransSort.AMOUNT_DESC);
+        Predicate<Transaction> amountFilter=TransactionScanEngine.amountPredicate(req.getMinAmount(),req.getMaxAmount());
+        int offset=(req.getPage()-1)*req.getPageSize();
+        List<TransDataDto> dtoList=new ArrayList<>(req.getPageSize());
+        int matched=0;
+        long examined=0;
+        for(AmountOrderedIndex.Key key:range.keys()){
+            if(!residual){
+                // 只有金额条件时索引键与结果一一对应，偏移量内的键直接跳过，不读取交易
+                if(matched<offset){
+                    matched++;
+                    continue;
+                }
+                if(dtoList.size()>=req.getPageSize()){
+                    break;
+                }
+            }
+            Transaction trans=findTransaction(key.transactionId());
+            examined++;
+            if(trans==null || !AmountOrderedIndex.matches(key,trans) || (amountFilter!=null && !amountFilter.test(trans))
+                    || (otherUserId!=null && !otherUserId.equals(trans.getUserId()))
+                    || (otherMerchantId!=null && !otherMerchantId.equals(trans.getMerchantId()))){
+                continue;
+            }
+            if(matched>=offset && dtoList.size()<req.getPageSize()){
+                dtoList.add(convertTrans(trans));
+            }
+            matched++;
+        }
+        amountIndex.recordExamined(examined);
+        rsp.setTotal(residual?matched:amountIndex.count(range));
+        rsp.setTransList(dtoList);
+        if(Boolean.TRUE.equals(req.getExplain())){
+            TransQryPlan plan=new TransQryPlan();
+            plan.setStrategy("AMOUNT_INDEX");
+            plan.setDetail((byUser?"user["+userId+"]":merchantId!=null?"merchant["+merchantId+"]":"all")
+                    +"="+range.size()+", "+sort.name()+(residual?", filter "+(otherUserId!=null?"user["+otherUserId+"]":"merchant["+otherMerchantId+"]"):""));
+            plan.setEstimatedRows((long) range.size());
+            plan.setActualRows((long) rsp.getTotal());
+            plan.setExaminedRows(examined);
+            plan.setAlternatives(Collections.emptyMap());
+            plan.setElapsedMicros(TimeUnit.NANOSECONDS.toMicros(System.nanoTime()-start));
+            rsp.setPlan(plan);
+        }
+        return rsp;
+    }
+
+    private static Set<String> indexSet(Cache<String, Set<String>> indexCache, String key, boolean mightContain){
+        Set<String> ids=mightContain?indexCache.getIfPresent(key):null;
+        return ids==null?Collections.emptySet():ids;
+    }
+
+    private static List<String> sorted(Set<String> ids){
+        List<String> sortedIds=new ArrayList<>(ids);
+        sortedIds.sort(String::compareTo);
+        return sortedIds;
+    }
+
+    // 对有序流水号分页，有金额条件时需要读取全部候选行得到总数，返回实际读取的行数
+    private long pageSortedIds(List<String> sortedIds, Predicate<Transaction> filter, TransQryRequest req, TransQryRsp rsp){
+        int offset=(req.getPage()-1)*req.getPageSize();
+        if(filter==null){
+            rsp.setTotal(sortedIds.size());
+            if(offset>=sortedIds.size()){
+                return 0;
+            }
+            List<String> pageIds=sortedIds.subList(offset,Math.min(offset+req.getPageSize(),sortedIds.size()));
+            rsp.setTransList(pageIds.stream().map(this::lookup).filter(Objects::nonNull).map(this::convertTrans).toList());
+            return pageIds.size();
+        }
+        List<TransDataDto> dtoList=new ArrayList<>(req.getPageSize());
+        int matched=0;
+        for(String id:sortedIds){
+            Transaction trans=findTransaction(id);
+            if(trans==null || !filter.test(trans)){
+                continue;
+            }
+            if(matched>=offset && dtoList.size()<req.getPageSize()){
+                dtoList.add(convertTrans(trans));
+            }
+            matched++;
+        }
+        rsp.setTotal(matched);
+        rsp.setTransList(dtoList);
+        return sortedIds.size();
+    }
+
+    // 全量扫描：用户/商户条件与金额条件合并为一个谓词交给扫描引擎
+    private long scanPlanned(String userId, String merchantId, Predicate<Transaction> amountFilter,
+                             TransQryRequest req, TransQryRsp rsp, long totalRows){
+        if(scanEngine==null){
+            getAllData(req.getPage(),req.getPageSize(),rsp);
+            return totalRows;
+        }
+        Predicate<Transaction> predicate=amountFilter;
+        if(userId!=null){
+            Predicate<Transaction> byUser=trans->userId.equals(trans.getUserId());
+            predicate=predicate==null?byUser:predicate.and(byUser);
+        }
+        if(merchantId!=null){
+            Predicate<Transaction> byMerchant=trans->merchantId.equals(trans.getMerchantId());
+            predicate=predicate==null?byMerchant:predicate.and(byMerchant);
+        }
+        TransactionScanEngine.ScanResult result=scanEngine.scan(predicate,req.getPage(),req.getPageSize());
+        rsp.setTotal((int) Math.min(result.total(),Integer.MAX_VALUE));
+        rsp.setTransList(result.page().stream().map(this::convertTrans).toList());
+        return predicate==null?Math.min(totalRows,
+                OrderedIdIndex.seekSteps((long)(req.getPage()-1)*req.getPageSize())+req.getPageSize()):totalRows;
+    }
+
+    private TransQryPlan explain(TransactionQueryPlanner.Plan plan, String userId, Set<String> userIds,
+                                 String merchantId, Set<String> merchantIds, TransQryRequest req, TransQryRsp rsp,
+                                 long examined, long start){
+        StringBuilder detail=new StringBuilder();
+        if(Strings.isNotBlank(req.getTransactionId())){
+            detail.append("transactionId[").append(req.getTransactionId()).append(']');
+        }
+        if(userIds!=null){
+            detail.append(detail.isEmpty()?"":", ").append("user[").append(userId).append("]=").append(userIds.size());
+        }
+        if(merchantIds!=null){
+            detail.append(detail.isEmpty()?"":", ").append("merchant[").append(merchantId).append("]=").append(merchantIds.size());
+        }
+        if(req.getMinAmount()!=null || req.getMaxAmount()!=null){
+            detail.append(detail.isEmpty()?"":", ").append(String.format("amountSelectivity=%.4f",
+                    queryPlanner.amountSelectivity(req.getMinAmount(),req.getMaxAmount())));
+        }
+        TransQryPlan explain=new TransQryPlan();
+        explain.setStrategy(plan.strategy().name());
+        explain.setDetail(detail.toString());
+        explain.setEstimatedRows(plan.estimatedRows());
+        explain.setActualRows((long) rsp.getTotal());
+        explain.setExaminedRows(examined);
+        explain.setEstimatedCost(plan.cost());
+        explain.setAlternatives(plan.alternatives());
+        explain.setElapsedMicros(TimeUnit.NANOSECONDS.toMicros(System.nanoTime()-start));
+        return explain;
+    }
+
+    private void fireAdd(Transaction after) {
+        for (TransactionMutationListener listener : mutationListeners) {
+            try {
+                listener.onAdd(after);
+            } catch (RuntimeException e) {
+                log.error("交易变更监听处理失败 transaction ID: {}", after.getTransactionId(), e);
+            }
+        }
+    }
+
+    private void fireUpdate(Transaction before, Transaction after) {
+        for (TransactionMutationListener listener : mutationListeners) {
+            try {
+                listener.onUpdate(before, after);
+            } catch (RuntimeException e) {
+                log.error("交易变更监听处理失败 transaction ID: {}", after.getTransactionId(), e);
+            }
+        }
+    }
+
+    private void fireAfterCommit(Transaction before, Transaction after) {
+        for (TransactionMutationListener listener : mutationListeners) {
+            try {
+                listener.afterCommit(before, after);
+            } catch (RuntimeException e) {
+                log.error("交易变更提交后处理失败", e);
+            }
+        }
+    }
+
+    private void fireExpire(List<Transaction> expired) {
+        for (TransactionMutationListener listener : mutationListeners) {
+            try {
+                listener.onExpire(expired);
+            } catch (RuntimeException e) {
+                log.error("交易过期清理回调失败", e);
+            }
+        }
+    }
+
+    private void fireDelete(Transaction before) {
+        for (TransactionMutationListener listener : mutationListeners) {
+            try {
+                listener.onDelete(before);
+            } catch (RuntimeException e) {
+                log.error("交易变更监听处理失败 transaction ID: {}", before.getTransactionId(), e);
+            }
+        }
+    }
+    /**
+     * @methodName lookup
+     * @description 按流水号读取交易，主缓存未命中时回落到磁盘层，按配置读回主缓存
+     * @param transactionId 交易流水号
+     * @return 交易数据，不存在时返回null
+     * @author wangwei
+     * @date 2026/10/19
+     */
+    private Transaction lookup(String transactionId) {
+        if (diskTier == null) {
+            return mainCache.getIfPresent(transactionId);
+        }
+        long start = System.nanoTime();
+        Transaction transaction = mainCache.getIfPresent(transactionId);
+        diskTier.recordHot(transaction != null, System.nanoTime() - start);
+        if (transaction != null) {
+            return transaction;
+        }
+        if (diskTier.isPromoteOnRead()) {
+            // 在该key的原子操作内从磁盘层取出并放回主缓存，与降级、更新、删除互斥
+            return mainCache.asMap().computeIfAbsent(transactionId, diskTier::take);
+        }
+        return diskTier.get(transactionId);
+    }
+
+    /**
+     * @methodName findTransaction
+     * @description 按流水号读取交易（主缓存未命中时读磁盘层，不读回主缓存），用于写操作前的快速校验与节点间查询
+     * @param transactionId 交易流水号
+     * @return 交易数据，不存在时返回null
+     * @author wangwei
+     * @date 2026/10/19
+     */
+    public Transaction findTransaction(String transactionId) {
+        Transaction transaction = mainCache.getIfPresent(transactionId);
+        return transaction != null || diskTier == null ? transaction : diskTier.get(transactionId);
+    }
+
+    /**
+     * @methodName getTransaction
+     * @description 按流水号读取单条交易，与按流水号查询的读取路径一致（布隆过滤、磁盘层读回），但不构造查询请求与响应对象
+     * @param transactionId 交易流水号
+     * @return 交易数据，不存在时返回null
+     * @author wangwei
+     * @date 2026/10/19
+     */
+    public Transaction getTransaction(String transactionId) {
+        if (Strings.isBlank(transactionId)
+                || (bloomGuard != null && !bloomGuard.mightContainTransaction(transactionId))) {
+            return null;
+        }
+        return lookup(transactionId);
+    }
+
+    // 主缓存中没有时读取磁盘层，只在主缓存该key的compute内调用，与降级互斥
+    private Transaction orPeekCold(String key, Transaction hotTransaction) {
+        return hotTransaction != null || diskTier == null ? hotTransaction : diskTier.get(key);
+    }
+
+    // 数据原本在磁盘层时，写操作通过校验后移除磁盘层记录（新值进入主缓存或已删除）
+    private void removeCold(String key, Transaction hotTransaction) {
+        if (hotTransaction == null && diskTier != null) {
+            diskTier.remove(key);
+        }
+    }
+
+    /**
+     * @methodName allTransactions
+     * @description 遍历主缓存与磁盘层的全部交易（弱一致），用于快照、迁移等内部场景
+     * @return 交易数据流
+     * @author wangwei
+     * @date 2026/10/19
+     */
+    public Stream<Transaction> allTransactions() {
+        Stream<Transaction> hot = mainCache.asMap().values().stream();
+        return diskTier == null ? hot : Stream.concat(hot, diskTier.values());
+    }
+
+    /**
+     * @return 主缓存与磁盘层的全部流水号（弱一致）
+     */
+    public Stream<String> allTransactionIds() {
+        Stream<String> hot = mainCache.asMap().keySet().stream();
+        return diskTier == null ? hot : Stream.concat(hot, diskTier.keys().stream());
+    }
+
     /**
      * @methodName convertTrans
      * @description 转换数据
@@ -441,20 +1375,31 @@ public class TransactionService {
      * @author 18451
      * @date 2025/3/15
      */
-    private TransDataDto convertTrans(Transaction transaction){
+    public TransDataDto convertTrans(Transaction transaction){
         TransDataDto dto = new TransDataDto();
         BeanUtils.copyProperties(transaction,dto);
         dto.setMerchantName(MerchantEnum.getDescByCode(transaction.getMerchantId()));
         return dto;
     }
 
-    // 获取最大 key
+    // 获取最大 key，包含已降级到磁盘层的数据
     private Optional<String> getMaxKey() {
-        return mainCache.asMap().keySet().stream()
+        Optional<String> maxKey = mainCache.asMap().keySet().stream()
                 .max(String::compareTo);
+        if (diskTier == null) {
+            return maxKey;
+        }
+        String coldMax = diskTier.maxKey("");
+        if (coldMax.isEmpty()) {
+            return maxKey;
+        }
+        return Optional.of(maxKey.filter(key -> key.compareTo(coldMax) > 0).orElse(coldMax));
     }
     //生成交易流水，规则 T+YYYYMMDD+####
     public String generateTransactionId() {
+        if (idNodeSlot != null) {
+            return generateNodeTransactionId();
+        }
         String maxKey = getMaxKey().orElse("");
         String curDate = DateUtil.format(new Date(),"yyyyMMdd");
         if(Strings.isBlank(maxKey)){
@@ -469,4 +1414,29 @@ public class TransactionService {
             return "T" +curDate+ String.format("%08d", maxId+1);
         }
     }
+
+    //集群模式生成交易流水，规则 T+YYYYMMDD+槽位##+序号######，只在本节点槽位内递增，每个节点每日最多 NODE_SEQUENCE_MAX 笔
+    private String generateNodeTransactionId() {
+        String prefix = "T" + DateUtil.format(new Date(),"yyyyMMdd") + idNodeSlot;
+        String maxKey = mainCache.asMap().keySet().stream()
+                .filter(key -> key.startsWith(prefix))
+                .max(String::compareTo)
+                .orElse("");
+        String coldMax = diskTier == null ? "" : diskTier.maxKey(prefix);
+        if (coldMax.compareTo(maxKey) > 0) {
+            maxKey = coldMax;
+        }
+        String lastIssued = lastIssuedId.get();
+        if (lastIssued.startsWith(prefix) && lastIssued.compareTo(maxKey) > 0) {
+            maxKey = lastIssued;
+        }
+        int maxId = maxKey.isEmpty() ? 0 : Integer.parseInt(maxKey.substring(prefix.length()));
+        if (maxId >= NODE_SEQUENCE_MAX) {
+            log.error("节点槽位【{}】当日流水号已用尽", idNodeSlot);
+            throw new TransException(HTTP_FAIL_CODE, "本节点当日流水号已用尽（每个节点每日最多" + NODE_SEQUENCE_MAX + "笔）");
+        }
+        String transactionId = prefix + String.format("%06d", maxId + 1);
+        lastIssuedId.accumulateAndGet(transactionId, (a, b) -> a.compareTo(b) >= 0 ? a : b);
+        return transactionId;
+    }
 }
@@ -0,0 +1,461 @@
+package com.hsbc.interview.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.hsbc.interview.common.MetricsProvider;
+import com.hsbc.interview.common.PersistentSortedMap;
+import com.hsbc.interview.common.TransException;
+import com.hsbc.interview.config.MemoryBudgetManager;
+import com.hsbc.interview.dto.TransQryRequest;
+import com.hsbc.interview.entity.Transaction;
+import lombok.extern.log4j.Log4j2;
+import org.apache.logging.log4j.util.Strings;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+import static com.hsbc.interview.common.Constant.HTTP_FAIL_CODE;
+import static com.hsbc.interview.common.Constant.HTTP_GONE_CODE;
+
+/**
+ * 快照一致的分页读取（MVCC）
+ * 每个用户/商户的流水号集合保存为不可变有序树的版本链，每次写入只复制 O(log n) 个节点并以全局序号标记新版本；
+ * 首页查询记下当前序号并返回快照令牌，后续分页读取该序号时的版本，期间的写入不会让数据在页之间移动、重复或遗漏。
+ * 快照期间被更新/删除的交易记录变更前的数据，读取时按序号还原为快照时的内容。
+ * 没有打开的快照时每个键只保留最新版本，快照按访问时间过期后，其余快照不再需要的旧版本在下次写入该键或定时清理时回收；
+ * 最新版本的树与用户/商户索引同样常驻内存，按估算字节数计入全局内存预算。
+ * 版本链是索引的完整副本且每次写入都要取得序号锁，因此默认不启用，需要快照分页时显式开启 trans.snapshot.enabled
+ * @author wangwei
+ * @date 2026-10-19
+ */
+@Component
+@Log4j2
+@ConditionalOnProperty(prefix = "trans.snapshot", name = "enabled", havingValue = "true")
+public class TransactionSnapshotManager implements TransactionMutationListener, MetricsProvider {
+
+    // 树节点估算大小：对象头 + 键/值/左右子节点引用 + 高度与子树大小
+    private static final long NODE_BYTES = 48;
+
+    // 版本链节点与行版本节点估算大小
+    private static final long VERSION_BYTES = 32;
+
+    /**
+     * 一个键的某个版本，previous指向更早的版本，清理时截断
+     */
+    private static final class Version {
+        private final long seq;
+        private final PersistentSortedMap<String> ids;
+        private volatile Version previous;
+
+        private Version(long seq, PersistentSortedMap<String> ids, Version previous) {
+            this.seq = seq;
+            this.ids = ids;
+            this.previous = previous;
+        }
+    }
+
+    /**
+     * 交易在序号seq时被更新或删除，before为变更前的数据
+     */
+    private static final class RowVersion {
+        private final long seq;
+        private final Transaction before;
+        private volatile RowVersion previous;
+
+        private RowVersion(long seq, Transaction before, RowVersion previous) {
+            this.seq = seq;
+            this.before = before;
+            this.previous = previous;
+        }
+    }
+
+    /**
+     * 打开的快照：序号与首页的查询条件
+     */
+    private record Snapshot(long seq, String userId, String merchantId, BigDecimal minAmount, BigDecimal maxAmount) {
+    }
+
+    /**
+     * 快照分页结果
+     */
+    public record Page(String token, long seq, int total, List<Transaction> rows) {
+    }
+
+    private final ConcurrentHashMap<String, Version> userChains = new ConcurrentHashMap<>();
+
+    private final ConcurrentHashMap<String, Version> merchantChains = new ConcurrentHashMap<>();
+
+    // 快照期间变更过的交易：流水号 -> 变更前数据的版本链
+    private final ConcurrentHashMap<String, RowVersion> rowVersions = new ConcurrentHashMap<>();
+
+    private final AtomicLong sequence = new AtomicLong();
+
+    // 各键最新版本中的流水号总数
+    private final AtomicLong indexEntries = new AtomicLong();
+
+    // 写入持有读锁，打开快照持有写锁：取得的序号之前的写入都已完成
+    private final ReentrantReadWriteLock sequenceLock = new ReentrantReadWriteLock();
+
+    private final Cache<String, Snapshot> snapshots;
+
+    // 打开的快照中最小的序号，没有快照时为Long.MAX_VALUE；早于它的版本不再需要
+    private volatile long oldestSnapshotSeq = Long.MAX_VALUE;
+
+    private final AtomicLong openedCount = new AtomicLong();
+    private final AtomicLong expiredCount = new AtomicLong();
+    private final AtomicLong pageCount = new AtomicLong();
+    private final AtomicLong prunedVersions = new AtomicLong();
+
+    @Autowired
+    public TransactionSnapshotManager(@Value("${trans.snapshot.ttl-seconds:300}") long ttlSeconds,
+                                      @Value("${trans.snapshot.max-open:10000}") long maxOpen) {
+        this.snapshots = Caffeine.newBuilder()
+                .expireAfterAccess(Duration.ofSeconds(ttlSeconds))
+                .maximumSize(maxOpen)
+                // 过期处理在调用线程上执行，最早快照序号及时上移
+                .executor(Runnable::run)
+                .removalListener((String token, Snapshot snapshot, RemovalCause cause) -> {
+                    if (cause.wasEvicted()) {
+                        expiredCount.incrementAndGet();
+                    }
+                    refreshOldestSnapshot();
+                })
+                .build();
+    }
+
+    /**
+     * 纳入全局内存预算，只计入用量
+     *
+     * @param memoryBudgetManager 全局内存预算
+     */
+    @Autowired(required = false)
+    public void setMemoryBudgetManager(MemoryBudgetManager memoryBudgetManager) {
+        memoryBudgetManager.registerPinned(MemoryBudgetManager.SNAPSHOT_INDEX, this::estimatedBytes, indexEntries::get);
+    }
+
+    /**
+     * @return 各键最新版本与快照期间保留的行版本的估算字节数（旧版本与最新版本共享大部分节点，不单独计入）
+     */
+    public long estimatedBytes() {
+        return indexEntries.get() * NODE_BYTES
+                + (long) (userChains.size() + merchantChains.size() + rowVersions.size()) * VERSION_BYTES;
+    }
+
+    /**
+     * @methodName isSnapshotQuery
+     * @description 请求快照（首页）或携带快照令牌（后续页）
+     * @param req 查询条件
+     * @return 是否为快照查询
+     * @author wangwei
+     * @date 2026/10/19
+     */
+    public static boolean isSnapshotQuery(TransQryRequest req) {
+        return Boolean.TRUE.equals(req.getSnapshot()) || Strings.isNotBlank(req.getSnapshotToken());
+    }
+
+    /**
+     * @methodName search
+     * @description 快照分页查询：未携带令牌时打开新快照，携带令牌时读取该快照；
+     * 只按用户/商户时按名次直接定位当前页，同时有用户与商户或金额条件时遍历较小一侧并过滤
+     * @param req 查询条件，须指定用户或商户，只支持按流水号排序
+     * @param rowReader 按流水号读取当前的交易数据
+     * @return 快照分页结果
+     * @author wangwei
+     * @date 2026/10/19
+     */
+    public Page search(TransQryRequest req, Function<String, Transaction> rowReader) {
+        String userId = Strings.isNotBlank(req.getUserId()) ? req.getUserId().trim() : null;
+        String merchantId = Strings.isNotBlank(req.getMerchantId()) ? req.getMerchantId().trim() : null;
+        if (userId == null && merchantId == null) {
+            throw new TransException(HTTP_FAIL_CODE, "快照分页需要指定用户或商户");
+        }
+        if (TransSort.of(req) != TransSort.ID_ASC) {
+            throw new TransException(HTTP_FAIL_CODE, "快照分页只支持按流水号排序");
+        }
+        String token = Strings.isNotBlank(req.getSnapshotToken()) ? req.getSnapshotToken().trim() : null;
+        Snapshot snapshot;
+        if (token == null) {
+            token = UUID.randomUUID().toString();
+            snapshot = open(token, userId, merchantId, req.getMinAmount(), req.getMaxAmount());
+        } else {
+            snapshot = snapshots.getIfPresent(token);
+            if (snapshot == null) {
+                throw new TransException(HTTP_GONE_CODE, "快照【" + token + "】不存在或已过期，请重新查询首页");
+            }
+            if (!Objects.equals(snapshot.userId(), userId) || !Objects.equals(snapshot.merchantId(), merchantId)
+                    || !sameAmount(snapshot.minAmount(), req.getMinAmount())
+                    || !sameAmount(snapshot.maxAmount(), req.getMaxAmount())) {
+                throw new TransException(HTTP_FAIL_CODE, "快照令牌与查询条件不一致");
+            }
+        }
+        pageCount.incrementAndGet();
+
+        // 同时有用户与商户时遍历较小的一侧
+        PersistentSortedMap<String> userIds = userId == null ? null : idsAt(userChains, userId, snapshot.seq());
+        PersistentSortedMap<String> merchantIds = merchantId == null ? null : idsAt(merchantChains, merchantId, snapshot.seq());
+        PersistentSortedMap<String> driver = userIds == null ? merchantIds
+                : merchantIds == null || userIds.size() <= merchantIds.size() ? userIds : merchantIds;
+        Predicate<Transaction> filter = TransactionScanEngine.amountPredicate(req.getMinAmount(), req.getMaxAmount());
+        if (userIds != null && merchantIds != null) {
+            Predicate<Transaction> other = driver == userIds
+                    ? trans -> merchantId.equals(trans.getMerchantId()) : trans -> userId.equals(trans.getUserId());
+            filter = filter == null ? other : filter.and(other);
+        }
+        int offset = (req.getPage() - 1) * req.getPageSize();
+        List<Transaction> rows = new ArrayList<>(req.getPageSize());
+        if (filter == null) {
+            Iterator<String> iterator = driver.valuesFrom(offset);
+            while (iterator.hasNext() && rows.size() < req.getPageSize()) {
+                Transaction row = rowAt(iterator.next(), snapshot.seq(), rowReader);
+                if (row != null) {
+                    rows.add(row);
+                }
+            }
+            return new Page(token, snapshot.seq(), driver.size(), rows);
+        }
+        int matched = 0;
+        for (Iterator<String> iterator = driver.valuesFrom(0); iterator.hasNext(); ) {
+            Transaction row = rowAt(iterator.next(), snapshot.seq(), rowReader);
+            if (row == null || !filter.test(row)) {
+                continue;
+            }
+            if (matched >= offset && rows.size() < req.getPageSize()) {
+                rows.add(row);
+            }
+            matched++;
+        }
+        return new Page(token, snapshot.seq(), matched, rows);
+    }
+
+    private static boolean sameAmount(BigDecimal left, BigDecimal right) {
+        return left == null ? right == null : right != null && left.compareTo(right) == 0;
+    }
+
+    private Snapshot open(String token, String userId, String merchantId, BigDecimal minAmount, BigDecimal maxAmount) {
+        sequenceLock.writeLock().lock();
+        try {
+            Snapshot snapshot = new Snapshot(sequence.get(), userId, merchantId, minAmount, maxAmount);
+            snapshots.put(token, snapshot);
+            // 在写锁内降低最早快照序号，之后的写入不会清理该快照需要的版本
+            oldestSnapshotSeq = Math.min(oldestSnapshotSeq, snapshot.seq());
+            openedCount.incrementAndGet();
+            return snapshot;
+        } finally {
+            sequenceLock.writeLock().unlock();
+        }
+    }
+
+    private void refreshOldestSnapshot() {
+        sequenceLock.writeLock().lock();
+        try {
+            long oldest = Long.MAX_VALUE;
+            for (Snapshot snapshot : snapshots.asMap().values()) {
+                oldest = Math.min(oldest, snapshot.seq());
+            }
+            oldestSnapshotSeq = oldest;
+        } finally {
+            sequenceLock.writeLock().unlock();
+        }
+    }
+
+    // 序号seq时该键的流水号集合：版本链上第一个序号不大于seq的版本，之前没有版本说明当时为空
+    private static PersistentSortedMap<String> idsAt(Map<String, Version> chains, String key, long seq) {
+        for (Version version = chains.get(key); version != null; version = version.previous) {
+            if (version.seq <= seq) {
+                return version.ids;
+            }
+        }
+        return PersistentSortedMap.empty();
+    }
+
+    // 快照时的交易内容：快照之后最早一次变更前的数据，没有变更时读取当前数据
+    private Transaction rowAt(String transactionId, long seq, Function<String, Transaction> rowReader) {
+        Transaction before = null;
+        boolean changed = false;
+        for (RowVersion version = rowVersions.get(transactionId); version != null && version.seq > seq;
+             version = version.previous) {
+            before = version.before;
+            changed = true;
+        }
+        return changed ? before : rowReader.apply(transactionId);
+    }
+
+    private void apply(Transaction before, Transaction after) {
+        sequenceLock.readLock().lock();
+        try {
+            String transactionId = after != null ? after.getTransactionId() : before.getTransactionId();
+            String oldUser = before == null ? null : before.getUserId();
+            String newUser = after == null ? null : after.getUserId();
+            String oldMerchant = before == null ? null : before.getMerchantId();
+            String newMerchant = after == null ? null : after.getMerchantId();
+            if (!Objects.equals(oldUser, newUser)) {
+                change(userChains, oldUser, transactionId, false);
+            }
+            change(userChains, newUser, transactionId, true);
+            if (!Objects.equals(oldMerchant, newMerchant)) {
+                change(merchantChains, oldMerchant, transactionId, false);
+            }
+            change(merchantChains, newMerchant, transactionId, true);
+            // 有打开的快照时保留变更前的数据
+            if (before != null && oldestSnapshotSeq != Long.MAX_VALUE) {
+                rowVersions.compute(transactionId, (k, head) ->
+                        prune(new RowVersion(sequence.incrementAndGet(), before, head)));
+            }
+        } finally {
+            sequenceLock.readLock().unlock();
+        }
+    }
+
+    private void change(ConcurrentHashMap<String, Version> chains, String key, String transactionId, boolean add) {
+        if (key == null) {
+            return;
+        }
+        chains.compute(key, (k, head) -> {
+            PersistentSortedMap<String> current = head == null ? PersistentSortedMap.empty() : head.ids;
+            if (add && current.get(transactionId) != null) {
+                // 更新不改变集合成员时不产生新版本
+                return head;
+            }
+            PersistentSortedMap<String> next = add ? current.put(transactionId, transactionId) : current.remove(transactionId);
+            if (next == current) {
+                return head;
+            }
+            indexEntries.addAndGet(add ? 1 : -1);
+            Version version = prune(new Version(sequence.incrementAndGet(), next, head));
+            return next.isEmpty() && version.previous == null ? null : version;
+        });
+    }
+
+    // 保留到第一个序号不大于最早快照序号的版本为止（所有快照都能找到自己需要的版本），更早的截断
+    private Version prune(Version head) {
+        long oldest = oldestSnapshotSeq;
+        Version version = head;
+        while (version != null && version.seq > oldest) {
+            version = version.previous;
+        }
+        if (version != null && version.previous != null) {
+            version.previous = null;
+            prunedVersions.incrementAndGet();
+        }
+        return head;
+    }
+
+    // 行版本只需要保留序号大于最早快照序号的部分
+    private RowVersion prune(RowVersion head) {
+        long oldest = oldestSnapshotSeq;
+        if (head.seq <= oldest) {
+            return null;
+        }
+        RowVersion version = head;
+        while (version.previous != null && version.previous.seq > oldest) {
+            version = version.previous;
+        }
+        version.previous = null;
+        return head;
+    }
+
+    /**
+     * @methodName sweep
+     * @description 定时清理快照过期后不再需要的旧版本（没有后续写入的键不会在写入时清理）
+     * @return
+     * @author wangwei
+     * @date 2026/10/19
+     */
+    @Scheduled(fixedDelayString = "${trans.snapshot.sweep-ms:60000}")
+    public void sweep() {
+        snapshots.cleanUp();
+        sequenceLock.readLock().lock();
+        try {
+            for (ConcurrentHashMap<String, Version> chains : List.of(userChains, merchantChains)) {
+                for (String key : chains.keySet()) {
+                    chains.computeIfPresent(key, (k, head) -> {
+                        Version version = prune(head);
+                        return version.ids.isEmpty() && version.previous == null ? null : version;
+                    });
+                }
+            }
+            for (String transactionId : rowVersions.keySet()) {
+                rowVersions.computeIfPresent(transactionId, (k, head) -> prune(head));
+            }
+        } finally {
+            sequenceLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void onAdd(Transaction after) {
+        apply(null, after);
+    }
+
+    @Override
+    public void onUpdate(Transaction before, Transaction after) {
+        apply(before, after);
+    }
+
+    @Override
+    public void onDelete(Transaction before) {
+        apply(before, null);
+    }
+
+    @Override
+    public void onExpire(List<Transaction> expired) {
+        for (Transaction transaction : expired) {
+            apply(transaction, null);
+        }
+    }
+
+    @Override
+    public String metricsName() {
+        return "snapshot";
+    }
+
+    @Override
+    public Map<String, Object> metrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        long entries = 0;
+        long retainedVersions = 0;
+        long retainedBytes = 0;
+        for (ConcurrentHashMap<String, Version> chains : List.of(userChains, merchantChains)) {
+            for (Version head : chains.values()) {
+                entries += head.ids.size();
+                // 旧版本与新版本共享节点，每个旧版本独占的约为一条根到叶的路径
+                for (Version version = head.previous; version != null; version = version.previous) {
+                    retainedVersions++;
+                    retainedBytes += VERSION_BYTES + (version.ids.height() + 1L) * NODE_BYTES;
+                }
+            }
+        }
+        long retainedRows = 0;
+        for (RowVersion head : rowVersions.values()) {
+            for (RowVersion version = head; version != null; version = version.previous) {
+                retainedRows++;
+            }
+        }
+        metrics.put("openSnapshots", snapshots.estimatedSize());
+        metrics.put("opened", openedCount.get());
+        metrics.put("expired", expiredCount.get());
+        metrics.put("pages", pageCount.get());
+        metrics.put("sequence", sequence.get());
+        metrics.put("oldestSnapshotSeq", oldestSnapshotSeq == Long.MAX_VALUE ? null : oldestSnapshotSeq);
+        metrics.put("userKeys", userChains.size());
+        metrics.put("merchantKeys", merchantChains.size());
+        metrics.put("indexBytes", entries * NODE_BYTES + (long) (userChains.size() + merchantChains.size()) * VERSION_BYTES);
+        metrics.put("retainedVersions", retainedVersions);
+        metrics.put("retainedRowVersions", retainedRows);
+        metrics.put("snapshotRetainedBytes", retainedBytes + retainedRows * VERSION_BYTES);
+        metrics.put("prunedVersions", prunedVersions.get());
+        return metrics;
+    }
+}
@@ -0,0 +1,392 @@
+package com.hsbc.interview.storage;
+
+import com.hsbc.interview.common.LatencyStats;
+import com.hsbc.interview.common.MetricsProvider;
+import com.hsbc.interview.common.TransactionCodec;
+import com.hsbc.interview.entity.Transaction;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import java.io.*;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+/**
+ * 交易数据磁盘层（冷数据层）
+ * 主缓存容量淘汰的数据降级写入本地只追加的内存映射段文件，内存中只保留 流水号 -> (段, 偏移, 长度) 的索引；
+ * 读取按索引直接从映射内存解码。数据被读回主缓存或删除时只移除索引，段内空间由后台压缩回收：
+ * 存活比例低于阈值的已封闭段，把仍存活的记录搬到当前段后删除旧段文件。
+ * 磁盘层只用于容量溢出，不做持久化，启动时在配置目录下新建独立的临时目录
+ * @author wangwei
+ * @date 2026-10-19
+ */
+@Log4j2
+public class SegmentDiskTier implements MetricsProvider {
+
+    private static final int RECORD_HEADER_BYTES = 4;
+
+    /**
+     * 记录位置
+     */
+    private record Location(Segment segment, int offset, int length) {
+        int recordBytes() {
+            return RECORD_HEADER_BYTES + length;
+        }
+    }
+
+    /**
+     * 单个段文件，写入位置由appendLock保护；映射建立后不依赖文件通道，关闭通道、删除文件后已取得的位置仍可读取
+     */
+    private static final class Segment {
+        private final int id;
+        private final Path path;
+        private final MappedByteBuffer buffer;
+        private final AtomicLong liveBytes = new AtomicLong();
+        private int writePosition;
+        private volatile boolean sealed;
+
+        Segment(int id, Path path, int size) throws IOException {
+            this.id = id;
+            this.path = path;
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            }
+        }
+    }
+
+    private final Path directory;
+
+    private final int segmentBytes;
+
+    private final double compactLiveRatio;
+
+    private final boolean promoteOnRead;
+
+    private final ConcurrentSkipListMap<String, Location> index = new ConcurrentSkipListMap<>();
+
+    private final Map<Integer, Segment> segments = new ConcurrentHashMap<>();
+
+    private final ReentrantLock appendLock = new ReentrantLock();
+
+    private final ReentrantLock compactLock = new ReentrantLock();
+
+    // 由appendLock保护
+    private Segment active;
+    private int nextSegmentId;
+
+    private final LongAdder demotions = new LongAdder();
+    private final LongAdder promotions = new LongAdder();
+    private final LongAdder hotHits = new LongAdder();
+    private final LongAdder hotMisses = new LongAdder();
+    private final LongAdder coldHits = new LongAdder();
+    private final LongAdder coldMisses = new LongAdder();
+    private final LatencyStats hotReadLatency = new LatencyStats();
+    private final LatencyStats coldReadLatency = new LatencyStats();
+    private final AtomicLong compactions = new AtomicLong();
+    private final AtomicLong compactedRecords = new AtomicLong();
+    private final AtomicLong reclaimedBytes = new AtomicLong();
+
+    public SegmentDiskTier(String baseDirectory, int segmentMb, double compactLiveRatio, boolean promoteOnRead) throws IOException {
+        Path base = Path.of(baseDirectory);
+        Files.createDirectories(base);
+        this.directory = Files.createTempDirectory(base, "tier-");
+        this.segmentBytes = segmentMb * 1024 * 1024;
+        this.compactLiveRatio = compactLiveRatio;
+        this.promoteOnRead = promoteOnRead;
+        appendLock.lock();
+        try {
+            active = newSegment();
+        } finally {
+            appendLock.unlock();
+        }
+        log.info("交易磁盘层目录{}，段大小{}MB", directory, segmentMb);
+    }
+
+    private Segment newSegment() throws IOException {
+        int id = nextSegmentId++;
+        Segment segment = new Segment(id, directory.resolve(String.format("segment-%06d.dat", id)), segmentBytes);
+        segments.put(id, segment);
+        return segment;
+    }
+
+    /**
+     * @methodName put
+     * @description 写入（降级）一条交易，已存在时覆盖
+     * @param transaction 交易数据
+     * @return
+     * @author wangwei
+     * @date 2026/10/19
+     */
+    public void put(Transaction transaction) {
+        Location location = append(encode(transaction));
+        release(index.put(transaction.getTransactionId(), location));
+        demotions.increment();
+    }
+
+    /**
+     * @return 交易数据，不在磁盘层时返回null
+     */
+    public Transaction get(String transactionId) {
+        long start = System.nanoTime();
+        Location location = index.get(transactionId);
+        Transaction transaction = location == null ? null : decode(read(location));
+        recordCold(transaction != null, System.nanoTime() - start);
+        return transaction;
+    }
+
+    /**
+     * 取出并移除（读回主缓存时使用）
+     *
+     * @return 交易数据，不在磁盘层时返回null
+     */
+    public Transaction take(String transactionId) {
+        long start = System.nanoTime();
+        Location location = index.remove(transactionId);
+        Transaction transaction = null;
+        if (location != null) {
+            transaction = decode(read(location));
+            release(location);
+            promotions.increment();
+        }
+        recordCold(transaction != null, System.nanoTime() - start);
+        return transaction;
+    }
+
+    /**
+     * @return 按流水号读取命中磁盘层时是否读回主缓存
+     */
+    public boolean isPromoteOnRead() {
+        return promoteOnRead;
+    }
+
+    public boolean contains(String transactionId) {
+        return index.containsKey(transactionId);
+    }
+
+    public void remove(String transactionId) {
+        release(index.remove(transactionId));
+    }
+
+    public long size() {
+        return index.size();
+    }
+
+    /**
+     * @return 磁盘层全部流水号（升序、弱一致视图）
+     */
+    public NavigableSet<String> keys() {
+        return index.keySet();
+    }
+
+    /**
+     * @return 给定前缀下最大的流水号，没有时返回空串
+     */
+    public String maxKey(String prefix) {
+        Map.Entry<String, Location> entry = index.lowerEntry(prefix + Character.MAX_VALUE);
+        return entry != null && entry.getKey().startsWith(prefix) ? entry.getKey() : "";
+    }
+
+    /**
+     * @return 按需解码的磁盘层交易数据流（弱一致，遍历期间被移除的数据会跳过）
+     */
+    public Stream<Transaction> values() {
+        return index.keySet().stream()
+                .map(index::get)
+                .filter(Objects::nonNull)
+                .map(location -> decode(read(location)));
+    }
+
+    /**
+     * 记录主缓存（热数据层）的读取结果，用于输出各层命中率与读取延迟
+     */
+    public void recordHot(boolean hit, long nanos) {
+        (hit ? hotHits : hotMisses).increment();
+        hotReadLatency.record(nanos);
+    }
+
+    private void recordCold(boolean hit, long nanos) {
+        (hit ? coldHits : coldMisses).increment();
+        coldReadLatency.record(nanos);
+    }
+
+    private Location append(byte[] bytes) {
+        int recordBytes = RECORD_HEADER_BYTES + bytes.length;
+        if (recordBytes > segmentBytes) {
+            throw new IllegalArgumentException("单条记录超过段大小");
+        }
+        appendLock.lock();
+        try {
+            if (active.writePosition + recordBytes > segmentBytes) {
+                active.sealed = true;
+                active = newSegment();
+            }
+            Segment segment = active;
+            int offset = segment.writePosition;
+            segment.buffer.putInt(offset, bytes.length);
+            segment.buffer.put(offset + RECORD_HEADER_BYTES, bytes);
+            segment.writePosition += recordBytes;
+            segment.liveBytes.addAndGet(recordBytes);
+            return new Location(segment, offset, bytes.length);
+        } catch (IOException e) {
+            throw new UncheckedIOException("创建磁盘段失败", e);
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    private static byte[] read(Location location) {
+        byte[] bytes = new byte[location.length()];
+        location.segment().buffer.get(location.offset() + RECORD_HEADER_BYTES, bytes);
+        return bytes;
+    }
+
+    private void release(Location location) {
+        if (location != null) {
+            location.segment().liveBytes.addAndGet(-location.recordBytes());
+        }
+    }
+
+    private static byte[] encode(Transaction transaction) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+            TransactionCodec.write(new DataOutputStream(bytes), transaction);
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static Transaction decode(byte[] bytes) {
+        try {
+            return TransactionCodec.read(new DataInputStream(new ByteArrayInputStream(bytes)));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @methodName compact
+     * @description 压缩存活比例低于阈值的已封闭段：存活记录搬到当前段（索引CAS替换，期间被读回或删除的记录不搬），然后删除旧段文件
+     * @return
+     * @author wangwei
+     * @date 2026/10/19
+     */
+    @Scheduled(fixedDelayString = "${trans.tier.compact-interval-ms:30000}")
+    public void compact() {
+        if (!compactLock.tryLock()) {
+            return;
+        }
+        try {
+            List<Segment> candidates = new ArrayList<>();
+            for (Segment segment : segments.values()) {
+                if (segment.sealed && segment.liveBytes.get() < segmentBytes * compactLiveRatio) {
+                    candidates.add(segment);
+                }
+            }
+            if (candidates.isEmpty()) {
+                return;
+            }
+            Set<Segment> compacting = new HashSet<>(candidates);
+            for (Map.Entry<String, Location> entry : index.entrySet()) {
+                Location location = entry.getValue();
+                if (!compacting.contains(location.segment())) {
+                    continue;
+                }
+                Location moved = append(read(location));
+                if (index.replace(entry.getKey(), location, moved)) {
+                    release(location);
+                    compactedRecords.incrementAndGet();
+                } else {
+                    release(moved);
+                }
+            }
+            for (Segment segment : candidates) {
+                segments.remove(segment.id);
+                reclaimedBytes.addAndGet(segment.writePosition);
+                Files.deleteIfExists(segment.path);
+            }
+            compactions.incrementAndGet();
+            log.info("磁盘层压缩完成，回收{}个段", candidates.size());
+        } catch (IOException e) {
+            log.error("磁盘层压缩失败", e);
+        } finally {
+            compactLock.unlock();
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        index.clear();
+        segments.clear();
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.toList()) {
+                Files.deleteIfExists(file);
+            }
+            Files.deleteIfExists(directory);
+        } catch (IOException e) {
+            log.warn("清理磁盘层目录{}失败", directory, e);
+        }
+    }
+
+    private static double ratio(long hits, long misses) {
+        long total = hits + misses;
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    @Override
+    public String metricsName() {
+        return "tieredStore";
+    }
+
+    @Override
+    public Map<String, Object> metrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        long hot = hotHits.sum();
+        long hotMiss = hotMisses.sum();
+        long cold = coldHits.sum();
+        long coldMiss = coldMisses.sum();
+        Map<String, Object> hotTier = new LinkedHashMap<>();
+        hotTier.put("hits", hot);
+        hotTier.put("misses", hotMiss);
+        hotTier.put("hitRatio", ratio(hot, hotMiss));
+        hotTier.put("readLatency", hotReadLatency.toMap());
+        metrics.put("hot", hotTier);
+
+        Map<String, Object> coldTier = new LinkedHashMap<>();
+        coldTier.put("entries", index.size());
+        coldTier.put("hits", cold);
+        coldTier.put("misses", coldMiss);
+        coldTier.put("hitRatio", ratio(cold, coldMiss));
+        coldTier.put("readLatency", coldReadLatency.toMap());
+        coldTier.put("demotions", demotions.sum());
+        coldTier.put("promotions", promotions.sum());
+        long fileBytes = 0;
+        long liveBytes = 0;
+        for (Segment segment : segments.values()) {
+            fileBytes += segment.writePosition;
+            liveBytes += segment.liveBytes.get();
+        }
+        coldTier.put("segments", segments.size());
+        coldTier.put("usedBytes", fileBytes);
+        coldTier.put("liveBytes", liveBytes);
+        coldTier.put("compactions", compactions.get());
+        coldTier.put("compactedRecords", compactedRecords.get());
+        coldTier.put("reclaimedBytes", reclaimedBytes.get());
+        metrics.put("cold", coldTier);
+        // 两层合计：请求最终命中任一层的比例
+        metrics.put("overallHitRatio", ratio(hot + cold, coldMiss));
+        return metrics;
+    }
+}
@@ -0,0 +1,125 @@
+package com.hsbc.interview.wire;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 二进制编码写入器
+ * 自带固定大小的缓冲区，写满后直接写入目标输出流（如HTTP响应流），不在内存中拼出完整的响应体；
+ * 整数使用变长编码（varint，有符号数先做zigzag），字符串为 varint(字节数+1) + UTF-8，0表示null
+ * @author wangwei
+ * @date 2026-10-19
+ */
+public final class BinaryWriter {
+
+    private static final int DEFAULT_BUFFER_SIZE = 8 * 1024;
+
+    private final OutputStream out;
+
+    private final byte[] buffer;
+
+    private int position;
+
+    public BinaryWriter(OutputStream out) {
+        this(out, DEFAULT_BUFFER_SIZE);
+    }
+
+    public BinaryWriter(OutputStream out, int bufferSize) {
+        this.out = out;
+        this.buffer = new byte[bufferSize];
+    }
+
+    private void ensure(int bytes) throws IOException {
+        if (position + bytes > buffer.length) {
+            flushBuffer();
+        }
+    }
+
+    private void flushBuffer() throws IOException {
+        if (position > 0) {
+            out.write(buffer, 0, position);
+            position = 0;
+        }
+    }
+
+    public void writeByte(int value) throws IOException {
+        ensure(1);
+        buffer[position++] = (byte) value;
+    }
+
+    /**
+     * 无符号变长整数，每字节7位，最高位表示后面还有字节
+     */
+    public void writeVarLong(long value) throws IOException {
+        ensure(10);
+        while ((value & ~0x7FL) != 0) {
+            buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[position++] = (byte) value;
+    }
+
+    public void writeVarInt(int value) throws IOException {
+        writeVarLong(value & 0xFFFFFFFFL);
+    }
+
+    /**
+     * 有符号变长整数，zigzag后绝对值小的负数同样只占少量字节
+     */
+    public void writeSignedVarLong(long value) throws IOException {
+        writeVarLong((value << 1) ^ (value >> 63));
+    }
+
+    public void writeString(String value) throws IOException {
+        if (value == null) {
+            writeVarInt(0);
+            return;
+        }
+        int length = value.length();
+        boolean ascii = true;
+        for (int i = 0; i < length; i++) {
+            if (value.charAt(i) >= 0x80) {
+                ascii = false;
+                break;
+            }
+        }
+        if (!ascii) {
+            writeBytes(value.getBytes(StandardCharsets.UTF_8));
+            return;
+        }
+        // 纯ASCII逐字符写入缓冲区，不产生中间byte[]
+        writeVarInt(length + 1);
+        if (length > buffer.length) {
+            writeRaw(value.getBytes(StandardCharsets.US_ASCII));
+            return;
+        }
+        ensure(length);
+        for (int i = 0; i < length; i++) {
+            buffer[position++] = (byte) value.charAt(i);
+        }
+    }
+
+    private void writeBytes(byte[] bytes) throws IOException {
+        writeVarInt(bytes.length + 1);
+        writeRaw(bytes);
+    }
+
+    private void writeRaw(byte[] bytes) throws IOException {
+        if (bytes.length > buffer.length - position) {
+            flushBuffer();
+            out.write(bytes);
+            return;
+        }
+        System.arraycopy(bytes, 0, buffer, position, bytes.length);
+        position += bytes.length;
+    }
+
+    /**
+     * 把缓冲区内容写入目标流并flush
+     */
+    public void flush() throws IOException {
+        flushBuffer();
+        out.flush();
+    }
+}
@@ -0,0 +1,122 @@
+package com.hsbc.interview.wire;
+
+import com.hsbc.interview.common.TransException;
+import com.hsbc.interview.dto.BaseResponse;
+import com.hsbc.interview.dto.TransQryRequest;
+import com.hsbc.interview.dto.TransQryRsp;
+import com.hsbc.interview.entity.Transaction;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+
+import static com.hsbc.interview.common.Constant.HTTP_FAIL_CODE;
+
+/**
+ * 交易接口二进制格式Java客户端，供内部高吞吐调用方使用
+ * 基于JDK HttpClient，请求与响应均使用 application/x-trans-binary，接口返回非200业务码时抛出TransException
+ * @author wangwei
+ * @date 2026-10-19
+ */
+public class TransBinaryClient {
+
+    private final HttpClient httpClient;
+
+    private final String baseUrl;
+
+    private final Duration timeout;
+
+    public TransBinaryClient(String baseUrl) {
+        this(HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(3)).build(), baseUrl, Duration.ofSeconds(10));
+    }
+
+    public TransBinaryClient(HttpClient httpClient, String baseUrl, Duration timeout) {
+        this.httpClient = httpClient;
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+        this.timeout = timeout;
+    }
+
+    /**
+     * 创建交易
+     *
+     * @return 交易流水号
+     */
+    public String create(Transaction transaction) {
+        return (String) post("/transaction/createTrans", encode(writer -> TransBinaryCodec.writeTransaction(writer, transaction)));
+    }
+
+    /**
+     * 查询交易
+     */
+    public TransQryRsp search(TransQryRequest req) {
+        return (TransQryRsp) post("/transaction/getTransData", encode(writer -> TransBinaryCodec.writeQuery(writer, req)));
+    }
+
+    /**
+     * 更新交易
+     */
+    public void update(Transaction transaction) {
+        post("/transaction/updateTrans", encode(writer -> TransBinaryCodec.writeTransaction(writer, transaction)));
+    }
+
+    /**
+     * 删除交易
+     */
+    public void delete(TransQryRequest req) {
+        post("/transaction/deleteTrans", encode(writer -> TransBinaryCodec.writeQuery(writer, req)));
+    }
+
+    private Object post(String path, byte[] body) {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .timeout(timeout)
+                .header("Content-Type", TransBinaryCodec.MEDIA_TYPE)
+                .header("Accept", TransBinaryCodec.MEDIA_TYPE)
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body))
+                .build();
+        try {
+            HttpResponse<InputStream> response = httpClient.send(request, HttpResponse.BodyHandlers.ofInputStream());
+            String contentType = response.headers().firstValue("Content-Type").orElse("");
+            try (InputStream in = response.body()) {
+                if (!contentType.startsWith(TransBinaryCodec.MEDIA_TYPE)) {
+                    throw new TransException(HTTP_FAIL_CODE, "接口返回非二进制格式，HTTP状态" + response.statusCode());
+                }
+                BaseResponse<Object> result = TransBinaryCodec.readResponse(new BinaryReader(in));
+                if (result.getCode() != 200) {
+                    throw new TransException(result.getCode(), result.getErrMsg());
+                }
+                return result.getData();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TransException(HTTP_FAIL_CODE, "请求被中断");
+        }
+    }
+
+    /**
+     * 请求体写入器
+     */
+    @FunctionalInterface
+    private interface BodyWriter {
+        void write(BinaryWriter writer) throws IOException;
+    }
+
+    private static byte[] encode(BodyWriter bodyWriter) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+            BinaryWriter writer = new BinaryWriter(bytes, 1024);
+            bodyWriter.write(writer);
+            writer.flush();
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,470 @@
+package com.hsbc.interview.wire;
+
+import com.hsbc.interview.dto.BaseResponse;
+import com.hsbc.interview.dto.TransDataDto;
+import com.hsbc.interview.dto.TransQryPlan;
+import com.hsbc.interview.dto.TransQryRequest;
+import com.hsbc.interview.dto.TransQryRsp;
+import com.hsbc.interview.entity.Transaction;
+import com.hsbc.interview.enums.MerchantEnum;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 交易接口二进制编码（application/x-trans-binary）
+ * 字段顺序固定，不传字段名：
+ * 流水号 T+YYYYMMDD+8位序号 编码为一个变长整数，金额编码为 精度+无标度长整数，
+ * yyyy-MM-dd HH:mm:ss 格式的时间编码为秒数，商户名称由客户端按商户ID还原。
+ * 不符合上述格式的值以字符串原样传输，保证编码无损。
+ * 版本3起查询结果携带执行计划；查询条件的快照标记字节扩展为标记位，旧客户端只会写入快照位
+ * @author wangwei
+ * @date 2026-10-19
+ */
+public final class TransBinaryCodec {
+
+    public static final String MEDIA_TYPE = "application/x-trans-binary";
+
+    private static final int MAGIC = 0x54;
+    private static final int VERSION = 3;
+
+    private static final int DATA_NULL = 0;
+    private static final int DATA_STRING = 1;
+    private static final int DATA_QUERY_RESULT = 2;
+
+    // 流水号/时间：0表示null，1表示后跟字符串，其余为编码值+2
+    private static final int VALUE_NULL = 0;
+    private static final int VALUE_STRING = 1;
+    private static final int VALUE_OFFSET = 2;
+
+    // 金额：0表示null，1表示精度+无标度长整数，2表示字符串
+    private static final int AMOUNT_NULL = 0;
+    private static final int AMOUNT_SCALED_LONG = 1;
+    private static final int AMOUNT_STRING = 2;
+
+    // 查询条件标记位
+    private static final int QUERY_SNAPSHOT = 1;
+    private static final int QUERY_EXPLAIN = 2;
+
+    private static final long ID_SEQUENCE_RANGE = 100_000_000L;
+
+    private TransBinaryCodec() {
+    }
+
+    /**
+     * @methodName supportsData
+     * @description 判断BaseResponse的data声明类型能否二进制编码，与writeResponse支持的类型保持一致
+     * @param dataType data声明类型
+     * @return 能编码返回true
+     * @author wangwei
+     * @date 2026/10/19
+     */
+    public static boolean supportsData(Class<?> dataType) {
+        return Void.class.equals(dataType) || String.class.equals(dataType) || TransQryRsp.class.equals(dataType);
+    }
+
+    /**
+     * @methodName writeResponse
+     * @description 编码接口返回结果，data支持null、字符串和分页查询结果
+     * @param writer 写入器
+     * @param response 返回结果
+     * @return
+     * @author wangwei
+     * @date 2026/10/19
+     */
+    public static void writeResponse(BinaryWriter writer, BaseResponse<?> response) throws IOException {
+        writer.writeByte(MAGIC);
+        writer.writeByte(VERSION);
+        writer.writeSignedVarLong(response.getCode());
+        writer.writeString(response.getMessage());
+        writer.writeString(response.getErrMsg());
+        Object data = response.getData();
+        if (data == null) {
+            writer.writeByte(DATA_NULL);
+        } else if (data instanceof String value) {
+            writer.writeByte(DATA_STRING);
+            writer.writeString(value);
+        } else if (data instanceof TransQryRsp rsp) {
+            writer.writeByte(DATA_QUERY_RESULT);
+            writeQueryResult(writer, rsp);
+        } else {
+            throw new IllegalArgumentException("二进制编码不支持的返回类型: " + data.getClass().getName());
+        }
+    }
+
+    public static BaseResponse<Object> readResponse(BinaryReader reader) throws IOException {
+        if (reader.readByte() != MAGIC || reader.readByte() != VERSION) {
+            throw new IOException("二进制数据格式或版本不匹配");
+        }
+        BaseResponse<Object> response = new BaseResponse<>();
+        response.setCode((int) reader.readSignedVarLong());
+        response.setMessage(reader.readString());
+        response.setErrMsg(reader.readString());
+        int kind = reader.readByte();
+        switch (kind) {
+            case DATA_NULL -> response.setData(null);
+            case DATA_STRING -> response.setData(reader.readString());
+            case DATA_QUERY_RESULT -> response.setData(readQueryResult(reader));
+            default -> throw new IOException("未知的返回数据类型" + kind);
+        }
+        return response;
+    }
+
+    private static void writeQueryResult(BinaryWriter writer, TransQryRsp rsp) throws IOException {
+        writeNullableInt(writer, rsp.getTotal());
+        writeNullableInt(writer, rsp.getPage());
+        writeNullableInt(writer, rsp.getPageSize());
+        List<TransDataDto> rows = rsp.getTransList();
+        int size = rows == null ? 0 : rows.size();
+        writer.writeVarInt(size);
+        for (int i = 0; i < size; i++) {
+            writeTransaction(writer, rows.get(i));
+        }
+        writer.writeString(rsp.getSnapshotToken());
+        writePlan(writer, rsp.getPlan());
+    }
+
+    private static TransQryRsp readQueryResult(BinaryReader reader) throws IOException {
+        TransQryRsp rsp = new TransQryRsp();
+        rsp.setTotal(readNullableInt(reader));
+        rsp.setPage(readNullableInt(reader));
+        rsp.setPageSize(readNullableInt(reader));
+        int size = reader.readVarInt();
+        List<TransDataDto> rows = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            TransDataDto dto = new TransDataDto();
+            readTransaction(reader, dto);
+            dto.setMerchantName(MerchantEnum.getDescByCode(dto.getMerchantId()));
+            rows.add(dto);
+        }
+        rsp.setTransList(rows);
+        rsp.setSnapshotToken(reader.readString());
+        rsp.setPlan(readPlan(reader));
+        return rsp;
+    }
+
+    // 执行计划：0表示null，1表示后跟各字段
+    private static void writePlan(BinaryWriter writer, TransQryPlan plan) throws IOException {
+        if (plan == null) {
+            writer.writeByte(0);
+            return;
+        }
+        writer.writeByte(1);
+        writer.writeString(plan.getStrategy());
+        writer.writeString(plan.getDetail());
+        writeNullableSignedLong(writer, plan.getEstimatedRows());
+        writeNullableSignedLong(writer, plan.getActualRows());
+        writeNullableSignedLong(writer, plan.getExaminedRows());
+        writeNullableDouble(writer, plan.getEstimatedCost());
+        Map<String, Double> alternatives = plan.getAlternatives();
+        writer.writeVarInt(alternatives == null ? 0 : alternatives.size() + 1);
+        if (alternatives != null) {
+            for (Map.Entry<String, Double> entry : alternatives.entrySet()) {
+                writer.writeString(entry.getKey());
+                writeNullableDouble(writer, entry.getValue());
+            }
+        }
+        writeNullableSignedLong(writer, plan.getElapsedMicros());
+    }
+
+    private static TransQryPlan readPlan(BinaryReader reader) throws IOException {
+        if (reader.readByte() == 0) {
+            return null;
+        }
+        TransQryPlan plan = new TransQryPlan();
+        plan.setStrategy(reader.readString());
+        plan.setDetail(reader.readString());
+        plan.setEstimatedRows(readNullableSignedLong(reader));
+        plan.setActualRows(readNullableSignedLong(reader));
+        plan.setExaminedRows(readNullableSignedLong(reader));
+        plan.setEstimatedCost(readNullableDouble(reader));
+        int size = reader.readVarInt();
+        if (size > 0) {
+            // 保持服务端的比较顺序
+            Map<String, Double> alternatives = new LinkedHashMap<>();
+            for (int i = 1; i < size; i++) {
+                alternatives.put(reader.readString(), readNullableDouble(reader));
+            }
+            plan.setAlternatives(alternatives);
+        }
+        plan.setElapsedMicros(readNullableSignedLong(reader));
+        return plan;
+    }
+
+    /**
+     * @methodName writeTransaction
+     * @description 按固定字段顺序编码一条交易（新增/更新请求体与查询结果行共用）
+     * @param writer 写入器
+     * @param transaction 交易数据
+     * @return
+     * @author wangwei
+     * @date 2026/10/19
+     */
+    public static void writeTransaction(BinaryWriter writer, Transaction transaction) throws IOException {
+        writeTransactionId(writer, transaction.getTransactionId());
+        writer.writeString(transaction.getUserId());
+        writer.writeString(transaction.getMerchantId());
+        writeAmount(writer, transaction.getAmount());
+        writer.writeString(transaction.getCreateUser());
+        writeDateTime(writer, transaction.getTransDate());
+        writeDateTime(writer, transaction.getUpdDate());
+        writer.writeString(transaction.getUpdateUser());
+        writer.writeString(transaction.getRequestId());
+        writeNullableLong(writer, transaction.getVersion());
+    }
+
+    public static <T extends Transaction> T readTransaction(BinaryReader reader, T transaction) throws IOException {
+        transaction.setTransactionId(readTransactionId(reader));
+        transaction.setUserId(reader.readString());
+        transaction.setMerchantId(reader.readString());
+        transaction.setAmount(readAmount(reader));
+        transaction.setCreateUser(reader.readString());
+        transaction.setTransDate(readDateTime(reader));
+        transaction.setUpdDate(readDateTime(reader));
+        transaction.setUpdateUser(reader.readString());
+        transaction.setRequestId(reader.readString());
+        transaction.setVersion(readNullableLong(reader));
+        return transaction;
+    }
+
+    public static void writeQuery(BinaryWriter writer, TransQryRequest req) throws IOException {
+        writeTransactionId(writer, req.getTransactionId());
+        writer.writeString(req.getUserId());
+        writer.writeString(req.getMerchantId());
+        writeAmount(writer, req.getMinAmount());
+        writeAmount(writer, req.getMaxAmount());
+        writeNullableLong(writer, req.getVersion());
+        writeNullableInt(writer, req.getPage());
+        writeNullableInt(writer, req.getPageSize());
+        writer.writeString(req.getSortBy());
+        writer.writeString(req.getSortOrder());
+        writer.writeByte((Boolean.TRUE.equals(req.getSnapshot()) ? QUERY_SNAPSHOT : 0)
+                | (Boolean.TRUE.equals(req.getExplain()) ? QUERY_EXPLAIN : 0));
+        writer.writeString(req.getSnapshotToken());
+    }
+
+    public static TransQryRequest readQuery(BinaryReader reader) throws IOException {
+        TransQryRequest req = new TransQryRequest();
+        req.setTransactionId(readTransactionId(reader));
+        req.setUserId(reader.readString());
+        req.setMerchantId(reader.readString());
+        req.setMinAmount(readAmount(reader));
+        req.setMaxAmount(readAmount(reader));
+        req.setVersion(readNullableLong(reader));
+        Integer page = readNullableInt(reader);
+        Integer pageSize = readNullableInt(reader);
+        // 与JSON一致，未传分页参数时使用默认值
+        if (page != null) {
+            req.setPage(page);
+        }
+        if (pageSize != null) {
+            req.setPageSize(pageSize);
+        }
+        req.setSortBy(reader.readString());
+        req.setSortOrder(reader.readString());
+        int flags = reader.readByte();
+        req.setSnapshot((flags & QUERY_SNAPSHOT) != 0 ? Boolean.TRUE : null);
+        req.setExplain((flags & QUERY_EXPLAIN) != 0 ? Boolean.TRUE : null);
+        req.setSnapshotToken(reader.readString());
+        return req;
+    }
+
+    // T+YYYYMMDD+8位序号 -> 日期*1亿+序号
+    private static void writeTransactionId(BinaryWriter writer, String transactionId) throws IOException {
+        if (transactionId == null) {
+            writer.writeVarInt(VALUE_NULL);
+            return;
+        }
+        long packed = packTransactionId(transactionId);
+        if (packed < 0) {
+            writer.writeVarInt(VALUE_STRING);
+            writer.writeString(transactionId);
+        } else {
+            writer.writeVarLong(packed + VALUE_OFFSET);
+        }
+    }
+
+    private static String readTransactionId(BinaryReader reader) throws IOException {
+        long value = reader.readVarLong();
+        if (value == VALUE_NULL) {
+            return null;
+        }
+        if (value == VALUE_STRING) {
+            return reader.readString();
+        }
+        long packed = value - VALUE_OFFSET;
+        char[] chars = new char[17];
+        chars[0] = 'T';
+        writeDigits(chars, 1, 8, packed / ID_SEQUENCE_RANGE);
+        writeDigits(chars, 9, 8, packed % ID_SEQUENCE_RANGE);
+        return new String(chars);
+    }
+
+    static long packTransactionId(String transactionId) {
+        if (transactionId.length() != 17 || transactionId.charAt(0) != 'T') {
+            return -1;
+        }
+        long date = parseDigits(transactionId, 1, 8);
+        long sequence = parseDigits(transactionId, 9, 8);
+        if (date < 0 || sequence < 0) {
+            return -1;
+        }
+        return date * ID_SEQUENCE_RANGE + sequence;
+    }
+
+    private static void writeAmount(BinaryWriter writer, BigDecimal amount) throws IOException {
+        if (amount == null) {
+            writer.writeByte(AMOUNT_NULL);
+        } else if (amount.unscaledValue().bitLength() < 64) {
+            writer.writeByte(AMOUNT_SCALED_LONG);
+            writer.writeSignedVarLong(amount.scale());
+            writer.writeSignedVarLong(amount.unscaledValue().longValue());
+        } else {
+            writer.writeByte(AMOUNT_STRING);
+            writer.writeString(amount.toString());
+        }
+    }
+
+    private static BigDecimal readAmount(BinaryReader reader) throws IOException {
+        int kind = reader.readByte();
+        return switch (kind) {
+            case AMOUNT_NULL -> null;
+            case AMOUNT_SCALED_LONG -> {
+                int scale = (int) reader.readSignedVarLong();
+                yield BigDecimal.valueOf(reader.readSignedVarLong(), scale);
+            }
+            case AMOUNT_STRING -> new BigDecimal(reader.readString());
+            default -> throw new IOException("未知的金额编码" + kind);
+        };
+    }
+
+    // yyyy-MM-dd HH:mm:ss -> 按UTC换算的秒数（只用于编码，不涉及时区转换）
+    private static void writeDateTime(BinaryWriter writer, String value) throws IOException {
+        if (value == null) {
+            writer.writeVarInt(VALUE_NULL);
+            return;
+        }
+        long seconds = parseDateTime(value);
+        if (seconds < 0) {
+            writer.writeVarInt(VALUE_STRING);
+            writer.writeString(value);
+        } else {
+            writer.writeVarLong(seconds + VALUE_OFFSET);
+        }
+    }
+
+    private static String readDateTime(BinaryReader reader) throws IOException {
+        long value = reader.readVarLong();
+        if (value == VALUE_NULL) {
+            return null;
+        }
+        if (value == VALUE_STRING) {
+            return reader.readString();
+        }
+        LocalDateTime time = LocalDateTime.ofEpochSecond(value - VALUE_OFFSET, 0, ZoneOffset.UTC);
+        char[] chars = new char[19];
+        writeDigits(chars, 0, 4, time.getYear());
+        chars[4] = '-';
+        writeDigits(chars, 5, 2, time.getMonthValue());
+        chars[7] = '-';
+        writeDigits(chars, 8, 2, time.getDayOfMonth());
+        chars[10] = ' ';
+        writeDigits(chars, 11, 2, time.getHour());
+        chars[13] = ':';
+        writeDigits(chars, 14, 2, time.getMinute());
+        chars[16] = ':';
+        writeDigits(chars, 17, 2, time.getSecond());
+        return new String(chars);
+    }
+
+    static long parseDateTime(String value) {
+        if (value.length() != 19 || value.charAt(4) != '-' || value.charAt(7) != '-' || value.charAt(10) != ' '
+                || value.charAt(13) != ':' || value.charAt(16) != ':') {
+            return -1;
+        }
+        long year = parseDigits(value, 0, 4);
+        long month = parseDigits(value, 5, 2);
+        long day = parseDigits(value, 8, 2);
+        long hour = parseDigits(value, 11, 2);
+        long minute = parseDigits(value, 14, 2);
+        long second = parseDigits(value, 17, 2);
+        if (year < 1970 || month < 1 || month > 12 || day < 1 || day > 31 || hour < 0 || hour > 23
+                || minute < 0 || minute > 59 || second < 0 || second > 59) {
+            return -1;
+        }
+        try {
+            return LocalDateTime.of((int) year, (int) month, (int) day, (int) hour, (int) minute, (int) second)
+                    .toEpochSecond(ZoneOffset.UTC);
+        } catch (RuntimeException e) {
+            return -1;
+        }
+    }
+
+    private static long parseDigits(String value, int from, int length) {
+        long result = 0;
+        for (int i = from; i < from + length; i++) {
+            char c = value.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            result = result * 10 + (c - '0');
+        }
+        return result;
+    }
+
+    private static void writeDigits(char[] chars, int from, int length, long value) {
+        for (int i = from + length - 1; i >= from; i--) {
+            chars[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+    }
+
+    // 0表示null，非负数加1后写入，负数原样写入
+    private static void writeNullableInt(BinaryWriter writer, Integer value) throws IOException {
+        writer.writeSignedVarLong(value == null ? 0 : value >= 0 ? (long) value + 1 : value);
+    }
+
+    private static Integer readNullableInt(BinaryReader reader) throws IOException {
+        long value = reader.readSignedVarLong();
+        return value == 0 ? null : (int) (value > 0 ? value - 1 : value);
+    }
+
+    private static void writeNullableLong(BinaryWriter writer, Long value) throws IOException {
+        writer.writeVarLong(value == null ? 0 : value + 1);
+    }
+
+    private static Long readNullableLong(BinaryReader reader) throws IOException {
+        long value = reader.readVarLong();
+        return value == 0 ? null : value - 1;
+    }
+
+    // 与writeNullableInt相同：0表示null，非负数加1后写入，负数原样写入
+    private static void writeNullableSignedLong(BinaryWriter writer, Long value) throws IOException {
+        writer.writeSignedVarLong(value == null ? 0 : value >= 0 ? value + 1 : value);
+    }
+
+    private static Long readNullableSignedLong(BinaryReader reader) throws IOException {
+        long value = reader.readSignedVarLong();
+        return value == 0 ? null : value > 0 ? value - 1 : value;
+    }
+
+    // 0表示null，1表示后跟IEEE 754位模式
+    private static void writeNullableDouble(BinaryWriter writer, Double value) throws IOException {
+        if (value == null) {
+            writer.writeByte(0);
+            return;
+        }
+        writer.writeByte(1);
+        writer.writeVarLong(Double.doubleToLongBits(value));
+    }
+
+    private static Double readNullableDouble(BinaryReader reader) throws IOException {
+        return reader.readByte() == 0 ? null : Double.longBitsToDouble(reader.readVarLong());
+    }
+}
@@ -0,0 +1,87 @@
+package com.hsbc.interview.wire;
+
+import com.hsbc.interview.dto.BaseResponse;
+import com.hsbc.interview.dto.TransQryRequest;
+import com.hsbc.interview.entity.Transaction;
+import org.springframework.core.ResolvableType;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractGenericHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+
+/**
+ * 交易接口二进制格式转换器
+ * 请求头 Content-Type / Accept 为 application/x-trans-binary 时生效，与JSON共用同一组接口；
+ * 读取新增/更新的交易与查询条件，写出 BaseResponse，编码结果经缓冲区直接写入响应流。
+ * 写出时按接口声明的 BaseResponse 泛型判断data能否编码，批量查询、导入、变更流等接口不参与协商，
+ * 客户端只接受二进制时返回406
+ * @author wangwei
+ * @date 2026-10-19
+ */
+public class TransBinaryHttpMessageConverter extends AbstractGenericHttpMessageConverter<Object> {
+
+    public static final MediaType MEDIA_TYPE = MediaType.parseMediaType(TransBinaryCodec.MEDIA_TYPE);
+
+    public TransBinaryHttpMessageConverter() {
+        super(MEDIA_TYPE);
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return BaseResponse.class.isAssignableFrom(clazz)
+                || Transaction.class.isAssignableFrom(clazz)
+                || TransQryRequest.class.isAssignableFrom(clazz);
+    }
+
+    @Override
+    protected boolean canRead(MediaType mediaType) {
+        return mediaType != null && super.canRead(mediaType);
+    }
+
+    /**
+     * 只按类型判断，供列出支持的媒体类型使用；接口返回值协商走带泛型的canWrite
+     */
+    @Override
+    public boolean canWrite(Class<?> clazz, MediaType mediaType) {
+        return BaseResponse.class.isAssignableFrom(clazz) && canWrite(mediaType);
+    }
+
+    @Override
+    public boolean canWrite(Type type, Class<?> clazz, MediaType mediaType) {
+        if (!canWrite(clazz, mediaType)) {
+            return false;
+        }
+        // 未声明泛型（原始类型、通配符）时无法确认data类型，不参与协商
+        Class<?> dataType = ResolvableType.forType(type != null ? type : clazz)
+                .as(BaseResponse.class).getGeneric(0).resolve();
+        return TransBinaryCodec.supportsData(dataType);
+    }
+
+    @Override
+    public Object read(Type type, Class<?> contextClass, HttpInputMessage inputMessage) throws IOException {
+        return readInternal(ResolvableType.forType(type).toClass(), inputMessage);
+    }
+
+    @Override
+    protected Object readInternal(Class<?> clazz, HttpInputMessage inputMessage) throws IOException {
+        BinaryReader reader = new BinaryReader(inputMessage.getBody());
+        if (TransQryRequest.class.isAssignableFrom(clazz)) {
+            return TransBinaryCodec.readQuery(reader);
+        }
+        if (Transaction.class.equals(clazz)) {
+            return TransBinaryCodec.readTransaction(reader, new Transaction());
+        }
+        throw new HttpMessageNotReadableException("二进制格式不支持的请求类型: " + clazz.getName(), inputMessage);
+    }
+
+    @Override
+    protected void writeInternal(Object value, Type type, HttpOutputMessage outputMessage) throws IOException {
+        BinaryWriter writer = new BinaryWriter(outputMessage.getBody());
+        TransBinaryCodec.writeResponse(writer, (BaseResponse<?>) value);
+        writer.flush();
+    }
+}
@@ -0,0 +1,229 @@
+package com.hsbc.interview.wire;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.hsbc.interview.common.MetricsProvider;
+import com.hsbc.interview.config.MemoryBudgetManager;
+import com.hsbc.interview.dto.BaseResponse;
+import com.hsbc.interview.dto.TransDataDto;
+import com.hsbc.interview.entity.Transaction;
+import com.hsbc.interview.service.TransactionMutationListener;
+import com.hsbc.interview.service.TransactionService;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+
+import static com.hsbc.interview.common.Constant.HTTP_FAIL_CODE;
+
+/**
+ * 按流水号读取单条交易的JSON输出
+ * 每条交易的 data 部分在首次读取时编码一次并缓存，响应外层（code/message/errMsg）与不存在时的响应体在启动时编码好，
+ * 命中时只把三段字节直接写入servlet输出流（容器复用的响应缓冲），请求路径上不创建DTO、不走Jackson、不分配缓冲区。
+ * 缓存的编码结果只保存版本号与字节，不引用交易对象：版本号与当前交易一致即命中，更新总是递增版本号；
+ * 版本号不变的覆盖写入（副本同步、导入）与删除在提交后清除编码结果，写入缓存后再确认交易未被修改，
+ * 不会把旧内容留在缓存中。编码缓存按字节数加权，上限为 max-weight-mb，并纳入全局内存预算
+ * @author wangwei
+ * @date 2026-10-19
+ */
+@Component
+public class TransactionJsonWriter implements TransactionMutationListener, MetricsProvider {
+
+    private static final String NOT_FOUND_MESSAGE = "交易流水不存在";
+
+    /**
+     * 编码结果及其对应的交易版本号
+     */
+    private record Encoded(long version, byte[] json) {
+    }
+
+    private final ObjectMapper objectMapper;
+
+    private final TransactionService transactionService;
+
+    private final Cache<String, Encoded> encodedCache;
+
+    // {"code":200,"message":"Success","errMsg":null,"data":  与  }
+    private final byte[] successPrefix;
+    private final byte[] successSuffix;
+
+    private final byte[] notFoundBody;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder encodes = new LongAdder();
+    private final LongAdder notFound = new LongAdder();
+
+    /**
+     * 本类同时是交易变更监听器，TransactionService 的监听器列表依赖本类，服务以延迟代理注入
+     */
+    @Autowired
+    public TransactionJsonWriter(ObjectMapper objectMapper, @Lazy TransactionService transactionService,
+                                 @Value("${trans.fast-get.max-weight-mb:32}") long maxWeightMb) throws IOException {
+        this.objectMapper = objectMapper;
+        this.transactionService = transactionService;
+        this.encodedCache = Caffeine.newBuilder()
+                .maximumWeight(maxWeightMb * 1024 * 1024)
+                .weigher((String transactionId, Encoded encoded) -> MemoryBudgetManager.weigh(transactionId, encoded.json()))
+                .build();
+        // 外层按当前ObjectMapper的配置编码，保证与其它接口的响应格式一致
+        String envelope = new String(objectMapper.writeValueAsBytes(BaseResponse.success(null)), StandardCharsets.UTF_8);
+        int dataIndex = envelope.lastIndexOf("null");
+        if (dataIndex < 0 || !envelope.substring(dataIndex + 4).equals("}")) {
+            throw new IllegalStateException("响应外层格式不符合预期: " + envelope);
+        }
+        this.successPrefix = envelope.substring(0, dataIndex).getBytes(StandardCharsets.UTF_8);
+        this.successSuffix = "}".getBytes(StandardCharsets.UTF_8);
+        BaseResponse<Void> notFoundResponse = new BaseResponse<>();
+        notFoundResponse.setCode(HTTP_FAIL_CODE);
+        notFoundResponse.setMessage("服务器内部错误");
+        notFoundResponse.setErrMsg(NOT_FOUND_MESSAGE);
+        this.notFoundBody = objectMapper.writeValueAsBytes(notFoundResponse);
+    }
+
+    /**
+     * 纳入全局内存预算，实际上限在 max-weight-mb 以内按预算与优先级分配
+     *
+     * @param memoryBudgetManager 全局内存预算
+     */
+    @Autowired(required = false)
+    public void setMemoryBudgetManager(MemoryBudgetManager memoryBudgetManager) {
+        memoryBudgetManager.register(MemoryBudgetManager.FAST_GET, encodedCache, true);
+    }
+
+    /**
+     * @methodName write
+     * @description 读取交易并写入响应；不存在时与其它接口的业务异常一致，返回500及错误信息
+     * @param transactionId 交易流水号
+     * @param response 响应
+     * @return
+     * @author wangwei
+     * @date 2026/10/19
+     */
+    public void write(String transactionId, HttpServletResponse response) throws IOException {
+        Transaction transaction = transactionService.getTransaction(transactionId);
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        if (transaction == null) {
+            notFound.increment();
+            response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+            response.setContentLength(notFoundBody.length);
+            response.getOutputStream().write(notFoundBody);
+            return;
+        }
+        byte[] json = encoded(transaction);
+        response.setStatus(HttpServletResponse.SC_OK);
+        response.setContentLength(successPrefix.length + json.length + successSuffix.length);
+        writeFragments(json, response.getOutputStream());
+    }
+
+    /**
+     * @methodName writeDto
+     * @description 写入已转换的交易数据（集群模式下由其它节点返回），不缓存编码结果
+     * @param dto 交易数据，为空表示不存在
+     * @param response 响应
+     * @return
+     * @author wangwei
+     * @date 2026/10/19
+     */
+    public void writeDto(TransDataDto dto, HttpServletResponse response) throws IOException {
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        if (dto == null) {
+            notFound.increment();
+            response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+            response.setContentLength(notFoundBody.length);
+            response.getOutputStream().write(notFoundBody);
+            return;
+        }
+        byte[] json = objectMapper.writeValueAsBytes(dto);
+        response.setStatus(HttpServletResponse.SC_OK);
+        response.setContentLength(successPrefix.length + json.length + successSuffix.length);
+        writeFragments(json, response.getOutputStream());
+    }
+
+    /**
+     * @methodName writeTo
+     * @description 把单条交易的完整响应体写入输出流
+     * @param transaction 交易数据
+     * @param out 输出流
+     * @return 写入的字节数
+     * @author wangwei
+     * @date 2026/10/19
+     */
+    public int writeTo(Transaction transaction, OutputStream out) throws IOException {
+        byte[] json = encoded(transaction);
+        writeFragments(json, out);
+        return successPrefix.length + json.length + successSuffix.length;
+    }
+
+    private void writeFragments(byte[] json, OutputStream out) throws IOException {
+        out.write(successPrefix);
+        out.write(json);
+        out.write(successSuffix);
+    }
+
+    private byte[] encoded(Transaction transaction) throws IOException {
+        String transactionId = transaction.getTransactionId();
+        Long version = transaction.getVersion();
+        Encoded encoded = version == null ? null : encodedCache.getIfPresent(transactionId);
+        if (encoded != null && encoded.version() == version) {
+            hits.increment();
+            return encoded.json();
+        }
+        encodes.increment();
+        byte[] json = objectMapper.writeValueAsBytes(transactionService.convertTrans(transaction));
+        // 没有版本号的数据无法校验，不缓存
+        if (version != null) {
+            Encoded entry = new Encoded(version, json);
+            encodedCache.put(transactionId, entry);
+            // 读取之后被版本号不变的写入覆盖时，提交后的清除可能早于本次写入缓存，这里再确认一次
+            if (!transaction.equals(transactionService.findTransaction(transactionId))) {
+                encodedCache.asMap().remove(transactionId, entry);
+            }
+        }
+        return json;
+    }
+
+    @Override
+    public void afterCommit(Transaction before, Transaction after) {
+        // 版本号递增的更新不需要处理，命中时按版本号校验
+        if (before != null && (after == null || Objects.equals(before.getVersion(), after.getVersion()))) {
+            encodedCache.invalidate(before.getTransactionId());
+        }
+    }
+
+    @Override
+    public void onExpire(List<Transaction> expired) {
+        for (Transaction transaction : expired) {
+            encodedCache.invalidate(transaction.getTransactionId());
+        }
+    }
+
+    @Override
+    public String metricsName() {
+        return "fastGet";
+    }
+
+    @Override
+    public Map<String, Object> metrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        long hitCount = hits.sum();
+        long encodeCount = encodes.sum();
+        metrics.put("hits", hitCount);
+        metrics.put("encodes", encodeCount);
+        metrics.put("hitRate", hitCount + encodeCount == 0 ? 0D : (double) hitCount / (hitCount + encodeCount));
+        metrics.put("notFound", notFound.sum());
+        metrics.put("cachedEntries", encodedCache.estimatedSize());
+        return metrics;
+    }
+}
@@ -0,0 +1,180 @@
+package com.hsbc.interview.bulk;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.hsbc.interview.config.CacheLockManager;
+import com.hsbc.interview.dto.BulkImportStatus;
+import com.hsbc.interview.entity.Transaction;
+import com.hsbc.interview.service.TransactionService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BulkImportJobTest {
+
+    @TempDir
+    Path tempDir;
+
+    private Cache<String, Transaction> mainCache;
+    private Cache<String, Set<String>> userIndexCache;
+    private Cache<String, Set<String>> merchantIndexCache;
+    private TransactionService service;
+
+    @BeforeEach
+    void setUp() {
+        mainCache = Caffeine.newBuilder().build();
+        userIndexCache = Caffeine.newBuilder().build();
+        merchantIndexCache = Caffeine.newBuilder().build();
+        service = new TransactionService(mainCache, userIndexCache, merchantIndexCache, new CacheLockManager());
+    }
+
+    @Test
+    void importCsv_PreservesIdsAndDates_BuildsIndexes_RejectsBadRows() throws Exception {
+        StringBuilder csv = new StringBuilder("﻿transactionId,userId,merchantId,amount,transDate,version\n");
+        for (int i = 1; i <= 1000; i++) {
+            csv.append(csvRow(i)).append('\n');
+        }
+        // 日期不合法、金额缺失、流水号格式错误
+        csv.append("T2025023000000001,user1,m1,1.00,2025-02-28 10:00:00,1\n");
+        csv.append("T2025010100009999,user1,m1,,2025-01-01 10:00:00,1\n");
+        csv.append("X1,user1,m1,1.00,2025-01-01 10:00:00,1\n");
+        Path file = tempDir.resolve("history.csv");
+        Files.writeString(file, csv, StandardCharsets.UTF_8);
+
+        BulkImportJob job = newJob(newCheckpoint("IMP1", file, ImportFormat.CSV));
+        job.run();
+
+        BulkImportStatus status = job.status();
+        assertEquals("COMPLETED", status.getState());
+        assertEquals(1000, status.getRowsApplied());
+        assertEquals(3, status.getRowsRejected());
+        assertEquals(3, status.getErrors().size());
+
+        Transaction first = service.findTransaction("T2025010100000001");
+        assertNotNull(first);
+        assertEquals("2025-01-01 08:30:00", first.getTransDate());
+        assertEquals(new BigDecimal("1.50"), first.getAmount());
+        assertEquals(2L, first.getVersion());
+        assertEquals("user1", first.getCreateUser());
+        assertEquals(1000, mainCache.estimatedSize());
+        // 每个用户/商户的索引在检查点窗口归并后写入
+        assertEquals(100, userIndexCache.getIfPresent("user1").size());
+        assertEquals(250, merchantIndexCache.getIfPresent("m1").size());
+
+        ImportCheckpoint saved = ImportCheckpoint.load(ImportCheckpoint.path(tempDir, "IMP1"));
+        assertEquals(BulkImportJob.State.COMPLETED, saved.state);
+        assertEquals(Files.size(file), saved.offset);
+    }
+
+    @Test
+    void importNdjson_ResumesFromCheckpointOffset() throws Exception {
+        StringBuilder ndjson = new StringBuilder();
+        long half = 0;
+        for (int i = 1; i <= 200; i++) {
+            ndjson.append(String.format("{\"transactionId\":\"T20250101%08d\",\"userId\":\"user%d\",\"merchantId\":\"m%d\","
+                    + "\"amount\":\"%d.25\",\"transDate\":\"2025-01-01 09:00:00\",\"extra\":true}\n", i, i % 10, i % 4, i));
+            if (i == 100) {
+                half = ndjson.toString().getBytes(StandardCharsets.UTF_8).length;
+            }
+        }
+        Path file = tempDir.resolve("history.ndjson");
+        Files.writeString(file, ndjson, StandardCharsets.UTF_8);
+
+        // 模拟同一进程内中断后恢复：前100行已写入，断点停在第100行之后
+        ImportCheckpoint checkpoint = newCheckpoint("IMP2", file, ImportFormat.NDJSON);
+        checkpoint.offset = half;
+        checkpoint.rowsApplied = 100;
+        newJob(checkpoint).run();
+
+        assertEquals(100, mainCache.estimatedSize());
+        assertNull(service.findTransaction("T2025010100000100"));
+        assertNotNull(service.findTransaction("T2025010100000101"));
+        assertEquals(new BigDecimal("200.25"), service.findTransaction("T2025010100000200").getAmount());
+        assertEquals(200, checkpoint.rowsApplied);
+        assertEquals(BulkImportJob.State.COMPLETED, checkpoint.state);
+    }
+
+    @Test
+    void importCsv_RejectsRowsOutsideRetentionWindow() throws Exception {
+        StringBuilder csv = new StringBuilder("transactionId,userId,merchantId,amount,transDate,version\n");
+        csv.append(csvRow(1)).append('\n');
+        csv.append(csvRow(2)).append('\n');
+        csv.append("T2025020100000003,user3,m3,1.50,2025-02-01 08:30:00,1\n");
+        Path file = tempDir.resolve("retention.csv");
+        Files.writeString(file, csv, StandardCharsets.UTF_8);
+
+        // 保留期限从2025-02-01开始，1月的交易导入后会被保留策略立即删除
+        BulkImportJob job = newJob(newCheckpoint("IMP3", file, ImportFormat.CSV), "T20250201");
+        job.run();
+
+        BulkImportStatus status = job.status();
+        assertEquals("COMPLETED", status.getState());
+        assertEquals(1, status.getRowsApplied());
+        assertEquals(2, status.getRowsRejected());
+        assertTrue(status.getErrors().get(0).contains("早于保留期限20250201"));
+        assertNull(service.findTransaction("T2025010100000001"));
+        assertNotNull(service.findTransaction("T2025020100000003"));
+    }
+
+    @Test
+    void importCsv_RejectsFutureOrOverlongIds_CreateStillWorks() throws Exception {
+        String today = LocalDate.now().format(DateTimeFormatter.BASIC_ISO_DATE);
+        String tomorrow = LocalDate.now().plusDays(1).format(DateTimeFormatter.BASIC_ISO_DATE);
+        StringBuilder csv = new StringBuilder("transactionId,userId,merchantId,amount,transDate,version\n");
+        csv.append("T2099010100000001,user1,m1,1.50,2025-01-01 08:30:00,1\n");
+        csv.append("T").append(tomorrow).append("00000001,user1,m1,1.50,2025-01-01 08:30:00,1\n");
+        csv.append("T").append(today).append("123456789012,user1,m1,1.50,2025-01-01 08:30:00,1\n");
+        csv.append("T").append(today).append("0000001,user1,m1,1.50,2025-01-01 08:30:00,1\n");
+        csv.append("T").append(today).append("00000005,user1,m1,1.50,2025-01-01 08:30:00,1\n");
+        Path file = tempDir.resolve("ids.csv");
+        Files.writeString(file, csv, StandardCharsets.UTF_8);
+
+        BulkImportJob job = newJob(newCheckpoint("IMP4", file, ImportFormat.CSV));
+        job.run();
+
+        BulkImportStatus status = job.status();
+        assertEquals("COMPLETED", status.getState());
+        assertEquals(1, status.getRowsApplied());
+        assertEquals(4, status.getRowsRejected());
+        // 新增交易在导入的最大流水号之后续号，连续新增互不冲突
+        for (int i = 6; i <= 8; i++) {
+            Transaction transaction = new Transaction();
+            transaction.setUserId("user2");
+            transaction.setMerchantId("m2");
+            transaction.setAmount(BigDecimal.ONE);
+            assertEquals("T" + today + String.format("%08d", i), service.addTransaction(transaction));
+        }
+    }
+
+    private String csvRow(int i) {
+        return String.format("T20250101%08d,user%d,m%d,1.50,2025-01-01 08:30:00,2", i, i % 10, i % 4);
+    }
+
+    private ImportCheckpoint newCheckpoint(String jobId, Path file, ImportFormat format) {
+        ImportCheckpoint checkpoint = new ImportCheckpoint();
+        checkpoint.jobId = jobId;
+        checkpoint.source = file.toString();
+        checkpoint.format = format;
+        checkpoint.state = BulkImportJob.State.RUNNING;
+        return checkpoint;
+    }
+
+    private BulkImportJob newJob(ImportCheckpoint checkpoint) throws Exception {
+        // 小块、小窗口，覆盖多次检查点与多分区并行写入
+        return newJob(checkpoint, null);
+    }
+
+    private BulkImportJob newJob(ImportCheckpoint checkpoint, String retainFromId) throws Exception {
+        return new BulkImportJob(checkpoint, tempDir, service, 4, 64, 300, 10, retainFromId);
+    }
+}
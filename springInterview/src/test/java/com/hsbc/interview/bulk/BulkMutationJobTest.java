@@ -0,0 +1,230 @@
+package com.hsbc.interview.bulk;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.hsbc.interview.cdc.ChangeFeed;
+import com.hsbc.interview.config.CacheLockManager;
+import com.hsbc.interview.dto.BulkMutationStatus;
+import com.hsbc.interview.dto.TransQryRequest;
+import com.hsbc.interview.entity.Transaction;
+import com.hsbc.interview.replication.ReplicationLeader;
+import com.hsbc.interview.service.QueryResultCache;
+import com.hsbc.interview.service.TransactionMutationListener;
+import com.hsbc.interview.service.TransactionService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BulkMutationJobTest {
+
+    private Cache<String, Transaction> mainCache;
+    private Cache<String, Set<String>> userIndexCache;
+    private Cache<String, Set<String>> merchantIndexCache;
+    private TransactionService service;
+
+    private final AtomicInteger deletes = new AtomicInteger();
+    private final AtomicInteger updates = new AtomicInteger();
+    private final AtomicInteger commits = new AtomicInteger();
+
+    @TempDir
+    Path tempDir;
+
+    @BeforeEach
+    void setUp() {
+        mainCache = Caffeine.newBuilder().build();
+        userIndexCache = Caffeine.newBuilder().build();
+        merchantIndexCache = Caffeine.newBuilder().build();
+        service = new TransactionService(mainCache, userIndexCache, merchantIndexCache, new CacheLockManager());
+        // 1月与3月各100条，用户u0-u2，商户m1/m2交替
+        for (int i = 1; i <= 200; i++) {
+            service.upsertTransaction(transaction((i <= 100 ? "T20250101" : "T20250301") + String.format("%08d", i),
+                    "u" + i % 3, i % 2 == 0 ? "m1" : "m2"));
+        }
+        service.setMutationListeners(List.of(new TransactionMutationListener() {
+            @Override
+            public void onDelete(Transaction before) {
+                deletes.incrementAndGet();
+            }
+
+            @Override
+            public void onUpdate(Transaction before, Transaction after) {
+                updates.incrementAndGet();
+            }
+
+            @Override
+            public void afterCommit(Transaction before, Transaction after) {
+                commits.incrementAndGet();
+            }
+        }));
+    }
+
+    @Test
+    void deleteByMerchantBeforeDate_RemovesOnlyMatchingRowsAndIndexes() {
+        BulkMutationJob job = job(BulkMutationJob.Operation.DELETE, null, null, "m1", "T20250201", null, 7);
+        job.run();
+
+        BulkMutationStatus status = job.status();
+        assertEquals("COMPLETED", status.getState());
+        assertEquals(50, status.getCandidates());
+        assertEquals(50, status.getAffected());
+        assertEquals(1D, status.getProgress());
+        assertEquals(50, deletes.get());
+        assertEquals(50, commits.get());
+
+        assertEquals(150, mainCache.estimatedSize());
+        Set<String> m1 = merchantIndexCache.getIfPresent("m1");
+        assertEquals(50, m1.size());
+        assertTrue(m1.stream().allMatch(id -> id.startsWith("T20250301")));
+        assertEquals(100, merchantIndexCache.getIfPresent("m2").size());
+        // 用户索引同样只剩存在的交易
+        long indexed = userIndexCache.asMap().values().stream().mapToLong(Set::size).sum();
+        assertEquals(150, indexed);
+        userIndexCache.asMap().values().forEach(ids -> ids.forEach(id -> assertNotNull(mainCache.getIfPresent(id))));
+    }
+
+    @Test
+    void reassignMerchant_ByIdsWithUserFilter_MovesIndexAndBumpsVersion() {
+        // u1 的 T..01（m2）与 T..04（m1），u2 的 T..02 不满足用户条件，T..10 已经属于m3，最后一个不存在
+        String id1 = "T2025010100000001";
+        String id4 = "T2025010100000004";
+        String id2 = "T2025010100000002";
+        Transaction existing = mainCache.getIfPresent("T2025010100000010");
+        Transaction moved = transaction(existing.getTransactionId(), existing.getUserId(), "m3");
+        service.upsertTransaction(moved);
+        updates.set(0);
+        commits.set(0);
+        BulkMutationJob job = job(BulkMutationJob.Operation.REASSIGN_MERCHANT,
+                List.of(id1, id4, id2, "T2025010100000010", "T2099010100000001"), "u1", null, null, "m3", 2);
+        job.run();
+
+        BulkMutationStatus status = job.status();
+        assertEquals("COMPLETED", status.getState());
+        assertEquals(5, status.getCandidates());
+        assertEquals(2, status.getAffected());
+        assertEquals(2, updates.get());
+        assertEquals(2, commits.get());
+
+        assertEquals("m3", mainCache.getIfPresent(id1).getMerchantId());
+        assertEquals(2L, mainCache.getIfPresent(id1).getVersion());
+        assertEquals("m3", mainCache.getIfPresent(id4).getMerchantId());
+        assertEquals("m1", mainCache.getIfPresent(id2).getMerchantId());
+        assertEquals(Set.of(id1, id4, "T2025010100000010"), merchantIndexCache.getIfPresent("m3"));
+        assertFalse(merchantIndexCache.getIfPresent("m1").contains(id4));
+        assertFalse(merchantIndexCache.getIfPresent("m2").contains(id1));
+        assertTrue(userIndexCache.getIfPresent("u1").containsAll(Set.of(id1, id4)));
+    }
+
+    @Test
+    void cancel_StopsBetweenBatchesAndKeepsIndexesConsistent() throws Exception {
+        // 每批1条、每秒20条，200条需要10秒
+        BulkMutationJob job = new BulkMutationJob("BLK2", BulkMutationJob.Operation.DELETE, "userId=u0", null, "u0",
+                null, null, null, service, userIndexCache, merchantIndexCache, 1, 20);
+        Thread thread = Thread.ofPlatform().start(job);
+        TimeUnit.MILLISECONDS.sleep(300);
+        job.cancel();
+        thread.join(5000);
+
+        BulkMutationStatus status = job.status();
+        assertEquals("CANCELLED", status.getState());
+        assertTrue(status.getAffected() > 0 && status.getAffected() < status.getCandidates());
+        assertEquals(status.getProcessed(), status.getAffected());
+        assertEquals(status.getCandidates() - status.getAffected(), userIndexCache.getIfPresent("u0").size());
+        assertEquals(200 - status.getAffected(), mainCache.estimatedSize());
+        merchantIndexCache.asMap().values().forEach(ids -> ids.forEach(id -> assertNotNull(mainCache.getIfPresent(id))));
+    }
+
+    @Test
+    void bulkJobs_AdvanceChangeFeedAndReplicationWatermarks() throws Exception {
+        ChangeFeed changeFeed = new ChangeFeed(1024, tempDir.toString(), 1, 4);
+        changeFeed.start();
+        try {
+            ReplicationLeader leader = new ReplicationLeader(mainCache, 0, "async", 1000, 1, 1024);
+            service.setMutationListeners(List.of(changeFeed, leader));
+            // 商户m1下1月的50条改到m3，再删除u0在m3下的交易
+            job(BulkMutationJob.Operation.REASSIGN_MERCHANT, null, null, "m1", "T20250201", "m3", 7).run();
+            BulkMutationJob delete = job(BulkMutationJob.Operation.DELETE, null, "u0", "m3", null, null, 4);
+            delete.run();
+            long changes = 50 + delete.status().getAffected();
+            assertTrue(delete.status().getAffected() > 0);
+            assertEquals(changes, changeFeed.metrics().get("lastSeq"));
+            assertEquals(changes, leader.metrics().get("committedWatermark"));
+
+            service.upsertTransaction(transaction("T2025040100000001", "u9", "m9"));
+            assertEquals(changes + 1, changeFeed.poll(0, 1000, 0).events().size());
+            assertEquals(changes + 1, leader.metrics().get("committedWatermark"));
+        } finally {
+            changeFeed.stop();
+        }
+    }
+
+    @Test
+    void bulkJobs_PagesCachedDuringJob_NotServedAfterIndexUpdate() {
+        QueryResultCache queryResultCache = new QueryResultCache(16, 1000);
+        service.setQueryResultCache(queryResultCache);
+        AtomicInteger untilProbe = new AtomicInteger(50);
+        // 最后一条提交后、整批索引更新前查询一次，结果按已递增的版本号缓存
+        service.setMutationListeners(List.of(queryResultCache, new TransactionMutationListener() {
+            @Override
+            public void afterCommit(Transaction before, Transaction after) {
+                if (untilProbe.decrementAndGet() == 0) {
+                    service.searchTrans(merchantQuery("m1"));
+                    service.searchTrans(merchantQuery("m3"));
+                    service.searchTrans(userQuery("u0"));
+                }
+            }
+        }));
+
+        job(BulkMutationJob.Operation.REASSIGN_MERCHANT, null, null, "m1", "T20250201", "m3", 7).run();
+        assertEquals(50, service.searchTrans(merchantQuery("m1")).getTotal());
+        assertEquals(50, service.searchTrans(merchantQuery("m3")).getTotal());
+
+        untilProbe.set(66);
+        BulkMutationJob delete = job(BulkMutationJob.Operation.DELETE, null, "u0", null, null, null, 7);
+        delete.run();
+        assertEquals(66, delete.status().getAffected());
+        assertEquals(0, service.searchTrans(userQuery("u0")).getTotal());
+        long m3Left = mainCache.asMap().values().stream().filter(t -> "m3".equals(t.getMerchantId())).count();
+        assertEquals(m3Left, service.searchTrans(merchantQuery("m3")).getTotal().longValue());
+    }
+
+    private static TransQryRequest merchantQuery(String merchantId) {
+        TransQryRequest req = new TransQryRequest();
+        req.setMerchantId(merchantId);
+        req.setPage(1);
+        req.setPageSize(10);
+        return req;
+    }
+
+    private static TransQryRequest userQuery(String userId) {
+        TransQryRequest req = new TransQryRequest();
+        req.setUserId(userId);
+        req.setPage(1);
+        req.setPageSize(10);
+        return req;
+    }
+
+    private BulkMutationJob job(BulkMutationJob.Operation operation, List<String> ids, String userId, String merchantId,
+                                String beforeId, String newMerchantId, int batchSize) {
+        return new BulkMutationJob("BLK1", operation, "test", ids, userId, merchantId, beforeId, newMerchantId,
+                service, userIndexCache, merchantIndexCache, batchSize, 0);
+    }
+
+    private static Transaction transaction(String transactionId, String userId, String merchantId) {
+        Transaction transaction = new Transaction();
+        transaction.setTransactionId(transactionId);
+        transaction.setUserId(userId);
+        transaction.setMerchantId(merchantId);
+        transaction.setAmount(BigDecimal.ONE);
+        transaction.setVersion(1L);
+        return transaction;
+    }
+}
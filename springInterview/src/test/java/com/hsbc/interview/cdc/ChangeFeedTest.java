@@ -0,0 +1,160 @@
+package com.hsbc.interview.cdc;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.hsbc.interview.common.TransException;
+import com.hsbc.interview.config.CacheLockManager;
+import com.hsbc.interview.dto.TransQryRequest;
+import com.hsbc.interview.entity.Transaction;
+import com.hsbc.interview.service.TransactionService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static com.hsbc.interview.common.Constant.HTTP_GONE_CODE;
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChangeFeedTest {
+
+    @TempDir
+    Path tempDir;
+
+    private ChangeFeed changeFeed;
+
+    @AfterEach
+    void tearDown() {
+        if (changeFeed != null) {
+            changeFeed.stop();
+        }
+    }
+
+    private TransactionService newService(int ringCapacity) throws Exception {
+        return newService(ringCapacity, tempDir.toString());
+    }
+
+    private TransactionService newService(int ringCapacity, String spillDirectory) throws Exception {
+        changeFeed = new ChangeFeed(ringCapacity, spillDirectory, 1, 4);
+        changeFeed.start();
+        Cache<String, Transaction> mainCache = Caffeine.newBuilder().build();
+        Cache<String, Set<String>> userIndexCache = Caffeine.newBuilder().build();
+        Cache<String, Set<String>> merchantIndexCache = Caffeine.newBuilder().build();
+        TransactionService service = new TransactionService(mainCache, userIndexCache, merchantIndexCache, new CacheLockManager());
+        service.setMutationListeners(List.of(changeFeed));
+        return service;
+    }
+
+    @Test
+    void poll_ReturnsOrderedEventsWithBeforeAndAfterImages() throws Exception {
+        TransactionService service = newService(1024);
+        String transactionId = service.addTransaction(createTransaction("user1", "10.00"));
+        Transaction update = createTransaction("user1", "20.00");
+        update.setTransactionId(transactionId);
+        service.updateTransaction(update);
+        TransQryRequest delete = new TransQryRequest();
+        delete.setTransactionId(transactionId);
+        delete.setUserId("user1");
+        service.deleteTransaction(delete);
+
+        ChangeBatch batch = changeFeed.poll(0, 100, 0);
+        assertEquals(3, batch.events().size());
+        assertEquals(4, batch.nextSeq());
+        ChangeEvent add = batch.events().get(0);
+        ChangeEvent updated = batch.events().get(1);
+        ChangeEvent deleted = batch.events().get(2);
+        assertEquals(ChangeOp.ADD, add.op());
+        assertNull(add.before());
+        assertEquals(ChangeOp.UPDATE, updated.op());
+        assertEquals(new BigDecimal("10.00"), updated.before().getAmount());
+        assertEquals(new BigDecimal("20.00"), updated.after().getAmount());
+        assertEquals(2L, updated.after().getVersion());
+        assertEquals(ChangeOp.DELETE, deleted.op());
+        assertEquals(transactionId, deleted.transactionId());
+        assertNull(deleted.after());
+    }
+
+    @Test
+    void poll_WaitsForNextCommittedEvent() throws Exception {
+        TransactionService service = newService(1024);
+        CompletableFuture<ChangeBatch> pending = CompletableFuture.supplyAsync(() -> {
+            try {
+                return changeFeed.poll(1, 100, 5000);
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        Thread.sleep(100);
+        assertFalse(pending.isDone());
+        String transactionId = service.addTransaction(createTransaction("user1", "10.00"));
+
+        ChangeBatch batch = pending.get(5, TimeUnit.SECONDS);
+        assertEquals(1, batch.events().size());
+        assertEquals(transactionId, batch.events().get(0).transactionId());
+    }
+
+    @Test
+    void poll_ResumesFromSpillLogAfterRingIsOverwritten() throws Exception {
+        TransactionService service = newService(64);
+        // 每写入32条等待落盘跟上，环形数组只保留最近64条
+        for (int i = 1; i <= 300; i++) {
+            service.addTransaction(createTransaction("user" + (i % 5), "1.00"));
+            if (i % 32 == 0 || i == 300) {
+                awaitSpilled(i);
+            }
+        }
+
+        List<ChangeEvent> events = new ArrayList<>();
+        long next = 1;
+        while (next <= 300) {
+            ChangeBatch batch = changeFeed.poll(next, 50, 0);
+            events.addAll(batch.events());
+            next = batch.nextSeq();
+        }
+        assertEquals(300, events.size());
+        for (int i = 0; i < events.size(); i++) {
+            assertEquals(i + 1, events.get(i).seq());
+            assertEquals(ChangeOp.ADD, events.get(i).op());
+        }
+        assertTrue((Long) changeFeed.metrics().get("spillReads") > 0);
+        assertEquals(0L, changeFeed.metrics().get("lostEvents"));
+    }
+
+    @Test
+    void poll_WithoutSpillDir_KeepsOnlyRingAndReturnsGoneForOverwrittenSeq() throws Exception {
+        TransactionService service = newService(64, "");
+        for (int i = 1; i <= 100; i++) {
+            service.addTransaction(createTransaction("user" + (i % 5), "1.00"));
+        }
+
+        TransException gone = assertThrows(TransException.class, () -> changeFeed.poll(1, 50, 0));
+        assertEquals(HTTP_GONE_CODE.intValue(), gone.getCode());
+        assertEquals(37, changeFeed.earliestSeq());
+        ChangeBatch batch = changeFeed.poll(37, 100, 0);
+        assertEquals(64, batch.events().size());
+        assertEquals(100, batch.events().get(63).seq());
+        assertEquals(false, changeFeed.metrics().get("spillEnabled"));
+        assertEquals(0, changeFeed.metrics().get("spillFiles"));
+    }
+
+    private void awaitSpilled(long seq) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while ((Long) changeFeed.metrics().get("spilledSeq") < seq && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+    }
+
+    private Transaction createTransaction(String userId, String amount) {
+        Transaction transaction = new Transaction();
+        transaction.setUserId(userId);
+        transaction.setMerchantId("1");
+        transaction.setAmount(new BigDecimal(amount));
+        return transaction;
+    }
+}
@@ -0,0 +1,281 @@
+package com.hsbc.interview.cluster;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import cn.hutool.core.date.DateUtil;
+import com.hsbc.interview.common.TransException;
+import com.hsbc.interview.config.CacheLockManager;
+import com.hsbc.interview.dto.TransDataDto;
+import com.hsbc.interview.dto.TransQryRequest;
+import com.hsbc.interview.dto.TransQryRsp;
+import com.hsbc.interview.entity.Transaction;
+import com.hsbc.interview.service.TransactionMutationListener;
+import com.hsbc.interview.service.TransactionService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 在本机不同端口上启动多个集群节点，验证按用户路由、跨节点分页归并与成员变化后的数据迁移
+ */
+class ClusterTest {
+
+    private final List<ClusterNode> nodes = new ArrayList<>();
+
+    private final List<Cache<String, Transaction>> caches = new ArrayList<>();
+
+    private final List<TransactionService> services = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        nodes.forEach(ClusterNode::stop);
+    }
+
+    private ClusterNode startNode(int slot) throws Exception {
+        Cache<String, Transaction> mainCache = Caffeine.newBuilder().build();
+        Cache<String, Set<String>> userIndexCache = Caffeine.newBuilder().build();
+        Cache<String, Set<String>> merchantIndexCache = Caffeine.newBuilder().build();
+        TransactionService service = new TransactionService(mainCache, userIndexCache, merchantIndexCache, new CacheLockManager());
+        ClusterNode node = new ClusterNode(service, mainCache, "node" + slot, 0, 64, slot, 3000, "");
+        node.start();
+        nodes.add(node);
+        caches.add(mainCache);
+        services.add(service);
+        return node;
+    }
+
+    private List<ClusterMember> members() {
+        return nodes.stream()
+                .map(node -> new ClusterMember(node.getNodeId(), "localhost", node.getPort(), node.getNodeSlot()))
+                .toList();
+    }
+
+    private void startCluster(int size) throws Exception {
+        for (int i = 1; i <= size; i++) {
+            startNode(i);
+        }
+        List<ClusterMember> members = members();
+        for (ClusterNode node : nodes) {
+            node.updateMembers(members, false);
+        }
+    }
+
+    @Test
+    void userScopedData_StoredOnOwnerOnly_AndVisibleFromEveryNode() throws Exception {
+        startCluster(3);
+        ClusterNode entry = nodes.get(0);
+        for (int i = 0; i < 60; i++) {
+            entry.addTransaction(createTransaction("user" + (i % 12), String.valueOf(i % 3 + 1)));
+        }
+        long total = caches.stream().mapToLong(Cache::estimatedSize).sum();
+        assertEquals(60, total);
+        assertTrue(caches.stream().filter(cache -> cache.estimatedSize() > 0).count() > 1, "数据应分布在多个节点");
+
+        for (ClusterNode node : nodes) {
+            TransQryRequest req = new TransQryRequest();
+            req.setUserId("user5");
+            req.setPageSize(100);
+            TransQryRsp rsp = node.searchTrans(req);
+            assertEquals(5, rsp.getTotal());
+            assertTrue(rsp.getTransList().stream().allMatch(row -> "user5".equals(row.getUserId())));
+        }
+
+        // 用户的全部数据只在一个节点上
+        for (int u = 0; u < 12; u++) {
+            String userId = "user" + u;
+            long holders = caches.stream()
+                    .filter(cache -> cache.asMap().values().stream().anyMatch(t -> userId.equals(t.getUserId())))
+                    .count();
+            assertEquals(1, holders);
+        }
+    }
+
+    @Test
+    void scatterGather_PagesMatchGlobalOrder() throws Exception {
+        startCluster(3);
+        for (int i = 0; i < 45; i++) {
+            nodes.get(i % 3).addTransaction(createTransaction("user" + i, String.valueOf(i % 3 + 1)));
+        }
+        List<String> expected = caches.stream()
+                .flatMap(cache -> cache.asMap().values().stream())
+                .filter(t -> "2".equals(t.getMerchantId()))
+                .map(Transaction::getTransactionId)
+                .sorted()
+                .toList();
+        assertEquals(15, expected.size());
+
+        List<String> paged = new ArrayList<>();
+        for (int page = 1; page <= 4; page++) {
+            TransQryRequest req = new TransQryRequest();
+            req.setMerchantId("2");
+            req.setPage(page);
+            req.setPageSize(4);
+            TransQryRsp rsp = nodes.get(1).searchTrans(req);
+            assertEquals(15, rsp.getTotal());
+            rsp.getTransList().stream().map(TransDataDto::getTransactionId).forEach(paged::add);
+        }
+        assertEquals(expected, paged);
+
+        TransQryRequest all = new TransQryRequest();
+        all.setPage(2);
+        all.setPageSize(10);
+        TransQryRsp rsp = nodes.get(2).searchTrans(all);
+        assertEquals(45, rsp.getTotal());
+        assertEquals(10, rsp.getTransList().size());
+
+        TransQryRequest byId = new TransQryRequest();
+        byId.setTransactionId(expected.get(7));
+        assertEquals(expected.get(7), nodes.get(0).searchTrans(byId).getTransList().get(0).getTransactionId());
+    }
+
+    @Test
+    void addNode_RebalancesData_AndAllRowsStayReachable() throws Exception {
+        startCluster(3);
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < 120; i++) {
+            ids.add(nodes.get(0).addTransaction(createTransaction("user" + i, "1")));
+        }
+        assertEquals(120, ids.stream().distinct().count(), "各节点分配的流水号不能重复");
+
+        // 迁移不是业务删除，源节点不应产生删除事件
+        AtomicInteger deletes = new AtomicInteger();
+        AtomicInteger expired = new AtomicInteger();
+        TransactionMutationListener listener = new TransactionMutationListener() {
+            @Override
+            public void onDelete(Transaction before) {
+                deletes.incrementAndGet();
+            }
+
+            @Override
+            public void onExpire(List<Transaction> rows) {
+                expired.addAndGet(rows.size());
+            }
+        };
+        services.forEach(service -> service.setMutationListeners(List.of(listener)));
+
+        ClusterNode newNode = startNode(4);
+        nodes.get(0).updateMembers(members(), true);
+        for (ClusterNode node : nodes) {
+            node.awaitRebalance(5000);
+        }
+
+        assertTrue(caches.get(3).estimatedSize() > 0, "新节点应接收迁移的数据");
+        assertEquals(120, caches.stream().mapToLong(Cache::estimatedSize).sum());
+        assertEquals(0, deletes.get());
+        assertEquals(caches.get(3).estimatedSize(), expired.get());
+        for (int i = 0; i < 120; i++) {
+            TransQryRequest req = new TransQryRequest();
+            req.setUserId("user" + i);
+            assertEquals(1, newNode.searchTrans(req).getTotal(), "user" + i);
+        }
+        TransQryRequest all = new TransQryRequest();
+        all.setPageSize(200);
+        assertEquals(ids.stream().sorted().toList(),
+                nodes.get(1).searchTrans(all).getTransList().stream().map(TransDataDto::getTransactionId).toList());
+    }
+
+    @Test
+    void removeNode_DrainsDataToRemainingNodes_AndAllRowsStayReachable() throws Exception {
+        startCluster(3);
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < 120; i++) {
+            ids.add(nodes.get(0).addTransaction(createTransaction("user" + i, "1")));
+        }
+        assertTrue(caches.get(2).estimatedSize() > 0);
+
+        // 由其他节点发起移出node3，node3收到不含自己的成员列表后迁出全部数据
+        List<ClusterMember> remaining = members().subList(0, 2);
+        nodes.get(0).updateMembers(remaining, true);
+        for (ClusterNode node : nodes) {
+            node.awaitRebalance(5000);
+            assertEquals(remaining, node.getMembers());
+        }
+
+        assertEquals(0, caches.get(2).estimatedSize());
+        assertEquals(120, caches.stream().mapToLong(Cache::estimatedSize).sum());
+        assertEquals(false, nodes.get(2).metrics().get("member"));
+        for (int i = 0; i < 120; i++) {
+            TransQryRequest req = new TransQryRequest();
+            req.setUserId("user" + i);
+            // 移出的节点仍可接收请求，转发给新的负责节点
+            assertEquals(1, nodes.get(1).searchTrans(req).getTotal(), "user" + i);
+            assertEquals(1, nodes.get(2).searchTrans(req).getTotal(), "user" + i);
+        }
+        TransQryRequest all = new TransQryRequest();
+        all.setPageSize(200);
+        assertEquals(ids.stream().sorted().toList(),
+                nodes.get(0).searchTrans(all).getTransList().stream().map(TransDataDto::getTransactionId).toList());
+    }
+
+    @Test
+    void updateMembers_BroadcastFails_NoNodeSwitchesRing() throws Exception {
+        startCluster(2);
+        List<ClusterMember> before = members();
+        for (int i = 0; i < 20; i++) {
+            nodes.get(0).addTransaction(createTransaction("user" + i, "1"));
+        }
+        // 第三个成员无法连接，已接受的node2恢复为原成员列表
+        List<ClusterMember> withUnreachable = new ArrayList<>(before);
+        withUnreachable.add(new ClusterMember("node9", "localhost", 1, 9));
+        assertThrows(TransException.class, () -> nodes.get(0).updateMembers(withUnreachable, true));
+        for (ClusterNode node : nodes) {
+            node.awaitRebalance(5000);
+            assertEquals(before, node.getMembers());
+        }
+        assertEquals(20, caches.stream().mapToLong(Cache::estimatedSize).sum());
+    }
+
+    @Test
+    void members_DuplicateOrMismatchedSlots_Rejected() throws Exception {
+        startCluster(2);
+        ClusterNode node = nodes.get(0);
+        List<ClusterMember> duplicate = List.of(new ClusterMember("node1", "localhost", node.getPort(), 1),
+                new ClusterMember("node2", "localhost", nodes.get(1).getPort(), 1));
+        assertThrows(TransException.class, () -> node.updateMembers(duplicate, false));
+        List<ClusterMember> mismatched = List.of(new ClusterMember("node1", "localhost", node.getPort(), 7),
+                new ClusterMember("node2", "localhost", nodes.get(1).getPort(), 2));
+        assertThrows(TransException.class, () -> node.updateMembers(mismatched, false));
+
+        // 未显式配置槽位、或配置的成员列表中槽位重复时拒绝启动
+        TransactionService service = new TransactionService(Caffeine.newBuilder().build(), Caffeine.newBuilder().build(),
+                Caffeine.newBuilder().build(), new CacheLockManager());
+        assertThrows(IllegalArgumentException.class,
+                () -> new ClusterNode(service, Caffeine.newBuilder().build(), "node3", 0, 64, -1, 3000, ""));
+        ClusterNode conflicting = new ClusterNode(service, Caffeine.newBuilder().build(), "node3", 0, 64, 3, 3000,
+                "node1@localhost:" + node.getPort() + "/1,node3@localhost:1/1");
+        assertThrows(TransException.class, conflicting::start);
+        assertEquals(List.of(new ClusterMember("node1", "localhost", 9400, 5)),
+                List.of(ClusterMember.parse(" node1@localhost:9400/5 ")));
+    }
+
+    @Test
+    void generateTransactionId_NodeSequenceExhausted_Rejected() {
+        Cache<String, Transaction> mainCache = Caffeine.newBuilder().build();
+        TransactionService service = new TransactionService(mainCache, Caffeine.newBuilder().build(),
+                Caffeine.newBuilder().build(), new CacheLockManager());
+        service.setIdNodeSlot(3);
+        String prefix = "T" + DateUtil.format(new Date(), "yyyyMMdd") + "03";
+        assertEquals(prefix + "000001", service.generateTransactionId());
+
+        Transaction last = createTransaction("user1", "1");
+        last.setTransactionId(prefix + "999999");
+        service.upsertTransaction(last);
+        assertThrows(TransException.class, service::generateTransactionId);
+    }
+
+    private Transaction createTransaction(String userId, String merchantId) {
+        Transaction transaction = new Transaction();
+        transaction.setUserId(userId);
+        transaction.setMerchantId(merchantId);
+        transaction.setAmount(new BigDecimal("12.34"));
+        return transaction;
+    }
+}
@@ -0,0 +1,30 @@
+package com.hsbc.interview.common;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConcurrentBloomFilterTest {
+
+    @Test
+    void mightContain_AfterConcurrentPut_NoFalseNegative() {
+        ConcurrentBloomFilter filter = new ConcurrentBloomFilter(100000, 0.01);
+
+        IntStream.range(0, 100000).parallel().forEach(i -> filter.put("T20251019" + i));
+
+        IntStream.range(0, 100000).forEach(i -> assertTrue(filter.mightContain("T20251019" + i)));
+    }
+
+    @Test
+    void mightContain_UnknownValues_FalsePositiveRateWithinBound() {
+        ConcurrentBloomFilter filter = new ConcurrentBloomFilter(100000, 0.01);
+        IntStream.range(0, 100000).forEach(i -> filter.put("user" + i));
+
+        long falsePositives = IntStream.range(0, 100000).filter(i -> filter.mightContain("probe" + i)).count();
+
+        assertTrue(falsePositives < 2000, "误判数量过多: " + falsePositives);
+        assertTrue(filter.currentFpp() < 0.02);
+    }
+}
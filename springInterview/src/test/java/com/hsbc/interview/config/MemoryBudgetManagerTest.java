@@ -0,0 +1,185 @@
+package com.hsbc.interview.config;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.hsbc.interview.dto.TransQryRequest;
+import com.hsbc.interview.entity.Transaction;
+import com.hsbc.interview.service.AmountOrderedIndex;
+import com.hsbc.interview.service.OrderedIdIndex;
+import com.hsbc.interview.service.TransactionQueryPlanner;
+import com.hsbc.interview.service.TransactionService;
+import com.hsbc.interview.storage.SegmentDiskTier;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+
+import java.math.BigDecimal;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MemoryBudgetManagerTest {
+
+    private static final long MB = 1024 * 1024;
+
+    // 每个条目约1KB
+    private static Cache<Integer, byte[]> cache(long maxBytes) {
+        return Caffeine.newBuilder()
+                .maximumWeight(maxBytes)
+                .weigher((Integer key, byte[] value) -> value.length)
+                .executor(Runnable::run)
+                .build();
+    }
+
+    private static void fill(Cache<Integer, byte[]> cache, int entries) {
+        for (int i = 0; i < entries; i++) {
+            cache.put(i, new byte[1024]);
+        }
+    }
+
+    private static long used(Cache<?, ?> cache) {
+        cache.cleanUp();
+        return cache.policy().eviction().orElseThrow().weightedSize().orElseThrow();
+    }
+
+    @Test
+    void rebalance_LowPriorityShrinksFirstAndTotalStaysWithinBudget() {
+        // 预算4MB，主缓存保底1MB，查询缓存保底0
+        MemoryBudgetManager manager = new MemoryBudgetManager(true, 4, 20, 10, 1, 0);
+        Cache<Integer, byte[]> main = cache(manager.getBudgetBytes());
+        Cache<Integer, byte[]> query = cache(2 * MB);
+        Cache<String, Set<String>> index = Caffeine.newBuilder()
+                .maximumWeight(Long.MAX_VALUE)
+                .weigher((String key, Set<String> ids) -> MemoryBudgetManager.weigh(key, ids))
+                .build();
+        manager.register(MemoryBudgetManager.MAIN_CACHE, main, true);
+        manager.register(MemoryBudgetManager.QUERY_CACHE, query, true);
+        manager.register(MemoryBudgetManager.USER_INDEX, index, false);
+
+        fill(query, 2000);
+        fill(main, 3000);
+        manager.rebalance();
+        fill(query, 2000);
+        fill(main, 3000);
+        // 查询缓存不超过自身的上限2MB，主缓存优先使用剩余预算
+        assertTrue(used(query) <= 2 * MB);
+        assertTrue(used(main) + used(query) <= 4 * MB);
+
+        // 索引增长到约2.5MB后，查询缓存先被压缩，主缓存仍保留保底额度之上的部分
+        for (int i = 0; i < 250; i++) {
+            Set<String> ids = new HashSet<>();
+            for (int j = 0; j < 100; j++) {
+                ids.add("T" + i + "-" + j);
+            }
+            index.put("U" + i, ids);
+        }
+        long pinned = used(index);
+        assertTrue(pinned > 2 * MB && pinned < 3 * MB, "索引用量 " + pinned);
+        manager.rebalance();
+        fill(main, 3000);
+        manager.rebalance();
+        assertTrue(used(main) >= MB);
+        assertTrue(used(main) + used(query) + pinned <= 4 * MB + 1024);
+        assertTrue(used(query) < 512 * 1024);
+        assertEquals(false, manager.metrics().get("overBudget"));
+
+        // 索引加保底额度超过预算：标记超预算，主缓存仍保留保底额度
+        for (int i = 250; i < 400; i++) {
+            Set<String> ids = new HashSet<>();
+            for (int j = 0; j < 100; j++) {
+                ids.add("T" + i + "-" + j);
+            }
+            index.put("U" + i, ids);
+        }
+        manager.rebalance();
+        fill(main, 3000);
+        Map<String, Object> metrics = manager.metrics();
+        assertEquals(true, metrics.get("overBudget"));
+        assertTrue(used(main) >= MB - 1024 && used(main) <= MB);
+        assertEquals(0L, used(query));
+    }
+
+    @Test
+    void registerPinned_CountsTowardsBudgetAndReportedInMetrics() {
+        MemoryBudgetManager manager = new MemoryBudgetManager(true, 4, 20, 10, 0, 0);
+        Cache<Integer, byte[]> main = cache(manager.getBudgetBytes());
+        manager.register(MemoryBudgetManager.MAIN_CACHE, main, true);
+        AtomicLong shadowBytes = new AtomicLong(3 * MB);
+        manager.registerPinned(MemoryBudgetManager.SNAPSHOT_INDEX, shadowBytes::get, () -> 42);
+        AmountOrderedIndex amountIndex = new AmountOrderedIndex();
+        amountIndex.setMemoryBudgetManager(manager);
+        TransactionQueryPlanner planner = new TransactionQueryPlanner(2, 1000, 100);
+        planner.setMemoryBudgetManager(manager);
+
+        // 常驻结构占用3MB，主缓存只能使用剩余的1MB
+        fill(main, 4000);
+        manager.rebalance();
+        fill(main, 4000);
+        assertTrue(used(main) <= MB, "主缓存用量 " + used(main));
+
+        @SuppressWarnings("unchecked")
+        Map<String, Map<String, Object>> caches = (Map<String, Map<String, Object>>) manager.metrics().get("caches");
+        assertEquals(3 * MB, caches.get(MemoryBudgetManager.SNAPSHOT_INDEX).get("usedBytes"));
+        assertEquals(42L, caches.get(MemoryBudgetManager.SNAPSHOT_INDEX).get("entries"));
+        assertEquals(false, caches.get(MemoryBudgetManager.SNAPSHOT_INDEX).get("evictable"));
+        assertTrue(caches.containsKey(MemoryBudgetManager.AMOUNT_INDEX));
+        assertEquals(true, caches.get(MemoryBudgetManager.COMPOSITE_INDEX).get("evictable"));
+        assertTrue((Long) manager.metrics().get("usedBytes") >= 3 * MB);
+
+        // 常驻结构超过预算时标记超预算
+        shadowBytes.set(5 * MB);
+        manager.rebalance();
+        assertEquals(true, manager.metrics().get("overBudget"));
+    }
+
+    @Test
+    void mainCache_CapacityEvictionWithoutTier_RemovesIndexEntries() {
+        DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+        MemoryBudgetManager memoryBudget = new MemoryBudgetManager(false, 0, 20, 10, 0, 0);
+        CacheConfig config = new CacheConfig();
+        Cache<String, Transaction> mainCache = config.mainCache(new OrderedIdIndex(),
+                beanFactory.getBeanProvider(SegmentDiskTier.class),
+                beanFactory.getBeanProvider(TransactionService.class), memoryBudget, 100);
+        Cache<String, Set<String>> userIndexCache = Caffeine.newBuilder().build();
+        Cache<String, Set<String>> merchantIndexCache = Caffeine.newBuilder().build();
+        TransactionService service = new TransactionService(mainCache, userIndexCache, merchantIndexCache,
+                new CacheLockManager());
+        AmountOrderedIndex amountIndex = new AmountOrderedIndex();
+        service.setAmountIndex(amountIndex);
+        service.setMutationListeners(List.of(amountIndex));
+        beanFactory.registerSingleton("transactionService", service);
+
+        for (int i = 0; i < 300; i++) {
+            Transaction transaction = new Transaction();
+            transaction.setUserId("user1");
+            transaction.setMerchantId("1");
+            transaction.setAmount(BigDecimal.ONE);
+            service.addTransaction(transaction);
+        }
+        mainCache.cleanUp();
+
+        // 被淘汰的交易不再留在索引中，索引与派生索引的条数与主缓存一致
+        long stored = mainCache.estimatedSize();
+        assertEquals(100, stored);
+        assertEquals(stored, userIndexCache.getIfPresent("user1").size());
+        assertEquals(stored, merchantIndexCache.getIfPresent("1").size());
+        assertEquals(stored, amountIndex.userSize("user1"));
+        TransQryRequest req = new TransQryRequest();
+        req.setUserId("user1");
+        assertEquals(stored, service.searchTrans(req).getTotal().longValue());
+    }
+
+    @Test
+    void disabled_RegisterIsNoop() {
+        MemoryBudgetManager manager = new MemoryBudgetManager(false, 1, 20, 10, 0, 0);
+        Cache<Integer, byte[]> query = cache(2 * MB);
+        manager.register(MemoryBudgetManager.QUERY_CACHE, query, true);
+        manager.rebalance();
+        assertEquals(2 * MB, query.policy().eviction().orElseThrow().getMaximum());
+        assertThrows(IllegalArgumentException.class, () -> new MemoryBudgetManager(true, 1, 20, 10, 0, 0)
+                .register(MemoryBudgetManager.QUERY_CACHE, Caffeine.newBuilder().maximumSize(10).build(), true));
+    }
+}
@@ -0,0 +1,81 @@
+package com.hsbc.interview.loadtest;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 单个接口的延迟与错误统计
+ * 各客户端线程无锁写入Recorder，采样线程按区间取出区间直方图并累加到全程直方图，
+ * 因此浸泡测试既能输出每个区间的分位数，也能输出全程的分位数
+ * @author wangwei
+ * @date 2026-10-19
+ */
+final class EndpointStats {
+
+    private final String name;
+
+    private final Recorder recorder = new Recorder(3);
+
+    private final Histogram total = new Histogram(3);
+
+    private final Map<String, LongAdder> errors = new ConcurrentHashMap<>();
+
+    private final LongAdder intervalErrors = new LongAdder();
+
+    private Histogram interval;
+
+    EndpointStats(String name) {
+        this.name = name;
+    }
+
+    String name() {
+        return name;
+    }
+
+    void record(long latencyNanos) {
+        recorder.recordValue(Math.max(1, latencyNanos / 1000));
+    }
+
+    void error(String code) {
+        errors.computeIfAbsent(code, key -> new LongAdder()).increment();
+        intervalErrors.increment();
+    }
+
+    /**
+     * 结束当前区间，返回本区间的直方图（微秒）
+     */
+    synchronized Histogram sampleInterval() {
+        interval = recorder.getIntervalHistogram(interval);
+        total.add(interval);
+        return interval;
+    }
+
+    long takeIntervalErrors() {
+        return intervalErrors.sumThenReset();
+    }
+
+    /**
+     * 丢弃预热阶段的数据
+     */
+    synchronized void reset() {
+        recorder.reset();
+        total.reset();
+        errors.clear();
+        intervalErrors.reset();
+    }
+
+    synchronized Histogram total() {
+        return total.copy();
+    }
+
+    Map<String, Long> errors() {
+        Map<String, Long> snapshot = new TreeMap<>();
+        errors.forEach((code, count) -> snapshot.put(code, count.sum()));
+        return snapshot;
+    }
+}
@@ -0,0 +1,455 @@
+package com.hsbc.interview.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hsbc.interview.MyApplication;
+import org.HdrHistogram.Histogram;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * REST接口压测与浸泡测试
+ * 每个客户端一个虚拟线程，按配置的比例发送 createTrans/getTransData/updateTrans/deleteTrans：
+ * 用户按Zipf分布选取，少数热点商户承担大部分流量；更新与删除针对本次压测新建的交易。
+ * loadtest.rate为0时为闭环压测（每个客户端收到响应后立即发下一个请求），
+ * 大于0时按固定总速率发送，延迟从计划发送时间开始计算，避免服务变慢时少发请求造成的延迟低估。
+ * 输出每个接口的吞吐量与HDR延迟分位；浸泡模式按区间记录 /metrics 中的堆内存、GC与缓存规模并计算增长斜率
+ * 运行：mvn -Ploadtest test-compile exec:exec [-Dloadtest.target=http://host:port] [-Dloadtest.soak=true]
+ * @author wangwei
+ * @date 2026-10-19
+ */
+public class LoadTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private static final String CREATE = "createTrans";
+    private static final String QUERY = "getTransData";
+    private static final String UPDATE = "updateTrans";
+    private static final String DELETE = "deleteTrans";
+
+    // 最近新建的交易 [流水号, 用户ID, 商户ID]，供更新与删除使用
+    private static final int RECENT_CAPACITY = 1 << 16;
+
+    private final String target;
+    private final long durationSeconds;
+    private final long warmupSeconds;
+    private final int clients;
+    private final double rate;
+    private final int users;
+    private final int merchants;
+    private final int hotMerchants;
+    private final double hotShare;
+    private final int preload;
+    private final boolean soak;
+    private final long sampleSeconds;
+
+    // 按比例选择接口：累计权重
+    private final String[] mixEndpoints;
+    private final int[] mixWeights;
+    private final int mixTotal;
+
+    private final ZipfSampler userSampler;
+
+    private final Map<String, EndpointStats> stats = new LinkedHashMap<>();
+
+    private final AtomicReferenceArray<String[]> recent = new AtomicReferenceArray<>(RECENT_CAPACITY);
+    private final AtomicLong recentCursor = new AtomicLong();
+
+    private final HttpClient httpClient;
+
+    private volatile boolean running = true;
+
+    private final List<Map<String, Object>> soakSamples = new ArrayList<>();
+
+    LoadTest(String target) {
+        this.target = target;
+        this.durationSeconds = Long.getLong("loadtest.duration", 60);
+        this.warmupSeconds = Long.getLong("loadtest.warmup", 10);
+        this.clients = Integer.getInteger("loadtest.clients", 64);
+        this.rate = Double.parseDouble(System.getProperty("loadtest.rate", "0"));
+        this.users = Integer.getInteger("loadtest.users", 100000);
+        this.merchants = Integer.getInteger("loadtest.merchants", 50);
+        this.hotMerchants = Math.min(merchants, Integer.getInteger("loadtest.hot-merchants", 3));
+        this.hotShare = Double.parseDouble(System.getProperty("loadtest.hot-share", "0.8"));
+        this.preload = Integer.getInteger("loadtest.preload", 10000);
+        this.soak = Boolean.getBoolean("loadtest.soak");
+        this.sampleSeconds = Math.max(1, Long.getLong("loadtest.sample", 10));
+        this.userSampler = new ZipfSampler(users, Double.parseDouble(System.getProperty("loadtest.zipf", "1.1")));
+
+        String[] parts = System.getProperty("loadtest.mix", "create=20,query=65,update=10,delete=5").split(",");
+        mixEndpoints = new String[parts.length];
+        mixWeights = new int[parts.length];
+        int sum = 0;
+        for (int i = 0; i < parts.length; i++) {
+            String[] pair = parts[i].trim().split("=");
+            mixEndpoints[i] = switch (pair[0].trim()) {
+                case "create" -> CREATE;
+                case "query" -> QUERY;
+                case "update" -> UPDATE;
+                case "delete" -> DELETE;
+                default -> throw new IllegalArgumentException("未知的接口: " + pair[0]);
+            };
+            sum += Integer.parseInt(pair[1].trim());
+            mixWeights[i] = sum;
+        }
+        this.mixTotal = sum;
+        for (String endpoint : List.of(CREATE, QUERY, UPDATE, DELETE)) {
+            stats.put(endpoint, new EndpointStats(endpoint));
+        }
+        this.httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+    }
+
+    public static void main(String[] args) throws Exception {
+        String target = System.getProperty("loadtest.target", "");
+        ConfigurableApplicationContext context = null;
+        if (target.isBlank()) {
+            // 进程内启动应用，随机端口；压测服务本身的容量，关闭按租户限流（热点商户的流量会超过默认限额）
+            context = SpringApplication.run(MyApplication.class, "--server.port=0", "--logging.level.root=WARN",
+                    "--trans.rate-limit.enabled=false");
+            int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+            target = "http://localhost:" + port;
+        }
+        try {
+            new LoadTest(target.replaceAll("/+$", "")).run();
+        } finally {
+            if (context != null) {
+                context.close();
+            }
+        }
+        System.exit(0);
+    }
+
+    void run() throws Exception {
+        System.out.printf("目标 %s，客户端 %d，%s，时长 %ds（预热 %ds），比例 %s，用户 %d（Zipf），商户 %d（热点 %d 占 %.0f%%）%n",
+                target, clients, rate > 0 ? String.format("固定速率 %.0f/s", rate) : "闭环", durationSeconds,
+                warmupSeconds, System.getProperty("loadtest.mix", "create=20,query=65,update=10,delete=5"),
+                users, merchants, hotMerchants, hotShare * 100);
+        preload();
+
+        ExecutorService clientThreads = Executors.newVirtualThreadPerTaskExecutor();
+        for (int i = 0; i < clients; i++) {
+            int clientIndex = i;
+            clientThreads.submit(() -> clientLoop(clientIndex));
+        }
+        if (warmupSeconds > 0) {
+            TimeUnit.SECONDS.sleep(warmupSeconds);
+            stats.values().forEach(EndpointStats::reset);
+        }
+        long start = System.nanoTime();
+        long end = start + TimeUnit.SECONDS.toNanos(durationSeconds);
+        long lastSample = start;
+        if (soak) {
+            sampleRuntime(0);
+        }
+        while (System.nanoTime() < end) {
+            long next = Math.min(end, lastSample + TimeUnit.SECONDS.toNanos(sampleSeconds));
+            LockSupport.parkNanos(next - System.nanoTime());
+            long now = System.nanoTime();
+            printInterval((now - start) / 1_000_000_000D, (now - lastSample) / 1_000_000_000D);
+            if (soak) {
+                sampleRuntime((now - start) / 1_000_000_000D);
+            }
+            lastSample = now;
+        }
+        running = false;
+        clientThreads.shutdown();
+        clientThreads.awaitTermination(30, TimeUnit.SECONDS);
+        printSummary((System.nanoTime() - start) / 1_000_000_000D);
+        if (soak) {
+            printSoakSummary();
+        }
+    }
+
+    // 预先创建一批交易，使查询、更新与删除从开始就有数据
+    private void preload() throws InterruptedException {
+        if (preload <= 0) {
+            return;
+        }
+        long start = System.nanoTime();
+        ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+        AtomicLong remaining = new AtomicLong(preload);
+        for (int i = 0; i < clients; i++) {
+            executor.submit(() -> {
+                while (remaining.getAndDecrement() > 0) {
+                    try {
+                        send(CREATE, createBody(), null);
+                    } catch (Exception e) {
+                        // 预加载失败不影响后续压测
+                    }
+                }
+            });
+        }
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.MINUTES);
+        stats.values().forEach(EndpointStats::reset);
+        System.out.printf("预加载 %d 条交易，用时 %.1fs%n", preload, (System.nanoTime() - start) / 1e9);
+    }
+
+    private void clientLoop(int clientIndex) {
+        long interval = rate > 0 ? (long) (clients * 1_000_000_000D / rate) : 0;
+        // 各客户端错开起始时间，避免固定速率下的同步突发
+        long intended = System.nanoTime() + (interval > 0 ? ThreadLocalRandom.current().nextLong(interval) : 0);
+        while (running) {
+            if (interval > 0) {
+                long wait = intended - System.nanoTime();
+                if (wait > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+            }
+            long start = interval > 0 ? intended : System.nanoTime();
+            String endpoint = pickEndpoint();
+            try {
+                execute(endpoint, start);
+            } catch (Exception e) {
+                stats.get(endpoint).error(e.getClass().getSimpleName());
+            }
+            intended += interval;
+        }
+    }
+
+    private String pickEndpoint() {
+        int value = ThreadLocalRandom.current().nextInt(mixTotal);
+        for (int i = 0; i < mixWeights.length; i++) {
+            if (value < mixWeights[i]) {
+                return mixEndpoints[i];
+            }
+        }
+        return mixEndpoints[mixEndpoints.length - 1];
+    }
+
+    private void execute(String endpoint, long start) throws Exception {
+        switch (endpoint) {
+            case UPDATE -> {
+                String[] created = pickRecent(false);
+                if (created == null) {
+                    send(CREATE, createBody(), start);
+                    return;
+                }
+                Map<String, Object> body = new LinkedHashMap<>();
+                body.put("transactionId", created[0]);
+                body.put("userId", created[1]);
+                body.put("merchantId", created[2]);
+                body.put("amount", randomAmount());
+                send(UPDATE, body, start);
+            }
+            case DELETE -> {
+                String[] created = pickRecent(true);
+                if (created == null) {
+                    send(CREATE, createBody(), start);
+                    return;
+                }
+                send(DELETE, Map.of("transactionId", created[0], "userId", created[1]), start);
+            }
+            case QUERY -> send(QUERY, queryBody(), start);
+            default -> send(CREATE, createBody(), start);
+        }
+    }
+
+    private void send(String endpoint, Map<String, Object> body, Long start) throws Exception {
+        long begin = start != null ? start : System.nanoTime();
+        HttpRequest request = HttpRequest.newBuilder(URI.create(target + "/transaction/" + endpoint))
+                .timeout(Duration.ofSeconds(30))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(MAPPER.writeValueAsBytes(body)))
+                .build();
+        HttpResponse<byte[]> response = httpClient.send(request, HttpResponse.BodyHandlers.ofByteArray());
+        long latency = System.nanoTime() - begin;
+        EndpointStats endpointStats = stats.get(endpoint);
+        endpointStats.record(latency);
+        JsonNode json = response.statusCode() == 200 ? MAPPER.readTree(response.body()) : null;
+        String code = json == null ? "http" + response.statusCode() : json.path("code").asText();
+        if (!"200".equals(code)) {
+            endpointStats.error(code);
+            return;
+        }
+        if (CREATE.equals(endpoint)) {
+            long slot = recentCursor.getAndIncrement() & (RECENT_CAPACITY - 1);
+            recent.set((int) slot, new String[]{json.path("data").asText(), (String) body.get("userId"),
+                    (String) body.get("merchantId")});
+        }
+    }
+
+    private String[] pickRecent(boolean remove) {
+        for (int attempt = 0; attempt < 4; attempt++) {
+            int slot = ThreadLocalRandom.current().nextInt(RECENT_CAPACITY);
+            String[] created = remove ? recent.getAndSet(slot, null) : recent.get(slot);
+            if (created != null) {
+                return created;
+            }
+        }
+        return null;
+    }
+
+    private String userId() {
+        return "u" + userSampler.next();
+    }
+
+    private String merchantId() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        if (random.nextDouble() < hotShare || hotMerchants >= merchants) {
+            return String.valueOf(1 + random.nextInt(Math.max(1, hotMerchants)));
+        }
+        return String.valueOf(1 + hotMerchants + random.nextInt(merchants - hotMerchants));
+    }
+
+    private static BigDecimal randomAmount() {
+        // 金额大致服从对数均匀分布，1到10000元
+        double value = Math.pow(10, ThreadLocalRandom.current().nextDouble(0, 4));
+        return BigDecimal.valueOf(value).setScale(2, RoundingMode.HALF_UP);
+    }
+
+    private Map<String, Object> createBody() {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("userId", userId());
+        body.put("merchantId", merchantId());
+        body.put("amount", randomAmount());
+        return body;
+    }
+
+    // 查询：按用户、按商户、用户+商户、带金额区间的用户查询，页码集中在前几页
+    private Map<String, Object> queryBody() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Map<String, Object> body = new LinkedHashMap<>();
+        int kind = random.nextInt(10);
+        if (kind < 5) {
+            body.put("userId", userId());
+        } else if (kind < 7) {
+            body.put("merchantId", merchantId());
+        } else if (kind < 9) {
+            body.put("userId", userId());
+            body.put("merchantId", merchantId());
+        } else {
+            body.put("userId", userId());
+            body.put("minAmount", 100);
+        }
+        body.put("page", 1 + (random.nextInt(10) < 8 ? 0 : random.nextInt(5)));
+        body.put("pageSize", 10);
+        return body;
+    }
+
+    private void printInterval(double elapsed, double seconds) {
+        StringBuilder line = new StringBuilder(String.format("[%6.0fs]", elapsed));
+        for (EndpointStats endpointStats : stats.values()) {
+            Histogram interval = endpointStats.sampleInterval();
+            long errors = endpointStats.takeIntervalErrors();
+            if (interval.getTotalCount() == 0 && errors == 0) {
+                continue;
+            }
+            line.append(String.format("  %s %.0f/s p99=%.1fms", endpointStats.name(),
+                    interval.getTotalCount() / seconds, interval.getValueAtPercentile(99) / 1000D));
+            if (errors > 0) {
+                line.append(" err=").append(errors);
+            }
+        }
+        System.out.println(line);
+    }
+
+    private void printSummary(double seconds) {
+        System.out.println();
+        System.out.printf("%-14s %10s %10s %9s %9s %9s %9s %9s %s%n", "接口", "请求数", "吞吐/s",
+                "p50(ms)", "p90(ms)", "p99(ms)", "p99.9(ms)", "max(ms)", "错误");
+        long totalCount = 0;
+        for (EndpointStats endpointStats : stats.values()) {
+            endpointStats.sampleInterval();
+            Histogram histogram = endpointStats.total();
+            long count = histogram.getTotalCount();
+            totalCount += count;
+            if (count == 0) {
+                continue;
+            }
+            System.out.printf("%-14s %10d %10.0f %9.2f %9.2f %9.2f %9.2f %9.2f %s%n", endpointStats.name(), count,
+                    count / seconds, histogram.getValueAtPercentile(50) / 1000D,
+                    histogram.getValueAtPercentile(90) / 1000D, histogram.getValueAtPercentile(99) / 1000D,
+                    histogram.getValueAtPercentile(99.9) / 1000D, histogram.getMaxValue() / 1000D,
+                    endpointStats.errors());
+        }
+        System.out.printf("合计 %d 请求，%.0f/s%n", totalCount, totalCount / seconds);
+    }
+
+    // 读取服务端 /metrics 中的运行时指标
+    private void sampleRuntime(double elapsed) {
+        try {
+            HttpRequest request = HttpRequest.newBuilder(URI.create(target + "/metrics"))
+                    .timeout(Duration.ofSeconds(10)).GET().build();
+            JsonNode runtime = MAPPER.readTree(httpClient.send(request, HttpResponse.BodyHandlers.ofByteArray()).body())
+                    .path("data").path("runtime");
+            if (runtime.isMissingNode()) {
+                return;
+            }
+            Map<String, Object> sample = new LinkedHashMap<>();
+            sample.put("elapsed", elapsed);
+            runtime.fields().forEachRemaining(field -> sample.put(field.getKey(), field.getValue().asDouble()));
+            soakSamples.add(sample);
+            System.out.printf("         heap=%.0fMB oldAfterGc=%.0fMB gc=%.0f(%.0fms) mainCache=%.0f userKeys=%.0f merchantKeys=%.0f%n",
+                    value(sample, "heapUsedMb"), value(sample, "oldGenAfterGcMb"), value(sample, "gcCount"),
+                    value(sample, "gcTimeMillis"), value(sample, "mainCacheSize"), value(sample, "userIndexKeys"),
+                    value(sample, "merchantIndexKeys"));
+        } catch (Exception e) {
+            System.out.println("         读取运行时指标失败: " + e.getMessage());
+        }
+    }
+
+    private static double value(Map<String, Object> sample, String key) {
+        Object value = sample.get(key);
+        return value instanceof Double number ? number : 0D;
+    }
+
+    private void printSoakSummary() {
+        if (soakSamples.size() < 3) {
+            System.out.println("浸泡测试采样点不足，无法计算增长趋势");
+            return;
+        }
+        // 丢掉第一个区间（堆与缓存的初始爬升），其余采样点做最小二乘拟合，斜率为每分钟增长量
+        List<Map<String, Object>> samples = soakSamples.subList(1, soakSamples.size());
+        Map<String, Object> first = samples.get(0);
+        Map<String, Object> last = samples.get(samples.size() - 1);
+        double minutes = (value(last, "elapsed") - value(first, "elapsed")) / 60D;
+        System.out.println();
+        System.out.printf("浸泡测试 %.1f 分钟：%n", minutes);
+        for (String key : List.of("heapUsedMb", "oldGenAfterGcMb", "mainCacheSize", "userIndexKeys",
+                "merchantIndexKeys", "threads")) {
+            System.out.printf("  %-18s %10.0f -> %10.0f  斜率 %+.2f/分钟%n", key, value(first, key), value(last, key),
+                    slopePerMinute(samples, key));
+        }
+        double gcCount = value(last, "gcCount") - value(first, "gcCount");
+        double gcMillis = value(last, "gcTimeMillis") - value(first, "gcTimeMillis");
+        System.out.printf("  GC %.0f 次，累计 %.0fms，占墙钟时间 %.2f%%%n", gcCount, gcMillis,
+                minutes <= 0 ? 0D : gcMillis / (minutes * 600D));
+    }
+
+    private static double slopePerMinute(List<Map<String, Object>> samples, String key) {
+        double n = samples.size();
+        double sumX = 0, sumY = 0, sumXY = 0, sumXX = 0;
+        for (Map<String, Object> sample : samples) {
+            double x = value(sample, "elapsed") / 60D;
+            double y = value(sample, key);
+            sumX += x;
+            sumY += y;
+            sumXY += x * y;
+            sumXX += x * x;
+        }
+        double denominator = n * sumXX - sumX * sumX;
+        return denominator == 0 ? 0D : (n * sumXY - sumX * sumY) / denominator;
+    }
+}
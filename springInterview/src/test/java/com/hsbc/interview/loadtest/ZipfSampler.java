@@ -0,0 +1,36 @@
+package com.hsbc.interview.loadtest;
+
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Zipf分布采样：第k个元素（k从1开始）被选中的概率与 1/k^s 成正比，
+ * 预先计算累计分布，采样时二分查找，n在百万以内时内存与耗时都可以忽略
+ * @author wangwei
+ * @date 2026-10-19
+ */
+final class ZipfSampler {
+
+    private final double[] cumulative;
+
+    ZipfSampler(int n, double exponent) {
+        cumulative = new double[Math.max(1, n)];
+        double sum = 0;
+        for (int k = 1; k <= cumulative.length; k++) {
+            sum += 1D / Math.pow(k, exponent);
+            cumulative[k - 1] = sum;
+        }
+        for (int i = 0; i < cumulative.length; i++) {
+            cumulative[i] /= sum;
+        }
+    }
+
+    /**
+     * @return 0到n-1之间的下标，下标越小被选中的概率越高
+     */
+    int next() {
+        double value = ThreadLocalRandom.current().nextDouble();
+        int index = Arrays.binarySearch(cumulative, value);
+        return Math.min(cumulative.length - 1, index >= 0 ? index : -index - 1);
+    }
+}
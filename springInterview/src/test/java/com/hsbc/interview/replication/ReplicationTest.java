@@ -0,0 +1,164 @@
+package com.hsbc.interview.replication;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.hsbc.interview.common.TransException;
+import com.hsbc.interview.config.CacheLockManager;
+import com.hsbc.interview.dto.TransQryRequest;
+import com.hsbc.interview.entity.Transaction;
+import com.hsbc.interview.service.TransactionService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 在本机不同端口上启动一个主节点和多个从节点，验证增量复制、快照追赶与同步确认
+ */
+class ReplicationTest {
+
+    private final List<Runnable> cleanups = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        cleanups.forEach(Runnable::run);
+    }
+
+    /**
+     * 单个节点：独立的缓存与交易服务
+     */
+    private record Node(TransactionService service, Cache<String, Transaction> mainCache) {
+    }
+
+    private Node newNode() {
+        Cache<String, Transaction> mainCache = Caffeine.newBuilder().build();
+        Cache<String, Set<String>> userIndexCache = Caffeine.newBuilder().build();
+        Cache<String, Set<String>> merchantIndexCache = Caffeine.newBuilder().build();
+        return new Node(new TransactionService(mainCache, userIndexCache, merchantIndexCache, new CacheLockManager()), mainCache);
+    }
+
+    private ReplicationLeader startLeader(Node node, String ackMode, int logCapacity) throws Exception {
+        ReplicationLeader leader = new ReplicationLeader(node.mainCache(), 0, ackMode, 2000, 1, logCapacity);
+        node.service().setMutationListeners(List.of(leader));
+        leader.start();
+        cleanups.add(leader::stop);
+        return leader;
+    }
+
+    private ReplicationFollower startFollower(Node node, ReplicationLeader leader) {
+        ReplicationFollower follower = new ReplicationFollower(node.service(), node.mainCache(), "localhost", leader.getPort(), 100);
+        follower.start();
+        cleanups.add(follower::stop);
+        return follower;
+    }
+
+    @Test
+    void followers_ReplayAddUpdateDelete_ConvergeWithLeader() throws Exception {
+        Node leaderNode = newNode();
+        ReplicationLeader leader = startLeader(leaderNode, "async", 1000);
+        Node followerNode1 = newNode();
+        Node followerNode2 = newNode();
+        ReplicationFollower follower1 = startFollower(followerNode1, leader);
+        ReplicationFollower follower2 = startFollower(followerNode2, leader);
+
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            ids.add(leaderNode.service().addTransaction(createTransaction("user" + (i % 5), String.valueOf(i % 3 + 1))));
+        }
+        Transaction update = createTransaction("user0", "3");
+        update.setTransactionId(ids.get(0));
+        leaderNode.service().updateTransaction(update);
+        TransQryRequest delete = new TransQryRequest();
+        delete.setTransactionId(ids.get(1));
+        delete.setUserId("user1");
+        leaderNode.service().deleteTransaction(delete);
+
+        long lastSeq = (long) leader.metrics().get("lastSeq");
+        awaitTrue(() -> follower1.getAppliedSeq() == lastSeq && follower2.getAppliedSeq() == lastSeq);
+
+        for (Node follower : List.of(followerNode1, followerNode2)) {
+            assertEquals(49, follower.mainCache().estimatedSize());
+            assertNull(follower.mainCache().getIfPresent(ids.get(1)));
+            assertEquals("3", follower.mainCache().getIfPresent(ids.get(0)).getMerchantId());
+            assertEquals(2L, follower.mainCache().getIfPresent(ids.get(0)).getVersion());
+            assertEquals(query(leaderNode, "3"), query(follower, "3"));
+        }
+    }
+
+    @Test
+    void lateFollower_BeyondLogCapacity_CatchesUpFromSnapshot() throws Exception {
+        Node leaderNode = newNode();
+        ReplicationLeader leader = startLeader(leaderNode, "async", 8);
+        for (int i = 0; i < 40; i++) {
+            leaderNode.service().addTransaction(createTransaction("user" + i, "1"));
+        }
+
+        Node followerNode = newNode();
+        ReplicationFollower follower = startFollower(followerNode, leader);
+        awaitTrue(() -> follower.getAppliedSeq() == 40);
+        // 快照之后的增量继续推送
+        leaderNode.service().addTransaction(createTransaction("user99", "2"));
+        awaitTrue(() -> follower.getAppliedSeq() == 41);
+
+        assertEquals(41, followerNode.mainCache().estimatedSize());
+        assertEquals(1L, follower.metrics().get("snapshotsLoaded"));
+    }
+
+    @Test
+    void syncAck_WriteReturns_FollowerAlreadyApplied() throws Exception {
+        Node leaderNode = newNode();
+        ReplicationLeader leader = startLeader(leaderNode, "sync", 1000);
+        Node followerNode = newNode();
+        startFollower(followerNode, leader);
+        awaitTrue(() -> ((List<?>) leader.metrics().get("followers")).stream()
+                .anyMatch(f -> Boolean.TRUE.equals(((java.util.Map<?, ?>) f).get("streaming"))));
+
+        for (int i = 0; i < 20; i++) {
+            String id = leaderNode.service().addTransaction(createTransaction("user" + i, "1"));
+            assertNotNull(followerNode.mainCache().getIfPresent(id));
+        }
+        assertEquals(0L, leader.metrics().get("syncTimeouts"));
+    }
+
+    @Test
+    void follower_RejectsClientWrites() throws Exception {
+        Node leaderNode = newNode();
+        ReplicationLeader leader = startLeader(leaderNode, "async", 1000);
+        Node followerNode = newNode();
+        startFollower(followerNode, leader);
+
+        assertThrows(TransException.class, () -> followerNode.service().addTransaction(createTransaction("user1", "1")));
+    }
+
+    private List<String> query(Node node, String merchantId) {
+        TransQryRequest request = new TransQryRequest();
+        request.setMerchantId(merchantId);
+        request.setPageSize(100);
+        return node.service().searchTrans(request).getTransList().stream()
+                .map(t -> t.getTransactionId() + "/" + t.getVersion()).toList();
+    }
+
+    private static void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) {
+                fail("等待复制完成超时");
+            }
+            Thread.sleep(20);
+        }
+    }
+
+    private Transaction createTransaction(String userId, String merchantId) {
+        Transaction transaction = new Transaction();
+        transaction.setUserId(userId);
+        transaction.setMerchantId(merchantId);
+        transaction.setAmount(new BigDecimal("12.34"));
+        return transaction;
+    }
+}
@@ -0,0 +1,121 @@
+package com.hsbc.interview.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.hsbc.interview.common.TransException;
+import com.hsbc.interview.config.CacheLockManager;
+import com.hsbc.interview.dto.TransDataDto;
+import com.hsbc.interview.dto.TransQryRequest;
+import com.hsbc.interview.dto.TransQryRsp;
+import com.hsbc.interview.entity.Transaction;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AmountOrderedIndexTest {
+
+    private TransactionService service;
+    private AmountOrderedIndex amountIndex;
+
+    @BeforeEach
+    void setUp() {
+        Cache<String, Transaction> mainCache = Caffeine.newBuilder().build();
+        Cache<String, Set<String>> userIndexCache = Caffeine.newBuilder().build();
+        Cache<String, Set<String>> merchantIndexCache = Caffeine.newBuilder().build();
+        amountIndex = new AmountOrderedIndex();
+        service = new TransactionService(mainCache, userIndexCache, merchantIndexCache, new CacheLockManager());
+        service.setAmountIndex(amountIndex);
+        service.setMutationListeners(List.of(amountIndex));
+        // 金额 i.25，用户为 user(i%10)，商户为 i%4+1
+        for (int i = 1; i <= 2000; i++) {
+            service.upsertTransaction(createTransaction(i, "user" + (i % 10), String.valueOf(i % 4 + 1),
+                    new BigDecimal(i + ".25")));
+        }
+    }
+
+    @Test
+    void merchantTopN_ReadsOnlyPageRows() {
+        TransQryRequest req = query(null, "1", null, null, null);
+        req.setPageSize(5);
+        req.setExplain(true);
+        TransQryRsp rsp = service.searchTrans(req);
+        assertEquals(500, rsp.getTotal());
+        assertEquals(List.of("2000.25", "1996.25", "1992.25", "1988.25", "1984.25"), amounts(rsp));
+        assertEquals("AMOUNT_INDEX", rsp.getPlan().getStrategy());
+        assertEquals(5L, rsp.getPlan().getExaminedRows());
+
+        // 第3页：跳过的10个索引键不读取交易
+        req.setPage(3);
+        rsp = service.searchTrans(req);
+        assertEquals("1960.25", amounts(rsp).get(0));
+        assertEquals(5L, rsp.getPlan().getExaminedRows());
+    }
+
+    @Test
+    void amountRange_AscendingAndDescending_FollowUpdatesAndDeletes() {
+        // 金额 >= 1990.25 的全部交易，边界包含
+        TransQryRequest req = query(null, null, new BigDecimal("1990.25"), null, "asc");
+        TransQryRsp rsp = service.searchTrans(req);
+        assertEquals(11, rsp.getTotal());
+        assertEquals("1990.25", amounts(rsp).get(0));
+
+        req = query(null, null, new BigDecimal("100"), new BigDecimal("200.25"), null);
+        rsp = service.searchTrans(req);
+        assertEquals(101, rsp.getTotal());
+        assertEquals("200.25", amounts(rsp).get(0));
+
+        // 更新金额后交易移到新位置，删除后不再出现
+        service.upsertTransaction(createTransaction(3, "user3", "4", new BigDecimal("99999")));
+        rsp = service.searchTrans(query(null, null, null, null, "desc"));
+        assertEquals("T2026101900000003", rsp.getTransList().get(0).getTransactionId());
+        assertEquals(2000, rsp.getTotal());
+        service.removeTransaction("T2026101900000003");
+        rsp = service.searchTrans(query(null, null, new BigDecimal("2000"), null, null));
+        assertEquals(1, rsp.getTotal());
+        assertEquals("2000.25", amounts(rsp).get(0));
+    }
+
+    @Test
+    void userAndMerchant_FiltersOtherSide_AndRejectsUnknownSort() {
+        // user1 的交易 i%10==1，其中商户2（i%4==1）为 i%20==1
+        TransQryRsp rsp = service.searchTrans(query("user1", "2", null, null, "desc"));
+        assertEquals(100, rsp.getTotal());
+        assertEquals(List.of("1981.25", "1961.25", "1941.25", "1921.25", "1901.25",
+                "1881.25", "1861.25", "1841.25", "1821.25", "1801.25"), amounts(rsp));
+
+        TransQryRequest bad = query(null, null, null, null, null);
+        bad.setSortBy("userId");
+        assertThrows(TransException.class, () -> service.searchTrans(bad));
+    }
+
+    private static List<String> amounts(TransQryRsp rsp) {
+        return rsp.getTransList().stream().map(TransDataDto::getAmount).map(BigDecimal::toPlainString).toList();
+    }
+
+    private static TransQryRequest query(String userId, String merchantId, BigDecimal minAmount, BigDecimal maxAmount,
+                                         String sortOrder) {
+        TransQryRequest req = new TransQryRequest();
+        req.setUserId(userId);
+        req.setMerchantId(merchantId);
+        req.setMinAmount(minAmount);
+        req.setMaxAmount(maxAmount);
+        req.setSortBy("amount");
+        req.setSortOrder(sortOrder);
+        return req;
+    }
+
+    private static Transaction createTransaction(int seq, String userId, String merchantId, BigDecimal amount) {
+        Transaction transaction = new Transaction();
+        transaction.setTransactionId("T20261019" + String.format("%08d", seq));
+        transaction.setUserId(userId);
+        transaction.setMerchantId(merchantId);
+        transaction.setAmount(amount);
+        transaction.setVersion(1L);
+        return transaction;
+    }
+}
@@ -0,0 +1,95 @@
+package com.hsbc.interview.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.hsbc.interview.config.CacheLockManager;
+import com.hsbc.interview.entity.Transaction;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IdempotencyGuardTest {
+
+    @Test
+    void execute_DuplicateReturnsFirstId_KeysDoNotCollideAcrossUsers() {
+        IdempotencyGuard guard = new IdempotencyGuard(600, 1000, 3000);
+        AtomicInteger calls = new AtomicInteger();
+
+        String first = guard.execute("user1", "req1", () -> "T" + calls.incrementAndGet());
+        String retry = guard.execute("user1", "req1", () -> "T" + calls.incrementAndGet());
+        assertEquals("T1", first);
+        assertEquals(first, retry);
+        assertEquals(1, calls.get());
+
+        // 拼接后同为 "a:b:c" 的两组键互不影响
+        assertEquals("T2", guard.execute("a:b", "c", () -> "T" + calls.incrementAndGet()));
+        assertEquals("T3", guard.execute("a", "b:c", () -> "T" + calls.incrementAndGet()));
+        assertEquals(3L, guard.metrics().get("firstRequests"));
+        assertEquals(1L, guard.metrics().get("duplicateRequests"));
+    }
+
+    @Test
+    void addTransaction_ConcurrentDuplicatesInsertOnce() throws Exception {
+        Cache<String, Transaction> mainCache = Caffeine.newBuilder().build();
+        Cache<String, Set<String>> userIndexCache = Caffeine.newBuilder().build();
+        TransactionService service = new TransactionService(mainCache, userIndexCache, Caffeine.newBuilder().build(),
+                new CacheLockManager());
+        service.setIdempotencyGuard(new IdempotencyGuard(600, 1000, 3000));
+
+        int threads = 16;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                results.add(executor.submit(() -> {
+                    start.await();
+                    return service.addTransaction(transaction("user1", "req-1"));
+                }));
+            }
+            start.countDown();
+            Set<String> ids = new HashSet<>();
+            for (Future<String> result : results) {
+                ids.add(result.get(10, TimeUnit.SECONDS));
+            }
+            assertEquals(1, ids.size());
+            assertEquals(1, mainCache.estimatedSize());
+            assertEquals(ids, userIndexCache.getIfPresent("user1"));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void execute_AfterWindowExpires_RunsAgain() {
+        AtomicLong nanos = new AtomicLong();
+        IdempotencyGuard guard = new IdempotencyGuard(60, 1000, 3000, nanos::get);
+        AtomicInteger calls = new AtomicInteger();
+
+        assertEquals("T1", guard.execute("user1", "req1", () -> "T" + calls.incrementAndGet()));
+        nanos.addAndGet(TimeUnit.SECONDS.toNanos(59));
+        assertEquals("T1", guard.execute("user1", "req1", () -> "T" + calls.incrementAndGet()));
+        // 超过去重窗口后按新请求处理
+        nanos.addAndGet(TimeUnit.SECONDS.toNanos(2));
+        assertEquals("T2", guard.execute("user1", "req1", () -> "T" + calls.incrementAndGet()));
+        assertEquals(2, calls.get());
+    }
+
+    private static Transaction transaction(String userId, String requestId) {
+        Transaction transaction = new Transaction();
+        transaction.setUserId(userId);
+        transaction.setMerchantId("1");
+        transaction.setRequestId(requestId);
+        transaction.setAmount(new BigDecimal("10.00"));
+        return transaction;
+    }
+}
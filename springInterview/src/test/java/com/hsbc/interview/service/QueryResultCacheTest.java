@@ -0,0 +1,101 @@
+package com.hsbc.interview.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.hsbc.interview.config.CacheLockManager;
+import com.hsbc.interview.dto.TransQryRequest;
+import com.hsbc.interview.dto.TransQryRsp;
+import com.hsbc.interview.entity.Transaction;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QueryResultCacheTest {
+
+    private TransactionService transactionService;
+    private QueryResultCache queryResultCache;
+
+    @BeforeEach
+    void setUp() {
+        Cache<String, Transaction> mainCache = Caffeine.newBuilder().build();
+        Cache<String, Set<String>> userIndexCache = Caffeine.newBuilder().build();
+        Cache<String, Set<String>> merchantIndexCache = Caffeine.newBuilder().build();
+        transactionService = new TransactionService(mainCache, userIndexCache, merchantIndexCache, new CacheLockManager());
+        queryResultCache = new QueryResultCache(16, 1000);
+        transactionService.setQueryResultCache(queryResultCache);
+        transactionService.setMutationListeners(List.of(queryResultCache));
+    }
+
+    @Test
+    void searchTrans_RepeatedRequest_ServedFromCache() {
+        transactionService.addTransaction(createTransaction("user1", "1"));
+
+        TransQryRsp first = transactionService.searchTrans(createRequest(null, "1"));
+        TransQryRsp second = transactionService.searchTrans(createRequest(null, "1"));
+
+        assertEquals(first, second);
+        assertEquals(1, second.getTotal());
+        assertEquals(1L, queryResultCache.metrics().get("hitCount"));
+    }
+
+    @Test
+    void searchTrans_CallerModifiesResult_CachedPageUnchanged() {
+        transactionService.addTransaction(createTransaction("user1", "1"));
+        TransQryRsp first = transactionService.searchTrans(createRequest(null, "1"));
+
+        first.setTotal(99);
+        assertThrows(UnsupportedOperationException.class, () -> first.getTransList().clear());
+
+        TransQryRsp second = transactionService.searchTrans(createRequest(null, "1"));
+        assertEquals(1, second.getTotal());
+        assertEquals(1, second.getTransList().size());
+        assertEquals(1L, queryResultCache.metrics().get("hitCount"));
+    }
+
+    @Test
+    void searchTrans_WriteToOtherMerchant_KeepsCachedPage() {
+        transactionService.addTransaction(createTransaction("user1", "1"));
+        TransQryRsp first = transactionService.searchTrans(createRequest(null, "1"));
+
+        transactionService.addTransaction(createTransaction("user2", "2"));
+
+        assertEquals(first, transactionService.searchTrans(createRequest(null, "1")));
+        assertEquals(1L, queryResultCache.metrics().get("hitCount"));
+    }
+
+    @Test
+    void searchTrans_WriteToSameMerchant_InvalidatesCachedPage() {
+        transactionService.addTransaction(createTransaction("user1", "1"));
+        TransQryRsp first = transactionService.searchTrans(createRequest(null, "1"));
+
+        transactionService.addTransaction(createTransaction("user2", "1"));
+        TransQryRsp second = transactionService.searchTrans(createRequest(null, "1"));
+
+        assertNotSame(first, second);
+        assertEquals(2, second.getTotal());
+        // 无条件查询依赖全局写序号，同样需要失效
+        assertEquals(2, transactionService.searchTrans(createRequest(null, null)).getTotal());
+    }
+
+    private TransQryRequest createRequest(String userId, String merchantId) {
+        TransQryRequest request = new TransQryRequest();
+        request.setUserId(userId);
+        request.setMerchantId(merchantId);
+        request.setPage(1);
+        request.setPageSize(10);
+        return request;
+    }
+
+    private Transaction createTransaction(String userId, String merchantId) {
+        Transaction transaction = new Transaction();
+        transaction.setUserId(userId);
+        transaction.setMerchantId(merchantId);
+        transaction.setAmount(new BigDecimal("10.00"));
+        return transaction;
+    }
+}
@@ -0,0 +1,118 @@
+package com.hsbc.interview.service;
+
+import com.hsbc.interview.common.RateLimitException;
+import com.hsbc.interview.service.TenantRateLimiter.EndpointClass;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.hsbc.interview.common.Constant.HTTP_TOO_MANY_CODE;
+import static org.junit.jupiter.api.Assertions.*;
+
+class TenantRateLimiterTest {
+
+    // 扫描每秒0.01次（100秒补充一个），突发5次；其余类别不限
+    private static TenantRateLimiter limiter(String configFile) {
+        return new TenantRateLimiter(true, 0, 1, 0, 1, 0.01, 5, 0, 1, 1000, 600, configFile);
+    }
+
+    @Test
+    void burstThenReject_PerTenantAndPerClass() {
+        TenantRateLimiter limiter = limiter("");
+        for (int i = 0; i < 5; i++) {
+            limiter.acquire(EndpointClass.SCAN, null, "m1");
+        }
+        RateLimitException ex = assertThrows(RateLimitException.class,
+                () -> limiter.acquire(EndpointClass.SCAN, null, "m1"));
+        assertEquals(HTTP_TOO_MANY_CODE, ex.getCode());
+        assertTrue(ex.getRetryAfterMillis() > 90_000 && ex.getRetryAfterMillis() <= 100_000);
+
+        // 其他商户、其他类别不受影响；同时带商户与用户时商户桶已耗尽即拒绝
+        limiter.acquire(EndpointClass.SCAN, null, "m2");
+        limiter.acquire(EndpointClass.WRITE, null, "m1");
+        assertThrows(RateLimitException.class, () -> limiter.acquire(EndpointClass.SCAN, "u1", "m1"));
+        // 批量请求按键数消耗
+        limiter.acquire(EndpointClass.SCAN, null, "m3", 5);
+        assertThrows(RateLimitException.class, () -> limiter.acquire(EndpointClass.SCAN, null, "m3"));
+
+        assertEquals(3L, limiter.metrics().get("scanRejected"));
+    }
+
+    @Test
+    void acquireAll_RejectedRequest_RefundsPermitsAlreadyTaken() {
+        TenantRateLimiter limiter = limiter("");
+        limiter.acquire(EndpointClass.SCAN, null, "m2", 5);
+        // m1 取得额度后 m2 不足，整体拒绝并退回 m1 的额度
+        for (int i = 0; i < 3; i++) {
+            assertThrows(RateLimitException.class, () -> limiter.acquireAll(EndpointClass.SCAN,
+                    List.of(new TenantRateLimiter.Charge(null, "m1", 2), new TenantRateLimiter.Charge(null, "m2", 1))));
+        }
+        limiter.acquire(EndpointClass.SCAN, null, "m1", 5);
+        assertThrows(RateLimitException.class, () -> limiter.acquire(EndpointClass.SCAN, null, "m1"));
+        // 同时带商户与用户时，用户桶不足也退回商户桶的额度
+        limiter.acquire(EndpointClass.SCAN, "u1", null, 5);
+        assertThrows(RateLimitException.class, () -> limiter.acquire(EndpointClass.SCAN, "u1", "m3"));
+        limiter.acquire(EndpointClass.SCAN, null, "m3", 5);
+    }
+
+    @Test
+    void concurrentAcquire_NeverExceedsBurst() throws Exception {
+        TenantRateLimiter limiter = new TenantRateLimiter(true, 0.001, 200, 0, 1, 0, 1, 0, 1, 1000, 600, "");
+        AtomicInteger granted = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        CountDownLatch start = new CountDownLatch(1);
+        for (int t = 0; t < 8; t++) {
+            executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < 1000; i++) {
+                    try {
+                        limiter.acquire(EndpointClass.POINT, "hot", null);
+                        granted.incrementAndGet();
+                    } catch (RateLimitException e) {
+                        // 超出额度
+                    }
+                }
+                return null;
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+        assertEquals(200, granted.get());
+    }
+
+    @Test
+    void configFile_HotReloadsDefaultsAndTenantOverrides(@TempDir Path dir) throws Exception {
+        Path file = dir.resolve("rate-limit.properties");
+        Files.writeString(file, "merchant.vip.scan.rate=1000\nmerchant.vip.scan.burst=100\n");
+        TenantRateLimiter limiter = limiter(file.toString());
+        for (int i = 0; i < 50; i++) {
+            limiter.acquire(EndpointClass.SCAN, null, "vip");
+        }
+        for (int i = 0; i < 5; i++) {
+            limiter.acquire(EndpointClass.SCAN, null, "normal");
+        }
+        assertThrows(RateLimitException.class, () -> limiter.acquire(EndpointClass.SCAN, null, "normal"));
+
+        // 关闭限流后不再拒绝；格式错误的配置不生效，保留原配置
+        Files.writeString(file, "enabled=false\n");
+        Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis() + 1000));
+        limiter.reload();
+        limiter.acquire(EndpointClass.SCAN, null, "normal");
+        Files.writeString(file, "merchant.vip.unknown.rate=1\n");
+        Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis() + 2000));
+        limiter.reload();
+        limiter.acquire(EndpointClass.SCAN, null, "normal");
+        assertEquals(1L, limiter.metrics().get("reloadFailures"));
+        assertEquals(false, limiter.metrics().get("enabled"));
+    }
+}
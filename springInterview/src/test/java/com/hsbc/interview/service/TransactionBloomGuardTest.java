@@ -0,0 +1,86 @@
+package com.hsbc.interview.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.hsbc.interview.config.CacheLockManager;
+import com.hsbc.interview.entity.Transaction;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TransactionBloomGuardTest {
+
+    private Cache<String, Transaction> mainCache;
+    private Cache<String, Set<String>> userIndexCache;
+    private Cache<String, Set<String>> merchantIndexCache;
+    private TransactionBloomGuard guard;
+
+    @BeforeEach
+    void setUp() {
+        mainCache = Caffeine.newBuilder().build();
+        userIndexCache = Caffeine.newBuilder().build();
+        merchantIndexCache = Caffeine.newBuilder().build();
+        guard = new TransactionBloomGuard(mainCache, userIndexCache, merchantIndexCache, 0.01, 100000);
+    }
+
+    @Test
+    void afterCommit_RebuildBetweenWriteAndVisibility_NoFalseNegative() {
+        Transaction transaction = transaction("T2026101900000001", "user1", "m1");
+        // 写入旧过滤器之后、数据对主缓存可见之前完成一次重建：重建数据源中没有这条数据
+        guard.onAdd(transaction);
+        guard.rebuild();
+        mainCache.put(transaction.getTransactionId(), transaction);
+        guard.afterCommit(null, transaction);
+
+        assertTrue(guard.mightContainTransaction("T2026101900000001"));
+        assertTrue(guard.mightContainUser("user1"));
+        assertTrue(guard.mightContainMerchant("m1"));
+    }
+
+    @Test
+    void addTransaction_ConcurrentWithRebuilds_NoFalseNegative() throws Exception {
+        TransactionService service = new TransactionService(mainCache, userIndexCache, merchantIndexCache,
+                new CacheLockManager());
+        service.setBloomGuard(guard);
+        service.setMutationListeners(List.of(guard));
+
+        AtomicBoolean writing = new AtomicBoolean(true);
+        CompletableFuture<Void> rebuilds = CompletableFuture.runAsync(() -> {
+            while (writing.get()) {
+                guard.rebuild();
+            }
+        });
+        List<String> transactionIds = new ArrayList<>();
+        try {
+            for (int i = 0; i < 5000; i++) {
+                transactionIds.add(service.addTransaction(transaction(null, "user" + i, "m" + i % 50)));
+            }
+        } finally {
+            writing.set(false);
+            rebuilds.get(10, TimeUnit.SECONDS);
+        }
+
+        for (int i = 0; i < transactionIds.size(); i++) {
+            assertTrue(guard.mightContainTransaction(transactionIds.get(i)), transactionIds.get(i));
+            assertTrue(guard.mightContainUser("user" + i), "user" + i);
+        }
+    }
+
+    private static Transaction transaction(String transactionId, String userId, String merchantId) {
+        Transaction transaction = new Transaction();
+        transaction.setTransactionId(transactionId);
+        transaction.setUserId(userId);
+        transaction.setMerchantId(merchantId);
+        transaction.setAmount(new BigDecimal("10.00"));
+        return transaction;
+    }
+}
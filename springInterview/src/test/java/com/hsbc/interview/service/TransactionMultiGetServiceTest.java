@@ -0,0 +1,131 @@
+package com.hsbc.interview.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.hsbc.interview.common.TransException;
+import com.hsbc.interview.config.CacheLockManager;
+import com.hsbc.interview.dto.MultiGetRequest;
+import com.hsbc.interview.dto.MultiGetRsp;
+import com.hsbc.interview.dto.TransDataDto;
+import com.hsbc.interview.dto.TransQryRequest;
+import com.hsbc.interview.dto.TransQryRsp;
+import com.hsbc.interview.entity.Transaction;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TransactionMultiGetServiceTest {
+
+    private TransactionService service;
+    private Cache<String, Transaction> mainCache;
+    private Cache<String, Set<String>> userIndexCache;
+    private Cache<String, Set<String>> merchantIndexCache;
+
+    @BeforeEach
+    void setUp() {
+        mainCache = Caffeine.newBuilder().build();
+        userIndexCache = Caffeine.newBuilder().build();
+        merchantIndexCache = Caffeine.newBuilder().build();
+        service = new TransactionService(mainCache, userIndexCache, merchantIndexCache, new CacheLockManager());
+        // 用户为 user(i%50)，商户为 i%3+1
+        for (int i = 1; i <= 3000; i++) {
+            service.upsertTransaction(createTransaction(i, "user" + (i % 50), String.valueOf(i % 3 + 1)));
+        }
+    }
+
+    private TransactionMultiGetService multiGetService(int parallelThreshold) {
+        return new TransactionMultiGetService(mainCache, userIndexCache, merchantIndexCache, service,
+                1000, 10, 1000, parallelThreshold);
+    }
+
+    @Test
+    void transactionIds_DeduplicatedAndMissingReported() {
+        MultiGetRequest req = new MultiGetRequest();
+        req.setTransactionIds(List.of(id(5), id(7), id(5), "T2026101999999999", " ", id(3000)));
+        TransactionMultiGetService multiGet = multiGetService(256);
+        MultiGetRsp rsp = multiGet.multiGet(req);
+
+        assertEquals(List.of(id(5), id(7), id(3000)), new ArrayList<>(rsp.getTransactions().keySet()));
+        assertEquals("user7", rsp.getTransactions().get(id(7)).getUserId());
+        assertEquals(List.of("T2026101999999999"), rsp.getNotFound());
+        assertNull(rsp.getUsers());
+        assertEquals(2L, multiGet.metrics().get("duplicateKeys"));
+    }
+
+    @Test
+    void usersAndMerchants_MatchPerKeyQueries_SequentialAndParallel() {
+        MultiGetRequest req = new MultiGetRequest();
+        req.setUserIds(IntStream.range(0, 60).mapToObj(i -> "user" + i).toList());
+        req.setMerchantIds(List.of("1", "2", "3", "1"));
+        req.setLimitPerKey(7);
+
+        for (int threshold : new int[]{1000, 1}) {
+            MultiGetRsp rsp = multiGetService(threshold).multiGet(req);
+            assertEquals(60, rsp.getUsers().size());
+            assertEquals(3, rsp.getMerchants().size());
+            for (String userId : req.getUserIds()) {
+                assertGroup(rsp.getUsers().get(userId), query(userId, null));
+            }
+            for (String merchantId : List.of("1", "2", "3")) {
+                assertGroup(rsp.getMerchants().get(merchantId), query(null, merchantId));
+            }
+            // 不存在的用户返回空分组
+            assertEquals(0, rsp.getUsers().get("user55").getTotal());
+            assertTrue(rsp.getUsers().get("user55").getTransList().isEmpty());
+        }
+
+        // 逐键查询的路径（集群模式）结果一致
+        MultiGetRsp viaSearch = multiGetService(256).multiGet(req, service::searchTrans);
+        assertGroup(viaSearch.getUsers().get("user3"), query("user3", null));
+        assertGroup(viaSearch.getMerchants().get("2"), query(null, "2"));
+    }
+
+    @Test
+    void rejectsEmptyAndOversizedRequests() {
+        TransactionMultiGetService multiGet = multiGetService(256);
+        assertThrows(TransException.class, () -> multiGet.multiGet(new MultiGetRequest()));
+        MultiGetRequest tooMany = new MultiGetRequest();
+        tooMany.setTransactionIds(IntStream.range(0, 1001).mapToObj(TransactionMultiGetServiceTest::id).toList());
+        assertThrows(TransException.class, () -> multiGet.multiGet(tooMany));
+        MultiGetRequest badLimit = new MultiGetRequest();
+        badLimit.setUserIds(List.of("user1"));
+        badLimit.setLimitPerKey(0);
+        assertThrows(TransException.class, () -> multiGet.multiGet(badLimit));
+    }
+
+    private TransQryRsp query(String userId, String merchantId) {
+        TransQryRequest req = new TransQryRequest();
+        req.setUserId(userId);
+        req.setMerchantId(merchantId);
+        req.setPageSize(7);
+        return service.searchTrans(req);
+    }
+
+    private static void assertGroup(MultiGetRsp.Group group, TransQryRsp expected) {
+        assertEquals(expected.getTotal(), group.getTotal());
+        List<String> expectedIds = expected.getTransList() == null ? List.of()
+                : expected.getTransList().stream().map(TransDataDto::getTransactionId).toList();
+        assertEquals(expectedIds, group.getTransList().stream().map(TransDataDto::getTransactionId).toList());
+    }
+
+    private static String id(int seq) {
+        return "T20261019" + String.format("%08d", seq);
+    }
+
+    private static Transaction createTransaction(int seq, String userId, String merchantId) {
+        Transaction transaction = new Transaction();
+        transaction.setTransactionId(id(seq));
+        transaction.setUserId(userId);
+        transaction.setMerchantId(merchantId);
+        transaction.setAmount(new BigDecimal(seq));
+        transaction.setVersion(1L);
+        return transaction;
+    }
+}
@@ -0,0 +1,118 @@
+package com.hsbc.interview.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.hsbc.interview.config.CacheLockManager;
+import com.hsbc.interview.dto.TransDataDto;
+import com.hsbc.interview.dto.TransQryRequest;
+import com.hsbc.interview.dto.TransQryRsp;
+import com.hsbc.interview.entity.Transaction;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TransactionQueryPlannerTest {
+
+    private TransactionService service;
+    private TransactionQueryPlanner planner;
+
+    @BeforeEach
+    void setUp() {
+        Cache<String, Transaction> mainCache = Caffeine.newBuilder().build();
+        Cache<String, Set<String>> userIndexCache = Caffeine.newBuilder().build();
+        Cache<String, Set<String>> merchantIndexCache = Caffeine.newBuilder().build();
+        OrderedIdIndex orderedIdIndex = new OrderedIdIndex();
+        TransactionScanEngine scanEngine = new TransactionScanEngine(mainCache, orderedIdIndex);
+        QueryResultCache queryResultCache = new QueryResultCache(16, 10000);
+        // 交集达到2条即物化组合索引
+        planner = new TransactionQueryPlanner(2, 100000, 1000);
+        planner.setQueryResultCache(queryResultCache);
+        service = new TransactionService(mainCache, userIndexCache, merchantIndexCache, new CacheLockManager());
+        service.setScanEngine(scanEngine);
+        service.setQueryResultCache(queryResultCache);
+        service.setQueryPlanner(planner);
+        service.setMutationListeners(List.of(scanEngine, queryResultCache, planner));
+
+        // 商户big有3000条交易，用户small只有3条，其中2条在商户big
+        for (int i = 1; i <= 3000; i++) {
+            service.upsertTransaction(createTransaction(i, "user" + (i % 50), "big", new BigDecimal(i)));
+        }
+        service.upsertTransaction(createTransaction(3001, "small", "big", new BigDecimal("5")));
+        service.upsertTransaction(createTransaction(3002, "small", "big", new BigDecimal("500")));
+        service.upsertTransaction(createTransaction(3003, "small", "other", new BigDecimal("7")));
+    }
+
+    @Test
+    void userAndMerchant_ProbesSmallerSide_ThenReusesMaterializedComposite() {
+        TransQryRsp first = service.searchTrans(query("small", "big", null, null));
+        assertEquals("SMALLEST_SET_PROBE", first.getPlan().getStrategy());
+        assertEquals(2, first.getTotal());
+        assertEquals(2L, first.getPlan().getActualRows());
+        // 只遍历较小的一侧（3条）加读取当前页（2条）
+        assertEquals(5L, first.getPlan().getExaminedRows());
+        assertTrue(first.getPlan().getAlternatives().containsKey("FULL_SCAN"));
+
+        TransQryRsp second = service.searchTrans(query("small", "big", new BigDecimal("100"), null));
+        assertEquals("COMPOSITE_INDEX", second.getPlan().getStrategy());
+        assertEquals(1, second.getTotal());
+        assertEquals("T2025010100003002", second.getTransList().get(0).getTransactionId());
+
+        // 任一侧有写入后组合索引失效，重新探测并包含新数据
+        service.upsertTransaction(createTransaction(3004, "small", "big", new BigDecimal("9")));
+        TransQryRsp third = service.searchTrans(query("small", "big", null, null));
+        assertEquals("SMALLEST_SET_PROBE", third.getPlan().getStrategy());
+        assertEquals(3, third.getTotal());
+    }
+
+    @Test
+    void singleIndex_AppliesAmountFilter_AndEstimatesFromHistogram() {
+        TransQryRsp rsp = service.searchTrans(query(null, "big", new BigDecimal("1000"), new BigDecimal("1999")));
+        assertEquals(1000, rsp.getTotal());
+        List<TransDataDto> page = rsp.getTransList();
+        assertEquals(10, page.size());
+        assertEquals("T2025010100001000", page.get(0).getTransactionId());
+        // 金额直方图按2的幂分桶，估算值与实际值在同一数量级
+        long estimated = rsp.getPlan().getEstimatedRows();
+        assertTrue(estimated > 500 && estimated < 2000, "estimated=" + estimated);
+        assertEquals(1000L, rsp.getPlan().getActualRows());
+    }
+
+    @Test
+    void noIndexCondition_UsesScan_AndExplainIsOptIn() {
+        TransQryRsp rsp = service.searchTrans(query(null, null, new BigDecimal("2999"), null));
+        assertEquals("FULL_SCAN", rsp.getPlan().getStrategy());
+        assertEquals(2, rsp.getTotal());
+
+        TransQryRequest plain = query("small", null, null, null);
+        plain.setExplain(null);
+        TransQryRsp withoutPlan = service.searchTrans(plain);
+        assertNull(withoutPlan.getPlan());
+        assertEquals(3, withoutPlan.getTotal());
+        assertTrue((Double) planner.metrics().get("meanQError") >= 1D);
+    }
+
+    private TransQryRequest query(String userId, String merchantId, BigDecimal minAmount, BigDecimal maxAmount) {
+        TransQryRequest req = new TransQryRequest();
+        req.setUserId(userId);
+        req.setMerchantId(merchantId);
+        req.setMinAmount(minAmount);
+        req.setMaxAmount(maxAmount);
+        req.setExplain(true);
+        return req;
+    }
+
+    private Transaction createTransaction(int seq, String userId, String merchantId, BigDecimal amount) {
+        Transaction transaction = new Transaction();
+        transaction.setTransactionId("T20250101" + String.format("%08d", seq));
+        transaction.setUserId(userId);
+        transaction.setMerchantId(merchantId);
+        transaction.setAmount(amount);
+        transaction.setVersion(1L);
+        return transaction;
+    }
+}
@@ -0,0 +1,107 @@
+package com.hsbc.interview.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.hsbc.interview.config.CacheLockManager;
+import com.hsbc.interview.entity.Transaction;
+import com.hsbc.interview.storage.SegmentDiskTier;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TransactionRetentionManagerTest {
+
+    private static final LocalDate TODAY = LocalDate.of(2026, 10, 19);
+
+    @TempDir
+    Path tempDir;
+
+    private Cache<String, Transaction> mainCache;
+    private Cache<String, Set<String>> userIndexCache;
+    private Cache<String, Set<String>> merchantIndexCache;
+    private OrderedIdIndex orderedIdIndex;
+    private SegmentDiskTier diskTier;
+    private TransactionService service;
+    private TransactionRetentionManager retentionManager;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        mainCache = Caffeine.newBuilder().build();
+        userIndexCache = Caffeine.newBuilder().build();
+        merchantIndexCache = Caffeine.newBuilder().build();
+        orderedIdIndex = new OrderedIdIndex();
+        diskTier = new SegmentDiskTier(tempDir.toString(), 1, 0.5, true);
+        service = new TransactionService(mainCache, userIndexCache, merchantIndexCache, new CacheLockManager());
+        service.setDiskTier(diskTier);
+        service.setMutationListeners(List.of(new TransactionScanEngine(mainCache, orderedIdIndex)));
+        // 保留30天，热数据7天，不限速
+        retentionManager = new TransactionRetentionManager(service, orderedIdIndex, mainCache, 30, 7, 100, 0, 100000);
+        retentionManager.setDiskTier(diskTier);
+
+        // 40天前、10天前、当天各300条
+        for (int i = 1; i <= 300; i++) {
+            service.upsertTransaction(createTransaction("T20260909" + String.format("%08d", i), "user" + (i % 3)));
+            service.upsertTransaction(createTransaction("T20261009" + String.format("%08d", i), "user" + (i % 3)));
+            service.upsertTransaction(createTransaction("T20261019" + String.format("%08d", i), "user" + (i % 3)));
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        diskTier.close();
+    }
+
+    @Test
+    void runAt_DropsExpiredDaysFromCacheAndIndexes() {
+        retentionManager.runAt(TODAY);
+
+        assertNull(service.findTransaction("T2026090900000001"));
+        assertEquals(600, orderedIdIndex.size());
+        assertTrue(userIndexCache.getIfPresent("user1").stream().noneMatch(id -> id.startsWith("T20260909")));
+        assertEquals(200, userIndexCache.getIfPresent("user1").size());
+        assertEquals(600, merchantIndexCache.getIfPresent("1").size());
+
+        Object dropped = retentionManager.metrics().get("droppedEntries");
+        assertEquals(300L, dropped);
+        assertTrue((Long) retentionManager.metrics().get("reclaimedHeapBytes") > 0);
+    }
+
+    @Test
+    void runAt_MovesOlderThanHotDaysToDiskTier_AndKeepsThemQueryable() {
+        retentionManager.runAt(TODAY);
+
+        assertEquals(300, diskTier.size());
+        assertEquals(300, mainCache.estimatedSize());
+        assertTrue(diskTier.contains("T2026100900000001"));
+        assertNotNull(service.findTransaction("T2026100900000001"));
+        assertEquals(300L, retentionManager.metrics().get("archivedEntries"));
+
+        // 已移到磁盘层的数据过期后同样删除
+        retentionManager.runAt(TODAY.plusDays(25));
+        assertFalse(diskTier.contains("T2026100900000001"));
+        // 此时当天写入的数据也超过了热数据天数，被移到磁盘层
+        assertEquals(300, diskTier.size());
+        assertEquals(0, mainCache.estimatedSize());
+        assertEquals(300, orderedIdIndex.size());
+        assertEquals(300L, retentionManager.metrics().get("droppedColdEntries"));
+    }
+
+    private Transaction createTransaction(String transactionId, String userId) {
+        Transaction transaction = new Transaction();
+        transaction.setTransactionId(transactionId);
+        transaction.setUserId(userId);
+        transaction.setMerchantId("1");
+        transaction.setAmount(new BigDecimal("10.00"));
+        transaction.setVersion(1L);
+        return transaction;
+    }
+}
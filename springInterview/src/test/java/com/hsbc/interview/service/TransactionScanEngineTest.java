@@ -0,0 +1,82 @@
+package com.hsbc.interview.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.hsbc.interview.entity.Transaction;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TransactionScanEngineTest {
+
+    private static final int ROWS = 10000;
+
+    private TransactionScanEngine scanEngine;
+
+    @BeforeEach
+    void setUp() {
+        Cache<String, Transaction> mainCache = Caffeine.newBuilder().build();
+        scanEngine = new TransactionScanEngine(mainCache, new OrderedIdIndex());
+        for (int i = 1; i <= ROWS; i++) {
+            Transaction transaction = new Transaction();
+            transaction.setTransactionId("T20251019" + String.format("%08d", i));
+            transaction.setUserId("user" + (i % 7));
+            transaction.setMerchantId(String.valueOf(i % 3));
+            transaction.setAmount(BigDecimal.valueOf(i % 100));
+            mainCache.put(transaction.getTransactionId(), transaction);
+            scanEngine.onAdd(transaction);
+        }
+    }
+
+    @Test
+    void scan_WithoutPredicate_UsesOrderedIndex() {
+        TransactionScanEngine.ScanResult result = scanEngine.scan(null, 3, 10);
+
+        assertEquals(ROWS, result.total());
+        assertEquals(10, result.page().size());
+        assertEquals("T2025101900000021", result.page().get(0).getTransactionId());
+        assertEquals("T2025101900000030", result.page().get(9).getTransactionId());
+    }
+
+    @Test
+    void scan_WithoutPredicate_DeepPageAfterDeletesSkipsWholeBuckets() {
+        // 删除前两个桶中的部分数据，定位偏移量时须按剩余数量跳过
+        for (int i = 1; i <= 1500; i += 2) {
+            Transaction transaction = new Transaction();
+            transaction.setTransactionId("T20251019" + String.format("%08d", i));
+            scanEngine.onDelete(transaction);
+        }
+
+        TransactionScanEngine.ScanResult result = scanEngine.scan(null, 100, 50);
+
+        // 前1500条只剩750条偶数号，偏移量4950落在1501号之后的第4200条
+        assertEquals(ROWS - 750, result.total());
+        assertEquals(50, result.page().size());
+        assertEquals("T2025101900005701", result.page().get(0).getTransactionId());
+        assertEquals("T2025101900005750", result.page().get(49).getTransactionId());
+    }
+
+    @Test
+    void scan_WithAmountPredicate_ReturnsSortedTopK() {
+        TransactionScanEngine.ScanResult result = scanEngine.scan(
+                TransactionScanEngine.amountPredicate(new BigDecimal("90"), new BigDecimal("99")), 2, 5);
+
+        assertEquals(ROWS / 10, result.total());
+        assertEquals(5, result.page().size());
+        // 每100条中金额90~99的为第90~99条，第二页从第6条命中开始
+        assertEquals("T2025101900000095", result.page().get(0).getTransactionId());
+        assertEquals("T2025101900000099", result.page().get(4).getTransactionId());
+    }
+
+    @Test
+    void scan_PageBeyondTotal_ReturnsEmptyPage() {
+        TransactionScanEngine.ScanResult result = scanEngine.scan(
+                TransactionScanEngine.amountPredicate(null, new BigDecimal("0")), 1000, 10);
+
+        assertEquals(ROWS / 100, result.total());
+        assertTrue(result.page().isEmpty());
+    }
+}
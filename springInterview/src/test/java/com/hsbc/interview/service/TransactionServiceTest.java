@@ -16,8 +16,10 @@ import org.springframework.util.ConcurrentReferenceHashMap;
 import static org.mockito.Mockito.verify;
 import java.math.BigDecimal;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 
+import static com.hsbc.interview.common.Constant.HTTP_CONFLICT_CODE;
 import static org.junit.jupiter.api.Assertions.*;
 
 class TransactionServiceTest {
@@ -51,14 +53,23 @@ class TransactionServiceTest {
     }
 
     @Test
-    void deleteTransaction_LockFailed_ThrowsException() {
+    void deleteTransaction_VersionMismatch_ThrowsConflict() {
         TransQryRequest request = new TransQryRequest();
         request.setTransactionId("123");
         request.setUserId("user1");
+        request.setVersion(1L);
 
-        Mockito.when(lockManager.tryLock("CACHE_LOCK_PREFIX123")).thenReturn(false);
+        Transaction transaction = createTransaction("123", "user1", MERCHANT_ID);
+        transaction.setVersion(2L);
+        ConcurrentMap<String, Transaction> cacheMap = new ConcurrentHashMap<>();
+        cacheMap.put("123", transaction);
 
-        assertThrows(TransException.class, () -> transactionService.deleteTransaction(request));
+        Mockito.when(mainCache.getIfPresent("123")).thenReturn(transaction);
+        Mockito.when(mainCache.asMap()).thenReturn(cacheMap);
+
+        TransException ex = assertThrows(TransException.class, () -> transactionService.deleteTransaction(request));
+        assertEquals(HTTP_CONFLICT_CODE, ex.getCode());
+        assertSame(transaction, cacheMap.get("123"));
     }
 
     @Test
@@ -96,19 +107,63 @@ class TransactionServiceTest {
         request.setTransactionId("123");
         request.setUserId("user1");
 
-        Transaction transaction = Mockito.mock(Transaction.class);
-        Set<String> userIdSet = new HashSet<>();
-        userIdSet.add("123");
+        Transaction transaction = createTransaction("123", "user1", MERCHANT_ID);
+        ConcurrentMap<String, Transaction> cacheMap = new ConcurrentHashMap<>();
+        cacheMap.put("123", transaction);
+        ConcurrentMap<String, Set<String>> userIndexMap = new ConcurrentHashMap<>();
+        userIndexMap.put("user1", ConcurrentHashMap.newKeySet());
+        userIndexMap.get("user1").add("123");
+        ConcurrentMap<String, Set<String>> merchantIndexMap = new ConcurrentHashMap<>();
+        merchantIndexMap.put(MERCHANT_ID, ConcurrentHashMap.newKeySet());
+        merchantIndexMap.get(MERCHANT_ID).add("123");
 
-        Mockito.when(lockManager.tryLock("CACHE_LOCK_PREFIX123")).thenReturn(true);
         Mockito.when(mainCache.getIfPresent("123")).thenReturn(transaction);
-        Mockito.when(transaction.getUserId()).thenReturn("user1");
-        Mockito.doNothing().when(mainCache).invalidate("123");
-        Mockito.when(userIndexCache.getIfPresent("user1")).thenReturn(userIdSet);
-        Mockito.doNothing().when(userIndexCache).invalidate("user1");
-        Mockito.doNothing().when(lockManager).unlock("CACHE_LOCK_PREFIX123");
+        Mockito.when(mainCache.asMap()).thenReturn(cacheMap);
+        Mockito.when(userIndexCache.asMap()).thenReturn(userIndexMap);
+        Mockito.when(merchantIndexCache.asMap()).thenReturn(merchantIndexMap);
 
         transactionService.deleteTransaction(request);
+
+        assertFalse(cacheMap.containsKey("123"));
+        assertFalse(userIndexMap.containsKey("user1"));
+        assertFalse(merchantIndexMap.containsKey(MERCHANT_ID));
+    }
+
+    @Test
+    void updateTransaction_StaleVersion_ThrowsConflictAndKeepsData() {
+        Transaction current = createTransaction("123", "user1", MERCHANT_ID);
+        current.setVersion(3L);
+        ConcurrentMap<String, Transaction> cacheMap = new ConcurrentHashMap<>();
+        cacheMap.put("123", current);
+        Mockito.when(mainCache.asMap()).thenReturn(cacheMap);
+
+        Transaction update = createTransaction("123", "user1", "2");
+        update.setVersion(2L);
+
+        TransException ex = assertThrows(TransException.class, () -> transactionService.updateTransaction(update));
+        assertEquals(HTTP_CONFLICT_CODE, ex.getCode());
+        assertSame(current, cacheMap.get("123"));
+    }
+
+    @Test
+    void updateTransaction_MatchingVersion_IncrementsVersionAndMovesMerchantIndex() {
+        Transaction current = createTransaction("123", "user1", MERCHANT_ID);
+        current.setVersion(3L);
+        ConcurrentMap<String, Transaction> cacheMap = new ConcurrentHashMap<>();
+        cacheMap.put("123", current);
+        ConcurrentMap<String, Set<String>> merchantIndexMap = new ConcurrentHashMap<>();
+        merchantIndexMap.put(MERCHANT_ID, ConcurrentHashMap.newKeySet());
+        merchantIndexMap.get(MERCHANT_ID).add("123");
+        Mockito.when(mainCache.asMap()).thenReturn(cacheMap);
+        Mockito.when(merchantIndexCache.asMap()).thenReturn(merchantIndexMap);
+
+        Transaction update = createTransaction("123", "user1", "2");
+        update.setVersion(3L);
+        transactionService.updateTransaction(update);
+
+        assertEquals(4L, cacheMap.get("123").getVersion());
+        assertFalse(merchantIndexMap.containsKey(MERCHANT_ID));
+        assertTrue(merchantIndexMap.get("2").contains("123"));
     }
 
     @Test
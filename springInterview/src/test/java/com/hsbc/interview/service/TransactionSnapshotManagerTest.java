@@ -0,0 +1,132 @@
+package com.hsbc.interview.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.hsbc.interview.common.TransException;
+import com.hsbc.interview.config.CacheLockManager;
+import com.hsbc.interview.dto.TransDataDto;
+import com.hsbc.interview.dto.TransQryRequest;
+import com.hsbc.interview.dto.TransQryRsp;
+import com.hsbc.interview.entity.Transaction;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+import static com.hsbc.interview.common.Constant.HTTP_GONE_CODE;
+import static org.junit.jupiter.api.Assertions.*;
+
+class TransactionSnapshotManagerTest {
+
+    private TransactionService service;
+    private TransactionSnapshotManager snapshotManager;
+
+    private void setUp(long maxOpen) {
+        Cache<String, Transaction> mainCache = Caffeine.newBuilder().build();
+        Cache<String, Set<String>> userIndexCache = Caffeine.newBuilder().build();
+        Cache<String, Set<String>> merchantIndexCache = Caffeine.newBuilder().build();
+        snapshotManager = new TransactionSnapshotManager(300, maxOpen);
+        service = new TransactionService(mainCache, userIndexCache, merchantIndexCache, new CacheLockManager());
+        service.setSnapshotManager(snapshotManager);
+        service.setMutationListeners(List.of(snapshotManager));
+        for (int i = 10; i < 40; i++) {
+            service.upsertTransaction(createTransaction(i, "user" + (i % 3), "m1", new BigDecimal(i)));
+        }
+    }
+
+    @Test
+    void pagesThroughSnapshot_WhileWritesLand() {
+        setUp(100);
+        TransQryRequest req = query(null);
+        TransQryRsp first = service.searchTrans(req);
+        assertNotNull(first.getSnapshotToken());
+        assertEquals(30, first.getTotal());
+        List<String> seen = new ArrayList<>(ids(first));
+
+        // 翻页期间：删除首页的数据、插入排在前面的新数据、更新后面页的金额、把后面页的数据移到其他商户
+        service.removeTransaction(id(10));
+        service.removeTransaction(id(11));
+        service.upsertTransaction(createTransaction(1, "user1", "m1", BigDecimal.ONE));
+        service.upsertTransaction(createTransaction(2, "user2", "m1", BigDecimal.ONE));
+        service.upsertTransaction(createTransaction(25, "user1", "m1", new BigDecimal("999")));
+        service.upsertTransaction(createTransaction(35, "user2", "m2", new BigDecimal("35")));
+
+        for (int page = 2; page <= 3; page++) {
+            TransQryRequest next = query(first.getSnapshotToken());
+            next.setPage(page);
+            TransQryRsp rsp = service.searchTrans(next);
+            assertEquals(30, rsp.getTotal());
+            seen.addAll(ids(rsp));
+            if (page == 2) {
+                // 快照之后的更新按快照时的内容返回
+                TransDataDto row25 = rsp.getTransList().stream()
+                        .filter(dto -> dto.getTransactionId().equals(id(25))).findFirst().orElseThrow();
+                assertEquals(0, new BigDecimal("25").compareTo(row25.getAmount()));
+            }
+        }
+        assertEquals(IntStream.range(10, 40).mapToObj(TransactionSnapshotManagerTest::id).toList(), seen);
+
+        // 不带令牌的查询读取最新数据
+        TransQryRequest live = new TransQryRequest();
+        live.setMerchantId("m1");
+        assertEquals(29, service.searchTrans(live).getTotal());
+
+        // 快照条件与令牌不一致时拒绝
+        TransQryRequest mismatch = query(first.getSnapshotToken());
+        mismatch.setUserId("user1");
+        assertThrows(TransException.class, () -> service.searchTrans(mismatch));
+    }
+
+    @Test
+    void evictedSnapshot_ReleasesOldVersions() {
+        setUp(1);
+        TransQryRsp first = service.searchTrans(query(null));
+        for (int i = 40; i < 60; i++) {
+            service.upsertTransaction(createTransaction(i, "user1", "m1", new BigDecimal(i)));
+        }
+        service.upsertTransaction(createTransaction(12, "user1", "m1", new BigDecimal("7")));
+        assertTrue((Long) snapshotManager.metrics().get("retainedVersions") > 0);
+        assertTrue((Long) snapshotManager.metrics().get("retainedRowVersions") > 0);
+
+        // 最多一个快照：打开第二个快照后第一个被淘汰，早于第二个快照的版本全部回收
+        TransQryRsp second = service.searchTrans(query(null));
+        assertEquals(50, second.getTotal());
+        snapshotManager.sweep();
+        assertEquals(0L, snapshotManager.metrics().get("retainedVersions"));
+        assertEquals(0L, snapshotManager.metrics().get("retainedRowVersions"));
+
+        TransQryRequest expired = query(first.getSnapshotToken());
+        expired.setPage(2);
+        TransException ex = assertThrows(TransException.class, () -> service.searchTrans(expired));
+        assertEquals(HTTP_GONE_CODE, ex.getCode());
+    }
+
+    private static List<String> ids(TransQryRsp rsp) {
+        return rsp.getTransList().stream().map(TransDataDto::getTransactionId).toList();
+    }
+
+    private static String id(int seq) {
+        return "T20261019" + String.format("%08d", seq);
+    }
+
+    private static TransQryRequest query(String token) {
+        TransQryRequest req = new TransQryRequest();
+        req.setMerchantId("m1");
+        req.setSnapshot(token == null);
+        req.setSnapshotToken(token);
+        return req;
+    }
+
+    private static Transaction createTransaction(int seq, String userId, String merchantId, BigDecimal amount) {
+        Transaction transaction = new Transaction();
+        transaction.setTransactionId(id(seq));
+        transaction.setUserId(userId);
+        transaction.setMerchantId(merchantId);
+        transaction.setAmount(amount);
+        transaction.setVersion(1L);
+        return transaction;
+    }
+}
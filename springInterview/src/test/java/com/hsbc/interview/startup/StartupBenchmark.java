@@ -0,0 +1,197 @@
+package com.hsbc.interview.startup;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 启动耗时基准：按不同的启动方式反复拉起应用进程，记录从启动进程到第一个 getTransData 请求成功返回的时间（time-to-first-request）
+ * 以及第一个请求本身的耗时。启动方式：
+ * jar       java -jar 可执行jar（基线）
+ * extracted 解压后的jar与lib目录（java -Djarmode=tools extract）
+ * aot       解压后的jar，-Dspring.aot.enabled=true 使用构建时生成的Bean定义
+ * aot-cds   在aot基础上使用训练运行生成的AppCDS归档
+ * crac      CRaC检查点恢复（需要支持CRaC的JDK，由 startup.crac-java 指定其java命令）：先以faststart配置启动并在预热后生成检查点，再反复从检查点恢复
+ * 运行：mvn -Pfaststart package exec:exec@startup-benchmark [-Dstartup.modes=jar,aot-cds] [-Dstartup.runs=5] [-Dstartup.crac-java=/opt/crac-jdk/bin/java]
+ * @author wangwei
+ * @date 2026-10-19
+ */
+public class StartupBenchmark {
+
+    private static final String QUERY_BODY = "{\"userId\":\"startup-user\"}";
+
+    private final Path jar;
+    private final Path extractedJar;
+    private final Path cdsArchive;
+    private final Path cracImage;
+    private final String java;
+    private final String cracJava;
+    private final int runs;
+    private final long timeoutMillis;
+
+    private final HttpClient httpClient = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(1))
+            .build();
+
+    /**
+     * 一次启动的结果
+     */
+    private record Run(long firstRequestMillis, long requestMillis) {
+    }
+
+    StartupBenchmark() {
+        this.jar = Path.of(System.getProperty("startup.jar"));
+        Path dir = Path.of(System.getProperty("startup.dir"));
+        this.extractedJar = dir.resolve(jar.getFileName());
+        this.cdsArchive = dir.resolve("app.jsa");
+        this.cracImage = dir.resolve("crac");
+        this.java = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+        this.cracJava = System.getProperty("startup.crac-java", "");
+        this.runs = Integer.getInteger("startup.runs", 5);
+        this.timeoutMillis = Long.getLong("startup.timeout-ms", 60000);
+    }
+
+    public static void main(String[] args) throws Exception {
+        StartupBenchmark benchmark = new StartupBenchmark();
+        String modes = System.getProperty("startup.modes", "jar,extracted,aot,aot-cds,crac");
+        Map<String, List<Run>> results = new LinkedHashMap<>();
+        for (String mode : modes.split(",")) {
+            mode = mode.trim();
+            List<Run> modeRuns = benchmark.run(mode);
+            if (!modeRuns.isEmpty()) {
+                results.put(mode, modeRuns);
+            }
+        }
+        System.out.println();
+        System.out.printf("%-10s %6s %12s %12s %12s %14s%n", "mode", "runs", "min(ms)", "median(ms)", "max(ms)",
+                "1st req(ms)");
+        results.forEach((mode, modeRuns) -> {
+            long[] millis = modeRuns.stream().mapToLong(Run::firstRequestMillis).sorted().toArray();
+            long[] request = modeRuns.stream().mapToLong(Run::requestMillis).sorted().toArray();
+            System.out.printf("%-10s %6d %12d %12d %12d %14d%n", mode, millis.length, millis[0],
+                    millis[millis.length / 2], millis[millis.length - 1], request[request.length / 2]);
+        });
+        System.exit(0);
+    }
+
+    private List<Run> run(String mode) throws Exception {
+        List<String> command = new ArrayList<>();
+        switch (mode) {
+            case "jar" -> command.addAll(List.of(java, "-jar", jar.toString()));
+            case "extracted" -> command.addAll(List.of(java, "-jar", require(extractedJar).toString()));
+            case "aot" -> command.addAll(List.of(java, "-Dspring.aot.enabled=true", "-jar", require(extractedJar).toString()));
+            case "aot-cds" -> command.addAll(List.of(java, "-XX:SharedArchiveFile=" + require(cdsArchive),
+                    "-Dspring.aot.enabled=true", "-jar", require(extractedJar).toString()));
+            case "crac" -> {
+                return runCrac();
+            }
+            default -> throw new IllegalArgumentException("未知的启动方式: " + mode);
+        }
+        List<Run> modeRuns = new ArrayList<>(runs);
+        for (int i = 0; i < runs; i++) {
+            int port = freePort();
+            List<String> runCommand = new ArrayList<>(command);
+            runCommand.add("--server.port=" + port);
+            Run result = measure(runCommand, port);
+            System.out.printf("%s #%d: %dms（首个请求 %dms）%n", mode, i + 1, result.firstRequestMillis(), result.requestMillis());
+            modeRuns.add(result);
+        }
+        return modeRuns;
+    }
+
+    // 先生成检查点（进程在检查点后退出），再反复从检查点恢复；检查点记录了启动时的端口
+    private List<Run> runCrac() throws Exception {
+        if (cracJava.isBlank()) {
+            System.out.println("crac: 未指定 -Dstartup.crac-java，跳过");
+            return Collections.emptyList();
+        }
+        int port = freePort();
+        deleteRecursively(cracImage);
+        Process checkpoint = new ProcessBuilder(cracJava, "-XX:CRaCCheckpointTo=" + cracImage,
+                "-Dspring.context.checkpoint=onRefresh", "-Dspring.aot.enabled=true", "-jar", require(extractedJar).toString(),
+                "--spring.profiles.active=faststart", "--server.port=" + port)
+                .inheritIO().start();
+        if (!checkpoint.waitFor(timeoutMillis, TimeUnit.MILLISECONDS)) {
+            checkpoint.destroyForcibly();
+            throw new IllegalStateException("生成CRaC检查点超时");
+        }
+        List<Run> modeRuns = new ArrayList<>(runs);
+        for (int i = 0; i < runs; i++) {
+            Run result = measure(List.of(cracJava, "-XX:CRaCRestoreFrom=" + cracImage), port);
+            System.out.printf("crac #%d: %dms（首个请求 %dms）%n", i + 1, result.firstRequestMillis(), result.requestMillis());
+            modeRuns.add(result);
+        }
+        return modeRuns;
+    }
+
+    // 启动进程后轮询查询接口，第一次返回200即为可以提供服务的时间
+    private Run measure(List<String> command, int port) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/transaction/getTransData"))
+                .header("Content-Type", "application/json")
+                .timeout(Duration.ofMillis(timeoutMillis))
+                .POST(HttpRequest.BodyPublishers.ofString(QUERY_BODY))
+                .build();
+        long start = System.nanoTime();
+        Process process = new ProcessBuilder(command)
+                .redirectErrorStream(true)
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                .start();
+        try {
+            long deadline = start + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+            while (System.nanoTime() < deadline) {
+                if (!process.isAlive()) {
+                    throw new IllegalStateException("进程提前退出: " + String.join(" ", command));
+                }
+                long requestStart = System.nanoTime();
+                try {
+                    HttpResponse<Void> response = httpClient.send(request, HttpResponse.BodyHandlers.discarding());
+                    if (response.statusCode() == 200) {
+                        long end = System.nanoTime();
+                        return new Run(TimeUnit.NANOSECONDS.toMillis(end - start), TimeUnit.NANOSECONDS.toMillis(end - requestStart));
+                    }
+                } catch (IOException e) {
+                    // 端口尚未监听或连接被重置
+                }
+                TimeUnit.MILLISECONDS.sleep(5);
+            }
+            throw new IllegalStateException("启动超时: " + String.join(" ", command));
+        } finally {
+            process.destroy();
+            if (!process.waitFor(10, TimeUnit.SECONDS)) {
+                process.destroyForcibly().waitFor();
+            }
+        }
+    }
+
+    private static Path require(Path path) {
+        if (!Files.exists(path)) {
+            throw new IllegalStateException(path + " 不存在，请先执行 mvn -Pfaststart package");
+        }
+        return path;
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private static void deleteRecursively(Path path) throws IOException {
+        if (!Files.exists(path)) {
+            return;
+        }
+        try (var paths = Files.walk(path)) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.hsbc.interview.storage;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.hsbc.interview.config.CacheLockManager;
+import com.hsbc.interview.dto.TransQryRequest;
+import com.hsbc.interview.dto.TransQryRsp;
+import com.hsbc.interview.entity.Transaction;
+import com.hsbc.interview.service.TransactionService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SegmentDiskTierTest {
+
+    @TempDir
+    Path tempDir;
+
+    private SegmentDiskTier diskTier;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        diskTier = new SegmentDiskTier(tempDir.toString(), 1, 0.5, true);
+    }
+
+    @AfterEach
+    void tearDown() {
+        diskTier.close();
+    }
+
+    @Test
+    void putGetTake_RoundTripsAndRemovesOnTake() {
+        Transaction transaction = createTransaction("T2026101900000001", "user1");
+        diskTier.put(transaction);
+
+        assertEquals(transaction, diskTier.get("T2026101900000001"));
+        assertEquals("T2026101900000001", diskTier.maxKey("T20261019"));
+        assertEquals(transaction, diskTier.take("T2026101900000001"));
+        assertNull(diskTier.get("T2026101900000001"));
+        assertEquals(0, diskTier.size());
+    }
+
+    @Test
+    void compact_ReclaimsDeadSegments_AndKeepsLiveRecords() {
+        // 1MB的段约能放1万条，写3万条后删除大部分，压缩后存活数据仍可读取
+        for (int i = 0; i < 30000; i++) {
+            diskTier.put(createTransaction(String.format("T20261019%08d", i), "user" + i));
+        }
+        for (int i = 0; i < 30000; i++) {
+            if (i % 10 != 0) {
+                diskTier.remove(String.format("T20261019%08d", i));
+            }
+        }
+        diskTier.compact();
+
+        @SuppressWarnings("unchecked")
+        Map<String, Object> cold = (Map<String, Object>) diskTier.metrics().get("cold");
+        assertTrue((Long) cold.get("reclaimedBytes") > 0);
+        assertEquals(3000L, diskTier.size());
+        for (int i = 0; i < 30000; i += 10) {
+            assertEquals("user" + i, diskTier.get(String.format("T20261019%08d", i)).getUserId());
+        }
+    }
+
+    @Test
+    void transactionService_FallsThroughToDiskTier_ForEvictedData() {
+        Cache<String, Transaction> mainCache = Caffeine.newBuilder()
+                .maximumSize(50)
+                .executor(Runnable::run)
+                .evictionListener((String key, Transaction value, RemovalCause cause) -> diskTier.put(value))
+                .build();
+        Cache<String, Set<String>> userIndexCache = Caffeine.newBuilder().build();
+        Cache<String, Set<String>> merchantIndexCache = Caffeine.newBuilder().build();
+        TransactionService service = new TransactionService(mainCache, userIndexCache, merchantIndexCache, new CacheLockManager());
+        service.setDiskTier(diskTier);
+
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            Transaction transaction = createTransaction(null, "user" + (i % 10));
+            ids.add(service.addTransaction(transaction));
+        }
+        mainCache.cleanUp();
+        assertTrue(diskTier.size() > 0, "超出主缓存容量的数据应降级到磁盘层");
+        assertEquals(500, ids.stream().distinct().count(), "降级后流水号不能重复分配");
+
+        TransQryRequest byUser = new TransQryRequest();
+        byUser.setUserId("user3");
+        byUser.setPageSize(100);
+        TransQryRsp rsp = service.searchTrans(byUser);
+        assertEquals(50, rsp.getTotal());
+        assertEquals(50, rsp.getTransList().size());
+
+        // 磁盘层中的数据可以更新与删除
+        String coldId = diskTier.keys().first();
+        Transaction cold = diskTier.get(coldId);
+        Transaction update = createTransaction(coldId, cold.getUserId());
+        update.setAmount(new BigDecimal("99.99"));
+        update.setVersion(cold.getVersion());
+        service.updateTransaction(update);
+        assertFalse(diskTier.contains(coldId));
+        assertEquals(new BigDecimal("99.99"), service.findTransaction(coldId).getAmount());
+
+        String otherColdId = diskTier.keys().last();
+        TransQryRequest delete = new TransQryRequest();
+        delete.setTransactionId(otherColdId);
+        delete.setUserId(diskTier.get(otherColdId).getUserId());
+        service.deleteTransaction(delete);
+        assertNull(service.findTransaction(otherColdId));
+        assertEquals(499, service.allTransactionIds().distinct().count());
+    }
+
+    private Transaction createTransaction(String transactionId, String userId) {
+        Transaction transaction = new Transaction();
+        transaction.setTransactionId(transactionId);
+        transaction.setUserId(userId);
+        transaction.setMerchantId("1");
+        transaction.setAmount(new BigDecimal("12.34"));
+        transaction.setTransDate("2026-10-19 10:00:00");
+        transaction.setVersion(1L);
+        return transaction;
+    }
+}
@@ -0,0 +1,30 @@
+package com.hsbc.interview.stress;
+
+import com.hsbc.interview.config.CacheLockManager;
+import org.openjdk.jcstress.annotations.*;
+import org.openjdk.jcstress.infra.results.ZZ_Result;
+
+/**
+ * 锁互斥：两个线程同时对同一个键 tryLock，必须恰好一个成功
+ * @author wangwei
+ * @date 2026-10-19
+ */
+@JCStressTest
+@Outcome(id = {"true, false", "false, true"}, expect = Expect.ACCEPTABLE, desc = "恰好一个线程获得锁")
+@Outcome(id = "true, true", expect = Expect.FORBIDDEN, desc = "两个线程同时持有锁")
+@Outcome(id = "false, false", expect = Expect.FORBIDDEN, desc = "无人持有的锁获取失败")
+@State
+public class CacheLockExclusionStress {
+
+    private final CacheLockManager lockManager = new CacheLockManager();
+
+    @Actor
+    public void actor1(ZZ_Result r) {
+        r.r1 = lockManager.tryLock("CACHE_LOCK_PREFIXT1");
+    }
+
+    @Actor
+    public void actor2(ZZ_Result r) {
+        r.r2 = lockManager.tryLock("CACHE_LOCK_PREFIXT1");
+    }
+}
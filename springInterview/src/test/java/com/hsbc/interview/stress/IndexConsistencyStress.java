@@ -0,0 +1,39 @@
+package com.hsbc.interview.stress;
+
+import com.hsbc.interview.stress.StressFixtures.Fixture;
+import org.openjdk.jcstress.annotations.*;
+import org.openjdk.jcstress.infra.results.II_Result;
+
+/**
+ * 索引与主缓存一致：新增交易与删除同一流水号并发执行（删除方预先知道将要生成的流水号），
+ * 结束后用户/商户索引中的流水号必须都在主缓存中，主缓存中的交易也必须都在索引中
+ * 结果为 [一致性, 是否删除成功]，一致性 0 一致、1 索引中残留已删除的流水、2 交易不在索引中
+ * @author wangwei
+ * @date 2026-10-19
+ */
+@JCStressTest
+@Outcome(id = {"0, 0", "0, 1"}, expect = Expect.ACCEPTABLE, desc = "删除在新增之前或之后，索引与主缓存一致")
+@Outcome(id = "1, .*", expect = Expect.FORBIDDEN, desc = "索引中残留主缓存不存在的流水号")
+@Outcome(id = "2, .*", expect = Expect.FORBIDDEN, desc = "主缓存中的交易不在索引中")
+@State
+public class IndexConsistencyStress {
+
+    private final Fixture fixture = StressFixtures.newFixture();
+
+    private final String transactionId = fixture.service().generateTransactionId();
+
+    @Actor
+    public void add() {
+        fixture.service().addTransaction(StressFixtures.transaction("u1", "m1"));
+    }
+
+    @Actor
+    public void remove(II_Result r) {
+        r.r2 = fixture.service().removeTransaction(transactionId) == null ? 0 : 1;
+    }
+
+    @Arbiter
+    public void arbiter(II_Result r) {
+        r.r1 = fixture.consistency();
+    }
+}
@@ -0,0 +1,38 @@
+package com.hsbc.interview.stress;
+
+import com.hsbc.interview.stress.StressFixtures.Fixture;
+import org.openjdk.jcstress.annotations.*;
+import org.openjdk.jcstress.infra.results.ZZ_Result;
+
+import java.util.Set;
+
+/**
+ * 索引可见性：一个线程新增交易，另一个线程先读主缓存、再读用户索引。
+ * 索引在主缓存的compute内、新值发布之前写入，因此按流水号能读到的交易一定能按用户查到
+ * （反过来索引中的流水号可能暂时读不到，查询会跳过）
+ * 结果为 [主缓存中可见, 索引中可见]
+ * @author wangwei
+ * @date 2026-10-19
+ */
+@JCStressTest
+@Outcome(id = {"false, false", "false, true", "true, true"}, expect = Expect.ACCEPTABLE, desc = "新增尚未可见、只有索引可见或全部可见")
+@Outcome(id = "true, false", expect = Expect.FORBIDDEN, desc = "主缓存中的交易不在用户索引中")
+@State
+public class IndexVisibilityStress {
+
+    private final Fixture fixture = StressFixtures.newFixture();
+
+    private final String transactionId = fixture.service().generateTransactionId();
+
+    @Actor
+    public void add() {
+        fixture.service().addTransaction(StressFixtures.transaction("u1", "m1"));
+    }
+
+    @Actor
+    public void read(ZZ_Result r) {
+        r.r1 = fixture.mainCache().getIfPresent(transactionId) != null;
+        Set<String> ids = fixture.userIndexCache().getIfPresent("u1");
+        r.r2 = ids != null && ids.contains(transactionId);
+    }
+}
@@ -0,0 +1,72 @@
+package com.hsbc.interview.stress;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.hsbc.interview.config.CacheConfig;
+import com.hsbc.interview.config.CacheLockManager;
+import com.hsbc.interview.config.MemoryBudgetManager;
+import com.hsbc.interview.entity.Transaction;
+import com.hsbc.interview.service.OrderedIdIndex;
+import com.hsbc.interview.service.TransactionService;
+import com.hsbc.interview.storage.SegmentDiskTier;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+
+import java.math.BigDecimal;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * jcstress用例共用的服务实例：缓存由 CacheConfig 的Bean方法按启用内存预算的配置创建，与应用中的缓存一致（不启用磁盘层）
+ * @author wangwei
+ * @date 2026-10-19
+ */
+final class StressFixtures {
+
+    private static final DefaultListableBeanFactory EMPTY_FACTORY = new DefaultListableBeanFactory();
+
+    private StressFixtures() {
+    }
+
+    /**
+     * 一个新建的服务实例及其缓存
+     */
+    record Fixture(TransactionService service, Cache<String, Transaction> mainCache,
+                   Cache<String, Set<String>> userIndexCache, Cache<String, Set<String>> merchantIndexCache) {
+
+        /**
+         * @return 索引与主缓存一致时为0；索引中有主缓存不存在的流水为1；主缓存中的交易不在索引中为2
+         */
+        int consistency() {
+            Set<String> indexed = new HashSet<>();
+            userIndexCache.asMap().values().forEach(indexed::addAll);
+            Set<String> merchantIndexed = new HashSet<>();
+            merchantIndexCache.asMap().values().forEach(merchantIndexed::addAll);
+            Set<String> stored = mainCache.asMap().keySet();
+            if (!stored.containsAll(indexed) || !stored.containsAll(merchantIndexed)) {
+                return 1;
+            }
+            return indexed.containsAll(stored) && merchantIndexed.containsAll(stored) ? 0 : 2;
+        }
+    }
+
+    static Fixture newFixture() {
+        CacheConfig config = new CacheConfig();
+        MemoryBudgetManager memoryBudget = new MemoryBudgetManager(true, 64, 20, 10, 16, 0);
+        Cache<String, Transaction> mainCache = config.mainCache(new OrderedIdIndex(),
+                EMPTY_FACTORY.getBeanProvider(SegmentDiskTier.class),
+                EMPTY_FACTORY.getBeanProvider(TransactionService.class), memoryBudget, 10000);
+        Cache<String, Set<String>> userIndexCache = config.userIndexCache(memoryBudget);
+        Cache<String, Set<String>> merchantIndexCache = config.merchantIndexCache(memoryBudget);
+        TransactionService service = new TransactionService(mainCache, userIndexCache, merchantIndexCache,
+                new CacheLockManager());
+        return new Fixture(service, mainCache, userIndexCache, merchantIndexCache);
+    }
+
+    static Transaction transaction(String userId, String merchantId) {
+        Transaction transaction = new Transaction();
+        transaction.setUserId(userId);
+        transaction.setMerchantId(merchantId);
+        transaction.setAmount(BigDecimal.TEN);
+        transaction.setCreateUser(userId);
+        return transaction;
+    }
+}
@@ -0,0 +1,60 @@
+package com.hsbc.interview.stress;
+
+import com.hsbc.interview.stress.StressFixtures.Fixture;
+import org.openjdk.jcstress.annotations.*;
+import org.openjdk.jcstress.infra.results.I_Result;
+
+import java.util.Objects;
+
+/**
+ * 流水号唯一：两个线程同时新增交易，生成的流水号可能相同，但不能有两个新增都以同一个流水号成功
+ * @author wangwei
+ * @date 2026-10-19
+ */
+@JCStressTest
+@Outcome(id = "0", expect = Expect.ACCEPTABLE, desc = "两个新增都成功，流水号不同")
+@Outcome(id = "1", expect = Expect.ACCEPTABLE_INTERESTING, desc = "生成了相同的流水号，其中一个新增被拒绝，由调用方重试")
+@Outcome(id = "2", expect = Expect.FORBIDDEN, desc = "两个新增都被拒绝")
+@Outcome(id = "3", expect = Expect.FORBIDDEN, desc = "两个新增以同一个流水号成功")
+@Outcome(id = "4", expect = Expect.FORBIDDEN, desc = "成功返回的流水号不在主缓存或索引中")
+@State
+public class TransactionIdStress {
+
+    private final Fixture fixture = StressFixtures.newFixture();
+
+    private String id1;
+
+    private String id2;
+
+    @Actor
+    public void actor1() {
+        id1 = add("u1");
+    }
+
+    @Actor
+    public void actor2() {
+        id2 = add("u2");
+    }
+
+    private String add(String userId) {
+        try {
+            return fixture.service().addTransaction(StressFixtures.transaction(userId, "m1"));
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    @Arbiter
+    public void arbiter(I_Result r) {
+        if (id1 == null || id2 == null) {
+            r.r1 = id1 == null && id2 == null ? 2 : 1;
+        } else if (Objects.equals(id1, id2)) {
+            r.r1 = 3;
+        } else {
+            r.r1 = 0;
+        }
+        if (r.r1 < 2 && fixture.consistency() != 0) {
+            r.r1 = 4;
+        }
+    }
+}
@@ -0,0 +1,358 @@
+package com.hsbc.interview.stress;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.hsbc.interview.MyApplication;
+import com.hsbc.interview.common.TransException;
+import com.hsbc.interview.config.CacheLockManager;
+import com.hsbc.interview.dto.TransDataDto;
+import com.hsbc.interview.dto.TransQryRequest;
+import com.hsbc.interview.dto.TransQryRsp;
+import com.hsbc.interview.entity.Transaction;
+import com.hsbc.interview.service.TransactionService;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.math.BigDecimal;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 多线程随机并发压力测试：在进程内启动应用（不启动Web服务），对容器中的 TransactionService、CacheConfig 创建的缓存
+ * 与 CacheLockManager 施加高竞争负载，并校验不变量：
+ * 1. 流水号唯一：不会有两个同时存在的交易使用同一个流水号
+ * 2. 索引 ⊆ 主缓存：用户/商户索引中的每个流水号都能读到，且交易的用户/商户与索引键一致；反之每条交易都在其用户/商户索引中
+ * 3. 无丢失写入：主缓存与磁盘层中的流水号集合与成功的新增/删除结果一致
+ * 4. 查询结果：按用户查询返回的每条交易都属于该用户（用户不可修改；商户可修改，按商户查询期间被移走的交易只计数）
+ * 5. 锁互斥：同一个键同一时刻只有一个线程持有锁（锁键数远多于锁缓存容量）
+ * 工作线程执行每个操作时持有读锁，检查点线程按间隔获取写锁，在没有进行中的操作时做全量校验。
+ * 少量用户与商户、主缓存预算较小（淘汰的数据降级到磁盘层），保证索引键与流水号上的竞争。发现违反时以非0状态退出
+ * 运行：mvn -Pstress verify [-Dstress.duration=60] [-Dstress.threads=16]
+ * @author wangwei
+ * @date 2026-10-19
+ */
+public class TransactionStressHarness {
+
+    // 最近新增的流水号，更新与删除从中随机选取
+    private static final int RECENT = 4096;
+
+    // 最近新增的这些流水号不会被删除
+    private static final int PROTECTED = 256;
+
+    // 最多输出的违反明细条数
+    private static final int MAX_REPORTED = 20;
+
+    private final TransactionService service;
+    private final CacheLockManager lockManager;
+    private final Cache<String, Set<String>> userIndexCache;
+    private final Cache<String, Set<String>> merchantIndexCache;
+
+    private final int threads = Integer.getInteger("stress.threads", 16);
+    private final long durationMillis = TimeUnit.SECONDS.toMillis(Long.getLong("stress.duration", 30));
+    private final long lockDurationMillis = TimeUnit.SECONDS.toMillis(Long.getLong("stress.lock-duration", 10));
+    private final long checkpointMillis = Long.getLong("stress.checkpoint-ms", 1000);
+    private final int users = Integer.getInteger("stress.users", 50);
+    private final int merchants = Integer.getInteger("stress.merchants", 5);
+    private final int lockKeys = Integer.getInteger("stress.lock-keys", 5000);
+
+    // 检查点与工作线程之间的互斥
+    private final ReadWriteLock pause = new ReentrantReadWriteLock();
+
+    // 成功新增过的流水号 -> 用户ID；当前存在的流水号 -> 用户ID（按操作结果维护的模型）
+    private final Map<String, String> issued = new ConcurrentHashMap<>();
+    private final Map<String, String> live = new ConcurrentHashMap<>();
+    private final AtomicReferenceArray<String> recent = new AtomicReferenceArray<>(RECENT);
+    private final AtomicLong recentIndex = new AtomicLong();
+
+    private final Map<String, AtomicLong> counters = new ConcurrentSkipListMap<>();
+    private final Queue<String> violations = new ConcurrentLinkedQueue<>();
+    private final AtomicLong violationCount = new AtomicLong();
+
+    @SuppressWarnings("unchecked")
+    TransactionStressHarness(ConfigurableApplicationContext context) {
+        this.service = context.getBean(TransactionService.class);
+        this.lockManager = context.getBean(CacheLockManager.class);
+        this.userIndexCache = context.getBean("userIndexCache", Cache.class);
+        this.merchantIndexCache = context.getBean("merchantIndexCache", Cache.class);
+    }
+
+    public static void main(String[] args) throws Exception {
+        // 主缓存预算较小，促使数据在主缓存与磁盘层之间迁移；关闭按日清理与限流，避免干扰模型；
+        // 预期内的拒绝（流水号冲突、交易已删除）按ERROR记录，不输出
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(MyApplication.class)
+                .web(WebApplicationType.NONE)
+                .run("--logging.level.root=WARN", "--logging.level.com.hsbc.interview.service.TransactionService=OFF",
+                        "--trans.rate-limit.enabled=false", "--trans.retention.enabled=false",
+                        "--trans.memory.budget-mb=" + Integer.getInteger("stress.budget-mb", 8),
+                        "--trans.memory.floor-mb.main-cache=1", "--trans.memory.rebalance-ms=200");
+        long violations;
+        try {
+            TransactionStressHarness harness = new TransactionStressHarness(context);
+            harness.runWorkload();
+            harness.runLocks();
+            violations = harness.report();
+        } finally {
+            context.close();
+        }
+        System.exit(violations == 0 ? 0 : 1);
+    }
+
+    private void runWorkload() throws Exception {
+        System.out.printf("并发读写：%d个线程，%d个用户，%d个商户，%ds，检查点间隔%dms%n", threads, users, merchants,
+                durationMillis / 1000, checkpointMillis);
+        long deadline = System.currentTimeMillis() + durationMillis;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            futures.add(executor.submit(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                while (System.currentTimeMillis() < deadline) {
+                    pause.readLock().lock();
+                    try {
+                        int op = random.nextInt(100);
+                        if (op < 40) {
+                            add(random);
+                        } else if (op < 60) {
+                            update(random);
+                        } else if (op < 75) {
+                            delete(random);
+                        } else {
+                            query(random);
+                        }
+                    } finally {
+                        pause.readLock().unlock();
+                    }
+                }
+                return null;
+            }));
+        }
+        while (System.currentTimeMillis() < deadline) {
+            TimeUnit.MILLISECONDS.sleep(checkpointMillis);
+            checkpoint();
+        }
+        try {
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        checkpoint();
+    }
+
+    private void add(ThreadLocalRandom random) {
+        String userId = "stress-user" + random.nextInt(users);
+        Transaction transaction = new Transaction();
+        transaction.setUserId(userId);
+        transaction.setMerchantId(String.valueOf(random.nextInt(merchants)));
+        transaction.setAmount(BigDecimal.valueOf(random.nextInt(100000), 2));
+        transaction.setCreateUser(userId);
+        String transactionId;
+        try {
+            transactionId = service.addTransaction(transaction);
+        } catch (RuntimeException e) {
+            // 并发生成了相同的流水号，新增被拒绝，由调用方重试
+            count("addRejected");
+            return;
+        }
+        count("add");
+        if (live.putIfAbsent(transactionId, userId) != null) {
+            violation("流水号重复：" + transactionId + " 被两个新增同时返回");
+        }
+        // 不带节点槽位时流水号按当前最大值递增，最大的流水号被删除后会再次生成
+        if (issued.put(transactionId, userId) != null) {
+            count("addReusedId");
+        }
+        recent.set((int) (recentIndex.getAndIncrement() % RECENT), transactionId);
+    }
+
+    private void update(ThreadLocalRandom random) {
+        String transactionId = recent.get(random.nextInt(RECENT));
+        String userId = transactionId == null ? null : issued.get(transactionId);
+        if (userId == null) {
+            return;
+        }
+        Transaction transaction = new Transaction();
+        transaction.setTransactionId(transactionId);
+        transaction.setUserId(userId);
+        // 更换商户，触发商户索引的迁移
+        transaction.setMerchantId(String.valueOf(random.nextInt(merchants)));
+        transaction.setAmount(BigDecimal.valueOf(random.nextInt(100000), 2));
+        try {
+            service.updateTransaction(transaction);
+            count("update");
+        } catch (TransException e) {
+            count("updateMissing");
+        }
+    }
+
+    // 只删除较早的流水号：最大的流水号一直存在，新增不会复用已删除的流水号，模型中的新增与删除不会交错
+    private void delete(ThreadLocalRandom random) {
+        long position = recentIndex.get() - PROTECTED - random.nextInt(RECENT - PROTECTED);
+        if (position < 0) {
+            return;
+        }
+        String transactionId = recent.get((int) (position % RECENT));
+        String userId = transactionId == null ? null : issued.get(transactionId);
+        if (userId == null) {
+            return;
+        }
+        TransQryRequest req = new TransQryRequest();
+        req.setTransactionId(transactionId);
+        req.setUserId(userId);
+        try {
+            service.deleteTransaction(req);
+            count("delete");
+            live.remove(transactionId);
+        } catch (TransException e) {
+            count("deleteMissing");
+        }
+    }
+
+    private void query(ThreadLocalRandom random) {
+        TransQryRequest req = new TransQryRequest();
+        boolean byUser = random.nextBoolean();
+        String key = byUser ? "stress-user" + random.nextInt(users) : String.valueOf(random.nextInt(merchants));
+        if (byUser) {
+            req.setUserId(key);
+        } else {
+            req.setMerchantId(key);
+        }
+        req.setPage(1);
+        req.setPageSize(50);
+        TransQryRsp rsp = service.searchTrans(req);
+        count("query");
+        if (rsp.getTransList() == null) {
+            return;
+        }
+        for (TransDataDto row : rsp.getTransList()) {
+            if (byUser && !key.equals(row.getUserId())) {
+                violation("查询结果错误：按用户" + key + "查询返回了" + row.getTransactionId() + "（" + row.getUserId() + "）");
+            } else if (!byUser && !key.equals(row.getMerchantId())) {
+                // 先读索引再逐条读取交易，期间被更新到其他商户的交易按读取时的数据返回（读已提交），只统计不作为违反
+                count("queryMovedRow");
+            }
+        }
+    }
+
+    // 所有工作线程都不在操作中时全量校验索引、主缓存与模型
+    private void checkpoint() {
+        pause.writeLock().lock();
+        try {
+            count("checkpoint");
+            Set<String> stored = new HashSet<>();
+            service.allTransactionIds().forEach(stored::add);
+            for (String transactionId : stored) {
+                if (!live.containsKey(transactionId)) {
+                    violation("残留数据：" + transactionId + " 已删除或从未成功新增，但仍可读到");
+                }
+            }
+            for (String transactionId : live.keySet()) {
+                if (!stored.contains(transactionId)) {
+                    violation("丢失写入：" + transactionId + " 新增成功且未删除，但已读不到");
+                }
+            }
+            checkIndex(userIndexCache, "用户", true);
+            checkIndex(merchantIndexCache, "商户", false);
+            for (String transactionId : stored) {
+                Transaction transaction = service.findTransaction(transactionId);
+                if (transaction == null) {
+                    continue;
+                }
+                Set<String> userIds = userIndexCache.getIfPresent(transaction.getUserId());
+                Set<String> merchantIds = merchantIndexCache.getIfPresent(transaction.getMerchantId());
+                if (userIds == null || !userIds.contains(transactionId)
+                        || merchantIds == null || !merchantIds.contains(transactionId)) {
+                    violation("索引缺失：" + transactionId + " 不在用户" + transaction.getUserId() + "或商户"
+                            + transaction.getMerchantId() + "的索引中");
+                }
+            }
+        } finally {
+            pause.writeLock().unlock();
+        }
+    }
+
+    private void checkIndex(Cache<String, Set<String>> indexCache, String name, boolean byUser) {
+        indexCache.asMap().forEach((key, transactionIds) -> {
+            for (String transactionId : transactionIds) {
+                Transaction transaction = service.findTransaction(transactionId);
+                if (transaction == null) {
+                    violation(name + "索引残留：" + key + " -> " + transactionId + " 在主缓存与磁盘层中都不存在");
+                } else if (!key.equals(byUser ? transaction.getUserId() : transaction.getMerchantId())) {
+                    violation(name + "索引错位：" + key + " -> " + transactionId + " 实际属于"
+                            + (byUser ? transaction.getUserId() : transaction.getMerchantId()));
+                }
+            }
+        });
+    }
+
+    // 锁键数远多于锁缓存的容量，检查持有期间锁是否被淘汰或过期后被其他线程再次获得
+    private void runLocks() throws Exception {
+        System.out.printf("锁互斥：%d个线程，%d个锁键，%ds%n", threads, lockKeys, lockDurationMillis / 1000);
+        Map<String, Thread> owners = new ConcurrentHashMap<>();
+        long deadline = System.currentTimeMillis() + lockDurationMillis;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            futures.add(executor.submit(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                Thread self = Thread.currentThread();
+                while (System.currentTimeMillis() < deadline) {
+                    // 一半的请求集中在少数热点键上
+                    String lockKey = "STRESS_LOCK" + (random.nextBoolean() ? random.nextInt(8) : random.nextInt(lockKeys));
+                    if (!lockManager.tryLock(lockKey)) {
+                        count("lockBusy");
+                        continue;
+                    }
+                    count("lock");
+                    Thread other = owners.putIfAbsent(lockKey, self);
+                    if (other != null) {
+                        violation("锁互斥失效：" + lockKey + " 同时被" + other.getName() + "与" + self.getName() + "持有");
+                    }
+                    for (int i = random.nextInt(64); i > 0; i--) {
+                        Thread.onSpinWait();
+                    }
+                    owners.remove(lockKey, self);
+                    lockManager.unlock(lockKey);
+                }
+                return null;
+            }));
+        }
+        try {
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private long report() {
+        System.out.println();
+        counters.forEach((name, value) -> System.out.printf("%-16s %12d%n", name, value.get()));
+        long count = violationCount.get();
+        if (count == 0) {
+            System.out.println("未发现违反不变量的情况");
+        } else {
+            System.out.printf("发现%d处违反不变量的情况（最多列出%d条）：%n", count, MAX_REPORTED);
+            violations.forEach(message -> System.out.println("  " + message));
+        }
+        return count;
+    }
+
+    private void count(String name) {
+        counters.computeIfAbsent(name, k -> new AtomicLong()).incrementAndGet();
+    }
+
+    // 按类别计数（消息中冒号之前的部分），明细只保留前 MAX_REPORTED 条
+    private void violation(String message) {
+        count("violation." + message.substring(0, message.indexOf('：')));
+        if (violationCount.incrementAndGet() <= MAX_REPORTED) {
+            violations.add(message);
+        }
+    }
+}
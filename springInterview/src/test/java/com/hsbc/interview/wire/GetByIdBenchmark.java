@@ -0,0 +1,88 @@
+package com.hsbc.interview.wire;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.hsbc.interview.config.CacheLockManager;
+import com.hsbc.interview.dto.BaseResponse;
+import com.hsbc.interview.dto.TransQryRequest;
+import com.hsbc.interview.entity.Transaction;
+import com.hsbc.interview.service.TransactionService;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 按流水号读取单条交易：查询接口（构造请求、查询响应、DTO，Jackson编码）与预编码输出的耗时及每次分配的字节数
+ * 运行：mvn -Pbenchmark test-compile exec:exec -Dbenchmark=GetByIdBenchmark
+ * 分配量见结果中的 gc.alloc.rate.norm（B/op）
+ * @author wangwei
+ * @date 2026-10-19
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class GetByIdBenchmark {
+
+    private static final int ROWS = 10000;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final OutputStream sink = OutputStream.nullOutputStream();
+
+    private TransactionService service;
+
+    private TransactionJsonWriter writer;
+
+    private String[] ids;
+
+    private int next;
+
+    @Setup
+    public void setup() throws IOException {
+        Cache<String, Transaction> mainCache = Caffeine.newBuilder().maximumSize(ROWS * 2).build();
+        service = new TransactionService(mainCache, Caffeine.<String, Set<String>>newBuilder().build(),
+                Caffeine.<String, Set<String>>newBuilder().build(), new CacheLockManager());
+        writer = new TransactionJsonWriter(objectMapper, service, 64);
+        ids = new String[ROWS];
+        for (int i = 0; i < ROWS; i++) {
+            Transaction transaction = new Transaction();
+            transaction.setTransactionId(String.format("T20261019%08d", i + 1));
+            transaction.setUserId("user" + (i % 500));
+            transaction.setMerchantId(String.valueOf(i % 3 + 1));
+            transaction.setAmount(new BigDecimal("1234.56").add(BigDecimal.valueOf(i)));
+            transaction.setCreateUser(transaction.getUserId());
+            transaction.setTransDate("2026-10-19 12:34:56");
+            transaction.setVersion(1L);
+            service.upsertTransaction(transaction);
+            ids[i] = transaction.getTransactionId();
+        }
+    }
+
+    private String nextId() {
+        String id = ids[next];
+        next = next + 1 == ids.length ? 0 : next + 1;
+        return id;
+    }
+
+    @Benchmark
+    public int searchTransJson() throws IOException {
+        TransQryRequest req = new TransQryRequest();
+        req.setTransactionId(nextId());
+        byte[] json = objectMapper.writeValueAsBytes(BaseResponse.success(service.searchTrans(req)));
+        sink.write(json);
+        return json.length;
+    }
+
+    @Benchmark
+    public int preEncoded() throws IOException {
+        return writer.writeTo(service.getTransaction(nextId()), sink);
+    }
+}
@@ -0,0 +1,135 @@
+package com.hsbc.interview.wire;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hsbc.interview.dto.BaseResponse;
+import com.hsbc.interview.dto.TransDataDto;
+import com.hsbc.interview.dto.TransQryPlan;
+import com.hsbc.interview.dto.TransQryRequest;
+import com.hsbc.interview.dto.TransQryRsp;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TransBinaryCodecTest {
+
+    static TransQryRsp sampleRsp(int rows) {
+        List<TransDataDto> list = new ArrayList<>();
+        for (int i = 0; i < rows; i++) {
+            TransDataDto dto = new TransDataDto();
+            dto.setTransactionId(String.format("T20261019%08d", i + 1));
+            dto.setUserId("user" + (i % 50));
+            dto.setMerchantId(String.valueOf(i % 3 + 1));
+            dto.setMerchantName("商户" + (i % 3 + 1));
+            dto.setAmount(new BigDecimal("1234.56").add(BigDecimal.valueOf(i)));
+            dto.setCreateUser(dto.getUserId());
+            dto.setTransDate("2026-10-19 12:34:56");
+            dto.setVersion(1L);
+            list.add(dto);
+        }
+        TransQryRsp rsp = new TransQryRsp();
+        rsp.setTotal(rows);
+        rsp.setPage(1);
+        rsp.setPageSize(rows);
+        rsp.setTransList(list);
+        return rsp;
+    }
+
+    private static byte[] encode(BaseResponse<?> response) throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        BinaryWriter writer = new BinaryWriter(bytes, 64);
+        TransBinaryCodec.writeResponse(writer, response);
+        writer.flush();
+        return bytes.toByteArray();
+    }
+
+    @Test
+    void queryResult_RoundTrip_KeepsAllFields() throws Exception {
+        TransQryRsp rsp = sampleRsp(20);
+        TransDataDto odd = rsp.getTransList().get(3);
+        odd.setTransactionId("custom-id-中文");
+        odd.setAmount(new BigDecimal("-0.0001"));
+        odd.setUpdDate("not a date");
+        odd.setUpdateUser("审核员");
+        odd.setRequestId("req-1");
+        odd.setVersion(null);
+
+        BaseResponse<Object> decoded = TransBinaryCodec.readResponse(
+                new BinaryReader(new ByteArrayInputStream(encode(BaseResponse.success(rsp)))));
+
+        assertEquals(200, decoded.getCode());
+        assertEquals("Success", decoded.getMessage());
+        assertEquals(rsp, decoded.getData());
+    }
+
+    @Test
+    void explain_RoundTrip_KeepsFlagAndPlan() throws Exception {
+        TransQryRequest req = new TransQryRequest();
+        req.setUserId("user1");
+        req.setExplain(true);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        BinaryWriter writer = new BinaryWriter(bytes);
+        TransBinaryCodec.writeQuery(writer, req);
+        writer.flush();
+        TransQryRequest decodedReq = TransBinaryCodec.readQuery(new BinaryReader(new ByteArrayInputStream(bytes.toByteArray())));
+        assertEquals(Boolean.TRUE, decodedReq.getExplain());
+        assertNull(decodedReq.getSnapshot());
+
+        TransQryPlan plan = new TransQryPlan();
+        plan.setStrategy("USER_INDEX");
+        plan.setDetail("userId[user1]=3");
+        plan.setEstimatedRows(3L);
+        plan.setActualRows(3L);
+        plan.setExaminedRows(3L);
+        plan.setEstimatedCost(1.25);
+        Map<String, Double> alternatives = new LinkedHashMap<>();
+        alternatives.put("USER_INDEX", 1.25);
+        alternatives.put("FULL_SCAN", 12000.5);
+        plan.setAlternatives(alternatives);
+        plan.setElapsedMicros(42L);
+        TransQryRsp rsp = sampleRsp(3);
+        rsp.setPlan(plan);
+
+        BaseResponse<Object> decoded = TransBinaryCodec.readResponse(
+                new BinaryReader(new ByteArrayInputStream(encode(BaseResponse.success(rsp)))));
+
+        assertEquals(plan, ((TransQryRsp) decoded.getData()).getPlan());
+        assertEquals(List.of("USER_INDEX", "FULL_SCAN"),
+                List.copyOf(((TransQryRsp) decoded.getData()).getPlan().getAlternatives().keySet()));
+    }
+
+    @Test
+    void query_RoundTrip_KeepsDefaultsForMissingPaging() throws Exception {
+        TransQryRequest req = new TransQryRequest();
+        req.setMerchantId("2");
+        req.setMinAmount(new BigDecimal("10.5"));
+        req.setPage(null);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        BinaryWriter writer = new BinaryWriter(bytes);
+        TransBinaryCodec.writeQuery(writer, req);
+        writer.flush();
+
+        TransQryRequest decoded = TransBinaryCodec.readQuery(new BinaryReader(new ByteArrayInputStream(bytes.toByteArray())));
+
+        assertEquals("2", decoded.getMerchantId());
+        assertEquals(new BigDecimal("10.5"), decoded.getMinAmount());
+        assertNull(decoded.getUserId());
+        assertEquals(1, decoded.getPage());
+        assertEquals(10, decoded.getPageSize());
+    }
+
+    @Test
+    void binary_IsSmallerThanJson() throws Exception {
+        BaseResponse<TransQryRsp> response = BaseResponse.success(sampleRsp(100));
+        int binary = encode(response).length;
+        int json = new ObjectMapper().writeValueAsBytes(response).length;
+        assertTrue(binary * 3 < json, "binary=" + binary + " json=" + json);
+    }
+}
@@ -0,0 +1,54 @@
+package com.hsbc.interview.wire;
+
+import com.hsbc.interview.cdc.ChangeBatch;
+import com.hsbc.interview.dto.BaseResponse;
+import com.hsbc.interview.dto.MultiGetRsp;
+import com.hsbc.interview.dto.TransQryRsp;
+import com.hsbc.interview.entity.Transaction;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.ResolvableType;
+import org.springframework.http.MediaType;
+
+import java.lang.reflect.Type;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TransBinaryHttpMessageConverterTest {
+
+    private final TransBinaryHttpMessageConverter converter = new TransBinaryHttpMessageConverter();
+
+    @Test
+    void canWrite_OnlyResponsesWhoseDataCanBeEncoded() {
+        MediaType binary = TransBinaryHttpMessageConverter.MEDIA_TYPE;
+        assertTrue(converter.canWrite(responseOf(String.class), BaseResponse.class, binary));
+        assertTrue(converter.canWrite(responseOf(TransQryRsp.class), BaseResponse.class, binary));
+        assertTrue(converter.canWrite(responseOf(Void.class), BaseResponse.class, binary));
+
+        assertFalse(converter.canWrite(responseOf(MultiGetRsp.class), BaseResponse.class, binary));
+        assertFalse(converter.canWrite(responseOf(ChangeBatch.class), BaseResponse.class, binary));
+        assertFalse(converter.canWrite(ResolvableType.forClassWithGenerics(BaseResponse.class,
+                ResolvableType.forClassWithGenerics(Map.class, String.class, Object.class)).getType(),
+                BaseResponse.class, binary));
+        assertFalse(converter.canWrite(ResolvableType.forClassWithGenerics(BaseResponse.class,
+                ResolvableType.forClassWithGenerics(List.class, String.class)).getType(), BaseResponse.class, binary));
+        // 未声明泛型与非BaseResponse类型
+        assertFalse(converter.canWrite(BaseResponse.class, BaseResponse.class, binary));
+        assertFalse(converter.canWrite(Transaction.class, Transaction.class, binary));
+        assertFalse(converter.canWrite(Transaction.class, binary));
+        // 列出媒体类型时只按类型判断
+        assertEquals(List.of(binary), converter.getSupportedMediaTypes(BaseResponse.class));
+        assertFalse(converter.canWrite(responseOf(String.class), BaseResponse.class, MediaType.APPLICATION_JSON));
+    }
+
+    @Test
+    void canRead_TransactionAndQueryStillSupported() {
+        assertTrue(converter.canRead(Transaction.class, TransBinaryHttpMessageConverter.MEDIA_TYPE));
+        assertFalse(converter.canRead(Transaction.class, null));
+    }
+
+    private static Type responseOf(Class<?> dataType) {
+        return ResolvableType.forClassWithGenerics(BaseResponse.class, dataType).getType();
+    }
+}
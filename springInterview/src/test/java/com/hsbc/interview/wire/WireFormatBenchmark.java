@@ -0,0 +1,85 @@
+package com.hsbc.interview.wire;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hsbc.interview.dto.BaseResponse;
+import com.hsbc.interview.dto.TransQryRsp;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 查询结果JSON与二进制编码对比：每行字节数（启动时打印）与每行编解码耗时（ns/op即ns/row）
+ * 运行：mvn -Pbenchmark test-compile exec:exec -Dbenchmark=WireFormatBenchmark
+ * @author wangwei
+ * @date 2026-10-19
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class WireFormatBenchmark {
+
+    private static final int ROWS = 100;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final ByteArrayOutputStream buffer = new ByteArrayOutputStream(64 * 1024);
+
+    private BaseResponse<TransQryRsp> response;
+
+    private byte[] jsonBytes;
+
+    private byte[] binaryBytes;
+
+    @Setup
+    public void setup() throws IOException {
+        response = BaseResponse.success(TransBinaryCodecTest.sampleRsp(ROWS));
+        jsonBytes = objectMapper.writeValueAsBytes(response);
+        binaryBytes = writeBinary();
+        System.out.printf("%nbytes/row json=%.1f binary=%.1f%n",
+                (double) jsonBytes.length / ROWS, (double) binaryBytes.length / ROWS);
+    }
+
+    private byte[] writeBinary() throws IOException {
+        buffer.reset();
+        BinaryWriter writer = new BinaryWriter(buffer);
+        TransBinaryCodec.writeResponse(writer, response);
+        writer.flush();
+        return buffer.toByteArray();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public int serializeJson() throws IOException {
+        buffer.reset();
+        objectMapper.writeValue(buffer, response);
+        return buffer.size();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public int serializeBinary() throws IOException {
+        buffer.reset();
+        BinaryWriter writer = new BinaryWriter(buffer);
+        TransBinaryCodec.writeResponse(writer, response);
+        writer.flush();
+        return buffer.size();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public Object deserializeJson() throws IOException {
+        return objectMapper.readValue(jsonBytes, BaseResponse.class);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public Object deserializeBinary() throws IOException {
+        return TransBinaryCodec.readResponse(new BinaryReader(new ByteArrayInputStream(binaryBytes)));
+    }
+}